@@ -1,14 +1,23 @@
 package com.devotion.dao;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import javax.sql.DataSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
 import org.springframework.jdbc.core.SqlParameter;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
@@ -16,14 +25,22 @@ import org.springframework.jdbc.object.GenericStoredProcedure;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 
+import com.devotion.dao.constants.DBType;
 import com.devotion.dao.utils.DaoUtils;
 import com.devotion.dao.utils.DataSourceContext;
 import com.devotion.dao.resource.parse.SqlBean;
-import com.devotion.dao.support.rowmapper.RowMapperFactory;
+import com.devotion.dao.support.batch.GroupedBatch;
+import com.devotion.dao.support.plan.ExecutionPlan;
+import com.devotion.dao.support.plan.ExecutionPlanCache;
+import com.devotion.dao.support.scatter.Aggregate;
+import com.devotion.dao.support.scatter.ScatterGather;
+import com.devotion.dao.support.scatter.ScatterQuery;
+import com.devotion.dao.support.scatter.ScatterTask;
 import com.devotion.dao.support.sql.FreeMakerParser;
+import com.devotion.dao.support.stream.RowStream;
 import com.devotion.dao.support.sql.SqlParser;
 import com.devotion.dao.support.sql.SqlParserManager;
-import com.devotion.dao.support.value.ValueParser;
+import com.devotion.dao.support.value.EntityBinding;
 import com.devotion.dao.transaction.TransactionOperation;
 
 /**
@@ -41,6 +58,31 @@ public class DataBaseOperation extends TransactionOperation {
      */
     private static final Long SQLTIMEOUT = 100L;
 
+    /**
+     * 执行计划缓存
+     */
+    private final ExecutionPlanCache planCache = new ExecutionPlanCache();
+
+    /**
+     * 每次JDBC批处理的最大行数
+     */
+    private int batchSize = GroupedBatch.DEFAULT_BATCH_SIZE;
+
+    /**
+     * MySQL批量插入是否合并为多值INSERT
+     */
+    private boolean multiRowInsert;
+
+    /**
+     * 分库查询的分发与合并
+     */
+    private ScatterGather scatterGather = new ScatterGather();
+
+    /**
+     * 流式查询每次从数据库读取的行数，MySQL逐行流式读取不使用该值
+     */
+    private int fetchSize = RowStream.DEFAULT_FETCH_SIZE;
+
     /**
      * 数据持久化操作
      *
@@ -62,17 +104,19 @@ public class DataBaseOperation extends TransactionOperation {
     @SuppressWarnings("unchecked")
     public <T> T persist(Object entity, Class<T> requiredType) {
         SqlParser sqlParser = SqlParserManager.getSqlParser(entity.getClass());
-        String insertSQL = sqlParser.getInsert();
-        Map<String, Object> paramMap = ValueParser.parser(entity);
+        EntityBinding binding = EntityBinding.of(entity.getClass());
+        Map<String, Object> paramMap = binding.bind(entity);
         processTableRoute(paramMap);
+        ExecutionPlan<?> plan = getPlan(entityPlanId(binding, "insert"), sqlParser.getInsert(), null,
+                getValidateDataSource(paramMap, binding.getSqlBean(Boolean.FALSE)));
         /** SQL模板渲染 */
-        insertSQL = FreeMakerParser.process(insertSQL, paramMap);
+        String insertSQL = plan.render(paramMap);
         KeyHolder keyHolder = new GeneratedKeyHolder();
         logMessage("persist", insertSQL, paramMap);
         long beginDate = System.currentTimeMillis();
         /** 渲染后获取JDBC模板 */
-        getValidateJdbcTemplate(paramMap, ValueParser.parseSqlBean(entity, Boolean.FALSE)).update(insertSQL,
-                new MapSqlParameterSource(paramMap), keyHolder, new String[]{sqlParser.getIdName()});
+        plan.getJdbcTemplate().update(insertSQL, new MapSqlParameterSource(paramMap), keyHolder,
+                new String[]{sqlParser.getIdName()});
         Object key = paramMap.get(sqlParser.getId());
         if (key == null || (key instanceof Number && ((Number) key).doubleValue() == 0.0d)) {
             return (T) keyHolder.getKey();
@@ -88,16 +132,18 @@ public class DataBaseOperation extends TransactionOperation {
      * @return 数据更新后的结果
      */
     public int merge(Object entity) {
-        String updateSql = SqlParserManager.getSqlParser(entity.getClass()).getUpdate();
-        Map<String, Object> paramMap = ValueParser.parser(entity);
+        EntityBinding binding = EntityBinding.of(entity.getClass());
+        Map<String, Object> paramMap = binding.bind(entity);
         processTableRoute(paramMap);
+        ExecutionPlan<?> plan = getPlan(entityPlanId(binding, "update"),
+                SqlParserManager.getSqlParser(entity.getClass()).getUpdate(), null,
+                getValidateDataSource(paramMap, binding.getSqlBean(Boolean.FALSE)));
         /** FreeMarker模板渲染 */
-        updateSql = FreeMakerParser.process(updateSql, paramMap);
+        String updateSql = plan.render(paramMap);
         logMessage("merge", updateSql, paramMap);
         long beginDate = System.currentTimeMillis();
         /** 调用JDBCTemplate实现更新，返回更新成功的记录数 */
-        int result = getValidateJdbcTemplate(paramMap, ValueParser.parseSqlBean(entity, Boolean.FALSE))
-                .update(updateSql, paramMap);
+        int result = plan.getJdbcTemplate().update(updateSql, paramMap);
         logMessage("merge", updateSql, paramMap, System.currentTimeMillis() - beginDate);
 
         return result;
@@ -110,21 +156,43 @@ public class DataBaseOperation extends TransactionOperation {
      * @return 返回更新的记录数目
      */
     public int dynamicMerge(Object entity) {
-        Map<String, Object> paramMap = ValueParser.parser(entity);
+        EntityBinding binding = EntityBinding.of(entity.getClass());
+        Map<String, Object> paramMap = binding.bind(entity);
         processTableRoute(paramMap);
+        /** 同一列掩码复用同一语句，语句与模板均只生成一次 */
         String updateSql = SqlParserManager.getSqlParser(entity.getClass()).getDynamicUpdate(paramMap);
         /** FreeMarker模板渲染 */
         updateSql = FreeMakerParser.process(updateSql, paramMap);
         logMessage("dynamicMerge", updateSql, paramMap);
         long beginDate = System.currentTimeMillis();
         /** 调用JDBCTemplate实现更新，返回更新成功的记录数 */
-        int result = getValidateJdbcTemplate(paramMap, ValueParser.parseSqlBean(entity, Boolean.FALSE))
-                .update(updateSql, paramMap);
+        int result = getValidateJdbcTemplate(paramMap, binding.getSqlBean(Boolean.FALSE)).update(updateSql, paramMap);
         logMessage("dynamicMerge", updateSql, paramMap, System.currentTimeMillis() - beginDate);
 
         return result;
     }
 
+    /**
+     * 批量动态更新，按目标数据源与渲染后的语句分组执行JDBC批处理
+     *
+     * @param entities 更新的数据实体
+     * @return 各实体更新的记录数，与传入顺序一致
+     */
+    public int[] batchDynamicMerge(Collection<?> entities) {
+        GroupedBatch batch = new GroupedBatch(entities.size(), batchSize, false);
+        int row = 0;
+        for (Object entity : entities) {
+            EntityBinding binding = EntityBinding.of(entity.getClass());
+            Map<String, Object> paramMap = binding.bind(entity);
+            processTableRoute(paramMap);
+            String updateSql = FreeMakerParser.process(
+                    SqlParserManager.getSqlParser(entity.getClass()).getDynamicUpdate(paramMap), paramMap);
+            batch.add(row++, getValidateDataSource(paramMap, binding.getSqlBean(Boolean.FALSE)), updateSql, paramMap);
+        }
+        /** 调用JDBCTemplate批量更新，返回各实体更新成功的记录数 */
+        return batch.execute(planCache::getJdbcTemplate);
+    }
+
     /**
      * 数据删除
      *
@@ -132,16 +200,18 @@ public class DataBaseOperation extends TransactionOperation {
      * @return 返回删除的记录数目
      */
     public int remove(Object entity) {
-        String removeSql = SqlParserManager.getSqlParser(entity.getClass()).getDelete();
-        Map<String, Object> paramMap = ValueParser.parser(entity);
+        EntityBinding binding = EntityBinding.of(entity.getClass());
+        Map<String, Object> paramMap = binding.bind(entity);
         processTableRoute(paramMap);
+        ExecutionPlan<?> plan = getPlan(entityPlanId(binding, "delete"),
+                SqlParserManager.getSqlParser(entity.getClass()).getDelete(), null,
+                getValidateDataSource(paramMap, binding.getSqlBean(Boolean.FALSE)));
         /** FreeMarker模板渲染 */
-        removeSql = FreeMakerParser.process(removeSql, paramMap);
+        String removeSql = plan.render(paramMap);
         logMessage("remove", removeSql, paramMap);
         long beginDate = System.currentTimeMillis();
         /** 调用JDBCTemplate实现更新，返回更新成功的记录数 */
-        int result = getValidateJdbcTemplate(paramMap, ValueParser.parseSqlBean(entity, Boolean.FALSE))
-                .update(removeSql, paramMap);
+        int result = plan.getJdbcTemplate().update(removeSql, paramMap);
         logMessage("remove", removeSql, paramMap, System.currentTimeMillis() - beginDate);
 
         return result;
@@ -156,16 +226,18 @@ public class DataBaseOperation extends TransactionOperation {
      * @return 查询结果
      */
     public <T> T find(Class<T> entityClass, Object entity) {
-        String findSql = SqlParserManager.getSqlParser(entity.getClass()).getSelect();
-        Map<String, Object> paramMap = ValueParser.parser(entity);
+        EntityBinding binding = EntityBinding.of(entity.getClass());
+        Map<String, Object> paramMap = binding.bind(entity);
         processTableRoute(paramMap);
+        ExecutionPlan<T> plan = getPlan(entityPlanId(binding, "select"),
+                SqlParserManager.getSqlParser(entity.getClass()).getSelect(), entityClass,
+                getDataSource(paramMap, binding.getSqlBean(null)));
         /** FreeMarker模板渲染 */
-        findSql = FreeMakerParser.process(findSql, paramMap);
+        String findSql = plan.render(paramMap);
         logMessage("find", findSql, paramMap);
         long beginDate = System.currentTimeMillis();
         /** 调用JDBCTemplate实现单记录查询，并返回查询结果 */
-        List<T> resultList = getJdbcTemplate(paramMap, ValueParser.parseSqlBean(entity, null)).query(findSql, paramMap,
-                new RowMapperFactory<>(entityClass).getRowMapper());
+        List<T> resultList = plan.getJdbcTemplate().query(findSql, paramMap, plan.getRowMapper());
         logMessage("find", findSql, paramMap, System.currentTimeMillis() - beginDate);
 
         return singleResult(resultList);
@@ -181,7 +253,7 @@ public class DataBaseOperation extends TransactionOperation {
      * @return 查询结果
      */
     public <T> T queryForObject(String sqlId, Map<String, Object> paramMap, Class<T> requiredType) {
-        return this.queryForObject(sqlId, paramMap, new RowMapperFactory<>(requiredType).getRowMapper());
+        return this.queryForObject(sqlId, paramMap, getRowMapper(requiredType));
     }
 
     /**
@@ -209,12 +281,13 @@ public class DataBaseOperation extends TransactionOperation {
     public <T> T queryForObject(String sqlId, Map<String, Object> paramMap, RowMapper<T> rowMapper) {
         processTableRoute(paramMap);
         SqlBean sqlBean = getSQL(sqlId);
+        ExecutionPlan<?> plan = getPlan(sqlId, sqlBean.getContent(), null, getDataSource(paramMap, sqlBean));
         /** FreeMarker模板渲染 */
-        String sql = FreeMakerParser.process(paramMap, sqlBean.getContent(), sqlId);
+        String sql = plan.render(paramMap);
         logMessage("queryForObject", sql, paramMap);
         long beginDate = System.currentTimeMillis();
         /** 调用JDBCTemplate实现查询，并返回查询结果 */
-        List<T> resultList = getJdbcTemplate(paramMap, sqlBean).query(sql, paramMap, rowMapper);
+        List<T> resultList = plan.getJdbcTemplate().query(sql, paramMap, rowMapper);
         logMessage("queryForObject", sql, paramMap, System.currentTimeMillis() - beginDate);
 
         return singleResult(resultList);
@@ -243,12 +316,13 @@ public class DataBaseOperation extends TransactionOperation {
     public Map<String, Object> queryForMap(String sqlId, Map<String, Object> paramMap) {
         processTableRoute(paramMap);
         SqlBean sqlBean = getSQL(sqlId);
+        ExecutionPlan<?> plan = getPlan(sqlId, sqlBean.getContent(), null, getDataSource(paramMap, sqlBean));
         /** FreeMarker模板渲染 */
-        String sql = FreeMakerParser.process(paramMap, sqlBean.getContent(), sqlId);
+        String sql = plan.render(paramMap);
         logMessage("queryForMap", sql, paramMap);
         long beginDate = System.currentTimeMillis();
         /** 调用JDBCTemplate实现查询，并返回查询结果 */
-        Map<String, Object> map = singleResult(getJdbcTemplate(paramMap, sqlBean).queryForList(sql, paramMap));
+        Map<String, Object> map = singleResult(plan.getJdbcTemplate().queryForList(sql, paramMap));
         logMessage("queryForMap", sql, paramMap, System.currentTimeMillis() - beginDate);
         return map;
     }
@@ -275,7 +349,7 @@ public class DataBaseOperation extends TransactionOperation {
      */
     public <T> List<T> queryForList(String sqlId, Map<String, Object> paramMap, Class<T> requiredType) {
 
-        return this.queryForList(sqlId, paramMap, new RowMapperFactory<>(requiredType).getRowMapper());
+        return this.queryForList(sqlId, paramMap, getRowMapper(requiredType));
 
     }
 
@@ -304,12 +378,13 @@ public class DataBaseOperation extends TransactionOperation {
     public <T> List<T> queryForList(String sqlId, Map<String, Object> paramMap, RowMapper<T> rowMapper) {
         processTableRoute(paramMap);
         SqlBean sqlBean = getSQL(sqlId);
+        ExecutionPlan<?> plan = getPlan(sqlId, sqlBean.getContent(), null, getDataSource(paramMap, sqlBean));
         /** FreeMarker模板渲染 */
-        String sql = FreeMakerParser.process(paramMap, sqlBean.getContent(), sqlId);
+        String sql = plan.render(paramMap);
         logMessage("queryForList(3 paramter)", sql, paramMap);
         long beginDate = System.currentTimeMillis();
         /** 调用JDBCTemplate实现查询，并返回查询结果 */
-        List<T> list = getJdbcTemplate(paramMap, sqlBean).query(sql, DaoUtils.mapIfNull(paramMap), rowMapper);
+        List<T> list = plan.getJdbcTemplate().query(sql, DaoUtils.mapIfNull(paramMap), rowMapper);
         logMessage("queryForList(3 paramter)", sql, paramMap, System.currentTimeMillis() - beginDate);
 
         return list;
@@ -338,13 +413,13 @@ public class DataBaseOperation extends TransactionOperation {
     public List<Map<String, Object>> queryForList(String sqlId, Map<String, Object> paramMap) {
         processTableRoute(paramMap);
         SqlBean sqlBean = getSQL(sqlId);
+        ExecutionPlan<?> plan = getPlan(sqlId, sqlBean.getContent(), null, getDataSource(paramMap, sqlBean));
         /** FreeMarker模板渲染 */
-        String sql = FreeMakerParser.process(paramMap, sqlBean.getContent(), sqlId);
+        String sql = plan.render(paramMap);
         logMessage("queryForList(2 paramter)", sql, paramMap);
         long beginDate = System.currentTimeMillis();
         /** 调用JDBCTemplate实现多记录查询，并返回查询结果 */
-        List<Map<String, Object>> list = getJdbcTemplate(paramMap, sqlBean).queryForList(sql,
-                DaoUtils.mapIfNull(paramMap));
+        List<Map<String, Object>> list = plan.getJdbcTemplate().queryForList(sql, DaoUtils.mapIfNull(paramMap));
         logMessage("queryForList(2 paramter)", sql, paramMap, System.currentTimeMillis() - beginDate);
         return list;
     }
@@ -360,6 +435,68 @@ public class DataBaseOperation extends TransactionOperation {
         return queryForList(sqlId, DaoUtils.convertToMap(param));
     }
 
+    /**
+     * 流式查询，逐行读取结果集，内存占用与结果行数无关<br>
+     * 返回的Stream占用数据库连接，须在try-with-resources中使用或读完全部行
+     *
+     * @param sqlId     SQLID
+     * @param paramMap  查询参数
+     * @param rowMapper 结果映射
+     * @param <T>       泛型对象
+     * @return 查询结果
+     */
+    public <T> Stream<T> queryForStream(String sqlId, Map<String, Object> paramMap, RowMapper<T> rowMapper) {
+        processTableRoute(paramMap);
+        SqlBean sqlBean = getSQL(sqlId);
+        ExecutionPlan<?> plan = getPlan(sqlId, sqlBean.getContent(), null, getDataSource(paramMap, sqlBean));
+        /** FreeMarker模板渲染 */
+        String sql = plan.render(paramMap);
+        logMessage("queryForStream", sql, paramMap);
+        /** 打开游标，结果在读取时逐行映射 */
+        return RowStream.open(plan.getJdbcTemplate(), sql, DaoUtils.mapIfNull(paramMap), rowMapper,
+                getFetchSize(sqlBean)).stream();
+    }
+
+    /**
+     * 流式查询，queryForStream重载方法
+     *
+     * @param sqlId        SQLID
+     * @param paramMap     查询参数
+     * @param requiredType 需要处理的类型
+     * @param <T>          泛型对象
+     * @return 查询结果
+     */
+    public <T> Stream<T> queryForStream(String sqlId, Map<String, Object> paramMap, Class<T> requiredType) {
+        return queryForStream(sqlId, paramMap, getRowMapper(requiredType));
+    }
+
+    /**
+     * 流式查询，结果映射为Map，queryForStream重载方法
+     *
+     * @param sqlId    SQLID
+     * @param paramMap 查询参数
+     * @return 查询结果
+     */
+    public Stream<Map<String, Object>> queryForStream(String sqlId, Map<String, Object> paramMap) {
+        return queryForStream(sqlId, paramMap, new ColumnMapRowMapper());
+    }
+
+    /**
+     * 流式查询，逐行回调，返回前释放全部资源
+     *
+     * @param sqlId     SQLID
+     * @param paramMap  查询参数
+     * @param rowMapper 结果映射
+     * @param action    行回调
+     * @param <T>       泛型对象
+     */
+    public <T> void queryForEach(String sqlId, Map<String, Object> paramMap, RowMapper<T> rowMapper,
+                                 Consumer<? super T> action) {
+        try (Stream<T> rows = queryForStream(sqlId, paramMap, rowMapper)) {
+            rows.forEachOrdered(action);
+        }
+    }
+
     /**
      * 执行查询，返回结果集记录数目
      *
@@ -370,12 +507,13 @@ public class DataBaseOperation extends TransactionOperation {
     public int execute(String sqlId, Map<String, Object> paramMap) {
         processTableRoute(paramMap);
         SqlBean sqlBean = getSQL(sqlId);
+        ExecutionPlan<?> plan = getPlan(sqlId, sqlBean.getContent(), null, getValidateDataSource(paramMap, sqlBean));
         /** FreeMarker模板渲染 */
-        String sql = FreeMakerParser.process(paramMap, sqlBean.getContent(), sqlId);
+        String sql = plan.render(paramMap);
         logMessage("execute", sql, paramMap);
         long beginDate = System.currentTimeMillis();
         /** 调用JDBCTemplate实现更新，返回更新成功的记录数 */
-        int result = getValidateJdbcTemplate(paramMap, sqlBean).update(sql, DaoUtils.mapIfNull(paramMap));
+        int result = plan.getJdbcTemplate().update(sql, DaoUtils.mapIfNull(paramMap));
         logMessage("execute", sql, paramMap, System.currentTimeMillis() - beginDate);
 
         return result;
@@ -393,33 +531,111 @@ public class DataBaseOperation extends TransactionOperation {
     }
 
     /**
-     * 批量更新
+     * 批量更新，各行按路由与渲染结果分组，每组分块执行JDBC批处理
      *
      * @param sqlId       sqlId
      * @param batchValues 需要批处理的集合
-     * @return 批处理成功记录数
+     * @return 各行更新成功的记录数，与传入顺序一致
      */
     public int[] batchUpdate(String sqlId, Map<String, Object>[] batchValues) {
-        Map<String, Object> paramMap = new HashMap<>();
-        if (batchValues != null && batchValues[0] != null) {
-            paramMap = batchValues[0];
+        if (batchValues == null || batchValues.length == 0) {
+            return new int[0];
         }
         /** 组装SQLBean */
         SqlBean sqlBean = getSQL(sqlId);
-        processTableRoute(paramMap);
-        /** FreeMarker模板渲染 */
-        String sql = FreeMakerParser.process(paramMap, sqlBean.getContent(), sqlId);
-        logMessage("batchUpdate", sql, String.valueOf(batchValues == null ? 0 : batchValues.length));
+        GroupedBatch batch = new GroupedBatch(batchValues.length, batchSize,
+                multiRowInsert && DBType.MySql.name().equalsIgnoreCase(sqlBean.getDbType()));
+        /** 逐行路由、渲染，按渲染结果分组 */
+        for (int row = 0; row < batchValues.length; row++) {
+            Map<String, Object> paramMap = DaoUtils.mapIfNull(batchValues[row]);
+            processTableRoute(paramMap);
+            ExecutionPlan<?> plan = getPlan(sqlId, sqlBean.getContent(), null,
+                    getValidateDataSource(paramMap, sqlBean));
+            batch.add(row, plan.getDataSource(), plan.render(paramMap), paramMap);
+        }
+        logMessage("batchUpdate", sqlBean.getContent(), String.valueOf(batchValues.length));
         long beginDate = System.currentTimeMillis();
-        int[] result;
-        /** 调用JDBCTemplate批量更新，返回更新成功的记录数 */
-        result = getValidateJdbcTemplate(paramMap, sqlBean).batchUpdate(sql, batchValues);
-        logMessage("batchUpdate", sql, String.valueOf(batchValues == null ? 0 : batchValues.length),
+        /** 调用JDBCTemplate批量更新，返回各行更新成功的记录数 */
+        int[] result = batch.execute(planCache::getJdbcTemplate);
+        logMessage("batchUpdate", sqlBean.getContent(), String.valueOf(batchValues.length),
                 System.currentTimeMillis() - beginDate);
 
         return result;
     }
 
+    /**
+     * 分发查询，路由不到单个分库时在全部分库上并行查询并合并结果
+     *
+     * @param sqlId     SQLID
+     * @param paramMap  查询参数
+     * @param rowMapper 结果映射
+     * @param query     分发查询选项
+     * @param <T>       泛型对象
+     * @return 合并后的查询结果
+     */
+    public <T> List<T> scatterForList(String sqlId, Map<String, Object> paramMap, RowMapper<T> rowMapper,
+                                      ScatterQuery<T> query) {
+        SqlBean sqlBean = getSQL(sqlId);
+        Map<String, Object> params = new HashMap<>(DaoUtils.mapIfNull(paramMap));
+        processTableRoute(params);
+        /** 每个分库只需返回合并后可能用到的前offset + limit行 */
+        int rows = query.isLimited() ? (int) Math.min((long) query.getOffset() + query.getLimit(), Integer.MAX_VALUE)
+                : -1;
+        List<ScatterTask<List<T>>> tasks = new ArrayList<>();
+        for (DataSource dataSource : getScatterDataSources(params, sqlBean)) {
+            ExecutionPlan<?> plan = getPlan(sqlId, sqlBean.getContent(), null, dataSource);
+            String sql = plan.render(params);
+            if (rows >= 0) {
+                sql = limitSql(sql, sqlBean, params, rows);
+            }
+            String shardSql = sql;
+            NamedParameterJdbcTemplate template = plan.getJdbcTemplate();
+            tasks.add(timeoutMillis -> template.execute(shardSql, params, (PreparedStatement ps) -> {
+                /** 按剩余时限设置语句超时，数据库在超时后终止查询，模板已设置更短的超时时保留 */
+                int seconds = (int) Math.min(TimeUnit.MILLISECONDS.toSeconds(timeoutMillis + 999),
+                        Integer.MAX_VALUE);
+                if (ps.getQueryTimeout() == 0 || ps.getQueryTimeout() > seconds) {
+                    ps.setQueryTimeout(seconds);
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    return new RowMapperResultSetExtractor<>(rowMapper).extractData(rs);
+                }
+            }));
+        }
+        logMessage("scatterForList", sqlBean.getContent(), params);
+        long beginDate = System.currentTimeMillis();
+        List<T> result = ScatterGather.merge(scatterGather.execute(tasks, query.getTimeoutMillis()), query);
+        logMessage("scatterForList", sqlBean.getContent(), params, System.currentTimeMillis() - beginDate);
+        return result;
+    }
+
+    /**
+     * 分发查询，结果映射为Map
+     *
+     * @param sqlId    SQLID
+     * @param paramMap 查询参数
+     * @param query    分发查询选项
+     * @return 合并后的查询结果
+     */
+    public List<Map<String, Object>> scatterForList(String sqlId, Map<String, Object> paramMap,
+                                                    ScatterQuery<Map<String, Object>> query) {
+        return scatterForList(sqlId, paramMap, new ColumnMapRowMapper(), query);
+    }
+
+    /**
+     * 分发聚合查询，各分库返回一行聚合结果，按聚合函数合并
+     *
+     * @param sqlId      SQLID
+     * @param paramMap   查询参数
+     * @param aggregates 聚合列与聚合函数
+     * @return 合并后的聚合行，全部分库无数据时为null
+     */
+    public Map<String, Object> scatterForAggregate(String sqlId, Map<String, Object> paramMap,
+                                                   Map<String, Aggregate> aggregates) {
+        List<Map<String, Object>> rows = scatterForList(sqlId, paramMap, ScatterQuery.create());
+        return ScatterGather.aggregate(rows, aggregates);
+    }
+
     /**
      * 调存储过程
      *
@@ -432,7 +648,8 @@ public class DataBaseOperation extends TransactionOperation {
         Map<String, Object> paramMapTmp = DaoUtils.mapIfNull(paramMap);
         SqlBean sqlBean = getSQL(sqlId);
         /** SQL渲染 */
-        String sql = FreeMakerParser.process(paramMapTmp, sqlBean.getContent(), sqlId);
+        String sql = getPlan(sqlId, sqlBean.getContent(), null, getValidateDataSource(paramMapTmp, sqlBean))
+                .render(paramMapTmp);
         logMessage("call", sql, paramMapTmp);
         long beginDate = System.currentTimeMillis();
         /** 调用存储过程 */
@@ -448,6 +665,69 @@ public class DataBaseOperation extends TransactionOperation {
         return storedProcedure.execute(paramMapTmp);
     }
 
+    /**
+     * 设置分库查询的分发与合并
+     *
+     * @param scatterGather 分发执行器
+     */
+    public void setScatterGather(ScatterGather scatterGather) {
+        this.scatterGather = scatterGather;
+    }
+
+    /**
+     * 获取每次JDBC批处理的最大行数
+     *
+     * @return 批大小
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * 设置每次JDBC批处理的最大行数
+     *
+     * @param batchSize 批大小，小于等于0时不分块
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 获取MySQL批量插入是否合并为多值INSERT
+     *
+     * @return 是否合并
+     */
+    public boolean isMultiRowInsert() {
+        return multiRowInsert;
+    }
+
+    /**
+     * 设置MySQL批量插入是否合并为多值INSERT，合并后各行计数与驱动的rewriteBatchedStatements一致
+     *
+     * @param multiRowInsert 是否合并
+     */
+    public void setMultiRowInsert(boolean multiRowInsert) {
+        this.multiRowInsert = multiRowInsert;
+    }
+
+    /**
+     * 获取流式查询每次从数据库读取的行数
+     *
+     * @return 行数
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * 设置流式查询每次从数据库读取的行数
+     *
+     * @param fetchSize 行数
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
     /**
      * 返回JDBC模板
      *
@@ -456,7 +736,7 @@ public class DataBaseOperation extends TransactionOperation {
      * @return JDBC模板
      */
     public NamedParameterJdbcTemplate getJdbcTemplate(Object params, SqlBean sqlBean) {
-        return new NamedParameterJdbcTemplate(getDataSource(params, sqlBean));
+        return planCache.getJdbcTemplate(getDataSource(params, sqlBean));
     }
 
     /**
@@ -467,7 +747,41 @@ public class DataBaseOperation extends TransactionOperation {
      * @return JDBC模板
      */
     public NamedParameterJdbcTemplate getValidateJdbcTemplate(Object params, SqlBean sqlBean) {
-        return new NamedParameterJdbcTemplate(getValidateDataSource(params, sqlBean));
+        return planCache.getJdbcTemplate(getValidateDataSource(params, sqlBean));
+    }
+
+    /**
+     * 获取执行计划
+     *
+     * @param sqlId      SQLID
+     * @param sql        SQL模板内容
+     * @param type       结果类型，无结果映射时为null
+     * @param dataSource 目标数据源
+     * @param <T>        泛型对象
+     * @return 执行计划
+     */
+    protected <T> ExecutionPlan<T> getPlan(String sqlId, String sql, Class<T> type, DataSource dataSource) {
+        return planCache.getPlan(sqlId, sql, type, dataSource);
+    }
+
+    /**
+     * 获取类型共享的结果映射
+     *
+     * @param requiredType 需要处理的类型
+     * @param <T>          泛型对象
+     * @return 结果映射
+     */
+    protected <T> RowMapper<T> getRowMapper(Class<T> requiredType) {
+        return planCache.getRowMapper(requiredType);
+    }
+
+    /**
+     * 重新解析SQL模板时清空执行计划
+     */
+    @Override
+    protected void parseResource() {
+        super.parseResource();
+        planCache.clear();
     }
 
     /**
@@ -486,7 +800,7 @@ public class DataBaseOperation extends TransactionOperation {
      * @param sqlBean SQL映射对象
      * @return 目标数据源
      */
-    private DataSource getDataSource(Object params, SqlBean sqlBean) {
+    protected DataSource getDataSource(Object params, SqlBean sqlBean) {
         DataSource targetDataSource = DataSourceContext.getDataSource();
         if (targetDataSource == null) {
             return routeDataSource(params, sqlBean);
@@ -495,6 +809,49 @@ public class DataBaseOperation extends TransactionOperation {
         }
     }
 
+    /**
+     * 获取分发查询的目标数据源，事务中只使用事务绑定的数据源
+     *
+     * @param params  分库参数
+     * @param sqlBean SQL映射对象
+     * @return 目标数据源列表
+     */
+    protected List<DataSource> getScatterDataSources(Object params, SqlBean sqlBean) {
+        DataSource targetDataSource = DataSourceContext.getDataSource();
+        if (targetDataSource == null) {
+            return routeDataSources(params, sqlBean);
+        }
+        List<DataSource> dataSources = new ArrayList<>(1);
+        dataSources.add(targetDataSource);
+        return dataSources;
+    }
+
+    /**
+     * 将SQL限制为前若干行，由支持方言的客户端实现，默认不限制
+     *
+     * @param sql      渲染后的SQL
+     * @param sqlBean  SQL映射对象
+     * @param paramMap 查询参数，可写入分页参数
+     * @param rows     行数
+     * @return 限制行数后的SQL
+     */
+    protected String limitSql(String sql, SqlBean sqlBean, Map<String, Object> paramMap, int rows) {
+        return sql;
+    }
+
+    /**
+     * 获取流式查询的读取行数，MySQL驱动只在fetchSize为Integer.MIN_VALUE时逐行流式读取，否则读入全部结果
+     *
+     * @param sqlBean SQL映射对象
+     * @return 读取行数
+     */
+    protected int getFetchSize(SqlBean sqlBean) {
+        if (DBType.MySql.name().equalsIgnoreCase(sqlBean.getDbType())) {
+            return Integer.MIN_VALUE;
+        }
+        return fetchSize;
+    }
+
     /**
      * 获取有效的数据源
      *
@@ -502,7 +859,7 @@ public class DataBaseOperation extends TransactionOperation {
      * @param sqlBean SQL映射对象
      * @return 目标数据源
      */
-    private DataSource getValidateDataSource(Object params, SqlBean sqlBean) {
+    protected DataSource getValidateDataSource(Object params, SqlBean sqlBean) {
         DataSource targetDataSource = DataSourceContext.getDataSource();
 
         if (targetDataSource == null) {
@@ -517,6 +874,17 @@ public class DataBaseOperation extends TransactionOperation {
         return targetDataSource;
     }
 
+    /**
+     * 实体操作的执行计划ID
+     *
+     * @param binding   实体绑定描述
+     * @param operation 操作类型
+     * @return 执行计划ID
+     */
+    private String entityPlanId(EntityBinding binding, String operation) {
+        return binding.getEntityClass().getName() + "#" + operation;
+    }
+
     /**
      * 打印sql的执行信息
      *
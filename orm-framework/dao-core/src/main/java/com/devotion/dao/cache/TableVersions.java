@@ -0,0 +1,113 @@
+package com.devotion.dao.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 功能描述： 表版本号登记
+ * <p>
+ * 写操作递增所涉及表的版本号，缓存对象记录写入时各表的版本号快照，读取时逐表比较即可判断是否过期，
+ * 无需扫描缓存。无法识别表名的写操作递增全局版本号，使全部缓存对象过期；
+ * 无法识别表名的查询结果依赖写操作总数，任何写操作都会使其过期。
+ */
+public class TableVersions {
+
+    /**
+     * 按缓存ID共享的表版本号登记，使用同一缓存的客户端互相感知写操作
+     */
+    private static final ConcurrentMap<String, TableVersions> REGISTRY = new ConcurrentHashMap<>();
+
+    /**
+     * 表版本号
+     */
+    private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    /**
+     * 全局版本号
+     */
+    private final AtomicLong epoch = new AtomicLong();
+
+    /**
+     * 写操作总数
+     */
+    private final AtomicLong writes = new AtomicLong();
+
+    /**
+     * 获取缓存对应的表版本号登记
+     *
+     * @param cacheId 缓存ID
+     * @return 表版本号登记
+     */
+    public static TableVersions of(String cacheId) {
+        TableVersions tableVersions = REGISTRY.get(cacheId);
+        if (tableVersions == null) {
+            tableVersions = REGISTRY.computeIfAbsent(cacheId, k -> new TableVersions());
+        }
+        return tableVersions;
+    }
+
+    /**
+     * 获取表版本号快照，应在执行查询之前获取
+     *
+     * @param tables 表名
+     * @return 版本号快照
+     */
+    public long[] snapshot(String[] tables) {
+        long[] snapshot = new long[tables.length + 1];
+        snapshot[0] = tables.length == 0 ? writes.get() : epoch.get();
+        for (int i = 0; i < tables.length; i++) {
+            snapshot[i + 1] = version(tables[i]).get();
+        }
+        return snapshot;
+    }
+
+    /**
+     * 判断版本号快照是否仍然有效
+     *
+     * @param tables   表名
+     * @param snapshot 版本号快照
+     * @return 是否有效
+     */
+    public boolean isCurrent(String[] tables, long[] snapshot) {
+        if (snapshot[0] != (tables.length == 0 ? writes.get() : epoch.get())) {
+            return false;
+        }
+        for (int i = 0; i < tables.length; i++) {
+            if (snapshot[i + 1] != version(tables[i]).get()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 写操作后递增表版本号，表名为空时递增全局版本号
+     *
+     * @param tables 表名
+     */
+    public void bump(String[] tables) {
+        if (tables == null || tables.length == 0) {
+            epoch.incrementAndGet();
+        } else {
+            for (String table : tables) {
+                version(table).incrementAndGet();
+            }
+        }
+        writes.incrementAndGet();
+    }
+
+    /**
+     * 获取表版本号计数器
+     *
+     * @param table 表名
+     * @return 版本号计数器
+     */
+    private AtomicLong version(String table) {
+        AtomicLong version = versions.get(table);
+        if (version == null) {
+            version = versions.computeIfAbsent(table, t -> new AtomicLong());
+        }
+        return version;
+    }
+}
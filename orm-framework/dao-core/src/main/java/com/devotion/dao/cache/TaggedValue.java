@@ -0,0 +1,69 @@
+package com.devotion.dao.cache;
+
+import java.io.Serializable;
+
+/**
+ * 功能描述： 带表版本号标记的缓存对象
+ */
+public class TaggedValue implements Serializable {
+
+    /**
+     * 序列号
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 缓存对象
+     */
+    private final Object value;
+
+    /**
+     * 涉及的表名
+     */
+    private final String[] tables;
+
+    /**
+     * 表版本号快照
+     */
+    private final long[] versions;
+
+    /**
+     * 构造方法
+     *
+     * @param value    缓存对象
+     * @param tables   涉及的表名
+     * @param versions 表版本号快照
+     */
+    public TaggedValue(Object value, String[] tables, long[] versions) {
+        this.value = value;
+        this.tables = tables;
+        this.versions = versions;
+    }
+
+    /**
+     * 获取缓存对象
+     *
+     * @return 缓存对象
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * 获取涉及的表名
+     *
+     * @return 表名
+     */
+    public String[] getTables() {
+        return tables;
+    }
+
+    /**
+     * 获取表版本号快照
+     *
+     * @return 版本号快照
+     */
+    public long[] getVersions() {
+        return versions;
+    }
+}
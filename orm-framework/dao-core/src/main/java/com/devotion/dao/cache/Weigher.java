@@ -0,0 +1,16 @@
+package com.devotion.dao.cache;
+
+/**
+ * 功能描述： 缓存对象权重计算接口，用于按内存上限淘汰缓存
+ */
+public interface Weigher {
+
+    /**
+     * 计算缓存对象的权重（估算字节数）
+     *
+     * @param objId 对象ID
+     * @param obj   对象
+     * @return 权重，不能为负数
+     */
+    int weigh(Object objId, Object obj);
+}
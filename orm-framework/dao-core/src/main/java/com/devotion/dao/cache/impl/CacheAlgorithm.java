@@ -24,6 +24,11 @@ public class CacheAlgorithm {
      */
     public static final String FIFO = "fifo";
 
+    /**
+     * 窗口TinyLFU，由{@link ConcurrentCacheImpl}实现
+     */
+    public static final String TINY_LFU = "tinylfu";
+
     /**
      * 判断采用哪种缓存算法
      *
@@ -52,7 +57,7 @@ public class CacheAlgorithm {
     public static boolean isSupportAlgorithm(String algorithm) {
         boolean supportAlgorithm = false;
         if (LRU.equalsIgnoreCase(algorithm) || LFU.equalsIgnoreCase(algorithm) ||
-                FIFO.equalsIgnoreCase(algorithm))
+                FIFO.equalsIgnoreCase(algorithm) || TINY_LFU.equalsIgnoreCase(algorithm))
             supportAlgorithm = true;
         return supportAlgorithm;
     }
@@ -0,0 +1,926 @@
+package com.devotion.dao.cache.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.devotion.dao.cache.Cache;
+import com.devotion.dao.cache.CacheConfig;
+import com.devotion.dao.cache.CacheException;
+import com.devotion.dao.cache.Weigher;
+
+/**
+ * 功能描述： 并发缓存实现类，W-TinyLFU淘汰策略
+ * <p>
+ * 数据存放在ConcurrentHashMap中，读写不加锁；访问记录写入有损的分段读缓冲区，
+ * 写操作写入写缓冲区，由持有淘汰锁的线程批量回放到策略队列并执行淘汰（均摊淘汰）。
+ * 新对象先进入窗口区（LRU），溢出后进入主区试用段，由频率估算器决定候选者与牺牲者谁被淘汰，
+ * 试用段再次被访问的对象晋升到保护段。对象权重由{@link Weigher}计算，不做序列化。
+ */
+public class ConcurrentCacheImpl implements Cache {
+
+    /**
+     * 窗口区占比
+     */
+    private static final double WINDOW_PERCENT = 0.01d;
+
+    /**
+     * 保护段占主区的比例
+     */
+    private static final double PROTECTED_PERCENT = 0.8d;
+
+    /**
+     * 写缓冲区积压上限，超过时写线程阻塞等待淘汰锁
+     */
+    private static final int WRITE_BUFFER_MAX = 128;
+
+    /**
+     * 仅配置内存上限时，按此平均大小估算频率估算器容量
+     */
+    private static final int ESTIMATED_ENTRY_WEIGHT = 1024;
+
+    /**
+     * 队列标识：未入队
+     */
+    private static final int NONE = 0;
+
+    /**
+     * 队列标识：窗口区
+     */
+    private static final int WINDOW = 1;
+
+    /**
+     * 队列标识：试用段
+     */
+    private static final int PROBATION = 2;
+
+    /**
+     * 队列标识：保护段
+     */
+    private static final int PROTECTED = 3;
+
+    /**
+     * 缓存数据
+     */
+    private ConcurrentHashMap<Object, Node> data;
+
+    /**
+     * 缓存配置
+     */
+    private CacheConfig config;
+
+    /**
+     * 权重计算
+     */
+    private Weigher weigher = new DefaultWeigher();
+
+    /**
+     * 淘汰锁，保护策略队列与频率估算器
+     */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    /**
+     * 分段读缓冲区
+     */
+    private ReadBuffer[] readBuffers;
+
+    /**
+     * 写缓冲区
+     */
+    private final Queue<Runnable> writeBuffer = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 写缓冲区积压数
+     */
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+
+    /**
+     * 频率估算器
+     */
+    private FrequencySketch sketch;
+
+    /**
+     * 窗口区
+     */
+    private AccessQueue window;
+
+    /**
+     * 试用段
+     */
+    private AccessQueue probation;
+
+    /**
+     * 保护段
+     */
+    private AccessQueue protectedQueue;
+
+    /**
+     * 是否按个数划分区域，否则按权重划分
+     */
+    private boolean countBased;
+
+    /**
+     * 窗口区上限
+     */
+    private long windowMaximum;
+
+    /**
+     * 保护段上限
+     */
+    private long protectedMaximum;
+
+    /**
+     * 策略视角的总权重
+     */
+    private volatile long weightedSize;
+
+    /**
+     * 命中
+     */
+    private final LongAdder hit = new LongAdder();
+
+    /**
+     * 缺失
+     */
+    private final LongAdder miss = new LongAdder();
+
+    /**
+     * 放入
+     */
+    private final LongAdder put = new LongAdder();
+
+    /**
+     * 移除
+     */
+    private final LongAdder remove = new LongAdder();
+
+    /**
+     * 对象放入cache
+     *
+     * @param objId 对象ID
+     * @param obj   对象
+     */
+    public void put(Object objId, Object obj) {
+        if (objId == null) {
+            throw new CacheException("objId is null");
+        }
+        this.put.increment();
+        if (obj == null) {
+            removeNode(objId);
+            return;
+        }
+        int weight = config.getMaxMemorySize() > 0 ? weigher.weigh(objId, obj) : 0;
+        if (weight < 0) {
+            throw new CacheException("weight of " + objId + " is negative");
+        }
+        long now = System.currentTimeMillis();
+        for (;;) {
+            Node node = data.get(objId);
+            if (node == null) {
+                Node created = new Node(objId, obj, weight, now);
+                node = data.putIfAbsent(objId, created);
+                if (node == null) {
+                    afterWrite(new AddTask(created));
+                    return;
+                }
+            }
+            node.value = obj;
+            node.weight = weight;
+            node.writeTime = now;
+            /** 更新期间节点被并发移除时重新放入 */
+            if (data.get(objId) == node) {
+                afterWrite(new UpdateTask(node));
+                return;
+            }
+        }
+    }
+
+    /**
+     * 判断缓存缺失或命中，获取指定对象
+     *
+     * @param objId 对象ID
+     * @return 缓存对象
+     */
+    public Object get(Object objId) {
+        if (objId == null) {
+            throw new CacheException("objId is null");
+        }
+        Node node = data.get(objId);
+        if (node == null) {
+            this.miss.increment();
+            return null;
+        }
+        Object obj = node.value;
+        /** 判断是否失效，失效则移除并增加缺失计数 */
+        if (expired(node, System.currentTimeMillis())) {
+            if (data.remove(objId, node)) {
+                afterWrite(new RemoveTask(node));
+            }
+            this.miss.increment();
+            return null;
+        }
+        afterRead(node);
+        this.hit.increment();
+        return obj;
+    }
+
+    /**
+     * 移除指定对象
+     *
+     * @param objId 对象ID
+     */
+    public void remove(Object objId) {
+        if (objId == null) {
+            throw new CacheException("objId is null");
+        }
+        this.remove.increment();
+        removeNode(objId);
+    }
+
+    /**
+     * 返回缓存对象个数
+     *
+     * @return 缓存对象个数
+     */
+    public int size() {
+        return this.data.size();
+    }
+
+    /**
+     * 清除缓存全部内容
+     */
+    public void clear() {
+        evictionLock.lock();
+        try {
+            maintenance();
+            for (Node node : data.values()) {
+                if (data.remove(node.key, node)) {
+                    unlink(node);
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 移除过期对象
+     */
+    public void clean() {
+        if (this.config.getTimeToLive() > 0) {
+            long now = System.currentTimeMillis();
+            for (Node node : data.values()) {
+                if (expired(node, now) && data.remove(node.key, node)) {
+                    writeBuffer.add(new RemoveTask(node));
+                    pendingWrites.incrementAndGet();
+                }
+            }
+        }
+        evictionLock.lock();
+        try {
+            maintenance();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 获取缓存配置
+     *
+     * @return 缓存配置
+     */
+    public CacheConfig getCacheConfig() {
+        return this.config;
+    }
+
+    /**
+     * 设置缓存配置参数
+     *
+     * @param config 缓存配置
+     */
+    public void setCacheConfig(CacheConfig config) {
+        if (config == null) {
+            throw new CacheException("config is null");
+        }
+        this.config = config;
+        this.data = new ConcurrentHashMap<>(Math.max(16, config.getMaxSize()));
+        this.countBased = config.getMaxSize() > 0;
+        long maximum = countBased ? config.getMaxSize() : config.getMaxMemorySize();
+        this.windowMaximum = Math.max(1L, (long) (maximum * WINDOW_PERCENT));
+        this.protectedMaximum = (long) ((maximum - windowMaximum) * PROTECTED_PERCENT);
+        long expectedSize = countBased ? config.getMaxSize() : config.getMaxMemorySize() / ESTIMATED_ENTRY_WEIGHT;
+        this.sketch = new FrequencySketch(expectedSize);
+        this.window = new AccessQueue();
+        this.probation = new AccessQueue();
+        this.protectedQueue = new AccessQueue();
+        this.weightedSize = 0;
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1) << 1;
+        this.readBuffers = new ReadBuffer[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.readBuffers[i] = new ReadBuffer();
+        }
+    }
+
+    /**
+     * 设置权重计算
+     *
+     * @param weigher 权重计算
+     */
+    public void setWeigher(Weigher weigher) {
+        if (weigher == null) {
+            throw new CacheException("weigher is null");
+        }
+        this.weigher = weigher;
+    }
+
+    /**
+     * 获取缓存命中的总数
+     *
+     * @return 缓存命中的总数
+     */
+    public long getCacheHits() {
+        return this.hit.sum();
+    }
+
+    /**
+     * 获取缓存缺失的总数
+     *
+     * @return 缓存缺失的总数
+     */
+    public long getCacheMisses() {
+        return this.miss.sum();
+    }
+
+    /**
+     * 获取存入对象的总数
+     *
+     * @return 存入对象的总数
+     */
+    public long getTotalPuts() {
+        return this.put.sum();
+    }
+
+    /**
+     * 获取移除对象的总数
+     *
+     * @return 移除对象的总数
+     */
+    public long getTotalRemoves() {
+        return this.remove.sum();
+    }
+
+    /**
+     * 重置所有信息
+     */
+    public void resetInfo() {
+        this.hit.reset();
+        this.miss.reset();
+        this.put.reset();
+        this.remove.reset();
+    }
+
+    /**
+     * 获取缓存占用内存估算值
+     *
+     * @return 缓存占用内存估算值
+     */
+    public long getMemorySize() {
+        return this.weightedSize;
+    }
+
+    /**
+     * 从数据表移除对象并登记策略移除
+     *
+     * @param objId 对象ID
+     */
+    private void removeNode(Object objId) {
+        Node node = data.remove(objId);
+        if (node != null) {
+            afterWrite(new RemoveTask(node));
+        }
+    }
+
+    /**
+     * 判断缓存是否过期
+     *
+     * @param node 缓存节点
+     * @param now  当前时间
+     * @return 是否过期
+     */
+    private boolean expired(Node node, long now) {
+        long timeToLive = config.getTimeToLive();
+        return timeToLive > 0 && node.writeTime + timeToLive < now;
+    }
+
+    /**
+     * 读后处理：记录访问，读缓冲区满时尝试回放
+     *
+     * @param node 缓存节点
+     */
+    private void afterRead(Node node) {
+        int index = (int) ((Thread.currentThread().getId() * 0x9E3779B9L) >>> 16) & (readBuffers.length - 1);
+        if (!readBuffers[index].offer(node)) {
+            tryToDrain();
+        }
+    }
+
+    /**
+     * 写后处理：写任务入队后尝试回放，积压过多时阻塞等待
+     *
+     * @param task 写任务
+     */
+    private void afterWrite(Runnable task) {
+        writeBuffer.add(task);
+        if (pendingWrites.incrementAndGet() > WRITE_BUFFER_MAX) {
+            evictionLock.lock();
+            try {
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+        tryToDrain();
+    }
+
+    /**
+     * 非阻塞地尝试执行维护，释放锁后若仍有积压写任务则继续尝试
+     */
+    private void tryToDrain() {
+        do {
+            if (!evictionLock.tryLock()) {
+                return;
+            }
+            try {
+                maintenance();
+            } finally {
+                evictionLock.unlock();
+            }
+        } while (!writeBuffer.isEmpty());
+    }
+
+    /**
+     * 回放读写缓冲区并执行淘汰，调用方必须持有淘汰锁
+     */
+    private void maintenance() {
+        for (ReadBuffer buffer : readBuffers) {
+            buffer.drain(this);
+        }
+        Runnable task;
+        while ((task = writeBuffer.poll()) != null) {
+            pendingWrites.decrementAndGet();
+            task.run();
+        }
+        evictEntries();
+    }
+
+    /**
+     * 访问回放：更新频率并调整对象所在队列
+     *
+     * @param node 缓存节点
+     */
+    private void onAccess(Node node) {
+        sketch.increment(node.key);
+        switch (node.queue) {
+            case WINDOW:
+                window.moveToBack(node);
+                break;
+            case PROBATION:
+                /** 试用段对象再次被访问，晋升到保护段 */
+                probation.unlink(node);
+                node.queue = PROTECTED;
+                protectedQueue.linkLast(node);
+                demoteFromProtected();
+                break;
+            case PROTECTED:
+                protectedQueue.moveToBack(node);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 保护段超限时，最久未访问的对象降级到试用段
+     */
+    private void demoteFromProtected() {
+        while (measure(protectedQueue) > protectedMaximum) {
+            Node demoted = protectedQueue.head;
+            if (demoted == null) {
+                return;
+            }
+            protectedQueue.unlink(demoted);
+            demoted.queue = PROBATION;
+            probation.linkLast(demoted);
+        }
+    }
+
+    /**
+     * 执行淘汰
+     */
+    private void evictEntries() {
+        /** 窗口区溢出的对象进入试用段，作为准入候选者 */
+        while (measure(window) > windowMaximum && window.head != null) {
+            Node node = window.head;
+            window.unlink(node);
+            node.queue = PROBATION;
+            probation.linkLast(node);
+        }
+        while (overflow()) {
+            Node victim = probation.head;
+            Node candidate = probation.tail;
+            if (victim == null) {
+                victim = protectedQueue.head != null ? protectedQueue.head : window.head;
+                candidate = null;
+            }
+            if (victim == null) {
+                return;
+            }
+            if (candidate == null || candidate == victim || admit(candidate, victim)) {
+                evict(victim);
+            } else {
+                evict(candidate);
+            }
+        }
+    }
+
+    /**
+     * 判断是否超出容量限制
+     *
+     * @return 是否超限
+     */
+    private boolean overflow() {
+        int maxSize = config.getMaxSize();
+        long maxMemorySize = config.getMaxMemorySize();
+        long count = window.count + probation.count + protectedQueue.count;
+        return (maxSize > 0 && count > maxSize) || (maxMemorySize > 0 && weightedSize > maxMemorySize);
+    }
+
+    /**
+     * TinyLFU准入判断，候选者访问频率高于牺牲者时准入
+     *
+     * @param candidate 候选者
+     * @param victim    牺牲者
+     * @return 是否准入候选者
+     */
+    private boolean admit(Node candidate, Node victim) {
+        return sketch.frequency(candidate.key) > sketch.frequency(victim.key);
+    }
+
+    /**
+     * 淘汰对象
+     *
+     * @param node 缓存节点
+     */
+    private void evict(Node node) {
+        data.remove(node.key, node);
+        unlink(node);
+    }
+
+    /**
+     * 将节点从所在队列移除并扣减权重
+     *
+     * @param node 缓存节点
+     */
+    private void unlink(Node node) {
+        AccessQueue queue = queueOf(node);
+        if (queue != null) {
+            queue.unlink(node);
+            weightedSize -= node.policyWeight;
+            node.queue = NONE;
+        }
+    }
+
+    /**
+     * 获取节点所在队列
+     *
+     * @param node 缓存节点
+     * @return 队列，未入队时为null
+     */
+    private AccessQueue queueOf(Node node) {
+        switch (node.queue) {
+            case WINDOW:
+                return window;
+            case PROBATION:
+                return probation;
+            case PROTECTED:
+                return protectedQueue;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 队列大小，按个数或按权重
+     *
+     * @param queue 队列
+     * @return 队列大小
+     */
+    private long measure(AccessQueue queue) {
+        return countBased ? queue.count : queue.weight;
+    }
+
+    /**
+     * 写任务：新增
+     */
+    private final class AddTask implements Runnable {
+
+        /**
+         * 缓存节点
+         */
+        private final Node node;
+
+        /**
+         * 构造方法
+         *
+         * @param node 缓存节点
+         */
+        private AddTask(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public void run() {
+            if (node.queue != NONE || data.get(node.key) != node) {
+                return;
+            }
+            node.policyWeight = node.weight;
+            node.queue = WINDOW;
+            window.linkLast(node);
+            weightedSize += node.policyWeight;
+            sketch.increment(node.key);
+        }
+    }
+
+    /**
+     * 写任务：更新
+     */
+    private final class UpdateTask implements Runnable {
+
+        /**
+         * 缓存节点
+         */
+        private final Node node;
+
+        /**
+         * 构造方法
+         *
+         * @param node 缓存节点
+         */
+        private UpdateTask(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public void run() {
+            AccessQueue queue = queueOf(node);
+            if (queue == null) {
+                return;
+            }
+            int delta = node.weight - node.policyWeight;
+            node.policyWeight += delta;
+            queue.weight += delta;
+            weightedSize += delta;
+            onAccess(node);
+        }
+    }
+
+    /**
+     * 写任务：移除
+     */
+    private final class RemoveTask implements Runnable {
+
+        /**
+         * 缓存节点
+         */
+        private final Node node;
+
+        /**
+         * 构造方法
+         *
+         * @param node 缓存节点
+         */
+        private RemoveTask(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        public void run() {
+            unlink(node);
+        }
+    }
+
+    /**
+     * 缓存节点，队列相关字段只在持有淘汰锁时访问
+     */
+    private static final class Node {
+
+        /**
+         * 对象ID
+         */
+        private final Object key;
+
+        /**
+         * 对象
+         */
+        private volatile Object value;
+
+        /**
+         * 权重
+         */
+        private volatile int weight;
+
+        /**
+         * 写入时间
+         */
+        private volatile long writeTime;
+
+        /**
+         * 策略已登记的权重
+         */
+        private int policyWeight;
+
+        /**
+         * 所在队列
+         */
+        private int queue = NONE;
+
+        /**
+         * 前驱
+         */
+        private Node prev;
+
+        /**
+         * 后继
+         */
+        private Node next;
+
+        /**
+         * 构造方法
+         *
+         * @param key       对象ID
+         * @param value     对象
+         * @param weight    权重
+         * @param writeTime 写入时间
+         */
+        private Node(Object key, Object value, int weight, long writeTime) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.writeTime = writeTime;
+        }
+    }
+
+    /**
+     * 按访问顺序排列的双向链表，头部为最久未访问
+     */
+    private static final class AccessQueue {
+
+        /**
+         * 头节点
+         */
+        private Node head;
+
+        /**
+         * 尾节点
+         */
+        private Node tail;
+
+        /**
+         * 节点个数
+         */
+        private long count;
+
+        /**
+         * 总权重
+         */
+        private long weight;
+
+        /**
+         * 追加到尾部
+         *
+         * @param node 缓存节点
+         */
+        private void linkLast(Node node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            count++;
+            weight += node.policyWeight;
+        }
+
+        /**
+         * 从链表中移除
+         *
+         * @param node 缓存节点
+         */
+        private void unlink(Node node) {
+            Node prev = node.prev;
+            Node next = node.next;
+            if (prev == null) {
+                head = next;
+            } else {
+                prev.next = next;
+            }
+            if (next == null) {
+                tail = prev;
+            } else {
+                next.prev = prev;
+            }
+            node.prev = null;
+            node.next = null;
+            count--;
+            weight -= node.policyWeight;
+        }
+
+        /**
+         * 移动到尾部
+         *
+         * @param node 缓存节点
+         */
+        private void moveToBack(Node node) {
+            if (node != tail) {
+                unlink(node);
+                linkLast(node);
+            }
+        }
+    }
+
+    /**
+     * 有损读缓冲区，满时丢弃访问记录
+     */
+    private static final class ReadBuffer {
+
+        /**
+         * 缓冲区大小
+         */
+        private static final int SIZE = 16;
+
+        /**
+         * 下标掩码
+         */
+        private static final int MASK = SIZE - 1;
+
+        /**
+         * 缓冲区
+         */
+        private final AtomicReferenceArray<Node> buffer = new AtomicReferenceArray<>(SIZE);
+
+        /**
+         * 写计数
+         */
+        private final AtomicLong writeCounter = new AtomicLong();
+
+        /**
+         * 读计数，只在持有淘汰锁时写入
+         */
+        private volatile long readCounter;
+
+        /**
+         * 记录一次访问
+         *
+         * @param node 缓存节点
+         * @return 缓冲区未满返回true，已满需要回放时返回false
+         */
+        private boolean offer(Node node) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            if (tail - head >= SIZE) {
+                return false;
+            }
+            if (writeCounter.compareAndSet(tail, tail + 1)) {
+                buffer.lazySet((int) (tail & MASK), node);
+            }
+            return true;
+        }
+
+        /**
+         * 回放访问记录
+         *
+         * @param cache 所属缓存
+         */
+        private void drain(ConcurrentCacheImpl cache) {
+            long head = readCounter;
+            long tail = writeCounter.get();
+            for (; head < tail; head++) {
+                int index = (int) (head & MASK);
+                Node node = buffer.get(index);
+                if (node == null) {
+                    break;
+                }
+                buffer.lazySet(index, null);
+                cache.onAccess(node);
+            }
+            readCounter = head;
+        }
+    }
+}
@@ -28,6 +28,7 @@ import com.devotion.dao.cache.Cache;
 import com.devotion.dao.cache.CacheConfig;
 import com.devotion.dao.cache.CacheException;
 import com.devotion.dao.cache.CacheFactory;
+import com.devotion.dao.cache.Weigher;
 
 /**
  * 功能描述：缓存配置器
@@ -92,8 +93,6 @@ public class Configurator {
             /** 获取缓存各项配置信息并根据模板进行组装 */
             for (Node n = node.getFirstChild(); n != null; n = n.getNextSibling()) {
                 if ((n instanceof Element) && "cache".equalsIgnoreCase(n.getNodeName())) {
-                    Cache cache = new DefCacheImpl();
-
                     String id = ((Element) n).getAttribute("id");
                     String desc = ((Element) n).getAttribute("desc");
                     long ttl = getTimeLong(((Element) n).getAttribute("ttl"));
@@ -108,6 +107,7 @@ public class Configurator {
                     if (!CacheAlgorithm.isSupportAlgorithm(algorithm)) {
                         throw new CacheException("Unknown cache algorithm:" + algorithm);
                     }
+                    Cache cache = createCache(algorithm, ((Element) n).getAttribute("weigher"));
                     CacheConfig config = new CacheConfigImpl(id, desc, ttl, maxMemorySize, maxSize, algorithm);
                     cache.setCacheConfig(config);
 
@@ -124,6 +124,30 @@ public class Configurator {
         }
     }
 
+    /**
+     * 按缓存算法创建缓存实现
+     *
+     * @param algorithm    缓存算法
+     * @param weigherClass 权重计算类名，可为空
+     * @return 缓存实现
+     */
+    private static Cache createCache(String algorithm, String weigherClass) {
+        if (!CacheAlgorithm.TINY_LFU.equals(algorithm)) {
+            return new DefCacheImpl();
+        }
+        ConcurrentCacheImpl cache = new ConcurrentCacheImpl();
+        if (weigherClass != null && weigherClass.trim().length() > 0) {
+            try {
+                Class<?> clazz = Class.forName(weigherClass.trim(), true,
+                        Thread.currentThread().getContextClassLoader());
+                cache.setWeigher((Weigher) clazz.newInstance());
+            } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | ClassCastException e) {
+                throw new CacheException("Invalid cache weigher:" + weigherClass, e);
+            }
+        }
+        return cache;
+    }
+
     /**
      * string转为int
      *
@@ -0,0 +1,123 @@
+package com.devotion.dao.cache.impl;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.devotion.dao.cache.TaggedValue;
+import com.devotion.dao.cache.Weigher;
+
+/**
+ * 功能描述： 默认权重计算，按对象结构估算占用字节数，不做序列化
+ */
+public class DefaultWeigher implements Weigher {
+
+    /**
+     * 对象头估算值
+     */
+    private static final int OBJECT_OVERHEAD = 16;
+
+    /**
+     * 未知类型对象的估算值
+     */
+    private static final int UNKNOWN_OBJECT = 64;
+
+    /**
+     * 集合元素采样上限，超过时按采样结果外推
+     */
+    private static final int SAMPLE_SIZE = 32;
+
+    /**
+     * 递归深度上限
+     */
+    private static final int MAX_DEPTH = 4;
+
+    /**
+     * 计算缓存对象的权重
+     *
+     * @param objId 对象ID
+     * @param obj   对象
+     * @return 权重
+     */
+    @Override
+    public int weigh(Object objId, Object obj) {
+        long weight = estimate(obj, 0);
+        return weight > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) weight;
+    }
+
+    /**
+     * 估算对象大小
+     *
+     * @param obj   对象
+     * @param depth 当前递归深度
+     * @return 估算字节数
+     */
+    private long estimate(Object obj, int depth) {
+        if (obj == null) {
+            return 0;
+        }
+        if (obj instanceof CharSequence) {
+            return OBJECT_OVERHEAD + 24 + 2L * ((CharSequence) obj).length();
+        }
+        if (obj instanceof Number || obj instanceof Boolean || obj instanceof Character) {
+            return OBJECT_OVERHEAD + 8;
+        }
+        if (obj instanceof Date) {
+            return OBJECT_OVERHEAD + 16;
+        }
+        if (obj instanceof byte[]) {
+            return OBJECT_OVERHEAD + ((byte[]) obj).length;
+        }
+        if (obj instanceof TaggedValue) {
+            TaggedValue tagged = (TaggedValue) obj;
+            return OBJECT_OVERHEAD + 8L * (tagged.getTables().length + tagged.getVersions().length)
+                    + estimate(tagged.getValue(), depth);
+        }
+        if (depth >= MAX_DEPTH) {
+            return UNKNOWN_OBJECT;
+        }
+        if (obj instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) obj;
+            return 48 + sample(map.entrySet().iterator(), map.size(), depth + 1, 32);
+        }
+        if (obj instanceof Collection) {
+            Collection<?> collection = (Collection<?>) obj;
+            return 40 + sample(collection.iterator(), collection.size(), depth + 1, 8);
+        }
+        if (obj instanceof Object[]) {
+            Object[] array = (Object[]) obj;
+            long total = OBJECT_OVERHEAD + 8L * array.length;
+            int limit = Math.min(array.length, SAMPLE_SIZE);
+            long sampled = 0;
+            for (int i = 0; i < limit; i++) {
+                sampled += estimate(array[i], depth + 1);
+            }
+            return limit == 0 ? total : total + sampled * array.length / limit;
+        }
+        if (obj instanceof Map.Entry) {
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>) obj;
+            return estimate(entry.getKey(), depth) + estimate(entry.getValue(), depth);
+        }
+        return UNKNOWN_OBJECT;
+    }
+
+    /**
+     * 采样估算集合元素大小
+     *
+     * @param it       迭代器
+     * @param size     元素个数
+     * @param depth    当前递归深度
+     * @param overhead 每个元素的附加开销
+     * @return 估算字节数
+     */
+    private long sample(Iterator<?> it, int size, int depth, int overhead) {
+        long sampled = 0;
+        int count = 0;
+        while (count < SAMPLE_SIZE && it.hasNext()) {
+            sampled += estimate(it.next(), depth) + overhead;
+            count++;
+        }
+        return count == 0 ? 0 : sampled * size / count;
+    }
+}
@@ -0,0 +1,162 @@
+package com.devotion.dao.cache.impl;
+
+/**
+ * 功能描述： 访问频率估算器（Count-Min Sketch）
+ * <p>
+ * 每个long保存16个4位计数器，每个元素占用4个计数器取最小值作为频率估算。
+ * 累计增量达到采样阈值后所有计数器减半，使频率随时间衰减。非线程安全，由调用方加锁。
+ */
+final class FrequencySketch {
+
+    /**
+     * 哈希种子
+     */
+    private static final long[] SEED = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+            0xcbf29ce484222325L};
+
+    /**
+     * 计数器减半掩码
+     */
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    /**
+     * 计数器最低位掩码
+     */
+    private static final long ONE_MASK = 0x1111111111111111L;
+
+    /**
+     * 计数器最大值
+     */
+    private static final int MAX_COUNT = 15;
+
+    /**
+     * 计数表
+     */
+    private final long[] table;
+
+    /**
+     * 计数表下标掩码
+     */
+    private final int tableMask;
+
+    /**
+     * 衰减采样阈值
+     */
+    private final int sampleSize;
+
+    /**
+     * 当前累计增量
+     */
+    private int size;
+
+    /**
+     * 构造方法
+     *
+     * @param maximumSize 预期最大元素个数
+     */
+    FrequencySketch(long maximumSize) {
+        int maximum = (int) Math.min(Math.max(maximumSize, 16), 1 << 30);
+        this.table = new long[ceilingPowerOfTwo(maximum)];
+        this.tableMask = this.table.length - 1;
+        this.sampleSize = maximum > Integer.MAX_VALUE / 10 ? Integer.MAX_VALUE : 10 * maximum;
+    }
+
+    /**
+     * 估算元素的访问频率
+     *
+     * @param e 元素
+     * @return 访问频率，最大为15
+     */
+    int frequency(Object e) {
+        int hash = spread(e.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * 增加元素的访问频率
+     *
+     * @param e 元素
+     */
+    void increment(Object e) {
+        int hash = spread(e.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size >= sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * 计数器加1，已达最大值时不变
+     *
+     * @param i 计数表下标
+     * @param j 计数器在long中的位置
+     * @return 是否增加成功
+     */
+    private boolean incrementAt(int i, int j) {
+        int offset = j << 2;
+        long mask = 0xfL << offset;
+        if ((table[i] & mask) != mask) {
+            table[i] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 所有计数器减半
+     */
+    private void reset() {
+        int count = 0;
+        for (int i = 0; i < table.length; i++) {
+            count += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (count >>> 2);
+    }
+
+    /**
+     * 计算第i个哈希函数对应的计数表下标
+     *
+     * @param item 元素哈希
+     * @param i    哈希函数序号
+     * @return 计数表下标
+     */
+    private int indexOf(int item, int i) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += hash >>> 32;
+        return ((int) hash) & tableMask;
+    }
+
+    /**
+     * 二次哈希，打散低质量的hashCode
+     *
+     * @param x 原始哈希
+     * @return 打散后的哈希
+     */
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+
+    /**
+     * 向上取2的幂
+     *
+     * @param x 数值
+     * @return 不小于x的最小2的幂
+     */
+    private static int ceilingPowerOfTwo(int x) {
+        return 1 << -Integer.numberOfLeadingZeros(x - 1);
+    }
+}
@@ -0,0 +1,75 @@
+package com.devotion.dao.cache.key;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * 功能描述： 缓存键值
+ * <p>
+ * 由SQLID与绑定参数的规范化二进制编码构成，先比较128位哈希再比较完整编码，不同参数不会命中同一缓存。
+ */
+public final class CacheKey implements Serializable {
+
+    /**
+     * 序列号
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 规范化编码
+     */
+    private final byte[] bytes;
+
+    /**
+     * 哈希高64位
+     */
+    private final long hashHigh;
+
+    /**
+     * 哈希低64位
+     */
+    private final long hashLow;
+
+    /**
+     * 构造方法
+     *
+     * @param bytes 规范化编码
+     */
+    CacheKey(byte[] bytes) {
+        this.bytes = bytes;
+        long[] hash = Murmur3.hash128(bytes, bytes.length);
+        this.hashHigh = hash[0];
+        this.hashLow = hash[1];
+    }
+
+    /**
+     * 获取编码长度
+     *
+     * @return 编码长度
+     */
+    public int length() {
+        return bytes.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hashLow ^ (hashLow >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CacheKey)) {
+            return false;
+        }
+        CacheKey other = (CacheKey) obj;
+        return hashLow == other.hashLow && hashHigh == other.hashHigh && Arrays.equals(bytes, other.bytes);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x", hashHigh, hashLow);
+    }
+}
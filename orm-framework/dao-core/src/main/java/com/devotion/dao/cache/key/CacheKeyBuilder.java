@@ -0,0 +1,469 @@
+package com.devotion.dao.cache.key;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.devotion.dao.cache.CacheException;
+
+/**
+ * 功能描述： 缓存键值生成
+ * <p>
+ * 按SQLID与绑定参数生成规范化二进制编码：每个值带类型标记与长度，Map按键排序，无序Set按元素编码排序，
+ * 不做反射遍历与摘要计算。较短的键值被驻留复用，重复查询得到同一实例。
+ * 其他类型的参数没有规范编码，不同参数值可能得到相同编码，此时不生成键值，查询不使用缓存。
+ */
+public final class CacheKeyBuilder {
+
+    /**
+     * 驻留键值的最大编码长度
+     */
+    private static final int MAX_INTERN_LENGTH = 128;
+
+    /**
+     * 驻留键值的最大个数，超过时清空重建
+     */
+    private static final int MAX_INTERNED = 8192;
+
+    /**
+     * 嵌套深度上限
+     */
+    private static final int MAX_DEPTH = 16;
+
+    /**
+     * 类型标记：空值
+     */
+    private static final byte NULL = 0;
+
+    /**
+     * 类型标记：字符串
+     */
+    private static final byte STRING = 1;
+
+    /**
+     * 类型标记：Integer
+     */
+    private static final byte INTEGER = 2;
+
+    /**
+     * 类型标记：Long
+     */
+    private static final byte LONG = 3;
+
+    /**
+     * 类型标记：Short
+     */
+    private static final byte SHORT = 4;
+
+    /**
+     * 类型标记：Byte
+     */
+    private static final byte BYTE = 5;
+
+    /**
+     * 类型标记：Double
+     */
+    private static final byte DOUBLE = 6;
+
+    /**
+     * 类型标记：Float
+     */
+    private static final byte FLOAT = 7;
+
+    /**
+     * 类型标记：Boolean
+     */
+    private static final byte BOOLEAN = 8;
+
+    /**
+     * 类型标记：Character
+     */
+    private static final byte CHARACTER = 9;
+
+    /**
+     * 类型标记：BigDecimal
+     */
+    private static final byte BIG_DECIMAL = 10;
+
+    /**
+     * 类型标记：BigInteger
+     */
+    private static final byte BIG_INTEGER = 11;
+
+    /**
+     * 类型标记：日期
+     */
+    private static final byte DATE = 12;
+
+    /**
+     * 类型标记：枚举
+     */
+    private static final byte ENUM = 13;
+
+    /**
+     * 类型标记：字节数组
+     */
+    private static final byte BYTES = 14;
+
+    /**
+     * 类型标记：有序集合与数组
+     */
+    private static final byte LIST = 15;
+
+    /**
+     * 类型标记：无序集合
+     */
+    private static final byte SET = 16;
+
+    /**
+     * 类型标记：Map
+     */
+    private static final byte MAP = 17;
+
+    /**
+     * 类型标记：类
+     */
+    private static final byte CLASS = 18;
+
+    /**
+     * 类型标记：toString()为规范表示的类型，java.time的值与UUID
+     */
+    private static final byte TEXT = 19;
+
+    /**
+     * 驻留键值
+     */
+    private static final ConcurrentMap<CacheKey, CacheKey> INTERNED = new ConcurrentHashMap<>();
+
+    /**
+     * 线程复用的编码缓冲区
+     */
+    private static final ThreadLocal<Encoder> ENCODER = ThreadLocal.withInitial(Encoder::new);
+
+    /**
+     * 私有构造方法
+     */
+    private CacheKeyBuilder() {
+    }
+
+    /**
+     * 生成缓存键值
+     *
+     * @param sqlId  SQLID
+     * @param params 按顺序绑定的参数
+     * @return 缓存键值，参数含无法规范编码的类型时为null
+     */
+    public static CacheKey build(String sqlId, Object... params) {
+        Encoder encoder = ENCODER.get();
+        encoder.reset();
+        encoder.writeString(sqlId);
+        for (Object param : params) {
+            encoder.writeValue(param, 0);
+            if (encoder.unsupported) {
+                return null;
+            }
+        }
+        CacheKey key = new CacheKey(encoder.toByteArray());
+        if (key.length() > MAX_INTERN_LENGTH) {
+            return key;
+        }
+        CacheKey interned = INTERNED.get(key);
+        if (interned != null) {
+            return interned;
+        }
+        if (INTERNED.size() >= MAX_INTERNED) {
+            INTERNED.clear();
+        }
+        interned = INTERNED.putIfAbsent(key, key);
+        return interned == null ? key : interned;
+    }
+
+    /**
+     * 编码缓冲区
+     */
+    private static final class Encoder {
+
+        /**
+         * 缓冲区
+         */
+        private byte[] buf = new byte[256];
+
+        /**
+         * 已写入长度
+         */
+        private int len;
+
+        /**
+         * 是否遇到无法规范编码的参数
+         */
+        private boolean unsupported;
+
+        /**
+         * 重置缓冲区
+         */
+        private void reset() {
+            len = 0;
+            unsupported = false;
+        }
+
+        /**
+         * 复制已写入的编码
+         *
+         * @return 编码
+         */
+        private byte[] toByteArray() {
+            return Arrays.copyOf(buf, len);
+        }
+
+        /**
+         * 写入参数值
+         *
+         * @param value 参数值
+         * @param depth 嵌套深度
+         */
+        private void writeValue(Object value, int depth) {
+            if (depth > MAX_DEPTH) {
+                throw new CacheException("Cache key parameter nested too deep");
+            }
+            if (value == null) {
+                writeByte(NULL);
+            } else if (value instanceof String) {
+                writeByte(STRING);
+                writeString((String) value);
+            } else if (value instanceof Integer) {
+                writeByte(INTEGER);
+                writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                writeByte(LONG);
+                writeLong((Long) value);
+            } else if (value instanceof Short) {
+                writeByte(SHORT);
+                writeInt((Short) value);
+            } else if (value instanceof Byte) {
+                writeByte(BYTE);
+                writeByte((Byte) value);
+            } else if (value instanceof Double) {
+                writeByte(DOUBLE);
+                writeLong(Double.doubleToLongBits((Double) value));
+            } else if (value instanceof Float) {
+                writeByte(FLOAT);
+                writeInt(Float.floatToIntBits((Float) value));
+            } else if (value instanceof Boolean) {
+                writeByte(BOOLEAN);
+                writeByte((Boolean) value ? 1 : 0);
+            } else if (value instanceof Character) {
+                writeByte(CHARACTER);
+                writeInt((Character) value);
+            } else if (value instanceof BigDecimal) {
+                writeByte(BIG_DECIMAL);
+                writeString(value.toString());
+            } else if (value instanceof BigInteger) {
+                writeByte(BIG_INTEGER);
+                writeString(value.toString());
+            } else if (value instanceof Date) {
+                writeByte(DATE);
+                writeString(value.getClass().getName());
+                writeLong(((Date) value).getTime());
+                /** Timestamp的纳秒部分不在getTime()中 */
+                if (value instanceof Timestamp) {
+                    writeInt(((Timestamp) value).getNanos());
+                }
+            } else if (value instanceof Enum) {
+                writeByte(ENUM);
+                writeString(((Enum<?>) value).getDeclaringClass().getName());
+                writeString(((Enum<?>) value).name());
+            } else if (value instanceof byte[]) {
+                byte[] bytes = (byte[]) value;
+                writeByte(BYTES);
+                writeInt(bytes.length);
+                ensure(bytes.length);
+                System.arraycopy(bytes, 0, buf, len, bytes.length);
+                len += bytes.length;
+            } else if (value instanceof Class) {
+                writeByte(CLASS);
+                writeString(((Class<?>) value).getName());
+            } else if (value instanceof Map) {
+                writeMap((Map<?, ?>) value, depth);
+            } else if (value instanceof Set && !(value instanceof SortedSet)) {
+                writeSet((Set<?>) value, depth);
+            } else if (value instanceof Collection) {
+                Collection<?> collection = (Collection<?>) value;
+                writeByte(LIST);
+                writeInt(collection.size());
+                for (Object element : collection) {
+                    writeValue(element, depth + 1);
+                }
+            } else if (value instanceof Object[]) {
+                Object[] array = (Object[]) value;
+                writeByte(LIST);
+                writeInt(array.length);
+                for (Object element : array) {
+                    writeValue(element, depth + 1);
+                }
+            } else if (value.getClass().isArray()) {
+                /** 基本类型数组按装箱后的元素编码 */
+                int length = Array.getLength(value);
+                writeByte(LIST);
+                writeInt(length);
+                for (int i = 0; i < length; i++) {
+                    writeValue(Array.get(value, i), depth + 1);
+                }
+            } else if (value instanceof UUID
+                    || (value instanceof TemporalAccessor && value.getClass().getName().startsWith("java.time."))) {
+                writeByte(TEXT);
+                writeString(value.getClass().getName());
+                writeString(value.toString());
+            } else {
+                /** toString()不一定区分参数值，例如只输出部分属性的实体 */
+                unsupported = true;
+            }
+        }
+
+        /**
+         * 写入Map，非排序Map按键的编码排序
+         *
+         * @param map   Map
+         * @param depth 嵌套深度
+         */
+        private void writeMap(Map<?, ?> map, int depth) {
+            writeByte(MAP);
+            writeInt(map.size());
+            if (map.size() <= 1 || (map instanceof SortedMap && ((SortedMap<?, ?>) map).comparator() == null)) {
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(entry.getKey(), depth + 1);
+                    writeValue(entry.getValue(), depth + 1);
+                }
+                return;
+            }
+            List<byte[]> entries = new ArrayList<>(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                int start = len;
+                writeValue(entry.getKey(), depth + 1);
+                writeValue(entry.getValue(), depth + 1);
+                entries.add(Arrays.copyOfRange(buf, start, len));
+                len = start;
+            }
+            writeSorted(entries);
+        }
+
+        /**
+         * 写入无序Set，按元素编码排序
+         *
+         * @param set   Set
+         * @param depth 嵌套深度
+         */
+        private void writeSet(Set<?> set, int depth) {
+            writeByte(SET);
+            writeInt(set.size());
+            List<byte[]> elements = new ArrayList<>(set.size());
+            for (Object element : set) {
+                int start = len;
+                writeValue(element, depth + 1);
+                elements.add(Arrays.copyOfRange(buf, start, len));
+                len = start;
+            }
+            writeSorted(elements);
+        }
+
+        /**
+         * 按字节序排序后写入
+         *
+         * @param parts 已编码的片段
+         */
+        private void writeSorted(List<byte[]> parts) {
+            parts.sort((a, b) -> {
+                int n = Math.min(a.length, b.length);
+                for (int i = 0; i < n; i++) {
+                    int c = (a[i] & 0xff) - (b[i] & 0xff);
+                    if (c != 0) {
+                        return c;
+                    }
+                }
+                return a.length - b.length;
+            });
+            for (byte[] part : parts) {
+                ensure(part.length);
+                System.arraycopy(part, 0, buf, len, part.length);
+                len += part.length;
+            }
+        }
+
+        /**
+         * 写入字符串，长度前缀加UTF-16字符
+         *
+         * @param value 字符串
+         */
+        private void writeString(String value) {
+            if (value == null) {
+                writeInt(-1);
+                return;
+            }
+            int length = value.length();
+            writeInt(length);
+            ensure(length << 1);
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                buf[len++] = (byte) (c >>> 8);
+                buf[len++] = (byte) c;
+            }
+        }
+
+        /**
+         * 写入long
+         *
+         * @param value long值
+         */
+        private void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        /**
+         * 写入int
+         *
+         * @param value int值
+         */
+        private void writeInt(int value) {
+            ensure(4);
+            buf[len++] = (byte) (value >>> 24);
+            buf[len++] = (byte) (value >>> 16);
+            buf[len++] = (byte) (value >>> 8);
+            buf[len++] = (byte) value;
+        }
+
+        /**
+         * 写入单字节
+         *
+         * @param value 字节值
+         */
+        private void writeByte(int value) {
+            ensure(1);
+            buf[len++] = (byte) value;
+        }
+
+        /**
+         * 确保缓冲区剩余空间
+         *
+         * @param size 需要的字节数
+         */
+        private void ensure(int size) {
+            if (len + size > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, len + size));
+            }
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package com.devotion.dao.client;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SqlParameter;
 
+import com.devotion.dao.support.scatter.Aggregate;
+import com.devotion.dao.support.scatter.ScatterQuery;
 import com.devotion.dao.transaction.template.TransactionTemplate;
 
 /**
@@ -55,6 +60,15 @@ public interface DaoClient {
 	 */
 	int dynamicMerge(Object entity);
 
+	/**
+	 * 批量动态更新，非空属性相同的实体合并为一次批处理
+	 * 
+	 * @param entities
+	 *            实体对象集合
+	 * @return 各实体更新成功的记录数，与传入顺序一致
+	 */
+	int[] batchDynamicMerge(Collection<?> entities);
+
 	/**
 	 * 单表删除操作 根据主键删除记录
 	 * 
@@ -263,6 +277,111 @@ public interface DaoClient {
 	 */
 	int execute(String sqlId, Object param);
 
+	/**
+	 * 流式查询，逐行读取结果集，内存占用与结果行数无关<br>
+	 * 返回的Stream占用数据库连接，须在try-with-resources中使用或读完全部行
+	 * 
+	 * @param sqlId
+	 *            SQLID
+	 * @param paramMap
+	 *            查询参数
+	 * @param rowMapper
+	 *            结果映射
+	 * @param <T>
+	 *            泛型对象
+	 * @return 查询结果
+	 */
+	<T> Stream<T> queryForStream(String sqlId, Map<String, Object> paramMap, RowMapper<T> rowMapper);
+
+	/**
+	 * 流式查询，queryForStream重载方法
+	 * 
+	 * @param sqlId
+	 *            SQLID
+	 * @param paramMap
+	 *            查询参数
+	 * @param requiredType
+	 *            需要处理的类型
+	 * @param <T>
+	 *            泛型对象
+	 * @return 查询结果
+	 */
+	<T> Stream<T> queryForStream(String sqlId, Map<String, Object> paramMap, Class<T> requiredType);
+
+	/**
+	 * 流式查询，结果映射为Map
+	 * 
+	 * @param sqlId
+	 *            SQLID
+	 * @param paramMap
+	 *            查询参数
+	 * @return 查询结果
+	 */
+	Stream<Map<String, Object>> queryForStream(String sqlId, Map<String, Object> paramMap);
+
+	/**
+	 * 流式查询，逐行回调，返回前释放全部资源
+	 * 
+	 * @param sqlId
+	 *            SQLID
+	 * @param paramMap
+	 *            查询参数
+	 * @param rowMapper
+	 *            结果映射
+	 * @param action
+	 *            行回调
+	 * @param <T>
+	 *            泛型对象
+	 */
+	<T> void queryForEach(String sqlId, Map<String, Object> paramMap, RowMapper<T> rowMapper,
+			Consumer<? super T> action);
+
+	/**
+	 * 分发查询，路由不到单个分库时在全部分库上并行查询，按查询选项归并排序、截取行数
+	 * 
+	 * @param sqlId
+	 *            SQLID
+	 * @param paramMap
+	 *            查询参数
+	 * @param rowMapper
+	 *            结果映射
+	 * @param query
+	 *            分发查询选项
+	 * @param <T>
+	 *            泛型对象
+	 * @return 合并后的查询结果
+	 */
+	<T> List<T> scatterForList(String sqlId, Map<String, Object> paramMap, RowMapper<T> rowMapper,
+			ScatterQuery<T> query);
+
+	/**
+	 * 分发查询，结果映射为Map
+	 * 
+	 * @param sqlId
+	 *            SQLID
+	 * @param paramMap
+	 *            查询参数
+	 * @param query
+	 *            分发查询选项
+	 * @return 合并后的查询结果
+	 */
+	List<Map<String, Object>> scatterForList(String sqlId, Map<String, Object> paramMap,
+			ScatterQuery<Map<String, Object>> query);
+
+	/**
+	 * 分发聚合查询，各分库的一行聚合结果按COUNT/SUM/MIN/MAX合并
+	 * 
+	 * @param sqlId
+	 *            SQLID
+	 * @param paramMap
+	 *            查询参数
+	 * @param aggregates
+	 *            聚合列与聚合函数
+	 * @return 合并后的聚合行
+	 */
+	Map<String, Object> scatterForAggregate(String sqlId, Map<String, Object> paramMap,
+			Map<String, Aggregate> aggregates);
+
 	/**
 	 * 根据sqlId执行，批量执行
 	 * 
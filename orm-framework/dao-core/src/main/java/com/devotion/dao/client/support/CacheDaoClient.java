@@ -2,25 +2,50 @@ package com.devotion.dao.client.support;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.devotion.dao.cache.Cache;
 import com.devotion.dao.cache.CacheException;
 import com.devotion.dao.cache.CacheFactory;
+import com.devotion.dao.cache.TableVersions;
+import com.devotion.dao.cache.TaggedValue;
+import com.devotion.dao.cache.key.CacheKey;
+import com.devotion.dao.cache.key.CacheKeyBuilder;
 import com.devotion.dao.pagination.Pagination;
 import com.devotion.dao.pagination.PaginationResult;
+import com.devotion.dao.pagination.SeekPagination;
+import com.devotion.dao.support.rowmapper.DefaultBeanPropertyRowMapper;
+import com.devotion.dao.support.sql.SqlParserManager;
+import com.devotion.dao.support.sql.SqlTableExtractor;
+import com.devotion.dao.support.value.EntityBinding;
 
 /**
  * 功能描述： 带缓存的客户端
+ * <p>
+ * 缓存对象按SQL涉及的表名打标记，写操作递增表版本号（处于事务中时在事务结束后再递增一次），
+ * 读取时发现表版本号变化即视为过期
  */
 public class CacheDaoClient extends PaginationDaoClient {
 
+    /**
+     * 实体查询的缓存键值前缀
+     */
+    private static final String FIND_KEY_PREFIX = "find:";
+
     /**
      * 缓存配置文件
      */
@@ -36,6 +61,16 @@ public class CacheDaoClient extends PaginationDaoClient {
      */
     private Cache cache;
 
+    /**
+     * 表版本号登记
+     */
+    private TableVersions tableVersions;
+
+    /**
+     * 按SQLID解析的表名
+     */
+    private final ConcurrentMap<String, String[]> sqlTables = new ConcurrentHashMap<>();
+
     /**
      * 缓存初始化
      *
@@ -62,6 +97,7 @@ public class CacheDaoClient extends PaginationDaoClient {
             }
         }
         cache = cFac.getCache(cacheID);
+        tableVersions = TableVersions.of(cacheID);
     }
 
     /**
@@ -74,8 +110,10 @@ public class CacheDaoClient extends PaginationDaoClient {
      */
     @Override
     public <T> T find(final Class<T> entityClass, final Object entity) {
-        String key = generateKey(entity);
-        return cacheHandle((() -> CacheDaoClient.super.find(entityClass, entity)), key);
+        CacheKey key = CacheKeyBuilder.build(FIND_KEY_PREFIX + entity.getClass().getName(), entityClass,
+                EntityBinding.of(entity.getClass()).bind(entity));
+        return cacheHandle((() -> CacheDaoClient.super.find(entityClass, entity)), key,
+                entityTables(entity));
 //        return this.cacheHandle(new CallBack<T>() {
 //            @Override
 //            public T invoke() {
@@ -95,8 +133,9 @@ public class CacheDaoClient extends PaginationDaoClient {
      */
     @Override
     public <T> T queryForObject(final String sqlId, final Map<String, Object> paramMap, final RowMapper<T> rowMapper) {
-        String key = generateKey(sqlId, paramMap);
-        return cacheHandle((() -> CacheDaoClient.super.queryForObject(sqlId, paramMap, rowMapper)), key);
+        CacheKey key = CacheKeyBuilder.build(sqlId, "queryForObject", mappedType(rowMapper), paramMap);
+        return cacheHandle((() -> CacheDaoClient.super.queryForObject(sqlId, paramMap, rowMapper)), key,
+                sqlTables(sqlId));
 //        return this.cacheHandle(new CallBack<T>() {
 //            @Override
 //            public T invoke() {
@@ -114,8 +153,9 @@ public class CacheDaoClient extends PaginationDaoClient {
      */
     @Override
     public Map<String, Object> queryForMap(final String sqlId, final Map<String, Object> paramMap) {
-        String key = generateKey(sqlId, paramMap);
-        return cacheHandle((() -> CacheDaoClient.super.queryForMap(sqlId, paramMap)), key);
+        CacheKey key = CacheKeyBuilder.build(sqlId, "queryForMap", paramMap);
+        return cacheHandle((() -> CacheDaoClient.super.queryForMap(sqlId, paramMap)), key,
+                sqlTables(sqlId));
 //        return this.cacheHandle(new CallBack<Map<String, Object>>() {
 //            @Override
 //            public Map<String, Object> invoke() {
@@ -136,8 +176,9 @@ public class CacheDaoClient extends PaginationDaoClient {
     @Override
     public <T> List<T> queryForList(final String sqlId, final Map<String, Object> paramMap,
                                     final RowMapper<T> rowMapper) {
-        String key = generateKey(sqlId, paramMap);
-        return cacheHandle((() -> CacheDaoClient.super.queryForList(sqlId, paramMap, rowMapper)), key);
+        CacheKey key = CacheKeyBuilder.build(sqlId, "queryForList", mappedType(rowMapper), paramMap);
+        return cacheHandle((() -> CacheDaoClient.super.queryForList(sqlId, paramMap, rowMapper)), key,
+                sqlTables(sqlId));
 //        return this.cacheHandle(new CallBack<List<T>>() {
 //            @Override
 //            public List<T> invoke() {
@@ -155,8 +196,9 @@ public class CacheDaoClient extends PaginationDaoClient {
      */
     @Override
     public List<Map<String, Object>> queryForList(final String sqlId, final Map<String, Object> paramMap) {
-        String key = generateKey(sqlId, paramMap);
-        return cacheHandle((() -> CacheDaoClient.super.queryForList(sqlId, paramMap)), key);
+        CacheKey key = CacheKeyBuilder.build(sqlId, "queryForList", paramMap);
+        return cacheHandle((() -> CacheDaoClient.super.queryForList(sqlId, paramMap)), key,
+                sqlTables(sqlId));
 //        return this.cacheHandle(new CallBack<List<Map<String, Object>>>() {
 //            @Override
 //            public List<Map<String, Object>> invoke() {
@@ -166,7 +208,7 @@ public class CacheDaoClient extends PaginationDaoClient {
     }
 
     /**
-     * 根据sqlId查询多个对象，返回分页结果集
+     * 根据sqlId查询多个对象，返回分页结果集，键集分页不使用缓存
      *
      * @param sqlId      sqlId
      * @param paramMap   查询参数
@@ -176,8 +218,12 @@ public class CacheDaoClient extends PaginationDaoClient {
     @Override
     public PaginationResult<List<Map<String, Object>>> queryForList(final String sqlId,
                                                                     final Map<String, Object> paramMap, final Pagination pagination) {
-        String key = generateKey(sqlId, paramMap, pagination);
-        return cacheHandle((() -> CacheDaoClient.super.queryForList(sqlId, paramMap, pagination)), key);
+        /** 键集分页的翻页位置随查询推进，命中缓存时无法推进，不使用缓存 */
+        CacheKey key = pagination instanceof SeekPagination ? null
+                : CacheKeyBuilder.build(sqlId, "queryForPage", paramMap, pagination.getPageSize(),
+                        pagination.getCurrentPage());
+        return cacheHandle((() -> CacheDaoClient.super.queryForList(sqlId, paramMap, pagination)), key,
+                sqlTables(sqlId));
 //        return this.cacheHandle(new CallBack<PaginationResult<List<Map<String, Object>>>>() {
 //            @Override
 //            public PaginationResult<List<Map<String, Object>>> invoke() {
@@ -187,7 +233,7 @@ public class CacheDaoClient extends PaginationDaoClient {
     }
 
     /**
-     * 根据sqlId查询多个对象，返回分页结果集
+     * 根据sqlId查询多个对象，返回分页结果集，键集分页不使用缓存
      *
      * @param sqlId      SQLID
      * @param paramMap   查询参数
@@ -199,8 +245,12 @@ public class CacheDaoClient extends PaginationDaoClient {
     @Override
     public <T> PaginationResult<List<T>> queryForList(final String sqlId, final Map<String, Object> paramMap,
                                                       final RowMapper<T> rowMapper, final Pagination pagination) {
-        String key = generateKey(sqlId, paramMap, pagination);
-        return cacheHandle((() -> CacheDaoClient.super.queryForList(sqlId, paramMap, rowMapper, pagination)), key);
+        /** 键集分页的翻页位置随查询推进，命中缓存时无法推进，不使用缓存 */
+        CacheKey key = pagination instanceof SeekPagination ? null
+                : CacheKeyBuilder.build(sqlId, "queryForPage", mappedType(rowMapper), paramMap,
+                        pagination.getPageSize(), pagination.getCurrentPage());
+        return cacheHandle((() -> CacheDaoClient.super.queryForList(sqlId, paramMap, rowMapper, pagination)), key,
+                sqlTables(sqlId));
 //        return this.cacheHandle(new CallBack<PaginationResult<List<T>>>() {
 //            @Override
 //            public PaginationResult<List<T>> invoke() {
@@ -210,21 +260,154 @@ public class CacheDaoClient extends PaginationDaoClient {
     }
 
     /**
-     * 生成MD5码
+     * 数据持久化，完成后使实体表的缓存过期
      *
-     * @param o 对象
-     * @return MD5串
-     */
-    private String generateKey(Object... o) {
-        int hashCode = 0;
-        for (Object t : o) {
-            if (t instanceof Map) {
-                hashCode = hashCode + t.hashCode();
-            } else {
-                hashCode = hashCode + HashCodeBuilder.reflectionHashCode(t);
+     * @param entity       数据实体
+     * @param requiredType 需要处理的类型
+     * @param <T>          泛型对象
+     * @return 持久化操作成功记录数
+     */
+    @Override
+    public <T> T persist(Object entity, Class<T> requiredType) {
+        return writeHandle(() -> super.persist(entity, requiredType), entityTables(entity));
+    }
+
+    /**
+     * 数据合并与更新，完成后使实体表的缓存过期
+     *
+     * @param entity 更新的数据实体
+     * @return 数据更新后的结果
+     */
+    @Override
+    public int merge(Object entity) {
+        return writeHandle(() -> super.merge(entity), entityTables(entity));
+    }
+
+    /**
+     * 动态更新，完成后使实体表的缓存过期
+     *
+     * @param entity 更新的数据实体
+     * @return 返回更新的记录数目
+     */
+    @Override
+    public int dynamicMerge(Object entity) {
+        return writeHandle(() -> super.dynamicMerge(entity), entityTables(entity));
+    }
+
+    /**
+     * 批量动态更新，完成后使各实体表的缓存过期
+     *
+     * @param entities 更新的数据实体
+     * @return 各实体更新的记录数
+     */
+    @Override
+    public int[] batchDynamicMerge(Collection<?> entities) {
+        Set<Class<?>> entityClasses = new HashSet<>();
+        List<String[]> tables = new ArrayList<>();
+        for (Object entity : entities) {
+            if (entityClasses.add(entity.getClass())) {
+                tables.add(entityTables(entity));
             }
         }
-        return DigestUtils.md5Hex(String.valueOf(hashCode));
+        return writeHandle(() -> super.batchDynamicMerge(entities), tables.toArray(new String[tables.size()][]));
+    }
+
+    /**
+     * 数据删除，完成后使实体表的缓存过期
+     *
+     * @param entity 删除的数据实体
+     * @return 返回删除的记录数目
+     */
+    @Override
+    public int remove(Object entity) {
+        return writeHandle(() -> super.remove(entity), entityTables(entity));
+    }
+
+    /**
+     * 执行SQL，完成后使SQL涉及表的缓存过期
+     *
+     * @param sqlId    SQLID
+     * @param paramMap 执行参数
+     * @return 更新记录数
+     */
+    @Override
+    public int execute(String sqlId, Map<String, Object> paramMap) {
+        return writeHandle(() -> super.execute(sqlId, paramMap), sqlTables(sqlId));
+    }
+
+    /**
+     * 批量更新，完成后使SQL涉及表的缓存过期
+     *
+     * @param sqlId       SQLID
+     * @param batchValues 需要批处理的集合
+     * @return 批处理成功记录数
+     */
+    @Override
+    public int[] batchUpdate(String sqlId, Map<String, Object>[] batchValues) {
+        return writeHandle(() -> super.batchUpdate(sqlId, batchValues), sqlTables(sqlId));
+    }
+
+    /**
+     * 调存储过程，无法确定涉及的表，完成后使全部缓存过期
+     *
+     * @param sqlId         SQLID
+     * @param paramMap      执行参数
+     * @param sqlParameters sqlCommand参数的对象
+     * @return 存储过程执行结果
+     */
+    @Override
+    public Map<String, Object> call(String sqlId, Map<String, Object> paramMap, List<SqlParameter> sqlParameters) {
+        return writeHandle(() -> super.call(sqlId, paramMap, sqlParameters), (String[]) null);
+    }
+
+    /**
+     * 重新解析SQL模板时清空表名解析结果
+     */
+    @Override
+    protected void parseResource() {
+        super.parseResource();
+        sqlTables.clear();
+    }
+
+    /**
+     * 获取SQL涉及的表名
+     *
+     * @param sqlId SQLID
+     * @return 表名，无法识别时为空数组
+     */
+    private String[] sqlTables(String sqlId) {
+        String[] tables = sqlTables.get(sqlId);
+        if (tables == null) {
+            tables = sqlTables.computeIfAbsent(sqlId, id -> SqlTableExtractor.extract(getSQL(id).getContent()));
+        }
+        return tables;
+    }
+
+    /**
+     * 获取实体对应的表名
+     *
+     * @param entity 实体对象
+     * @return 表名，非实体表时为空数组
+     */
+    private String[] entityTables(Object entity) {
+        String tableName = SqlParserManager.getSqlParser(entity.getClass()).getTableName();
+        return tableName == null ? new String[0] : new String[]{tableName};
+    }
+
+    /**
+     * 获取结果映射的目标类型，参与缓存键值以区分同一SQL的不同映射
+     *
+     * @param rowMapper 结果映射
+     * @return 目标类型，无法获取时为结果映射的类型
+     */
+    private Class<?> mappedType(RowMapper<?> rowMapper) {
+        if (rowMapper instanceof DefaultBeanPropertyRowMapper) {
+            return ((DefaultBeanPropertyRowMapper<?>) rowMapper).getMappedClass();
+        }
+        if (rowMapper instanceof BeanPropertyRowMapper) {
+            return ((BeanPropertyRowMapper<?>) rowMapper).getMappedClass();
+        }
+        return rowMapper.getClass();
     }
 
     /**
@@ -246,24 +429,74 @@ public class CacheDaoClient extends PaginationDaoClient {
     }
 
     /**
-     * 缓存句柄
+     * 缓存句柄，表版本号已变化的缓存对象视为缺失
      *
      * @param callBack 回调
-     * @param key      键值
+     * @param key      缓存键值，为null时不使用缓存
+     * @param tables   查询涉及的表名
      * @param <R>      泛型对象
      * @return 回调结果
      */
     @SuppressWarnings("unchecked")
-    private <R> R cacheHandle(CallBack<R> callBack, String key) {
+    private <R> R cacheHandle(CallBack<R> callBack, CacheKey key, String[] tables) {
+        if (key == null) {
+            return callBack.invoke();
+        }
         Object o = cache.get(key);
-        if (o == null) {
-            R r = callBack.invoke();
-            if (r != null) {
-                cache.put(key, r);
+        if (o instanceof TaggedValue) {
+            TaggedValue tagged = (TaggedValue) o;
+            if (tableVersions.isCurrent(tagged.getTables(), tagged.getVersions())) {
+                return (R) tagged.getValue();
+            }
+            cache.remove(key);
+        }
+        /** 版本号快照须在查询前获取，查询期间发生的写操作使本次结果过期 */
+        long[] versions = tableVersions.snapshot(tables);
+        R r = callBack.invoke();
+        if (r != null) {
+            cache.put(key, new TaggedValue(r, tables, versions));
+        }
+        return r;
+    }
+
+    /**
+     * 写操作句柄，写操作前后各递增一次表版本号
+     * <p>
+     * 写操作前递增使执行期间缓存的查询结果过期；处于Spring事务中时，提交前其他线程读到的仍是旧数据，
+     * 第二次递增须在事务结束后进行，否则在写操作完成后进行
+     *
+     * @param callBack 回调
+     * @param tables   各组涉及的表名，为null的一组使全部缓存过期
+     * @param <R>      泛型对象
+     * @return 回调结果
+     */
+    private <R> R writeHandle(CallBack<R> callBack, String[]... tables) {
+        bump(tables);
+        try {
+            return callBack.invoke();
+        } finally {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                    @Override
+                    public void afterCompletion(int status) {
+                        bump(tables);
+                    }
+                });
+            } else {
+                bump(tables);
             }
-            return r;
         }
-        return (R) o;
+    }
+
+    /**
+     * 递增各组表的版本号
+     *
+     * @param tables 各组涉及的表名
+     */
+    private void bump(String[][] tables) {
+        for (String[] group : tables) {
+            tableVersions.bump(group);
+        }
     }
 
     /**
@@ -1,12 +1,18 @@
 package com.devotion.dao.client.support;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
 
 import com.devotion.dao.utils.DaoUtils;
 import com.devotion.dao.client.IPaginationDaoClient;
@@ -16,9 +22,9 @@ import com.devotion.dao.dialect.DialectFactory;
 import com.devotion.dao.exception.BaseException;
 import com.devotion.dao.pagination.Pagination;
 import com.devotion.dao.pagination.PaginationResult;
+import com.devotion.dao.pagination.SeekPagination;
 import com.devotion.dao.resource.parse.SqlBean;
-import com.devotion.dao.support.rowmapper.RowMapperFactory;
-import com.devotion.dao.support.sql.FreeMakerParser;
+import com.devotion.dao.support.plan.ExecutionPlan;
 
 /**
  * 功能描述： 带分页的客户端
@@ -44,10 +50,14 @@ public class PaginationDaoClient extends DefaultDaoClient implements IPagination
 	@Override
 	public PaginationResult<List<Map<String, Object>>> queryForList(String sqlId, Map<String, Object> paramMap,
 			Pagination pagination) {
+		if (pagination instanceof SeekPagination) {
+			return seekForList(sqlId, null, paramMap, new ColumnMapRowMapper(), (SeekPagination) pagination);
+		}
 		processTableRoute(paramMap);
 		SqlBean sqlBean = getSQL(sqlId);
-		String sql = FreeMakerParser.process(paramMap, sqlBean.getContent(), sqlId);
-		NamedParameterJdbcTemplate template = getJdbcTemplate(paramMap, sqlBean);
+		ExecutionPlan<?> plan = getPlan(sqlId, sqlBean.getContent(), null, getDataSource(paramMap, sqlBean));
+		String sql = plan.render(paramMap);
+		NamedParameterJdbcTemplate template = plan.getJdbcTemplate();
 		/** 装配分页信息 */
 		if (paramMap == null) {
 			paramMap = new HashMap<String, Object>();
@@ -82,6 +92,9 @@ public class PaginationDaoClient extends DefaultDaoClient implements IPagination
 	 */
 	public PaginationResult<List<Map<String, Object>>> queryForList(Map<String, Object> paramMap, Pagination pagination,
 			String... sqlId) {
+		if (sqlId.length == 2 && pagination instanceof SeekPagination) {
+			return seekForList(sqlId[0], sqlId[1], paramMap, new ColumnMapRowMapper(), (SeekPagination) pagination);
+		}
 		if (sqlId.length == 2) {
 			processTableRoute(paramMap);
 
@@ -96,16 +109,19 @@ public class PaginationDaoClient extends DefaultDaoClient implements IPagination
 				pagination.setTotalRows(list.size());
 			} else {
 				SqlBean sqlBeanTotalrows = getSQL(sqlId[1]);
-				String sqlTotalrows = FreeMakerParser.process(paramMap, sqlBeanTotalrows.getContent(), sqlId[1]);
-				NamedParameterJdbcTemplate templateTotalrows = getJdbcTemplate(paramMap, sqlBeanTotalrows);
+				ExecutionPlan<?> planTotalrows = getPlan(sqlId[1], sqlBeanTotalrows.getContent(), null,
+						getDataSource(paramMap, sqlBeanTotalrows));
+				String sqlTotalrows = planTotalrows.render(paramMap);
+				NamedParameterJdbcTemplate templateTotalrows = planTotalrows.getJdbcTemplate();
 				paramMap.put(LIMIT, pagination.getPageSize());
 				paramMap.put("_offset", pagination.getFirstRowIndex());
 				this.configurePaginationTotalrows(templateTotalrows, sqlTotalrows, paramMap, pagination,
 						sqlBeanTotalrows.getDbType());
 
 				SqlBean sqlBean = getSQL(sqlId[0]);
-				String sql = FreeMakerParser.process(paramMap, sqlBean.getContent(), sqlId[0]);
-				NamedParameterJdbcTemplate template = getJdbcTemplate(paramMap, sqlBean);
+				ExecutionPlan<?> plan = getPlan(sqlId[0], sqlBean.getContent(), null, getDataSource(paramMap, sqlBean));
+				String sql = plan.render(paramMap);
+				NamedParameterJdbcTemplate template = plan.getJdbcTemplate();
 				list = template.queryForList(generatePaginationSql(sql, sqlBean.getDbType(), pagination),
 						resetPaginationParams(paramMap, pagination, sqlBean.getDbType()));
 			}
@@ -172,11 +188,14 @@ public class PaginationDaoClient extends DefaultDaoClient implements IPagination
 	@Override
 	public <T> PaginationResult<List<T>> queryForList(String sqlId, Map<String, Object> paramMap,
 			RowMapper<T> rowMapper, Pagination pagination) {
-
+		if (pagination instanceof SeekPagination) {
+			return seekForList(sqlId, null, paramMap, rowMapper, (SeekPagination) pagination);
+		}
 		processTableRoute(paramMap);
 		SqlBean sqlBean = getSQL(sqlId);
-		String sql = FreeMakerParser.process(paramMap, sqlBean.getContent(), sqlId);
-		NamedParameterJdbcTemplate template = getJdbcTemplate(paramMap, sqlBean);
+		ExecutionPlan<?> plan = getPlan(sqlId, sqlBean.getContent(), null, getDataSource(paramMap, sqlBean));
+		String sql = plan.render(paramMap);
+		NamedParameterJdbcTemplate template = plan.getJdbcTemplate();
 		/** 装配分页信息 */
 		if (paramMap == null) {
 			paramMap = new HashMap<String, Object>();
@@ -217,6 +236,9 @@ public class PaginationDaoClient extends DefaultDaoClient implements IPagination
 	 */
 	public <T> PaginationResult<List<T>> queryForList(Map<String, Object> paramMap, RowMapper<T> rowMapper,
 			Pagination pagination, String... sqlId) {
+		if (sqlId.length == 2 && pagination instanceof SeekPagination) {
+			return seekForList(sqlId[0], sqlId[1], paramMap, rowMapper, (SeekPagination) pagination);
+		}
 		if (sqlId.length == 2) {
 			processTableRoute(paramMap);
 
@@ -231,8 +253,10 @@ public class PaginationDaoClient extends DefaultDaoClient implements IPagination
 				pagination.setTotalRows(list.size());
 			} else {
 				SqlBean sqlBeanTotalrows = getSQL(sqlId[1]);
-				String sqlTotalrows = FreeMakerParser.process(paramMap, sqlBeanTotalrows.getContent(), sqlId[1]);
-				NamedParameterJdbcTemplate templateTotalrows = getJdbcTemplate(paramMap, sqlBeanTotalrows);
+				ExecutionPlan<?> planTotalrows = getPlan(sqlId[1], sqlBeanTotalrows.getContent(), null,
+						getDataSource(paramMap, sqlBeanTotalrows));
+				String sqlTotalrows = planTotalrows.render(paramMap);
+				NamedParameterJdbcTemplate templateTotalrows = planTotalrows.getJdbcTemplate();
 				paramMap.put(LIMIT, pagination.getPageSize());
 				paramMap.put("_offset", pagination.getFirstRowIndex());
 
@@ -240,8 +264,9 @@ public class PaginationDaoClient extends DefaultDaoClient implements IPagination
 						sqlBeanTotalrows.getDbType());
 
 				SqlBean sqlBean = getSQL(sqlId[0]);
-				String sql = FreeMakerParser.process(paramMap, sqlBean.getContent(), sqlId[0]);
-				NamedParameterJdbcTemplate template = getJdbcTemplate(paramMap, sqlBean);
+				ExecutionPlan<?> plan = getPlan(sqlId[0], sqlBean.getContent(), null, getDataSource(paramMap, sqlBean));
+				String sql = plan.render(paramMap);
+				NamedParameterJdbcTemplate template = plan.getJdbcTemplate();
 				list = template.query(generatePaginationSql(sql, sqlBean.getDbType(), pagination),
 						resetPaginationParams(paramMap, pagination, sqlBean.getDbType()), rowMapper);
 			}
@@ -316,7 +341,7 @@ public class PaginationDaoClient extends DefaultDaoClient implements IPagination
 	@Override
 	public <T> PaginationResult<List<T>> queryForList(String sqlId, Map<String, Object> paramMap, Class<T> requiredType,
 			Pagination pagination) {
-		return this.queryForList(sqlId, paramMap, new RowMapperFactory<T>(requiredType).getRowMapper(), pagination);
+		return this.queryForList(sqlId, paramMap, getRowMapper(requiredType), pagination);
 	}
 
 	/**
@@ -337,9 +362,9 @@ public class PaginationDaoClient extends DefaultDaoClient implements IPagination
 	public <T> PaginationResult<List<T>> queryForList(Map<String, Object> paramMap, Class<T> requiredType,
 			Pagination pagination, String... sqlId) {
 		if (sqlId.length == 2) {
-			return queryForList(paramMap, new RowMapperFactory<T>(requiredType).getRowMapper(), pagination, sqlId);
+			return queryForList(paramMap, getRowMapper(requiredType), pagination, sqlId);
 		} else {
-			return this.queryForList(sqlId[0], paramMap, new RowMapperFactory<T>(requiredType).getRowMapper(),
+			return this.queryForList(sqlId[0], paramMap, getRowMapper(requiredType),
 					pagination);
 		}
 
@@ -406,8 +431,9 @@ public class PaginationDaoClient extends DefaultDaoClient implements IPagination
 	public List<Map<String, Object>> queryForList(String sqlId, Map<String, Object> paramMap, int num) {
 		processTableRoute(paramMap);
 		SqlBean sqlBean = getSQL(sqlId);
-		String sql = FreeMakerParser.process(paramMap, sqlBean.getContent(), sqlId);
-		NamedParameterJdbcTemplate template = getJdbcTemplate(paramMap, sqlBean);
+		ExecutionPlan<?> plan = getPlan(sqlId, sqlBean.getContent(), null, getDataSource(paramMap, sqlBean));
+		String sql = plan.render(paramMap);
+		NamedParameterJdbcTemplate template = plan.getJdbcTemplate();
 		/** 装配分页信息 */
 		if (paramMap == null) {
 			paramMap = new HashMap<String, Object>();
@@ -459,8 +485,9 @@ public class PaginationDaoClient extends DefaultDaoClient implements IPagination
 	public <T> List<T> queryForList(String sqlId, Map<String, Object> paramMap, RowMapper<T> rowMapper, int num) {
 		processTableRoute(paramMap);
 		SqlBean sqlBean = getSQL(sqlId);
-		String sql = FreeMakerParser.process(paramMap, sqlBean.getContent(), sqlId);
-		NamedParameterJdbcTemplate template = getJdbcTemplate(paramMap, sqlBean);
+		ExecutionPlan<?> plan = getPlan(sqlId, sqlBean.getContent(), null, getDataSource(paramMap, sqlBean));
+		String sql = plan.render(paramMap);
+		NamedParameterJdbcTemplate template = plan.getJdbcTemplate();
 		/** 装配分页信息 */
 		if (paramMap == null) {
 			paramMap = new HashMap<String, Object>();
@@ -512,7 +539,7 @@ public class PaginationDaoClient extends DefaultDaoClient implements IPagination
 	 */
 	@Override
 	public <T> List<T> queryForList(String sqlId, Map<String, Object> paramMap, Class<T> requiredType, int num) {
-		return queryForList(sqlId, paramMap, new RowMapperFactory<T>(requiredType).getRowMapper(), num);
+		return queryForList(sqlId, paramMap, getRowMapper(requiredType), num);
 	}
 
 	/**
@@ -535,6 +562,71 @@ public class PaginationDaoClient extends DefaultDaoClient implements IPagination
 		return queryForList(sqlId, DaoUtils.convertToMap(param), requiredType, num);
 	}
 
+	/**
+	 * 键集分页查询：按上一页最后一行的键值定位，多取一行判断是否有下一页，不跳过前面的记录
+	 * 
+	 * @param sqlId
+	 *            SQLID
+	 * @param countSqlId
+	 *            查询总数SQLID，为null时按方言生成
+	 * @param paramMap
+	 *            查询参数
+	 * @param rowMapper
+	 *            翻页处理规则
+	 * @param pagination
+	 *            键集分页
+	 * @param <T>
+	 *            泛型对象
+	 * @return 分页查询结果
+	 */
+	private <T> PaginationResult<List<T>> seekForList(String sqlId, String countSqlId, Map<String, Object> paramMap,
+			RowMapper<T> rowMapper, SeekPagination pagination) {
+		processTableRoute(paramMap);
+		/** 装配分页信息 */
+		if (paramMap == null) {
+			paramMap = new HashMap<String, Object>();
+		}
+		/** 当pagesize为负数时 ,查询该表中的所有记录 */
+		if (pagination.getPageSize() < 0) {
+			List<T> list = queryForList(sqlId, paramMap, rowMapper);
+			pagination.setTotalRows(list.size());
+			pagination.setHasNext(false);
+			return new PaginationResult<List<T>>(list, pagination);
+		}
+		SqlBean sqlBean = getSQL(sqlId);
+		ExecutionPlan<?> plan = getPlan(sqlId, sqlBean.getContent(), null, getDataSource(paramMap, sqlBean));
+		String sql = plan.render(paramMap);
+		NamedParameterJdbcTemplate template = plan.getJdbcTemplate();
+
+		/** 总行数按需查询，已知时不再查询 */
+		if (pagination.isCountRequired()) {
+			if (countSqlId == null) {
+				this.configurePagination(template, sql, paramMap, pagination, sqlBean.getDbType());
+			} else {
+				SqlBean sqlBeanTotalrows = getSQL(countSqlId);
+				ExecutionPlan<?> planTotalrows = getPlan(countSqlId, sqlBeanTotalrows.getContent(), null,
+						getDataSource(paramMap, sqlBeanTotalrows));
+				this.configurePaginationTotalrows(planTotalrows.getJdbcTemplate(), planTotalrows.render(paramMap),
+						paramMap, pagination, sqlBeanTotalrows.getDbType());
+			}
+		}
+
+		Object[] lastKey = pagination.getLastKey();
+		if (lastKey != null) {
+			for (int i = 0; i < lastKey.length; i++) {
+				paramMap.put(Dialect.SEEK_PARAM + i, lastKey[i]);
+			}
+		}
+		/** 多取一行，判断是否有下一页 */
+		paramMap.put(LIMIT, pagination.getPageSize() + 1);
+		SeekResultSetExtractor<T> extractor = new SeekResultSetExtractor<T>(rowMapper, pagination.getColumns(),
+				pagination.getPageSize());
+		List<T> list = template.query(generateSeekSql(sql, sqlBean.getDbType(), pagination, lastKey != null),
+				paramMap, extractor);
+		pagination.advance(extractor.getLastKey(), extractor.isHasNext());
+		return new PaginationResult<List<T>>(list, pagination);
+	}
+
 	/**
 	 * 装配分页信息
 	 * 
@@ -612,6 +704,36 @@ public class PaginationDaoClient extends DefaultDaoClient implements IPagination
 		return paramMap;
 	}
 
+	/**
+	 * 按方言将分发查询限制为前若干行，未配置方言时不限制
+	 * 
+	 * @param sql
+	 *            渲染后的SQL
+	 * @param sqlBean
+	 *            SQL映射对象
+	 * @param paramMap
+	 *            查询参数
+	 * @param rows
+	 *            行数
+	 * @return 限制行数后的SQL
+	 */
+	@Override
+	protected String limitSql(String sql, SqlBean sqlBean, Map<String, Object> paramMap, int rows) {
+		String dbType = sqlBean.getDbType();
+		Dialect dialect = dialectFactory == null || dbType == null || dbType.isEmpty() ? null
+				: dialectFactory.getDBDialect(dbType);
+		if (dialect == null) {
+			return sql;
+		}
+		paramMap.put("_offset", 0);
+		paramMap.put(LIMIT, rows);
+		String limitSql = dialect.getLimitString(sql);
+		if ("db2".equals(dbType.toLowerCase())) {
+			limitSql = limitSql.replaceAll(":_limit", String.valueOf(rows));
+		}
+		return limitSql;
+	}
+
 	/**
 	 * 生成分页sql，查询指定位置、指定行数的记录
 	 * 
@@ -652,6 +774,32 @@ public class PaginationDaoClient extends DefaultDaoClient implements IPagination
 		// return dialect.getLimitString(sql);
 	}
 
+	/**
+	 * 生成键集分页sql，查询定位键值之后指定行数的记录
+	 * 
+	 * @param sql
+	 *            SQL语句
+	 * @param dbType
+	 *            数据源类型
+	 * @param pagination
+	 *            键集分页
+	 * @param seek
+	 *            是否带定位条件
+	 * @return 分页SQL串
+	 */
+	private String generateSeekSql(String sql, String dbType, SeekPagination pagination, boolean seek) {
+		Dialect dialect = dialectFactory.getDBDialect(dbType);
+		if (dialect == null) {
+			throw new BaseException(ExceptionType.EXCEPTION_DAO.getCode(), null, new Object[] { dbType },
+					ExceptionType.EXCEPTION_DAO);
+		}
+		String seekSql = dialect.getSeekString(sql, pagination.getColumns(), pagination.isDescending(), seek);
+		if ("db2".equals(dbType.toLowerCase())) {
+			seekSql = seekSql.replaceAll(":_limit", String.valueOf(pagination.getPageSize() + 1));
+		}
+		return seekSql;
+	}
+
 	/**
 	 * 生成分页sql，查询前几行记录
 	 * 
@@ -675,4 +823,94 @@ public class PaginationDaoClient extends DefaultDaoClient implements IPagination
 	 */
 	@Autowired
 	private DialectFactory dialectFactory;
+
+	/**
+	 * 键集分页结果集处理：映射前pageSize行并记录最后一行的键值，仅探测是否存在下一行
+	 * 
+	 * @param <T>
+	 *            泛型对象
+	 */
+	private static final class SeekResultSetExtractor<T> implements ResultSetExtractor<List<T>> {
+
+		/**
+		 * 行映射规则
+		 */
+		private final RowMapper<T> rowMapper;
+
+		/**
+		 * 排序键列
+		 */
+		private final String[] columns;
+
+		/**
+		 * 每页显示条数
+		 */
+		private final int pageSize;
+
+		/**
+		 * 本页最后一行的键值
+		 */
+		private Object[] lastKey;
+
+		/**
+		 * 是否有下一页
+		 */
+		private boolean hasNext;
+
+		/**
+		 * 构造方法
+		 * 
+		 * @param rowMapper
+		 *            行映射规则
+		 * @param columns
+		 *            排序键列
+		 * @param pageSize
+		 *            每页显示条数
+		 */
+		private SeekResultSetExtractor(RowMapper<T> rowMapper, String[] columns, int pageSize) {
+			this.rowMapper = rowMapper;
+			this.columns = columns;
+			this.pageSize = pageSize;
+		}
+
+		@Override
+		public List<T> extractData(ResultSet rs) throws SQLException {
+			List<T> list = new ArrayList<T>(pageSize);
+			int[] indexes = null;
+			while (list.size() < pageSize && rs.next()) {
+				list.add(rowMapper.mapRow(rs, list.size()));
+				if (indexes == null) {
+					indexes = new int[columns.length];
+					for (int i = 0; i < columns.length; i++) {
+						indexes[i] = rs.findColumn(columns[i]);
+					}
+					lastKey = new Object[columns.length];
+				}
+				/** 逐行覆盖，只保留本页最后一行的键值 */
+				for (int i = 0; i < columns.length; i++) {
+					lastKey[i] = JdbcUtils.getResultSetValue(rs, indexes[i]);
+				}
+			}
+			hasNext = list.size() == pageSize && rs.next();
+			return list;
+		}
+
+		/**
+		 * 获取本页最后一行的键值
+		 * 
+		 * @return 键值，本页为空时为null
+		 */
+		private Object[] getLastKey() {
+			return lastKey;
+		}
+
+		/**
+		 * 是否有下一页
+		 * 
+		 * @return 是否有下一页
+		 */
+		private boolean isHasNext() {
+			return hasNext;
+		}
+	}
 }
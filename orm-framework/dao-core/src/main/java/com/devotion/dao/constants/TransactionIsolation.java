@@ -0,0 +1,56 @@
+package com.devotion.dao.constants;
+
+/**
+ * 事务的隔离级别
+ */
+public enum TransactionIsolation {
+
+	/**
+	 * 使用数据库默认的隔离级别
+	 */
+	ISOLATION_DEFAULT(-1),
+
+	/**
+	 * 读未提交
+	 */
+	ISOLATION_READ_UNCOMMITTED(1),
+
+	/**
+	 * 读已提交
+	 */
+	ISOLATION_READ_COMMITTED(2),
+
+	/**
+	 * 可重复读
+	 */
+	ISOLATION_REPEATABLE_READ(4),
+
+	/**
+	 * 串行化
+	 */
+	ISOLATION_SERIALIZABLE(8);
+
+	/**
+	 * 键值
+	 */
+	private int value;
+
+	/**
+	 * 事务隔离
+	 * 
+	 * @param value
+	 *            隔离级别
+	 */
+	private TransactionIsolation(int value) {
+		this.value = value;
+	}
+
+	/**
+	 * 返回当前的事务隔离级别
+	 * 
+	 * @return 当前的事务隔离级别
+	 */
+	public int getIsolationLevel() {
+		return this.value;
+	}
+}
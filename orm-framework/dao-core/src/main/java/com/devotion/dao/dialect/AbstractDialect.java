@@ -21,4 +21,51 @@ public abstract class AbstractDialect implements Dialect {
         return new StringBuffer(sql.length() + 20).append("select count(1) from( ").append(sql).append(" ) t")
                 .toString();
     }
+
+    /**
+     * 生成键集分页的定位条件，展开为逐列比较，首列的范围条件可直接用于索引扫描
+     *
+     * @param columns    --排序键列
+     * @param descending --是否降序
+     * @return 条件串
+     */
+    protected String getSeekPredicate(String[] columns, boolean descending) {
+        String op = descending ? " < " : " > ";
+        StringBuilder predicate = new StringBuilder(columns.length * 40);
+        if (columns.length > 1) {
+            predicate.append(columns[0]).append(descending ? " <= :" : " >= :").append(SEEK_PARAM).append("0 and ");
+        }
+        for (int i = 0; i < columns.length; i++) {
+            if (i < columns.length - 1) {
+                predicate.append('(');
+            }
+            predicate.append(columns[i]).append(op).append(':').append(SEEK_PARAM).append(i);
+            if (i < columns.length - 1) {
+                predicate.append(" or (").append(columns[i]).append(" = :").append(SEEK_PARAM).append(i)
+                        .append(" and ");
+            }
+        }
+        for (int i = 0; i < columns.length - 1; i++) {
+            predicate.append("))");
+        }
+        return predicate.toString();
+    }
+
+    /**
+     * 生成键集分页的排序子句
+     *
+     * @param columns    --排序键列
+     * @param descending --是否降序
+     * @return 排序子句
+     */
+    protected String getSeekOrderBy(String[] columns, boolean descending) {
+        StringBuilder orderBy = new StringBuilder(columns.length * 20).append(" order by ");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                orderBy.append(", ");
+            }
+            orderBy.append(columns[i]).append(descending ? " desc" : " asc");
+        }
+        return orderBy.toString();
+    }
 }
@@ -19,6 +19,11 @@ package com.devotion.dao.dialect;
  */
 public interface Dialect {
 
+    /**
+     * 键集分页定位参数名前缀
+     */
+    String SEEK_PARAM = "_seek";
+
     /**
      * 功能描述: <br>
      * 获取分页SQL，查询前几条记录
@@ -51,4 +56,20 @@ public interface Dialect {
      * @since [产品/模块版本](可选)
      */
     String getCountString(String sql);
+
+    /**
+     * 功能描述: <br>
+     * 获取键集分页SQL，按排序键定位到上一页最后一行之后，查询指定行记录。
+     * 源SQL作为子查询，排序键须为源SQL的输出列且组合唯一、非空，
+     * 上一页最后一行的键值按顺序绑定为:_seek0、:_seek1...，行数绑定为:_limit
+     *
+     * @param sql        --源SQL
+     * @param columns    --排序键列
+     * @param descending --是否降序
+     * @param seek       --是否带定位条件，首页为false
+     * @return SQL串
+     * @see [相关类/方法](可选)
+     * @since [产品/模块版本](可选)
+     */
+    String getSeekString(String sql, String[] columns, boolean descending, boolean seek);
 }
@@ -35,4 +35,23 @@ public class DB2Dialect extends AbstractDialect {
                 .append(" order by rownumber_");
         return pagingSelect.toString();
     }
+
+    /**
+     * 封装SQL，键集分页
+     *
+     * @param sql        --源SQL
+     * @param columns    --排序键列
+     * @param descending --是否降序
+     * @param seek       --是否带定位条件
+     * @return SQL串
+     */
+    public String getSeekString(String sql, String[] columns, boolean descending, boolean seek) {
+        StringBuilder pagingSelect = new StringBuilder(sql.length() + 200).append("select * from ( ").append(sql)
+                .append(" ) as seek_");
+        if (seek) {
+            pagingSelect.append(" where ").append(getSeekPredicate(columns, descending));
+        }
+        return pagingSelect.append(getSeekOrderBy(columns, descending)).append(" fetch first :_limit rows only")
+                .toString();
+    }
 }
@@ -30,4 +30,22 @@ public class InformixDialect extends AbstractDialect {
                 .append(sql).append(")");
         return pagingSelect.toString();
     }
+
+    /**
+     * 封装SQL，键集分页
+     *
+     * @param sql        --源SQL
+     * @param columns    --排序键列
+     * @param descending --是否降序
+     * @param seek       --是否带定位条件
+     * @return SQL串
+     */
+    public String getSeekString(String sql, String[] columns, boolean descending, boolean seek) {
+        StringBuilder pagingSelect = new StringBuilder(sql.length() + 200).append("select first :_limit * from (")
+                .append(sql).append(") seek_");
+        if (seek) {
+            pagingSelect.append(" where ").append(getSeekPredicate(columns, descending));
+        }
+        return pagingSelect.append(getSeekOrderBy(columns, descending)).toString();
+    }
 }
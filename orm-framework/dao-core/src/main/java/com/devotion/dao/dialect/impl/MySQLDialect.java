@@ -27,4 +27,36 @@ public class MySQLDialect extends AbstractDialect {
     public String getLimitString(String sql) {
         return new StringBuffer(sql.length() + 20).append(sql).append(" limit :_offset, :_limit").toString();
     }
+
+    /**
+     * 封装SQL，键集分页，定位条件使用行值比较
+     *
+     * @param sql        --源SQL
+     * @param columns    --排序键列
+     * @param descending --是否降序
+     * @param seek       --是否带定位条件
+     * @return SQL串
+     */
+    @Override
+    public String getSeekString(String sql, String[] columns, boolean descending, boolean seek) {
+        StringBuilder pagingSelect = new StringBuilder(sql.length() + 100).append("select * from (").append(sql)
+                .append(") seek_");
+        if (seek) {
+            pagingSelect.append(" where ");
+            if (columns.length == 1) {
+                pagingSelect.append(columns[0]);
+            } else {
+                pagingSelect.append('(').append(String.join(", ", columns)).append(')');
+            }
+            pagingSelect.append(descending ? " < " : " > ").append('(');
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) {
+                    pagingSelect.append(", ");
+                }
+                pagingSelect.append(':').append(SEEK_PARAM).append(i);
+            }
+            pagingSelect.append(')');
+        }
+        return pagingSelect.append(getSeekOrderBy(columns, descending)).append(" limit :_limit").toString();
+    }
 }
@@ -35,4 +35,24 @@ public class OracleDialect extends AbstractDialect {
         return new StringBuffer(sql.length() + 100).append("select * from (select t.*, ROWNUM rn from (").append(sql)
                 .append(") t where ROWNUM <= (:_offset + :_limit)) tb where rn > :_offset").toString();
     }
+
+    /**
+     * 封装SQL，键集分页
+     *
+     * @param sql        --源SQL
+     * @param columns    --排序键列
+     * @param descending --是否降序
+     * @param seek       --是否带定位条件
+     * @return SQL串
+     */
+    @Override
+    public String getSeekString(String sql, String[] columns, boolean descending, boolean seek) {
+        StringBuilder pagingSelect = new StringBuilder(sql.length() + 200).append("select * from (select * from (")
+                .append(sql).append(") seek_");
+        if (seek) {
+            pagingSelect.append(" where ").append(getSeekPredicate(columns, descending));
+        }
+        return pagingSelect.append(getSeekOrderBy(columns, descending)).append(") where ROWNUM <= :_limit")
+                .toString();
+    }
 }
@@ -8,9 +8,13 @@ import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 
 import com.devotion.dao.resource.parse.SqlBean;
+import com.devotion.rws.ReadDataSourceContext;
+import com.devotion.rws.URFConstant;
 import com.devotion.rws.factory.support.DataSourceFactory;
 import com.devotion.rws.schema.config.DsConfig;
 import com.devotion.rws.schema.config.DsGroupConfig;
+import com.devotion.rws.selector.IDataSourceSelector;
+import com.devotion.rws.selector.ReplicaProbe;
 
 /**
  * 分组数据源，当分库路由结束之后，会路由出一个数据源，然后判断该数据是否GroupDataSource， 如果是说明基于读写分离数据架构
@@ -32,6 +36,36 @@ public class GroupDataSource extends DataSourceAware implements IGroupDataSource
      */
     private int period;
 
+    /**
+     * 读库复制延迟上限（毫秒），小于等于0表示不限制
+     */
+    private long maxLagMillis;
+
+    /**
+     * 写库后读操作粘滞在写库的时间（毫秒），小于等于0表示不粘滞
+     */
+    private long stickyMillis;
+
+    /**
+     * 每个连接缓存的预编译语句个数，小于等于0表示不缓存
+     */
+    private int statementCacheSize = URFConstant.STATEMENT_CACHE_SIZE;
+
+    /**
+     * 读库熔断的慢查询耗时（毫秒），小于等于0时使用默认值
+     */
+    private long slowQueryMillis;
+
+    /**
+     * 复制延迟探测，为null时使用默认探测
+     */
+    private ReplicaProbe replicaProbe;
+
+    /**
+     * 数据源选择器，为null时使用默认选择器
+     */
+    private IDataSourceSelector dataSourceSelector;
+
     /**
      * 数据源工厂
      */
@@ -51,20 +85,22 @@ public class GroupDataSource extends DataSourceAware implements IGroupDataSource
             try {
                 /** 获取读数据源 */
                 resultDataSource = dataSourceFactory.getRoDataSource(sqlBean.getDsName());
-                logger.info("Fetching R-DataSource [{}:{}]", resultDataSource.getName(),
-                        resultDataSource.getRefDataSource());
-                /** 读库列表没有可用库时，在写库上进行操作 */
+                /** 读库列表没有可用库（或延迟均超限）时，在写库上进行操作 */
                 if (resultDataSource == null) { //
                     resultDataSource = dataSourceFactory.getWrDataSource();
                     logger.info("R-DataSource is null ,current datasource convert to RW-DataSource [{}:{}]",
                             resultDataSource.getName(), resultDataSource);
+                } else {
+                    logger.info("Fetching R-DataSource [{}:{}]", resultDataSource.getName(),
+                            resultDataSource.getRefDataSource());
                 }
             } catch (IllegalAccessException e) {
                 logger.warn("Can't get an available Reading DataSource.", e);
             }
         } else {
-            /** 获取写数据源 */
+            /** 获取写数据源，并标记当前线程写过库 */
             resultDataSource = dataSourceFactory.getWrDataSource();
+            ReadDataSourceContext.markWrite();
             logger.info("Fetching WR-DataSource [{}:{}]", resultDataSource.getName(), resultDataSource);
         }
         if (resultDataSource != null) {
@@ -97,12 +133,72 @@ public class GroupDataSource extends DataSourceAware implements IGroupDataSource
         this.period = period;
     }
 
+    /**
+     * 设置读库复制延迟上限
+     *
+     * @param maxLagMillis 复制延迟上限（毫秒），小于等于0表示不限制
+     */
+    public void setMaxLagMillis(long maxLagMillis) {
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    /**
+     * 设置写库后读操作粘滞在写库的时间
+     *
+     * @param stickyMillis 粘滞时间（毫秒），小于等于0表示不粘滞
+     */
+    public void setStickyMillis(long stickyMillis) {
+        this.stickyMillis = stickyMillis;
+    }
+
+    /**
+     * 设置每个连接缓存的预编译语句个数
+     *
+     * @param statementCacheSize 预编译语句缓存个数，小于等于0表示不缓存
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * 设置读库熔断的慢查询耗时
+     *
+     * @param slowQueryMillis 慢查询耗时（毫秒），小于等于0时使用默认值
+     */
+    public void setSlowQueryMillis(long slowQueryMillis) {
+        this.slowQueryMillis = slowQueryMillis;
+    }
+
+    /**
+     * 设置复制延迟探测
+     *
+     * @param replicaProbe 复制延迟探测
+     */
+    public void setReplicaProbe(ReplicaProbe replicaProbe) {
+        this.replicaProbe = replicaProbe;
+    }
+
+    /**
+     * 设置数据源选择器
+     *
+     * @param dataSourceSelector 数据源选择器
+     */
+    public void setDataSourceSelector(IDataSourceSelector dataSourceSelector) {
+        this.dataSourceSelector = dataSourceSelector;
+    }
+
     /**
      * 初始化数据源工厂
      */
     private void initDataSourceFactory() {
         if (dataSourceFactory == null && dataSourceGroup != null) {
             dataSourceFactory = new DataSourceFactory(dataSourceGroup, period);
+            dataSourceFactory.setMaxLagMillis(maxLagMillis);
+            dataSourceFactory.setStickyMillis(stickyMillis);
+            dataSourceFactory.setStatementCacheSize(statementCacheSize);
+            dataSourceFactory.setSlowQueryMillis(slowQueryMillis);
+            dataSourceFactory.setReplicaProbe(replicaProbe);
+            dataSourceFactory.setDataSourceSelector(dataSourceSelector);
         }
     }
 
@@ -0,0 +1,171 @@
+package com.devotion.dao.pagination;
+
+/**
+ * 功能描述： 键集分页bean
+ * <p>
+ * 按组合唯一、非空的排序键翻页：记录上一页最后一行的键值，下一页从该键值之后开始查询，
+ * 不跳过前面的记录，深翻页与首页耗时相同。只支持顺序翻页，查询后键值、当前页与是否有下一页自动更新，
+ * 同一对象连续查询即依次得到后续各页。总行数默认不查询，需要时只在总行数未知时查询一次。
+ */
+public class SeekPagination extends Pagination {
+
+    /**
+     * serialVersionUID
+     */
+    private static final long serialVersionUID = -3527012741536283694L;
+
+    /**
+     * 排序键列
+     */
+    private final String[] columns;
+
+    /**
+     * 是否降序
+     */
+    private final boolean descending;
+
+    /**
+     * 上一页最后一行的键值，首页为null
+     */
+    private Object[] lastKey;
+
+    /**
+     * 是否有下一页
+     */
+    private boolean hasNext = true;
+
+    /**
+     * 是否查询总行数
+     */
+    private boolean countRequired;
+
+    /**
+     * 构造方法，升序
+     *
+     * @param pageSize 每页显示条数
+     * @param columns  排序键列
+     */
+    public SeekPagination(int pageSize, String... columns) {
+        this(pageSize, false, columns);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param pageSize   每页显示条数
+     * @param descending 是否降序
+     * @param columns    排序键列
+     */
+    public SeekPagination(int pageSize, boolean descending, String... columns) {
+        super(pageSize, 1);
+        if (columns == null || columns.length == 0) {
+            throw new IllegalArgumentException("Seek pagination requires at least one sort column.");
+        }
+        this.columns = columns.clone();
+        this.descending = descending;
+    }
+
+    /**
+     * 获取排序键列
+     *
+     * @return 排序键列
+     */
+    public String[] getColumns() {
+        return columns.clone();
+    }
+
+    /**
+     * 是否降序
+     *
+     * @return 是否降序
+     */
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * 获取上一页最后一行的键值
+     *
+     * @return 键值，首页为null
+     */
+    public Object[] getLastKey() {
+        return lastKey == null ? null : lastKey.clone();
+    }
+
+    /**
+     * 设置上一页最后一行的键值，用于无状态的请求间恢复翻页位置
+     *
+     * @param lastKey 键值，按排序键列顺序，null表示从首页开始
+     */
+    public void setLastKey(Object... lastKey) {
+        if (lastKey != null && lastKey.length != columns.length) {
+            throw new IllegalArgumentException("Seek key length " + lastKey.length + " does not match "
+                    + columns.length + " sort columns.");
+        }
+        this.lastKey = lastKey == null ? null : lastKey.clone();
+    }
+
+    /**
+     * 是否有下一页
+     *
+     * @return 是否有下一页
+     */
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    /**
+     * 设置是否有下一页
+     *
+     * @param hasNext 是否有下一页
+     */
+    public void setHasNext(boolean hasNext) {
+        this.hasNext = hasNext;
+    }
+
+    /**
+     * 是否查询总行数
+     *
+     * @return 是否查询总行数
+     */
+    public boolean isCountRequired() {
+        return countRequired;
+    }
+
+    /**
+     * 设置是否查询总行数，总行数已知时不再查询
+     *
+     * @param countRequired 是否查询总行数
+     */
+    public void setCountRequired(boolean countRequired) {
+        this.countRequired = countRequired;
+    }
+
+    /**
+     * 设置总行数，键集分页不按总行数校正当前页
+     *
+     * @param totalRows 总行数
+     */
+    @Override
+    public void setTotalRows(int totalRows) {
+        int currentPage = getCurrentPage();
+        super.setTotalRows(totalRows);
+        setCurrentPage(currentPage);
+    }
+
+    /**
+     * 记录本页查询结果，当前页为刚返回的页，键值定位到本页最后一行
+     *
+     * @param key     本页最后一行的键值，本页为空时为null
+     * @param hasNext 是否有下一页
+     */
+    public void advance(Object[] key, boolean hasNext) {
+        if (key != null) {
+            if (this.lastKey != null) {
+                setCurrentPage(getCurrentPage() + 1);
+            }
+            this.lastKey = key;
+        }
+        this.hasNext = hasNext;
+    }
+}
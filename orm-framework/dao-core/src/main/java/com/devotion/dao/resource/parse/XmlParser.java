@@ -2,6 +2,7 @@ package com.devotion.dao.resource.parse;
 
 import com.devotion.dao.constants.ExceptionType;
 import com.devotion.dao.exception.BaseException;
+import com.devotion.dao.support.sql.SqlTemplate;
 import org.dom4j.Document;
 import org.dom4j.Element;
 import org.dom4j.io.SAXReader;
@@ -160,10 +161,28 @@ public class XmlParser {
                 /** 读取SQL语句内容 */
                 String sql = element.getTextTrim();
                 sqlMapResult.put(appendSqlId(namespace, id), new SqlBean(id, isRead, sql, dsName, dbType));
+                classify(appendSqlId(namespace, id), sql);
             }
         }
     }
 
+    /**
+     * 加载时预先分类、编译SQL模板，模板有误时只记录日志，首次执行时再抛出异常
+     *
+     * @param sqlId SQLID
+     * @param sql   SQL语句内容
+     */
+    private void classify(String sqlId, String sql) {
+        if (sql == null || sql.isEmpty()) {
+            return;
+        }
+        try {
+            SqlTemplate.of(sql);
+        } catch (RuntimeException e) {
+            logger.warn("SqlMap template compile error : " + sqlId, e);
+        }
+    }
+
     /**
      * namespace和SqlID连接成字符串
      *
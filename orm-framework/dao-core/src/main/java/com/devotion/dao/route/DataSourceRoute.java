@@ -1,5 +1,7 @@
 package com.devotion.dao.route;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import javax.sql.DataSource;
@@ -55,6 +57,36 @@ public abstract class DataSourceRoute {
 		return determineDataSource(defaultDataSource, sqlBean);
 	}
 
+	/**
+	 * 
+	 * 功能描述: 分发查询的目标数据源<br>
+	 * 能路由到单个分库时只返回该分库，否则返回全部分库，未配置分库时返回默认数据源
+	 * 
+	 * @param parameter
+	 *            分库参数
+	 * @param sqlBean
+	 *            定义的SQL映射对象
+	 * @return 数据源列表
+	 */
+	protected List<DataSource> routeDataSources(Object parameter, SqlBean sqlBean) {
+		List<DataSource> dataSources = new ArrayList<>();
+		if (route != null) {
+			DataSource routeDataSource = route.route(parameter);
+			if (routeDataSource != null) {
+				dataSources.add(determineDataSource(routeDataSource, sqlBean));
+				return dataSources;
+			}
+			for (DataSource dataSource : route.getDataSources()) {
+				dataSources.add(determineDataSource(dataSource, sqlBean));
+			}
+		}
+		if (dataSources.isEmpty()) {
+			dataSources.add(determineDataSource(defaultDataSource, sqlBean));
+		}
+		logger.debug("Route dataSources [{}]", dataSources);
+		return dataSources;
+	}
+
 	/**
 	 * 
 	 * 功能描述: <br>
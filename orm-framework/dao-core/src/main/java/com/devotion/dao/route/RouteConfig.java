@@ -1,5 +1,8 @@
 package com.devotion.dao.route;
 
+import java.util.Collections;
+import java.util.List;
+
 import javax.sql.DataSource;
 
 /**
@@ -16,4 +19,14 @@ public interface RouteConfig {
 	 * @return 数据源
 	 */
 	DataSource route(Object parameter);
+
+	/**
+	 * 
+	 * 功能描述: 获取全部分库数据源，供无法路由到单个分库的查询分发
+	 * 
+	 * @return 数据源列表，按配置顺序去重
+	 */
+	default List<DataSource> getDataSources() {
+		return Collections.emptyList();
+	}
 }
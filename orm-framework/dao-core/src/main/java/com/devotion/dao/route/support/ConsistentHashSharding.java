@@ -1,20 +1,21 @@
 package com.devotion.dao.route.support;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
+import com.devotion.dao.route.support.bean.EntryNode;
 import com.devotion.dao.route.support.bean.VirtualNodeLocator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 
 import com.devotion.dao.utils.DaoUtils;
-import com.devotion.dao.constants.DaoConstants;
 import com.devotion.dao.route.RouteConfig;
-import com.googlecode.aviator.AviatorEvaluator;
-import com.devotion.dao.support.sql.FreeMakerParser;
 
 /**
  * 根据用户设定的路由规则进行数据库的路由选择，路由根据一致性hash进行选择
@@ -31,6 +32,11 @@ public class ConsistentHashSharding implements RouteConfig, InitializingBean {
      */
     private String routeParam;
 
+    /**
+     * 预编译的路由表达式
+     */
+    private RouteExpression routeExpression;
+
     /**
      * 虚拟节点配置Map
      */
@@ -41,6 +47,11 @@ public class ConsistentHashSharding implements RouteConfig, InitializingBean {
      */
     private VirtualNodeLocator virtualNodeLocator;
 
+    /**
+     * 键值哈希方式，默认与KETAMA兼容
+     */
+    private VirtualNodeLocator.HashMode hashMode = VirtualNodeLocator.HashMode.KETAMA;
+
     /**
      * 路由链
      */
@@ -54,21 +65,18 @@ public class ConsistentHashSharding implements RouteConfig, InitializingBean {
      */
     @Override
     public DataSource route(Object parameter) {
-        if (routeParam != null && parameter != null) {
+        if (routeExpression != null && parameter != null) {
             /** 将得到的参数值进行转换 */
             Object[] params = DaoUtils.convertToObjectArray(parameter);
             for (Object param : params) {
                 try {
-                    logger.debug("route parameter :" + param);
-                    Map<String, Object> env = new HashMap<>();
-                    env.put(DaoConstants.ROUTE, param);
-                    /** 通过Freemarker解析器进行解析参数值 */
-                    String expression = FreeMakerParser.process(routeParam, env);
-                    /** 通过表达式解析出相应的值 */
-                    expression = String.valueOf(AviatorEvaluator.execute(expression, env));
-                    logger.debug("nodeName is {}", virtualNodeLocator.getPrimary(expression).getNodeName());
+                    logger.debug("route parameter :{}", param);
+                    /** 通过预编译的路由表达式求出节点键值 */
+                    String expression = String.valueOf(routeExpression.evaluate(param));
+                    EntryNode node = virtualNodeLocator.getPrimary(expression);
+                    logger.debug("nodeName is {}", node.getNodeName());
                     /** 根据虚拟节点的名称获得对应的数据源 */
-                    return virtualNodeLocator.getPrimary(expression).getDataSource();
+                    return node.getDataSource();
                 } catch (Exception e) {
                     logger.warn("Datasource route exception occurred :{}", e);
                 }
@@ -77,6 +85,23 @@ public class ConsistentHashSharding implements RouteConfig, InitializingBean {
         return routeChain(chainRouteConfig, parameter);
     }
 
+    /**
+     * 获取全部节点的数据源，包括路由链中的数据源
+     *
+     * @return 数据源列表
+     */
+    @Override
+    public List<DataSource> getDataSources() {
+        Set<DataSource> dataSources = new LinkedHashSet<>();
+        if (virtualNodeLocator != null) {
+            dataSources.addAll(virtualNodeLocator.getNodeMapping().values());
+        }
+        if (chainRouteConfig != null) {
+            dataSources.addAll(chainRouteConfig.getDataSources());
+        }
+        return new ArrayList<>(dataSources);
+    }
+
     /**
      * 功能描述: <br>
      * 路由链传递
@@ -116,6 +141,25 @@ public class ConsistentHashSharding implements RouteConfig, InitializingBean {
         this.nodeMapping = nodeMapping;
     }
 
+    /**
+     * 功能描述: <br>
+     * 〈功能详细描述〉 设置键值哈希方式，FAST会改变已有数据的落点
+     *
+     * @param hashMode 键值哈希方式
+     */
+    public void setHashMode(VirtualNodeLocator.HashMode hashMode) {
+        this.hashMode = hashMode;
+    }
+
+    /**
+     * 获取虚拟节点定位，可用于节点变更
+     *
+     * @return 虚拟节点定位
+     */
+    public VirtualNodeLocator getVirtualNodeLocator() {
+        return virtualNodeLocator;
+    }
+
     /**
      * 功能描述: <br>
      * 〈功能详细描述〉 设置路由链配置
@@ -135,7 +179,10 @@ public class ConsistentHashSharding implements RouteConfig, InitializingBean {
      */
     @Override
     public void afterPropertiesSet() throws Exception {
-        virtualNodeLocator = new VirtualNodeLocator(nodeMapping);
+        virtualNodeLocator = new VirtualNodeLocator(nodeMapping, hashMode);
+        if (routeParam != null) {
+            routeExpression = RouteExpression.compile(routeParam);
+        }
     }
 
 }
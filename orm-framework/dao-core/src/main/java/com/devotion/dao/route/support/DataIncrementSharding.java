@@ -1,33 +1,42 @@
 package com.devotion.dao.route.support;
 
-import com.devotion.dao.constants.DaoConstants;
 import com.devotion.dao.constants.ExceptionType;
 import com.devotion.dao.exception.BaseException;
 import com.devotion.dao.route.RouteConfig;
 import com.devotion.dao.route.support.bean.Partition;
 import com.devotion.dao.route.support.bean.Shard;
-import com.devotion.dao.support.sql.FreeMakerParser;
 import com.devotion.dao.utils.DaoUtils;
-import com.googlecode.aviator.AviatorEvaluator;
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.io.xml.StaxDriver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.io.Resource;
 
 import javax.sql.DataSource;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 增量区间加数据散列路由<br>
+ * 分区配置编译为区间索引，路由为二分查找；可定时检查配置XML变更并原子替换
  */
-public class DataIncrementSharding implements RouteConfig, InitializingBean, BeanFactoryAware {
+public class DataIncrementSharding implements RouteConfig, InitializingBean, DisposableBean, BeanFactoryAware {
 
     /**
      * 日志
@@ -53,7 +62,32 @@ public class DataIncrementSharding implements RouteConfig, InitializingBean, Bea
     /**
      * 路由映射配置Obj
      */
-    private Map<String, Partition> partitionRoute = new HashMap<>();
+    private volatile Map<String, Partition> partitionRoute = new HashMap<>();
+
+    /**
+     * 预编译的路由规则与分区，保持配置顺序；重新加载时整体替换，路由中的线程继续使用旧的映射
+     */
+    private volatile Map<RouteExpression, Partition> compiledRoute = new LinkedHashMap<>();
+
+    /**
+     * 检查配置XML变更的间隔（毫秒），小于等于0时不自动重新加载
+     */
+    private long reloadIntervalMillis;
+
+    /**
+     * 上次加载时各配置XML的修改时间
+     */
+    private Map<String, Long> lastModified = new HashMap<>();
+
+    /**
+     * 配置XML变更检查线程
+     */
+    private ScheduledExecutorService reloadExecutor;
+
+    /**
+     * 分片引用的数据源
+     */
+    private final ConcurrentMap<String, DataSource> shardDataSources = new ConcurrentHashMap<>();
 
     /**
      * 路由链
@@ -77,9 +111,7 @@ public class DataIncrementSharding implements RouteConfig, InitializingBean, Bea
             Object[] params = DaoUtils.convertToObjectArray(parameter);
             /** 遍历分库参数与规则进行匹配 */
             for (Object param : params) {
-                logger.debug("route parameter :" + param);
-                Map<String, Object> env = new HashMap<>();
-                env.put(DaoConstants.ROUTE, param);
+                logger.debug("route parameter :{}", param);
 //                partitionRoute.entrySet().forEach((Entry<String, Partition> entry) -> {
 //                    try {
 //                        String rule = entry.getKey();
@@ -101,19 +133,15 @@ public class DataIncrementSharding implements RouteConfig, InitializingBean, Bea
 //                        logger.warn("Datasource route exception occurred :{}", e.getMessage());
 //                    }
 //                });
-                for (Entry<String, Partition> entry : partitionRoute.entrySet()) {
+                for (Entry<RouteExpression, Partition> entry : compiledRoute.entrySet()) {
                     try {
-                        String rule = entry.getKey();
-                        /** 支持Freemarker定义的规则 */
-                        String expression = FreeMakerParser.process(rule, env);
-                        if (expression != null) {
-                            logger.debug("parse express [" + expression + "]");
-                            /** 支持aviator定义的规则 */
-                            Long paramValue = (Long) AviatorEvaluator.execute(expression, env);
-                            Shard shard = entry.getValue().find(paramValue);
+                        /** 预编译的规则直接对参数求值 */
+                        Object paramValue = entry.getKey().evaluate(param);
+                        if (paramValue != null) {
+                            Shard shard = entry.getValue().find((Long) paramValue);
                             if (shard != null) {
                                 /** 满足规则对象的数据源 */
-                                DataSource dataSource = (DataSource) beanFactory.getBean(shard.getDataSourceRef());
+                                DataSource dataSource = getShardDataSource(shard.getDataSourceRef());
                                 logger.debug("route datasource {}", dataSource);
                                 return dataSource;
                             }
@@ -128,6 +156,40 @@ public class DataIncrementSharding implements RouteConfig, InitializingBean, Bea
         return routeChain(chainRouteConfig, parameter);
     }
 
+    /**
+     * 获取全部分片的数据源，包括路由链中的数据源
+     *
+     * @return 数据源列表
+     */
+    @Override
+    public List<DataSource> getDataSources() {
+        Set<DataSource> dataSources = new LinkedHashSet<>();
+        for (Partition partition : compiledRoute.values()) {
+            for (Shard shard : partition.getIndex().getShards()) {
+                dataSources.add(getShardDataSource(shard.getDataSourceRef()));
+            }
+        }
+        if (chainRouteConfig != null) {
+            dataSources.addAll(chainRouteConfig.getDataSources());
+        }
+        return new ArrayList<>(dataSources);
+    }
+
+    /**
+     * 获取分片引用的数据源，首次从Spring容器获取后缓存
+     *
+     * @param dataSourceRef 数据源引用
+     * @return 数据源
+     */
+    private DataSource getShardDataSource(String dataSourceRef) {
+        DataSource dataSource = shardDataSources.get(dataSourceRef);
+        if (dataSource == null) {
+            dataSource = shardDataSources.computeIfAbsent(dataSourceRef,
+                    ref -> (DataSource) beanFactory.getBean(ref));
+        }
+        return dataSource;
+    }
+
     /**
      * 功能描述: <br>
      * 路由链传递
@@ -150,13 +212,79 @@ public class DataIncrementSharding implements RouteConfig, InitializingBean, Bea
      */
     public void afterPropertiesSet() throws Exception {
         if (routeMapping != null) {
-            routeMapping.entrySet().forEach((Entry<String, Resource> entry) ->
-                    partitionRoute.put(entry.getKey(), parseRouteConfig(entry.getValue())));
-//            Iterator<Entry<String, Resource>> iterator = routeMapping.entrySet().iterator();
-//            while (iterator.hasNext()) {
-//                Entry<String, Resource> entry = iterator.next();
-//                partitionRoute.put(entry.getKey(), parseRouteConfig(entry.getValue()));
-//            }
+            reload();
+            if (reloadIntervalMillis > 0) {
+                reloadExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "dao-partition-reload");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                reloadExecutor.scheduleWithFixedDelay(this::reloadIfModified, reloadIntervalMillis,
+                        reloadIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * 重新加载分区配置XML<br>
+     * 新的分区在替换前完成解析与区间索引编译，替换为一次引用赋值，不阻塞正在路由的线程；
+     * 解析失败时抛出异常并保留原配置
+     */
+    public synchronized void reload() {
+        Map<String, Partition> partitions = new LinkedHashMap<>();
+        Map<RouteExpression, Partition> compiled = new LinkedHashMap<>();
+        Map<String, Long> modified = new HashMap<>();
+        for (Entry<String, Resource> entry : routeMapping.entrySet()) {
+            modified.put(entry.getKey(), lastModified(entry.getValue()));
+            Partition partition = parseRouteConfig(entry.getValue());
+            /** 替换前编译区间索引 */
+            partition.getIndex();
+            partitions.put(entry.getKey(), partition);
+            compiled.put(RouteExpression.compile(entry.getKey()), partition);
+        }
+        partitionRoute = partitions;
+        compiledRoute = compiled;
+        lastModified = modified;
+    }
+
+    /**
+     * 配置XML有变更时重新加载
+     */
+    private void reloadIfModified() {
+        try {
+            for (Entry<String, Resource> entry : routeMapping.entrySet()) {
+                if (lastModified(entry.getValue()) != lastModified.getOrDefault(entry.getKey(), -1L)) {
+                    logger.info("Partition config {} modified, reloading.", entry.getValue().getDescription());
+                    reload();
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Partition config reload failed, keep the current config.", e);
+        }
+    }
+
+    /**
+     * 获取配置XML的修改时间
+     *
+     * @param resource 文件资源
+     * @return 修改时间，无法获取时为-1
+     */
+    private static long lastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return -1L;
+        }
+    }
+
+    /**
+     * 停止配置XML变更检查
+     */
+    @Override
+    public void destroy() {
+        if (reloadExecutor != null) {
+            reloadExecutor.shutdownNow();
         }
     }
 
@@ -200,6 +328,15 @@ public class DataIncrementSharding implements RouteConfig, InitializingBean, Bea
         this.routeMapping = routeMapping;
     }
 
+    /**
+     * 设置检查配置XML变更的间隔，须在初始化前设置
+     *
+     * @param reloadIntervalMillis 检查间隔（毫秒），小于等于0时不自动重新加载
+     */
+    public void setReloadIntervalMillis(long reloadIntervalMillis) {
+        this.reloadIntervalMillis = reloadIntervalMillis;
+    }
+
     /**
      * 设置bean factory
      *
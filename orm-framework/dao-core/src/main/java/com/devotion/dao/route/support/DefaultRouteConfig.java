@@ -1,15 +1,15 @@
 package com.devotion.dao.route.support;
 
-import com.devotion.dao.constants.DaoConstants;
 import com.devotion.dao.route.RouteConfig;
-import com.devotion.dao.support.sql.FreeMakerParser;
 import com.devotion.dao.utils.DaoUtils;
-import com.googlecode.aviator.AviatorEvaluator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.sql.DataSource;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -27,6 +27,11 @@ public class DefaultRouteConfig implements RouteConfig {
      */
     private Map<String, DataSource> rules;
 
+    /**
+     * 预编译的规则与数据源的映射表，保持配置顺序
+     */
+    private Map<RouteExpression, DataSource> compiledRules = new LinkedHashMap<>();
+
     /**
      * 分库路由解析方法
      *
@@ -39,20 +44,14 @@ public class DefaultRouteConfig implements RouteConfig {
             Object[] params = DaoUtils.convertToObjectArray(parameter);
             /** 遍历分库参数与规则进行匹配 */
             for (Object param : params) {
-                logger.debug("route parameter :" + param);
-                Map<String, Object> env = new HashMap<>();
+                logger.debug("route parameter :{}", param);
                 if (param instanceof Map) {
-                    env.put(DaoConstants.ROUTE, param);
-                    for (Map.Entry<String, DataSource> entry : rules.entrySet()) {
-                        String rule = entry.getKey();
-                        /** 支持Freemarker定义的规则 */
-                        String expression = FreeMakerParser.process(rule, env);
-                        logger.debug("parse express [" + expression + "]");
-                        /** 支持aviator定义的规则 */
-                        if ((Boolean) AviatorEvaluator.execute(expression, env)) {
+                    for (Map.Entry<RouteExpression, DataSource> entry : compiledRules.entrySet()) {
+                        /** 预编译的规则直接对参数求值 */
+                        if (Boolean.TRUE.equals(entry.getKey().evaluate(param))) {
                             DataSource dataSource = entry.getValue();
-                            logger.debug("current route config : " + rule);
-                            logger.debug("current route dataSource : " + dataSource);
+                            logger.debug("current route config : {}", entry.getKey().getRule());
+                            logger.debug("current route dataSource : {}", dataSource);
                             /** 满足规则对象的数据源 */
                             return dataSource;
                         }
@@ -63,6 +62,16 @@ public class DefaultRouteConfig implements RouteConfig {
         return null;
     }
 
+    /**
+     * 获取全部分库数据源
+     *
+     * @return 规则对应的数据源
+     */
+    @Override
+    public List<DataSource> getDataSources() {
+        return new ArrayList<>(new LinkedHashSet<>(compiledRules.values()));
+    }
+
     /**
      * 设置规则
      *
@@ -70,5 +79,10 @@ public class DefaultRouteConfig implements RouteConfig {
      */
     public void setRules(Map<String, DataSource> rules) {
         this.rules = rules;
+        Map<RouteExpression, DataSource> compiled = new LinkedHashMap<>();
+        if (rules != null) {
+            rules.forEach((rule, dataSource) -> compiled.put(RouteExpression.compile(rule), dataSource));
+        }
+        this.compiledRules = compiled;
     }
 }
@@ -0,0 +1,322 @@
+package com.devotion.dao.route.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.PropertyAccessorFactory;
+
+import com.devotion.dao.constants.DaoConstants;
+import com.devotion.dao.support.sql.FreeMakerParser;
+import com.googlecode.aviator.AviatorEvaluator;
+import com.googlecode.aviator.Expression;
+
+import freemarker.template.Template;
+
+/**
+ * 预编译的路由表达式<br>
+ * 配置加载时编译一次：不含FreeMarker语法的规则直接编译为Aviator表达式，route.xxx属性路径改写为普通变量，
+ * 执行时按预先解析的路径从路由参数中取值，不再渲染模板与构建嵌套环境；含FreeMarker语法的规则预编译模板，
+ * 每次渲染后求值。取值均为不可变简单类型且规则只调用纯函数时，按取值记忆求值结果。
+ */
+public final class RouteExpression {
+
+    /**
+     * FreeMarker语法
+     */
+    private static final Pattern TEMPLATE_SYNTAX = Pattern.compile("\\$\\{|#\\{|</?#|\\[/?#");
+
+    /**
+     * 路由参数变量前缀
+     */
+    private static final String ROUTE_PREFIX = DaoConstants.ROUTE + ".";
+
+    /**
+     * 改写后的变量名前缀
+     */
+    private static final String VARIABLE_PREFIX = "_route_";
+
+    /**
+     * 记忆结果上限，超过时清空
+     */
+    private static final int MAX_MEMO_SIZE = 1024;
+
+    /**
+     * 记忆中的空值
+     */
+    private static final Object NULL = new Object();
+
+    /**
+     * 可记忆结果的纯函数
+     */
+    private static final Set<String> PURE_FUNCTIONS = new HashSet<>(Arrays.asList("long", "double", "str",
+            "string.length", "string.substring", "string.contains", "string.startsWith", "string.endsWith",
+            "string.indexOf", "string.split", "string.join", "string.replace_first", "string.replace_all",
+            "math.abs", "math.sqrt", "math.pow", "math.log", "math.log10", "math.sin", "math.cos", "math.tan",
+            "math.round"));
+
+    /**
+     * 原始规则
+     */
+    private final String rule;
+
+    /**
+     * 预编译模板，纯Aviator规则为null
+     */
+    private final Template template;
+
+    /**
+     * 预编译表达式，模板规则为null
+     */
+    private final Expression expression;
+
+    /**
+     * 变量对应的属性路径
+     */
+    private final String[][] paths;
+
+    /**
+     * 是否可记忆结果
+     */
+    private final boolean memoable;
+
+    /**
+     * 记忆结果
+     */
+    private final ConcurrentMap<Object, Object> memo = new ConcurrentHashMap<>();
+
+    /**
+     * 构造方法
+     *
+     * @param rule       原始规则
+     * @param template   预编译模板
+     * @param expression 预编译表达式
+     * @param paths      变量对应的属性路径
+     * @param memoable   是否可记忆结果
+     */
+    private RouteExpression(String rule, Template template, Expression expression, String[][] paths,
+                            boolean memoable) {
+        this.rule = rule;
+        this.template = template;
+        this.expression = expression;
+        this.paths = paths;
+        this.memoable = memoable;
+    }
+
+    /**
+     * 编译路由规则
+     *
+     * @param rule 路由规则（FreeMarker模板或Aviator表达式）
+     * @return 路由表达式
+     */
+    public static RouteExpression compile(String rule) {
+        List<String> variables = new ArrayList<>();
+        boolean[] pure = {true};
+        String rewritten = rewrite(rule, variables, pure);
+        if (TEMPLATE_SYNTAX.matcher(rule).find()) {
+            boolean memoable = pure[0] && !rule.contains(".now");
+            return new RouteExpression(rule, FreeMakerParser.compile(rule), null, new String[0][], memoable);
+        }
+        String[][] paths = new String[variables.size()][];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = variables.get(i).substring(ROUTE_PREFIX.length()).split("\\.");
+        }
+        return new RouteExpression(rule, null, AviatorEvaluator.compile(rewritten), paths, pure[0]);
+    }
+
+    /**
+     * 对路由参数求值
+     *
+     * @param param 路由参数
+     * @return 求值结果
+     */
+    public Object evaluate(Object param) {
+        if (template != null) {
+            return evaluateTemplate(param);
+        }
+        Object[] values = new Object[paths.length];
+        boolean cacheable = memoable;
+        for (int i = 0; i < paths.length; i++) {
+            values[i] = extract(param, paths[i]);
+            cacheable = cacheable && isImmutable(values[i]);
+        }
+        Object memoKey = null;
+        if (cacheable) {
+            memoKey = values.length == 1 ? (values[0] == null ? NULL : values[0]) : Arrays.asList(values);
+            Object cached = memo.get(memoKey);
+            if (cached != null) {
+                return cached == NULL ? null : cached;
+            }
+        }
+        Map<String, Object> env = new HashMap<>();
+        env.put(DaoConstants.ROUTE, param);
+        for (int i = 0; i < values.length; i++) {
+            env.put(VARIABLE_PREFIX + i, values[i]);
+        }
+        Object result = expression.execute(env);
+        if (cacheable) {
+            remember(memoKey, result);
+        }
+        return result;
+    }
+
+    /**
+     * 获取原始规则
+     *
+     * @return 原始规则
+     */
+    public String getRule() {
+        return rule;
+    }
+
+    /**
+     * 模板规则求值：渲染后按渲染结果记忆
+     *
+     * @param param 路由参数
+     * @return 求值结果
+     */
+    private Object evaluateTemplate(Object param) {
+        Map<String, Object> env = new HashMap<>();
+        env.put(DaoConstants.ROUTE, param);
+        String text = FreeMakerParser.process(template, env);
+        if (text == null) {
+            return null;
+        }
+        /** 渲染结果仍引用路由参数时，结果不只取决于渲染文本 */
+        boolean cacheable = memoable && !text.contains(DaoConstants.ROUTE);
+        if (cacheable) {
+            Object cached = memo.get(text);
+            if (cached != null) {
+                return cached == NULL ? null : cached;
+            }
+        }
+        Object result = AviatorEvaluator.execute(text, env);
+        if (cacheable) {
+            remember(text, result);
+        }
+        return result;
+    }
+
+    /**
+     * 记忆求值结果
+     *
+     * @param key    记忆键值
+     * @param result 求值结果
+     */
+    private void remember(Object key, Object result) {
+        if (memo.size() >= MAX_MEMO_SIZE) {
+            memo.clear();
+        }
+        memo.put(key, result == null ? NULL : result);
+    }
+
+    /**
+     * 按属性路径从路由参数取值
+     *
+     * @param param 路由参数
+     * @param path  属性路径
+     * @return 属性值
+     */
+    private static Object extract(Object param, String[] path) {
+        Object value = param;
+        for (String name : path) {
+            if (value == null) {
+                return null;
+            }
+            if (value instanceof Map) {
+                value = ((Map<?, ?>) value).get(name);
+            } else {
+                value = PropertyAccessorFactory.forBeanPropertyAccess(value).getPropertyValue(name);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 判断取值是否可作为记忆键值
+     *
+     * @param value 取值
+     * @return 是否为不可变简单类型
+     */
+    private static boolean isImmutable(Object value) {
+        return value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+                || value instanceof Character || value instanceof Enum;
+    }
+
+    /**
+     * 改写规则：route.xxx路径替换为普通变量，同时检查函数调用是否均为纯函数
+     *
+     * @param rule      原始规则
+     * @param variables 收集的属性路径，下标即改写后的变量序号
+     * @param pure      输出参数，是否只调用纯函数且不直接引用route
+     * @return 改写后的规则
+     */
+    private static String rewrite(String rule, List<String> variables, boolean[] pure) {
+        StringBuilder out = new StringBuilder(rule.length());
+        int length = rule.length();
+        char quote = 0;
+        int i = 0;
+        while (i < length) {
+            char c = rule.charAt(i);
+            if (quote != 0) {
+                out.append(c);
+                if (c == '\\' && i + 1 < length) {
+                    out.append(rule.charAt(i + 1));
+                    i += 2;
+                    continue;
+                }
+                if (c == quote) {
+                    quote = 0;
+                }
+                i++;
+                continue;
+            }
+            if (c == '\'' || c == '"') {
+                quote = c;
+                out.append(c);
+                i++;
+                continue;
+            }
+            char prev = i == 0 ? ' ' : rule.charAt(i - 1);
+            if (Character.isJavaIdentifierStart(c) && !Character.isJavaIdentifierPart(prev) && prev != '.') {
+                int j = i;
+                while (j < length && (Character.isJavaIdentifierPart(rule.charAt(j)) || rule.charAt(j) == '.')) {
+                    j++;
+                }
+                String name = rule.substring(i, j);
+                int k = j;
+                while (k < length && Character.isWhitespace(rule.charAt(k))) {
+                    k++;
+                }
+                if (k < length && rule.charAt(k) == '(') {
+                    pure[0] = pure[0] && PURE_FUNCTIONS.contains(name);
+                    out.append(name);
+                } else if (name.startsWith(ROUTE_PREFIX) && !name.endsWith(".")) {
+                    int index = variables.indexOf(name);
+                    if (index < 0) {
+                        index = variables.size();
+                        variables.add(name);
+                    }
+                    out.append(VARIABLE_PREFIX).append(index);
+                } else {
+                    if (DaoConstants.ROUTE.equals(name)) {
+                        pure[0] = false;
+                    }
+                    out.append(name);
+                }
+                i = j;
+                continue;
+            }
+            out.append(c);
+            i++;
+        }
+        return out.toString();
+    }
+}
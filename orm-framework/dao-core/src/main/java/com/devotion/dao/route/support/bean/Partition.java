@@ -5,9 +5,11 @@ import java.util.List;
 import com.thoughtworks.xstream.annotations.XStreamAlias;
 import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
 import com.thoughtworks.xstream.annotations.XStreamImplicit;
+import com.thoughtworks.xstream.annotations.XStreamOmitField;
 
 /**
  * 分区定义<br>
+ * 分区组与分片配置加载后编译为不可变的区间索引，查找为二分定位；分区组配置变化后下次查找时重新编译
  */
 @XStreamAlias("partition")
 public class Partition {
@@ -21,6 +23,10 @@ public class Partition {
 	@XStreamImplicit
 	private List<ShardGroup> shardGroups;
 
+	/** 区间索引，首次查找或分区组配置变化后编译 */
+	@XStreamOmitField
+	private volatile PartitionIndex index;
+
 	/**
 	 * 根据传入参数定位所属分区
 	 * 
@@ -29,13 +35,21 @@ public class Partition {
 	 * @return 分区
 	 */
 	public Shard find(long paramValue) {
-		for (ShardGroup shardGroup : shardGroups) {
-			Shard shard = shardGroup.contains(paramValue);
-			if (shard != null) {
-				return shard;
-			}
+		return getIndex().find(paramValue);
+	}
+
+	/**
+	 * 获取区间索引，未编译或分区组配置已变化时按当前配置编译
+	 * 
+	 * @return 区间索引
+	 */
+	public PartitionIndex getIndex() {
+		PartitionIndex current = index;
+		if (current == null || !current.isCurrent(shardGroups)) {
+			current = PartitionIndex.compile(shardGroups);
+			index = current;
 		}
-		return null;
+		return current;
 	}
 
 	/**
@@ -90,5 +104,6 @@ public class Partition {
 	 */
 	public void setShardGroups(List<ShardGroup> shardGroups) {
 		this.shardGroups = shardGroups;
+		this.index = null;
 	}
 }
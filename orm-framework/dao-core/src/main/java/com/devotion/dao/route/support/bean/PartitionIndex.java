@@ -0,0 +1,281 @@
+package com.devotion.dao.route.support.bean;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 分区的区间索引<br>
+ * 由分区配置一次性编译，创建后不可变。各分区组的[start, end)区间按边界切分为互不重叠的有序区段，
+ * 每个区段记录覆盖它的分区组（保持配置顺序），查找时二分定位区段，再按取模结果直接取得分片，
+ * 与逐个分区组、逐个分片匹配的结果一致
+ */
+public final class PartitionIndex {
+
+    /**
+     * 取模结果使用数组查找的分区哈希上限，超过时使用Map
+     */
+    private static final int MAX_ARRAY_HASH = 1 << 16;
+
+    /**
+     * 各区段的起始位置，升序
+     */
+    private final long[] starts;
+
+    /**
+     * 各区段的结束位置（不含）
+     */
+    private final long[] ends;
+
+    /**
+     * 覆盖各区段的分区组，按配置顺序
+     */
+    private final Group[][] groups;
+
+    /**
+     * 全部分片，按配置顺序
+     */
+    private final List<Shard> shards;
+
+    /**
+     * 编译时的分区组配置
+     */
+    private final List<ShardGroup> shardGroups;
+
+    /**
+     * 编译时各分区组的版本，按配置顺序
+     */
+    private final int[] versions;
+
+    /**
+     * 构造方法
+     *
+     * @param starts      区段起始位置
+     * @param ends        区段结束位置
+     * @param groups      覆盖各区段的分区组
+     * @param shards      全部分片
+     * @param shardGroups 分区组配置
+     * @param versions    各分区组的版本
+     */
+    private PartitionIndex(long[] starts, long[] ends, Group[][] groups, List<Shard> shards,
+                           List<ShardGroup> shardGroups, int[] versions) {
+        this.starts = starts;
+        this.ends = ends;
+        this.groups = groups;
+        this.shards = shards;
+        this.shardGroups = shardGroups;
+        this.versions = versions;
+    }
+
+    /**
+     * 编译分区配置
+     *
+     * @param shardGroups 分区组配置
+     * @return 区间索引
+     */
+    public static PartitionIndex compile(List<ShardGroup> shardGroups) {
+        List<Group> compiled = new ArrayList<>();
+        Set<Shard> allShards = new LinkedHashSet<>();
+        TreeSet<Long> bounds = new TreeSet<>();
+        int[] versions = new int[shardGroups == null ? 0 : shardGroups.size()];
+        if (shardGroups != null) {
+            int i = 0;
+            for (ShardGroup shardGroup : shardGroups) {
+                /** 先取版本再读取配置，编译期间的修改会在下次查找时重新编译 */
+                versions[i++] = shardGroup.getVersion();
+                if (shardGroup.getShards() != null) {
+                    allShards.addAll(shardGroup.getShards());
+                }
+                Group group = Group.compile(shardGroup);
+                if (group != null) {
+                    compiled.add(group);
+                    bounds.add(group.start);
+                    bounds.add(group.end);
+                }
+            }
+        }
+        /** 相邻边界构成区段，只保留被至少一个分区组覆盖的区段 */
+        List<long[]> segments = new ArrayList<>();
+        List<Group[]> segmentGroups = new ArrayList<>();
+        Long previous = null;
+        for (Long bound : bounds) {
+            if (previous != null) {
+                List<Group> covering = new ArrayList<>();
+                for (Group group : compiled) {
+                    if (group.start <= previous && bound <= group.end) {
+                        covering.add(group);
+                    }
+                }
+                if (!covering.isEmpty()) {
+                    segments.add(new long[]{previous, bound});
+                    segmentGroups.add(covering.toArray(new Group[covering.size()]));
+                }
+            }
+            previous = bound;
+        }
+        long[] starts = new long[segments.size()];
+        long[] ends = new long[segments.size()];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = segments.get(i)[0];
+            ends[i] = segments.get(i)[1];
+        }
+        return new PartitionIndex(starts, ends, segmentGroups.toArray(new Group[segmentGroups.size()][]),
+                Collections.unmodifiableList(new ArrayList<>(allShards)), shardGroups, versions);
+    }
+
+    /**
+     * 判断索引是否仍与分区组配置一致<br>
+     * 分区组列表被替换、列表长度变化或任一分区组的区间、哈希、分片列表被重新设置时不一致；
+     * 分片自身的哈希串及列表内容的原地修改不做跟踪，这些配置在重新加载时整体替换
+     *
+     * @param current 当前分区组配置
+     * @return 一致时为true
+     */
+    boolean isCurrent(List<ShardGroup> current) {
+        if (current != shardGroups || (current != null && current.size() != versions.length)) {
+            return false;
+        }
+        for (int i = 0; i < versions.length; i++) {
+            if (current.get(i).getVersion() != versions[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 查找参数值所属的分片
+     *
+     * @param paramValue 分区值
+     * @return 分片，未匹配时为null
+     */
+    public Shard find(long paramValue) {
+        int segment = Arrays.binarySearch(starts, paramValue);
+        if (segment < 0) {
+            /** 未命中起始位置时取前一个区段 */
+            segment = -segment - 2;
+        }
+        if (segment < 0 || paramValue >= ends[segment]) {
+            return null;
+        }
+        for (Group group : groups[segment]) {
+            Shard shard = group.find(paramValue);
+            if (shard != null) {
+                return shard;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 获取全部分片
+     *
+     * @return 不可修改的分片列表
+     */
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    /**
+     * 编译后的分区组
+     */
+    private static final class Group {
+
+        /**
+         * 起始位置
+         */
+        private final long start;
+
+        /**
+         * 结束位置（不含）
+         */
+        private final long end;
+
+        /**
+         * 分区哈希
+         */
+        private final int shardHash;
+
+        /**
+         * 取模结果到分片的数组，下标为取模结果加shardHash - 1，分区哈希过大时为null
+         */
+        private final Shard[] residues;
+
+        /**
+         * 取模结果到分片的映射，分区哈希较小时为null
+         */
+        private final Map<Long, Shard> residueMap;
+
+        /**
+         * 构造方法
+         *
+         * @param start      起始位置
+         * @param end        结束位置
+         * @param shardHash  分区哈希
+         * @param residues   取模结果到分片的数组
+         * @param residueMap 取模结果到分片的映射
+         */
+        private Group(long start, long end, int shardHash, Shard[] residues, Map<Long, Shard> residueMap) {
+            this.start = start;
+            this.end = end;
+            this.shardHash = shardHash;
+            this.residues = residues;
+            this.residueMap = residueMap;
+        }
+
+        /**
+         * 编译分区组，区间为空或分区哈希无效时返回null
+         *
+         * @param shardGroup 分区组配置
+         * @return 编译后的分区组
+         */
+        private static Group compile(ShardGroup shardGroup) {
+            long start = shardGroup.getStart();
+            long end = shardGroup.getEnd();
+            int shardHash = shardGroup.getShardHash();
+            if (start >= end || shardHash <= 0 || shardGroup.getShards() == null) {
+                return null;
+            }
+            Map<Long, Shard> residueMap = new HashMap<>();
+            for (Shard shard : shardGroup.getShards()) {
+                for (String fragment : shard.getHash().split(",")) {
+                    try {
+                        long residue = Long.parseLong(fragment);
+                        /** 与按字符串比较取模结果一致，"01"、"+1"等写法不匹配；同一取模结果以配置中靠前的分片为准 */
+                        if (fragment.equals(String.valueOf(residue)) && Math.abs(residue) < shardHash) {
+                            residueMap.putIfAbsent(residue, shard);
+                        }
+                    } catch (NumberFormatException e) {
+                        /** 非数字的哈希串（含前后空白）不会匹配任何取模结果 */
+                    }
+                }
+            }
+            if (shardHash > MAX_ARRAY_HASH) {
+                return new Group(start, end, shardHash, null, residueMap);
+            }
+            Shard[] residues = new Shard[shardHash * 2 - 1];
+            residueMap.forEach((residue, shard) -> residues[(int) (residue + shardHash - 1)] = shard);
+            return new Group(start, end, shardHash, residues, null);
+        }
+
+        /**
+         * 按取模结果查找分片
+         *
+         * @param paramValue 分区值
+         * @return 分片，未匹配时为null
+         */
+        private Shard find(long paramValue) {
+            long residue = paramValue % shardHash;
+            if (residues != null) {
+                return residues[(int) (residue + shardHash - 1)];
+            }
+            return residueMap.get(residue);
+        }
+    }
+}
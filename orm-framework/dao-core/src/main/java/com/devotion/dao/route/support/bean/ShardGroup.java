@@ -46,6 +46,14 @@ public class ShardGroup {
 	@XStreamOmitField
 	private long end;
 
+	/** 起止位置是否已计算 */
+	@XStreamOmitField
+	private volatile boolean computed;
+
+	/** 配置版本，区间、哈希或分片列表被重新设置时递增，用于判断区间索引是否需要重新编译 */
+	@XStreamOmitField
+	private volatile int version;
+
 	/** 分区 */
 	@XStreamImplicit
 	private List<Shard> shards;
@@ -64,6 +72,16 @@ public class ShardGroup {
 	private void init() {
 		this.end = compute(this.endArea);
 		this.start = compute(this.startArea);
+		this.computed = true;
+	}
+
+	/**
+	 * 按需计算分区位置，XStream加载时不经过构造函数，首次使用时计算一次
+	 */
+	private void ensureComputed() {
+		if (!computed) {
+			init();
+		}
 	}
 
 	/**
@@ -74,7 +92,7 @@ public class ShardGroup {
 	 * @return 分区对象
 	 */
 	public Shard contains(long paramValue) {
-		init();
+		ensureComputed();
 		/** 判断是否落在区间内，结果为真则继续判断包含在哪个分区内 */
 		if (start <= paramValue && paramValue < end) {
 			for (Shard shard : shards) {
@@ -111,6 +129,7 @@ public class ShardGroup {
 	 */
 	public void setShards(List<Shard> shards) {
 		this.shards = shards;
+		this.version++;
 	}
 
 	/**
@@ -138,6 +157,7 @@ public class ShardGroup {
 	 */
 	public void setShardHash(int shardHash) {
 		this.shardHash = shardHash;
+		this.version++;
 	}
 
 	/**
@@ -165,6 +185,8 @@ public class ShardGroup {
 	 */
 	public void setStartArea(String startArea) {
 		this.startArea = startArea;
+		this.computed = false;
+		this.version++;
 	}
 
 	/**
@@ -192,6 +214,17 @@ public class ShardGroup {
 	 */
 	public void setEndArea(String endArea) {
 		this.endArea = endArea;
+		this.computed = false;
+		this.version++;
+	}
+
+	/**
+	 * 获取配置版本
+	 * 
+	 * @return 配置版本
+	 */
+	int getVersion() {
+		return version;
 	}
 
 	/**
@@ -206,7 +239,7 @@ public class ShardGroup {
 			return Long.valueOf(value);
 		} catch (NumberFormatException e) {
 			if (value != null) {
-				String subIndex = value.substring(0, this.endArea.toUpperCase().indexOf("W"));
+				String subIndex = value.substring(0, value.toUpperCase().indexOf("W"));
 				return Long.valueOf(subIndex) * W1;
 			}
 		}
@@ -246,6 +279,7 @@ public class ShardGroup {
 	 * @since [产品/模块版本](可选)
 	 */
 	public long getStart() {
+		ensureComputed();
 		return start;
 	}
 
@@ -260,7 +294,9 @@ public class ShardGroup {
 	 * @since [产品/模块版本](可选)
 	 */
 	public void setStart(long start) {
+		ensureComputed();
 		this.start = start;
+		this.version++;
 	}
 
 	/**
@@ -273,6 +309,7 @@ public class ShardGroup {
 	 * @since [产品/模块版本](可选)
 	 */
 	public long getEnd() {
+		ensureComputed();
 		return end;
 	}
 
@@ -287,7 +324,9 @@ public class ShardGroup {
 	 * @since [产品/模块版本](可选)
 	 */
 	public void setEnd(long end) {
+		ensureComputed();
 		this.end = end;
+		this.version++;
 	}
 
 }
@@ -1,16 +1,23 @@
 package com.devotion.dao.route.support.bean;
 
 import javax.sql.DataSource;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.SortedMap;
 import java.util.TreeMap;
 
 /**
  * 虚拟节点的定位实现
+ * <p>
+ * 哈希环为不可变的有序long数组与节点数组，定位时二分查找，无锁且不产生临时对象；
+ * 节点变更时重建新环并整体替换（写时复制）。虚拟节点位置始终按KETAMA（MD5）计算，
+ * 键值哈希默认与KETAMA兼容，也可选用快速哈希（会改变已有数据的落点）。
  */
 public class VirtualNodeLocator {
 
@@ -65,83 +72,160 @@ public class VirtualNodeLocator {
     private static final int NUM_0XFF = 0xFF; // 255
 
     /**
-     * 节点treeMap
+     * 线程复用的MD5计算上下文
      */
-    private TreeMap<Long, EntryNode> treeMap = new TreeMap<>();
+    private static final ThreadLocal<Md5Context> MD5_CONTEXT = ThreadLocal.withInitial(Md5Context::new);
 
     /**
-     * 虚拟节点的定位
+     * 键值哈希方式
+     */
+    private final HashMode hashMode;
+
+    /**
+     * 当前节点映射，只在重建时替换
+     */
+    private volatile Map<String, DataSource> nodeMapping;
+
+    /**
+     * 当前哈希环
+     */
+    private volatile Ring ring;
+
+    /**
+     * 虚拟节点的定位，键值哈希与KETAMA兼容
      *
      * @param nodeMapping 节点匹配
      */
     public VirtualNodeLocator(Map<String, DataSource> nodeMapping) {
-        if (nodeMapping != null) {
-            treeMap.putAll(distributeNode(nodeMapping));
-        }
+        this(nodeMapping, HashMode.KETAMA);
+    }
+
+    /**
+     * 虚拟节点的定位
+     *
+     * @param nodeMapping 节点匹配
+     * @param hashMode    键值哈希方式
+     */
+    public VirtualNodeLocator(Map<String, DataSource> nodeMapping, HashMode hashMode) {
+        this.hashMode = hashMode == null ? HashMode.KETAMA : hashMode;
+        this.nodeMapping = nodeMapping == null ? Collections.emptyMap()
+                : Collections.unmodifiableMap(new LinkedHashMap<>(nodeMapping));
+        this.ring = distributeNode(this.nodeMapping);
     }
 
     /**
      * 虚拟节点分发
      *
      * @param nodeMapping 节点映射集合
-     * @return 节点treeMap
-     */
-    private TreeMap<Long, EntryNode> distributeNode(Map<String, DataSource> nodeMapping) {
-        if (nodeMapping != null && !nodeMapping.isEmpty()) {
-            /** 节点装入迭代器 */
-            nodeMapping.entrySet().forEach((Entry<String, DataSource> entry) -> {
-                /** 调用KETMATA算法计算一致性哈希路由 */
-                for (int i = 0; i < NUMBERS / NUM4; i++) {
-                    byte[] digest = computeMd5(entry.getKey() + i);
-                    for (int h = 0; h < NUM4; h++) {
-                        long m = HashAlgorithm.KETAMA_HASH.hash(digest, h);
-                        treeMap.put(m, new EntryNode(entry.getKey(), entry.getValue()));
-                    }
+     * @return 哈希环
+     */
+    private static Ring distributeNode(Map<String, DataSource> nodeMapping) {
+        /** 构建期沿用TreeMap，哈希冲突时后加入的节点覆盖先加入的节点，与原有落点一致 */
+        TreeMap<Long, EntryNode> treeMap = new TreeMap<>();
+        nodeMapping.entrySet().forEach((Entry<String, DataSource> entry) -> {
+            EntryNode node = new EntryNode(entry.getKey(), entry.getValue());
+            /** 调用KETMATA算法计算一致性哈希路由 */
+            for (int i = 0; i < NUMBERS / NUM4; i++) {
+                byte[] digest = computeMd5(entry.getKey() + i);
+                for (int h = 0; h < NUM4; h++) {
+                    treeMap.put(ketamaHash(digest, h), node);
                 }
-            });
-//            Iterator<Entry<String, DataSource>> it = nodeMapping.entrySet().iterator();
-//            while (it.hasNext()) {
-//                Entry<String, DataSource> entry = it.next();
-//                /** 调用KETMATA算法计算一致性哈希路由 */
-//                for (int i = 0; i < NUMBERS / NUM4; i++) {
-//                    byte[] digest = computeMd5(entry.getKey() + i);
-//                    for (int h = 0; h < NUM4; h++) {
-//                        long m = HashAlgorithm.KETAMA_HASH.hash(digest, h);
-//                        treeMap.put(m, new EntryNode(entry.getKey(), entry.getValue()));
-//                    }
-//                }
-//            }
+            }
+        });
+        long[] points = new long[treeMap.size()];
+        EntryNode[] nodes = new EntryNode[treeMap.size()];
+        int i = 0;
+        for (Entry<Long, EntryNode> entry : treeMap.entrySet()) {
+            points[i] = entry.getKey();
+            nodes[i] = entry.getValue();
+            i++;
         }
-        return treeMap;
+        return new Ring(points, nodes);
     }
 
     /**
-     * 调用KETAMA_HASH算法生成哈希串
+     * 按键值定位节点
      *
      * @param k 哈希键值
-     * @return EntryNode
+     * @return EntryNode，无节点时为null
      */
     public EntryNode getPrimary(final String k) {
-        return getNodeForKey(HashAlgorithm.KETAMA_HASH.hash(computeMd5(k), 0));
+        return getNodeForKey(hashMode.hash(k));
     }
 
     /**
      * 根据传入哈希值获取结点
      *
      * @param hash 哈希值
-     * @return 节点
+     * @return 节点，无节点时为null
      */
     public EntryNode getNodeForKey(long hash) {
-        long hashTemp = hash;
-        if (!treeMap.containsKey(hash)) {
-            SortedMap<Long, EntryNode> tailMap = treeMap.tailMap(hashTemp);
-            if (tailMap.isEmpty()) {
-                hashTemp = treeMap.firstKey();
-            } else {
-                hashTemp = tailMap.firstKey();
+        Ring current = ring;
+        long[] points = current.points;
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -(index + 1);
+            if (index == points.length) {
+                index = 0;
             }
         }
-        return treeMap.get(hashTemp);
+        return current.nodes[index];
+    }
+
+    /**
+     * 增加或替换节点，重建哈希环
+     *
+     * @param nodeName   节点名称
+     * @param dataSource 数据源
+     */
+    public synchronized void addNode(String nodeName, DataSource dataSource) {
+        Map<String, DataSource> mapping = new LinkedHashMap<>(nodeMapping);
+        mapping.put(nodeName, dataSource);
+        rebuild(mapping);
+    }
+
+    /**
+     * 移除节点，重建哈希环
+     *
+     * @param nodeName 节点名称
+     */
+    public synchronized void removeNode(String nodeName) {
+        Map<String, DataSource> mapping = new LinkedHashMap<>(nodeMapping);
+        if (mapping.remove(nodeName) != null) {
+            rebuild(mapping);
+        }
+    }
+
+    /**
+     * 整体替换节点，重建哈希环
+     *
+     * @param nodeMapping 节点匹配
+     */
+    public synchronized void setNodeMapping(Map<String, DataSource> nodeMapping) {
+        rebuild(nodeMapping == null ? Collections.emptyMap() : new LinkedHashMap<>(nodeMapping));
+    }
+
+    /**
+     * 获取当前节点映射
+     *
+     * @return 不可修改的节点映射
+     */
+    public Map<String, DataSource> getNodeMapping() {
+        return nodeMapping;
+    }
+
+    /**
+     * 重建哈希环并发布，定位线程读取到旧环或新环之一
+     *
+     * @param mapping 新的节点映射
+     */
+    private void rebuild(Map<String, DataSource> mapping) {
+        Ring rebuilt = distributeNode(mapping);
+        this.nodeMapping = Collections.unmodifiableMap(mapping);
+        this.ring = rebuilt;
     }
 
     /**
@@ -150,44 +234,187 @@ public class VirtualNodeLocator {
      * @param k 哈希键值
      * @return MD5加密数组
      */
-    private byte[] computeMd5(String k) {
+    private static byte[] computeMd5(String k) {
         try {
             MessageDigest md5 = MessageDigest.getInstance("MD5");
-            md5.reset();
-            md5.update(k.getBytes("UTF-8"));
-            return md5.digest();
+            return md5.digest(k.getBytes(StandardCharsets.UTF_8));
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException("MD5 not supported", e);
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException("Unknown string :" + k, e);
         }
     }
 
     /**
-     * KetemaHash算法实现<br>
+     * KETAMA_HASH算法实现
+     *
+     * @param digest MD5串
+     * @param nTime  每组节点数
+     * @return 虚拟节点在环中的唯一KEY
+     */
+    private static long ketamaHash(byte[] digest, int nTime) {
+        long rv = ((long) (digest[NUM3 + nTime * NUM4] & NUM_0XFF) << NUM24)
+                | ((long) (digest[NUM2 + nTime * NUM4] & NUM_0XFF) << NUM16)
+                | ((long) (digest[NUM1 + nTime * NUM4] & NUM_0XFF) << NUM8)
+                | (digest[NUM0 + nTime * NUM4] & NUM_0XFF);
+
+        return rv & 0xffffffffL; /* Truncate to 32-bits */
+    }
+
+    /**
+     * 键值哈希方式<br>
      */
-    private enum HashAlgorithm {
+    public enum HashMode {
 
         /**
-         * MD5-based hash algorithm used by ketama.
+         * MD5-based hash algorithm used by ketama，与原有数据落点兼容
          */
-        KETAMA_HASH;
+        KETAMA {
+            @Override
+            long hash(String k) {
+                return MD5_CONTEXT.get().hash(k);
+            }
+        },
+
+        /**
+         * 非加密的快速哈希（FNV-1a加64位混淆），使用前需确认可接受数据落点变化
+         */
+        FAST {
+            @Override
+            long hash(String k) {
+                long h = 0xcbf29ce484222325L;
+                for (int i = 0; i < k.length(); i++) {
+                    h ^= k.charAt(i);
+                    h *= 0x100000001b3L;
+                }
+                h ^= h >>> 33;
+                h *= 0xff51afd7ed558ccdL;
+                h ^= h >>> 33;
+                h *= 0xc4ceb9fe1a85ec53L;
+                h ^= h >>> 33;
+                return h & 0xffffffffL;
+            }
+        };
 
         /**
-         * KETAMA_HASH算法实现
+         * 计算键值在环上的位置
          *
-         * @param digest MD5串
-         * @param nTime  每组节点数
-         * @return 虚拟节点在环中的唯一KEY
+         * @param k 哈希键值
+         * @return 32位无符号哈希值
          */
-        public long hash(byte[] digest, int nTime) {
-            long rv = ((long) (digest[NUM3 + nTime * NUM4] & NUM_0XFF) << NUM24)
-                    | ((long) (digest[NUM2 + nTime * NUM4] & NUM_0XFF) << NUM16)
-                    | ((long) (digest[NUM1 + nTime * NUM4] & NUM_0XFF) << NUM8)
-                    | (digest[NUM0 + nTime * NUM4] & NUM_0XFF);
+        abstract long hash(String k);
+    }
 
-            return rv & 0xffffffffL; /* Truncate to 32-bits */
+    /**
+     * 不可变哈希环<br>
+     */
+    private static final class Ring {
+
+        /**
+         * 有序的虚拟节点位置
+         */
+        private final long[] points;
+
+        /**
+         * 位置对应的节点
+         */
+        private final EntryNode[] nodes;
+
+        /**
+         * 构造方法
+         *
+         * @param points 有序的虚拟节点位置
+         * @param nodes  位置对应的节点
+         */
+        private Ring(long[] points, EntryNode[] nodes) {
+            this.points = points;
+            this.nodes = nodes;
         }
     }
 
+    /**
+     * 线程复用的MD5计算上下文，键值按UTF-8编码写入复用缓冲区<br>
+     */
+    private static final class Md5Context {
+
+        /**
+         * MD5摘要
+         */
+        private final MessageDigest md5;
+
+        /**
+         * 摘要结果
+         */
+        private final byte[] digest = new byte[NUM16];
+
+        /**
+         * 编码缓冲区
+         */
+        private byte[] buffer = new byte[64];
+
+        /**
+         * 构造方法
+         */
+        private Md5Context() {
+            try {
+                md5 = MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException("MD5 not supported", e);
+            }
+        }
+
+        /**
+         * 计算KETAMA哈希
+         *
+         * @param k 哈希键值
+         * @return 32位无符号哈希值
+         */
+        private long hash(String k) {
+            int length = encode(k);
+            md5.reset();
+            md5.update(buffer, 0, length);
+            try {
+                md5.digest(digest, 0, NUM16);
+            } catch (DigestException e) {
+                throw new RuntimeException("MD5 digest failed", e);
+            }
+            return ketamaHash(digest, 0);
+        }
+
+        /**
+         * UTF-8编码到复用缓冲区
+         *
+         * @param k 字符串
+         * @return 编码长度
+         */
+        private int encode(String k) {
+            int length = k.length();
+            if (buffer.length < length * 3) {
+                buffer = new byte[length * 3];
+            }
+            int pos = 0;
+            for (int i = 0; i < length; i++) {
+                char c = k.charAt(i);
+                if (c < 0x80) {
+                    buffer[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[pos++] = (byte) (0xc0 | (c >> 6));
+                    buffer[pos++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(k.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, k.charAt(++i));
+                    buffer[pos++] = (byte) (0xf0 | (cp >> 18));
+                    buffer[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                    buffer[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                    buffer[pos++] = (byte) (0x80 | (cp & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    /** 不成对的代理字符按String.getBytes的方式替换为'?' */
+                    buffer[pos++] = (byte) '?';
+                } else {
+                    buffer[pos++] = (byte) (0xe0 | (c >> 12));
+                    buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    buffer[pos++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+            return pos;
+        }
+    }
 }
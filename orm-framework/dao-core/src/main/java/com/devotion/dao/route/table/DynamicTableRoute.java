@@ -1,8 +1,7 @@
 package com.devotion.dao.route.table;
 
 import com.devotion.dao.constants.DaoConstants;
-import com.devotion.dao.support.sql.FreeMakerParser;
-import com.googlecode.aviator.AviatorEvaluator;
+import com.devotion.dao.route.support.RouteExpression;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,18 +43,15 @@ public class DynamicTableRoute implements TableRoute {
                 String[] routeTableAry = routeTables.split(",");
                 /** 根据规则处理分表逻辑 */
                 for (String routeTable : routeTableAry) {
-                    Map<String, Object> env = new HashMap<>();
-                    env.put(DaoConstants.ROUTE, paramMap);
                     try {
                         RouteEntry routeEntry = tableMap.get(routeTable.toUpperCase());
                         if (routeEntry != null) {
-                            /** 解析生成表达式 */
-                            String expression = FreeMakerParser.process(routeEntry.routeKey, env);
-                            /** Aviator表达式求值 */
-                            Object result = AviatorEvaluator.execute(expression, env);
+                            /** 预编译的规则直接对参数求值 */
+                            Object result = routeEntry.expression.evaluate(paramMap);
+                            String table = String.format(routeEntry.formatKey, result);
                             /** 处理大小写 */
-                            paramMap.put(routeTable.toUpperCase(), String.format(routeEntry.formatKey, result));
-                            paramMap.put(routeTable.toLowerCase(), String.format(routeEntry.formatKey, result));
+                            paramMap.put(routeTable.toUpperCase(), table);
+                            paramMap.put(routeTable.toLowerCase(), table);
                         }
                     } catch (Exception e) {
                         logger.error(e.getMessage(), e);
@@ -114,6 +110,11 @@ public class DynamicTableRoute implements TableRoute {
          */
         private String formatKey;
 
+        /**
+         * 预编译的路由表达式
+         */
+        private RouteExpression expression;
+
         /**
          * 路由对
          *
@@ -124,6 +125,7 @@ public class DynamicTableRoute implements TableRoute {
             super();
             this.routeKey = routeKey;
             this.formatKey = formatKey;
+            this.expression = RouteExpression.compile(routeKey);
         }
     }
 }
@@ -0,0 +1,232 @@
+package com.devotion.dao.support.batch;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+/**
+ * 分组批处理<br>
+ * 按(数据源, 渲染后的SQL)将输入行分组，每组按批大小分块执行JDBC批处理，更新计数按输入顺序返回。
+ * 开启多值插入时，形如INSERT ... VALUES (...)的分组在每块内合并为一条多值INSERT执行，
+ * 与MySQL驱动的rewriteBatchedStatements相同，合并后的行计数为{@link Statement#SUCCESS_NO_INFO}，
+ * 影响行数恰好等于块内行数时记为1
+ */
+public class GroupedBatch {
+
+    /**
+     * 日志
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(GroupedBatch.class);
+
+    /**
+     * 默认批大小
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * 可合并的单值INSERT：前缀与VALUES后的参数元组
+     */
+    private static final Pattern SINGLE_INSERT = Pattern.compile(
+            "(?is)(\\s*INSERT\\s.*?\\bVALUES\\s*)(\\([^()'\"`]*\\))\\s*");
+
+    /**
+     * 命名参数
+     */
+    private static final Pattern NAMED_PARAMETER = Pattern.compile("(?<!:):([A-Za-z_]\\w*)");
+
+    /**
+     * 合并后参数名的行号分隔符
+     */
+    private static final String ROW_SEPARATOR = "__";
+
+    /**
+     * 输入行数
+     */
+    private final int rowCount;
+
+    /**
+     * 每次批处理的最大行数
+     */
+    private final int batchSize;
+
+    /**
+     * 是否合并为多值INSERT
+     */
+    private final boolean multiRowInsert;
+
+    /**
+     * 数据源 -> SQL -> 分组内的行
+     */
+    private final Map<DataSource, Map<String, Group>> groups = new LinkedHashMap<>();
+
+    /**
+     * 构造方法
+     *
+     * @param rowCount       输入行数
+     * @param batchSize      每次批处理的最大行数，小于等于0时不分块
+     * @param multiRowInsert 是否合并为多值INSERT
+     */
+    public GroupedBatch(int rowCount, int batchSize, boolean multiRowInsert) {
+        this.rowCount = rowCount;
+        this.batchSize = batchSize > 0 ? batchSize : Integer.MAX_VALUE;
+        this.multiRowInsert = multiRowInsert;
+    }
+
+    /**
+     * 加入一行
+     *
+     * @param row        输入行号
+     * @param dataSource 目标数据源
+     * @param sql        渲染后的SQL
+     * @param paramMap   参数
+     */
+    public void add(int row, DataSource dataSource, String sql, Map<String, Object> paramMap) {
+        groups.computeIfAbsent(dataSource, ds -> new LinkedHashMap<>())
+                .computeIfAbsent(sql, Group::new).add(row, paramMap);
+    }
+
+    /**
+     * 按分组执行批处理
+     *
+     * @param templates 按数据源获取JDBC模板
+     * @return 各行的更新计数，与输入顺序一致
+     */
+    public int[] execute(Function<DataSource, NamedParameterJdbcTemplate> templates) {
+        int[] result = new int[rowCount];
+        for (Map.Entry<DataSource, Map<String, Group>> entry : groups.entrySet()) {
+            NamedParameterJdbcTemplate template = templates.apply(entry.getKey());
+            for (Group group : entry.getValue().values()) {
+                Matcher insert = multiRowInsert ? SINGLE_INSERT.matcher(group.sql) : null;
+                boolean merge = insert != null && insert.matches() && group.rows.size() > 1;
+                for (int from = 0; from < group.rows.size(); from += batchSize) {
+                    int to = Math.min(from + batchSize, group.rows.size());
+                    long beginDate = System.currentTimeMillis();
+                    if (merge) {
+                        executeMerged(template, group, insert.group(1), insert.group(2), from, to, result);
+                    } else {
+                        executeBatch(template, group, from, to, result);
+                    }
+                    if (LOGGER.isDebugEnabled()) {
+                        LOGGER.debug("batch SQL: [" + group.sql + "], rows: " + (to - from) + ", time: "
+                                + (System.currentTimeMillis() - beginDate) + "ms");
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 执行一块JDBC批处理
+     *
+     * @param template JDBC模板
+     * @param group    分组
+     * @param from     起始下标（含）
+     * @param to       结束下标（不含）
+     * @param result   各行的更新计数
+     */
+    private void executeBatch(NamedParameterJdbcTemplate template, Group group, int from, int to, int[] result) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object>[] batchValues = new Map[to - from];
+        for (int i = from; i < to; i++) {
+            batchValues[i - from] = group.paramMaps.get(i);
+        }
+        int[] counts = template.batchUpdate(group.sql, batchValues);
+        for (int i = 0; i < counts.length; i++) {
+            result[group.rows.get(from + i)] = counts[i];
+        }
+    }
+
+    /**
+     * 将一块单值INSERT合并为一条多值INSERT执行
+     *
+     * @param template JDBC模板
+     * @param group    分组
+     * @param prefix   VALUES及之前的语句
+     * @param tuple    参数元组
+     * @param from     起始下标（含）
+     * @param to       结束下标（不含）
+     * @param result   各行的更新计数
+     */
+    private void executeMerged(NamedParameterJdbcTemplate template, Group group, String prefix, String tuple,
+                               int from, int to, int[] result) {
+        StringBuilder sql = new StringBuilder(prefix.length() + (tuple.length() + 8) * (to - from));
+        sql.append(prefix);
+        Map<String, Object> paramMap = new HashMap<>();
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                sql.append(", ");
+            }
+            /** 元组内的参数名追加行号，避免各行参数互相覆盖 */
+            Map<String, Object> rowParams = group.paramMaps.get(i);
+            String suffix = ROW_SEPARATOR + (i - from);
+            Matcher matcher = NAMED_PARAMETER.matcher(tuple);
+            StringBuffer rowTuple = new StringBuffer();
+            while (matcher.find()) {
+                String name = matcher.group(1);
+                paramMap.put(name + suffix, rowParams.get(name));
+                matcher.appendReplacement(rowTuple, ":" + name + suffix);
+            }
+            matcher.appendTail(rowTuple);
+            sql.append(rowTuple);
+        }
+        int count = template.update(sql.toString(), paramMap);
+        int rowResult = count == to - from ? 1 : Statement.SUCCESS_NO_INFO;
+        for (int i = from; i < to; i++) {
+            result[group.rows.get(i)] = rowResult;
+        }
+    }
+
+    /**
+     * 同一数据源、同一SQL的行
+     */
+    private static final class Group {
+
+        /**
+         * 渲染后的SQL
+         */
+        private final String sql;
+
+        /**
+         * 输入行号
+         */
+        private final List<Integer> rows = new ArrayList<>();
+
+        /**
+         * 各行参数
+         */
+        private final List<Map<String, Object>> paramMaps = new ArrayList<>();
+
+        /**
+         * 构造方法
+         *
+         * @param sql 渲染后的SQL
+         */
+        private Group(String sql) {
+            this.sql = sql;
+        }
+
+        /**
+         * 加入一行
+         *
+         * @param row      输入行号
+         * @param paramMap 参数
+         */
+        private void add(int row, Map<String, Object> paramMap) {
+            rows.add(row);
+            paramMaps.add(paramMap);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.devotion.dao.support.plan;
+
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import com.devotion.dao.support.sql.SqlTemplate;
+
+/**
+ * SQL执行计划<br>
+ * 按(sqlId, 实体类, 数据源)预先解析好的模板、JDBC模板与结果映射，创建后不可变，可被多线程共享
+ *
+ * @param <T> 结果类型
+ */
+public final class ExecutionPlan<T> {
+
+    /**
+     * SQLID
+     */
+    private final String sqlId;
+
+    /**
+     * 实体类或结果类型
+     */
+    private final Class<?> type;
+
+    /**
+     * 数据源
+     */
+    private final DataSource dataSource;
+
+    /**
+     * 已分类的SQL模板
+     */
+    private final SqlTemplate template;
+
+    /**
+     * 共享的JDBC模板
+     */
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * 共享的结果映射，无结果类型时为null
+     */
+    private final RowMapper<T> rowMapper;
+
+    /**
+     * 构造方法
+     *
+     * @param sqlId        SQLID
+     * @param type         实体类或结果类型
+     * @param dataSource   数据源
+     * @param template     已分类的SQL模板
+     * @param jdbcTemplate JDBC模板
+     * @param rowMapper    结果映射
+     */
+    ExecutionPlan(String sqlId, Class<?> type, DataSource dataSource, SqlTemplate template,
+                  NamedParameterJdbcTemplate jdbcTemplate, RowMapper<T> rowMapper) {
+        this.sqlId = sqlId;
+        this.type = type;
+        this.dataSource = dataSource;
+        this.template = template;
+        this.jdbcTemplate = jdbcTemplate;
+        this.rowMapper = rowMapper;
+    }
+
+    /**
+     * 渲染SQL
+     *
+     * @param paramMap 参数
+     * @return 渲染后的SQL串
+     */
+    public String render(Map<String, Object> paramMap) {
+        return template.render(paramMap);
+    }
+
+    /**
+     * 获取SQLID
+     *
+     * @return SQLID
+     */
+    public String getSqlId() {
+        return sqlId;
+    }
+
+    /**
+     * 获取实体类或结果类型
+     *
+     * @return 实体类或结果类型
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * 获取数据源
+     *
+     * @return 数据源
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * 获取JDBC模板
+     *
+     * @return JDBC模板
+     */
+    public NamedParameterJdbcTemplate getJdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    /**
+     * 获取结果映射
+     *
+     * @return 结果映射
+     */
+    public RowMapper<T> getRowMapper() {
+        return rowMapper;
+    }
+}
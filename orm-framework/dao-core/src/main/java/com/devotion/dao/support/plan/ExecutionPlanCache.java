@@ -0,0 +1,155 @@
+package com.devotion.dao.support.plan;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.util.Assert;
+
+import com.devotion.dao.support.rowmapper.RowMapperFactory;
+import com.devotion.dao.support.sql.SqlTemplate;
+
+/**
+ * 执行计划缓存<br>
+ * 首次调用时构建执行计划，此后同一(sqlId, 实体类, 数据源)只做参数绑定与执行
+ */
+public class ExecutionPlanCache {
+
+    /**
+     * 执行计划
+     */
+    private final ConcurrentMap<PlanKey, ExecutionPlan<?>> plans = new ConcurrentHashMap<>();
+
+    /**
+     * 按数据源共享的JDBC模板
+     */
+    private final ConcurrentMap<DataSource, NamedParameterJdbcTemplate> jdbcTemplates = new ConcurrentHashMap<>();
+
+    /**
+     * 按类型共享的结果映射
+     */
+    private final ConcurrentMap<Class<?>, RowMapper<?>> rowMappers = new ConcurrentHashMap<>();
+
+    /**
+     * 获取执行计划
+     *
+     * @param sqlId      SQLID
+     * @param sql        SQL模板内容，仅在首次构建时使用
+     * @param type       结果类型，无结果映射时为null
+     * @param dataSource 数据源
+     * @param <T>        泛型对象
+     * @return 执行计划
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ExecutionPlan<T> getPlan(String sqlId, String sql, Class<T> type, DataSource dataSource) {
+        PlanKey key = new PlanKey(sqlId, type, dataSource);
+        ExecutionPlan<?> plan = plans.get(key);
+        if (plan == null) {
+            plan = plans.computeIfAbsent(key, k -> new ExecutionPlan<>(sqlId, type, dataSource,
+                    SqlTemplate.of(sql), getJdbcTemplate(dataSource),
+                    type == null ? null : getRowMapper(type)));
+        }
+        return (ExecutionPlan<T>) plan;
+    }
+
+    /**
+     * 获取数据源共享的JDBC模板
+     *
+     * @param dataSource 数据源
+     * @return JDBC模板
+     */
+    public NamedParameterJdbcTemplate getJdbcTemplate(DataSource dataSource) {
+        Assert.notNull(dataSource, "DataSource must not be null");
+        NamedParameterJdbcTemplate template = jdbcTemplates.get(dataSource);
+        if (template == null) {
+            template = jdbcTemplates.computeIfAbsent(dataSource, NamedParameterJdbcTemplate::new);
+        }
+        return template;
+    }
+
+    /**
+     * 获取类型共享的结果映射
+     *
+     * @param type 结果类型
+     * @param <T>  泛型对象
+     * @return 结果映射
+     */
+    @SuppressWarnings("unchecked")
+    public <T> RowMapper<T> getRowMapper(Class<T> type) {
+        RowMapper<?> rowMapper = rowMappers.get(type);
+        if (rowMapper == null) {
+            rowMapper = rowMappers.computeIfAbsent(type, t -> new RowMapperFactory<>(t).getRowMapper());
+        }
+        return (RowMapper<T>) rowMapper;
+    }
+
+    /**
+     * 清空执行计划，SQL模板重新加载时调用
+     */
+    public void clear() {
+        plans.clear();
+    }
+
+    /**
+     * 执行计划键值，类型与数据源按引用比较
+     */
+    private static final class PlanKey {
+
+        /**
+         * SQLID
+         */
+        private final String sqlId;
+
+        /**
+         * 结果类型
+         */
+        private final Class<?> type;
+
+        /**
+         * 数据源
+         */
+        private final DataSource dataSource;
+
+        /**
+         * 哈希值
+         */
+        private final int hash;
+
+        /**
+         * 构造方法
+         *
+         * @param sqlId      SQLID
+         * @param type       结果类型
+         * @param dataSource 数据源
+         */
+        private PlanKey(String sqlId, Class<?> type, DataSource dataSource) {
+            this.sqlId = sqlId;
+            this.type = type;
+            this.dataSource = dataSource;
+            int h = sqlId.hashCode();
+            h = 31 * h + System.identityHashCode(type);
+            h = 31 * h + System.identityHashCode(dataSource);
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof PlanKey)) {
+                return false;
+            }
+            PlanKey other = (PlanKey) obj;
+            return type == other.type && dataSource == other.dataSource && sqlId.equals(other.sqlId);
+        }
+    }
+}
@@ -171,6 +171,16 @@ public class DefaultBeanPropertyRowMapper<T> implements RowMapper<T> {
         return result.toString();
     }
 
+    /**
+     * 按规范化后的列名（去空格、小写）获取映射的属性
+     *
+     * @param column 规范化后的列名
+     * @return 属性描述，无映射时为null
+     */
+    protected PropertyDescriptor getMappedField(String column) {
+        return this.mappedFields.get(column);
+    }
+
     /**
      * Get the class that we are mapping to.
      *
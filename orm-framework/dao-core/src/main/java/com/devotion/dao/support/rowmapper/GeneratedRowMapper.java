@@ -0,0 +1,472 @@
+package com.devotion.dao.support.rowmapper;
+
+import java.beans.PropertyDescriptor;
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.beans.TypeMismatchException;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.util.ClassUtils;
+
+/**
+ * 预生成的翻页处理规则<br>
+ * 按结果集列结构与映射类解析一次列到属性的映射，生成逐列的写入器：按属性类型调用ResultSet的类型化取值方法，
+ * 通过LambdaMetafactory生成的构造与setter调用直接赋值，映射过程不创建BeanWrapper、不查找与规范化列名。
+ * 无法生成调用的类或属性退回反射调用，未识别的属性类型按JdbcUtils取值并在需要时经BeanWrapper转换。
+ * 开启完整性校验时沿用父类的逐行映射。
+ *
+ * @param <T> 泛型T
+ */
+public class GeneratedRowMapper<T> extends DefaultBeanPropertyRowMapper<T> {
+
+    /**
+     * 日志
+     */
+    private static final Logger logger = LoggerFactory.getLogger(GeneratedRowMapper.class);
+
+    /**
+     * 列结构键值的分隔符
+     */
+    private static final char SHAPE_SEPARATOR = '\u0000';
+
+    /**
+     * 生成调用使用的查找上下文
+     */
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * 映射类实例的构造
+     */
+    private final Supplier<T> constructor;
+
+    /**
+     * 按列结构缓存的映射计划
+     */
+    private final ConcurrentMap<String, ColumnWriter[]> plans = new ConcurrentHashMap<>();
+
+    /**
+     * 各线程当前结果集的映射计划，结果集不变时不再读取元数据
+     */
+    private final ThreadLocal<ResultSetPlan> current = new ThreadLocal<>();
+
+    /**
+     * 构造函数
+     *
+     * @param mappedClass 映射类
+     */
+    public GeneratedRowMapper(Class<T> mappedClass) {
+        super(mappedClass);
+        this.constructor = constructor(mappedClass);
+    }
+
+    /**
+     * 映射当前行
+     *
+     * @param rs        结果集
+     * @param rowNumber 行数
+     * @return 结果值
+     * @throws SQLException SQL异常
+     */
+    @Override
+    public T mapRow(ResultSet rs, int rowNumber) throws SQLException {
+        if (isCheckFullyPopulated()) {
+            return super.mapRow(rs, rowNumber);
+        }
+        ColumnWriter[] writers = plan(rs);
+        T mappedObject = constructor.get();
+        for (ColumnWriter writer : writers) {
+            writer.write(rs, mappedObject);
+        }
+        return mappedObject;
+    }
+
+    /**
+     * 获取结果集的映射计划
+     *
+     * @param rs 结果集
+     * @return 逐列的写入器
+     * @throws SQLException SQL异常
+     */
+    private ColumnWriter[] plan(ResultSet rs) throws SQLException {
+        ResultSetPlan resultSetPlan = current.get();
+        if (resultSetPlan != null && resultSetPlan.resultSet.get() == rs) {
+            return resultSetPlan.writers;
+        }
+        ResultSetMetaData rsmd = rs.getMetaData();
+        int columnCount = rsmd.getColumnCount();
+        String[] columns = new String[columnCount];
+        StringBuilder shape = new StringBuilder(columnCount * 16);
+        for (int index = 1; index <= columnCount; index++) {
+            columns[index - 1] = JdbcUtils.lookupColumnName(rsmd, index);
+            shape.append(columns[index - 1]).append(SHAPE_SEPARATOR);
+        }
+        ColumnWriter[] writers = plans.get(shape.toString());
+        if (writers == null) {
+            writers = buildPlan(columns);
+            ColumnWriter[] existing = plans.putIfAbsent(shape.toString(), writers);
+            writers = existing == null ? writers : existing;
+        }
+        current.set(new ResultSetPlan(rs, writers));
+        return writers;
+    }
+
+    /**
+     * 解析列到属性的映射
+     *
+     * @param columns 结果集列名
+     * @return 逐列的写入器
+     */
+    private ColumnWriter[] buildPlan(String[] columns) {
+        ColumnWriter[] writers = new ColumnWriter[columns.length];
+        int count = 0;
+        for (int i = 0; i < columns.length; i++) {
+            PropertyDescriptor pd = getMappedField(columns[i].replaceAll(" ", "").toLowerCase());
+            if (pd == null) {
+                continue;
+            }
+            if (pd.getWriteMethod() == null) {
+                throw new DataRetrievalFailureException(
+                        "Unable to map column " + columns[i] + " to property " + pd.getName());
+            }
+            if (logger.isDebugEnabled()) {
+                logger.debug("Mapping column '" + columns[i] + "' to property '" + pd.getName() + "' of type "
+                        + pd.getPropertyType());
+            }
+            writers[count++] = writer(i + 1, pd);
+        }
+        ColumnWriter[] plan = new ColumnWriter[count];
+        System.arraycopy(writers, 0, plan, 0, count);
+        return plan;
+    }
+
+    /**
+     * 按属性类型生成列写入器
+     *
+     * @param index 列序号
+     * @param pd    属性描述
+     * @return 列写入器
+     */
+    private ColumnWriter writer(int index, PropertyDescriptor pd) {
+        Method method = pd.getWriteMethod();
+        Class<?> type = pd.getPropertyType();
+        if (type == int.class) {
+            ObjIntConsumer<Object> setter = primitiveSetter(method, ObjIntConsumer.class, int.class);
+            return (rs, target) -> {
+                int value = rs.getInt(index);
+                if (value != 0 || !rs.wasNull()) {
+                    setter.accept(target, value);
+                } else {
+                    nullPrimitive(pd);
+                }
+            };
+        } else if (type == long.class) {
+            ObjLongConsumer<Object> setter = primitiveSetter(method, ObjLongConsumer.class, long.class);
+            return (rs, target) -> {
+                long value = rs.getLong(index);
+                if (value != 0 || !rs.wasNull()) {
+                    setter.accept(target, value);
+                } else {
+                    nullPrimitive(pd);
+                }
+            };
+        } else if (type == double.class) {
+            ObjDoubleConsumer<Object> setter = primitiveSetter(method, ObjDoubleConsumer.class, double.class);
+            return (rs, target) -> {
+                double value = rs.getDouble(index);
+                if (value != 0 || !rs.wasNull()) {
+                    setter.accept(target, value);
+                } else {
+                    nullPrimitive(pd);
+                }
+            };
+        }
+        BiConsumer<Object, Object> setter = setter(method);
+        ColumnReader reader = reader(index, type);
+        if (reader != null) {
+            boolean primitive = type.isPrimitive();
+            return (rs, target) -> {
+                Object value = reader.read(rs);
+                if (value != null || !primitive) {
+                    setter.accept(target, value);
+                } else {
+                    nullPrimitive(pd);
+                }
+            };
+        }
+        /** 未识别的类型：按JdbcUtils取值，类型不匹配时经BeanWrapper转换 */
+        return (rs, target) -> {
+            Object value = JdbcUtils.getResultSetValue(rs, index, type);
+            if (value == null || type.isInstance(value)) {
+                setter.accept(target, value);
+            } else {
+                PropertyAccessorFactory.forBeanPropertyAccess(target).setPropertyValue(pd.getName(), value);
+            }
+        };
+    }
+
+    /**
+     * 按类型化取值方法读取列值，与JdbcUtils.getResultSetValue的取值方式一致
+     *
+     * @param index 列序号
+     * @param type  属性类型
+     * @return 列读取器，未识别的类型为null
+     */
+    private static ColumnReader reader(int index, Class<?> type) {
+        if (type == String.class) {
+            return rs -> rs.getString(index);
+        } else if (type == Integer.class) {
+            return rs -> {
+                int value = rs.getInt(index);
+                return value == 0 && rs.wasNull() ? null : value;
+            };
+        } else if (type == Long.class) {
+            return rs -> {
+                long value = rs.getLong(index);
+                return value == 0 && rs.wasNull() ? null : value;
+            };
+        } else if (type == Double.class) {
+            return rs -> {
+                double value = rs.getDouble(index);
+                return value == 0 && rs.wasNull() ? null : value;
+            };
+        } else if (type == Float.class || type == float.class) {
+            return rs -> {
+                float value = rs.getFloat(index);
+                return value == 0 && rs.wasNull() ? null : value;
+            };
+        } else if (type == Short.class || type == short.class) {
+            return rs -> {
+                short value = rs.getShort(index);
+                return value == 0 && rs.wasNull() ? null : value;
+            };
+        } else if (type == Byte.class || type == byte.class) {
+            return rs -> {
+                byte value = rs.getByte(index);
+                return value == 0 && rs.wasNull() ? null : value;
+            };
+        } else if (type == Boolean.class || type == boolean.class) {
+            return rs -> {
+                boolean value = rs.getBoolean(index);
+                return !value && rs.wasNull() ? null : value;
+            };
+        } else if (type == BigDecimal.class) {
+            return rs -> rs.getBigDecimal(index);
+        } else if (type == Timestamp.class || type == Date.class) {
+            return rs -> rs.getTimestamp(index);
+        } else if (type == java.sql.Date.class) {
+            return rs -> rs.getDate(index);
+        } else if (type == Time.class) {
+            return rs -> rs.getTime(index);
+        } else if (type == byte[].class) {
+            return rs -> rs.getBytes(index);
+        }
+        return null;
+    }
+
+    /**
+     * 空值映射到基本类型属性
+     *
+     * @param pd 属性描述
+     */
+    private void nullPrimitive(PropertyDescriptor pd) {
+        if (!isPrimitivesDefaultedForNullValue()) {
+            throw new TypeMismatchException((Object) null, pd.getPropertyType());
+        }
+    }
+
+    /**
+     * 生成映射类的无参构造调用，无法生成时退回反射实例化
+     *
+     * @param mappedClass 映射类
+     * @param <T>         泛型T
+     * @return 构造
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Supplier<T> constructor(Class<T> mappedClass) {
+        if (isAccessible(mappedClass)) {
+            try {
+                MethodHandle handle = LOOKUP.findConstructor(mappedClass, MethodType.methodType(void.class));
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get", MethodType.methodType(Supplier.class),
+                        MethodType.methodType(Object.class), handle, MethodType.methodType(mappedClass));
+                return (Supplier<T>) site.getTarget().invoke();
+            } catch (Throwable e) {
+                logger.debug("Falling back to reflective instantiation of " + mappedClass, e);
+            }
+        }
+        return () -> BeanUtils.instantiate(mappedClass);
+    }
+
+    /**
+     * 生成setter调用，无法生成时退回反射调用
+     *
+     * @param method setter方法
+     * @return setter调用
+     */
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> setter(Method method) {
+        Class<?> owner = method.getDeclaringClass();
+        if (isAccessible(owner) && Modifier.isPublic(method.getModifiers())) {
+            try {
+                MethodHandle handle = LOOKUP.unreflect(method);
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+                        MethodType.methodType(BiConsumer.class),
+                        MethodType.methodType(void.class, Object.class, Object.class), handle,
+                        MethodType.methodType(void.class, owner, ClassUtils.resolvePrimitiveIfNecessary(
+                                method.getParameterTypes()[0])));
+                return (BiConsumer<Object, Object>) site.getTarget().invoke();
+            } catch (Throwable e) {
+                logger.debug("Falling back to reflective invocation of " + method, e);
+            }
+        }
+        return (target, value) -> invoke(method, target, value);
+    }
+
+    /**
+     * 生成基本类型参数的setter调用，避免装箱；无法生成时退回反射调用
+     *
+     * @param method         setter方法
+     * @param functionalType 函数接口类型
+     * @param primitiveType  基本类型
+     * @param <F>            函数接口
+     * @return setter调用
+     */
+    @SuppressWarnings("unchecked")
+    private static <F> F primitiveSetter(Method method, Class<?> functionalType, Class<?> primitiveType) {
+        Class<?> owner = method.getDeclaringClass();
+        if (isAccessible(owner) && Modifier.isPublic(method.getModifiers())) {
+            try {
+                MethodHandle handle = LOOKUP.unreflect(method);
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+                        MethodType.methodType(functionalType),
+                        MethodType.methodType(void.class, Object.class, primitiveType), handle,
+                        MethodType.methodType(void.class, owner, primitiveType));
+                return (F) site.getTarget().invoke();
+            } catch (Throwable e) {
+                logger.debug("Falling back to reflective invocation of " + method, e);
+            }
+        }
+        if (primitiveType == int.class) {
+            return (F) (ObjIntConsumer<Object>) (target, value) -> invoke(method, target, value);
+        } else if (primitiveType == long.class) {
+            return (F) (ObjLongConsumer<Object>) (target, value) -> invoke(method, target, value);
+        }
+        return (F) (ObjDoubleConsumer<Object>) (target, value) -> invoke(method, target, value);
+    }
+
+    /**
+     * 判断类是否可生成直接调用：公共类且对本框架的类加载器可见
+     *
+     * @param clazz 类
+     * @return 判断结果
+     */
+    private static boolean isAccessible(Class<?> clazz) {
+        return Modifier.isPublic(clazz.getModifiers())
+                && (clazz.getEnclosingClass() == null || Modifier.isStatic(clazz.getModifiers()))
+                && ClassUtils.isVisible(clazz, GeneratedRowMapper.class.getClassLoader());
+    }
+
+    /**
+     * 反射调用setter
+     *
+     * @param method setter方法
+     * @param target 目标对象
+     * @param value  属性值
+     */
+    private static void invoke(Method method, Object target, Object value) {
+        try {
+            if (!method.isAccessible()) {
+                method.setAccessible(true);
+            }
+            method.invoke(target, value);
+        } catch (InvocationTargetException e) {
+            throw new DataRetrievalFailureException("Unable to set property by " + method, e.getTargetException());
+        } catch (IllegalAccessException e) {
+            throw new DataRetrievalFailureException("Unable to set property by " + method, e);
+        }
+    }
+
+    /**
+     * 列读取器<br>
+     */
+    @FunctionalInterface
+    private interface ColumnReader {
+
+        /**
+         * 读取列值
+         *
+         * @param rs 结果集
+         * @return 列值
+         * @throws SQLException SQL异常
+         */
+        Object read(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * 列写入器<br>
+     */
+    @FunctionalInterface
+    private interface ColumnWriter {
+
+        /**
+         * 读取列值并写入目标对象
+         *
+         * @param rs     结果集
+         * @param target 目标对象
+         * @throws SQLException SQL异常
+         */
+        void write(ResultSet rs, Object target) throws SQLException;
+    }
+
+    /**
+     * 结果集与其映射计划<br>
+     */
+    private static final class ResultSetPlan {
+
+        /**
+         * 结果集，弱引用避免线程持有已关闭的结果集
+         */
+        private final WeakReference<ResultSet> resultSet;
+
+        /**
+         * 逐列的写入器
+         */
+        private final ColumnWriter[] writers;
+
+        /**
+         * 构造方法
+         *
+         * @param resultSet 结果集
+         * @param writers   逐列的写入器
+         */
+        private ResultSetPlan(ResultSet resultSet, ColumnWriter[] writers) {
+            this.resultSet = new WeakReference<>(resultSet);
+            this.writers = writers;
+        }
+    }
+}
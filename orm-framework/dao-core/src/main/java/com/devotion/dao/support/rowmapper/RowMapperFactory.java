@@ -1,17 +1,25 @@
 package com.devotion.dao.support.rowmapper;
 
 import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
 
 /**
- * 映射类型工厂
+ * 映射类型工厂<br>
+ * 每个类型只创建一次映射规则，映射规则线程安全，在各查询间共享
  *
  * @param <T> class 实现类
  */
 public class RowMapperFactory<T> {
 
+    /**
+     * 按类型缓存的映射规则
+     */
+    private static final ConcurrentMap<Class<?>, RowMapper<?>> ROW_MAPPERS = new ConcurrentHashMap<>();
+
     /**
      * 需处理的类型
      */
@@ -31,11 +39,23 @@ public class RowMapperFactory<T> {
      *
      * @return 翻页处理逻辑
      */
+    @SuppressWarnings("unchecked")
     public RowMapper<T> getRowMapper() {
+        return (RowMapper<T>) ROW_MAPPERS.computeIfAbsent(requiredType, RowMapperFactory::createRowMapper);
+    }
+
+    /**
+     * 创建映射规则
+     *
+     * @param requiredType 需处理的类型
+     * @param <R>          泛型对象
+     * @return 映射规则
+     */
+    private static <R> RowMapper<R> createRowMapper(Class<R> requiredType) {
         if (requiredType.equals(String.class) || Number.class.isAssignableFrom(requiredType)
                 || requiredType.equals(Date.class)) {
             return new SingleColumnRowMapper<>(requiredType);
         }
-        return new DefaultBeanPropertyRowMapper<>(requiredType);
+        return new GeneratedRowMapper<>(requiredType);
     }
 }
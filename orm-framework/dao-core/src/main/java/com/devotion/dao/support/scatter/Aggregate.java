@@ -0,0 +1,138 @@
+package com.devotion.dao.support.scatter;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * 可跨分库合并的聚合函数<br>
+ * 各分库的COUNT、SUM相加，MIN、MAX取最值；AVG等不可直接合并的聚合需拆为SUM与COUNT
+ */
+public enum Aggregate {
+
+    /**
+     * 计数
+     */
+    COUNT {
+        @Override
+        Object combine(Object left, Object right) {
+            return add(left, right);
+        }
+    },
+
+    /**
+     * 求和
+     */
+    SUM {
+        @Override
+        Object combine(Object left, Object right) {
+            return add(left, right);
+        }
+    },
+
+    /**
+     * 最小值
+     */
+    MIN {
+        @Override
+        Object combine(Object left, Object right) {
+            return compare(left, right) <= 0 ? left : right;
+        }
+    },
+
+    /**
+     * 最大值
+     */
+    MAX {
+        @Override
+        Object combine(Object left, Object right) {
+            return compare(left, right) >= 0 ? left : right;
+        }
+    };
+
+    /**
+     * 合并两个分库的聚合值，null表示该分库无数据
+     *
+     * @param left  已合并的值
+     * @param right 分库的值
+     * @return 合并结果
+     */
+    public Object merge(Object left, Object right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        return combine(left, right);
+    }
+
+    /**
+     * 合并两个非null的聚合值
+     *
+     * @param left  已合并的值
+     * @param right 分库的值
+     * @return 合并结果
+     */
+    abstract Object combine(Object left, Object right);
+
+    /**
+     * 数值相加，整数保持Long，其他按BigDecimal计算
+     *
+     * @param left  左值
+     * @param right 右值
+     * @return 相加结果
+     */
+    private static Object add(Object left, Object right) {
+        if (isIntegral(left) && isIntegral(right)) {
+            return ((Number) left).longValue() + ((Number) right).longValue();
+        }
+        return decimal(left).add(decimal(right));
+    }
+
+    /**
+     * 比较两个值，数值按大小比较，其他按自然顺序比较
+     *
+     * @param left  左值
+     * @param right 右值
+     * @return 比较结果
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object left, Object right) {
+        if (left instanceof Number && right instanceof Number) {
+            return decimal(left).compareTo(decimal(right));
+        }
+        return ((Comparable) left).compareTo(right);
+    }
+
+    /**
+     * 是否为可按long相加的整数
+     *
+     * @param value 值
+     * @return 判断结果
+     */
+    private static boolean isIntegral(Object value) {
+        return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+    }
+
+    /**
+     * 转换为BigDecimal
+     *
+     * @param value 数值
+     * @return BigDecimal
+     */
+    private static BigDecimal decimal(Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof BigInteger) {
+            return new BigDecimal((BigInteger) value);
+        }
+        if (isIntegral(value)) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        }
+        if (value instanceof Number) {
+            return BigDecimal.valueOf(((Number) value).doubleValue());
+        }
+        return new BigDecimal(value.toString());
+    }
+}
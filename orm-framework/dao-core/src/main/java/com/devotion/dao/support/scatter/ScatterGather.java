@@ -0,0 +1,415 @@
+package com.devotion.dao.support.scatter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.DisposableBean;
+
+import com.devotion.dao.constants.ExceptionType;
+import com.devotion.dao.exception.BaseException;
+
+/**
+ * 分库查询的分发与合并<br>
+ * 各分库的查询在有界线程池中并行执行，整体受同一时限约束，耗时取决于最慢的分库而不是各分库之和；
+ * 各分库查询按剩余时限设置语句超时，超时的查询由数据库终止，不会继续占用线程与连接。
+ * 线程池与队列已满时拒绝查询。有序结果按多路归并合并，聚合结果按聚合函数合并
+ */
+public class ScatterGather implements DisposableBean {
+
+    /**
+     * 默认查询时限（毫秒）
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 30000L;
+
+    /**
+     * 并行执行的最大线程数
+     */
+    private int parallelism = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    /**
+     * 等待执行的查询上限
+     */
+    private int queueCapacity = 1024;
+
+    /**
+     * 默认查询时限（毫秒）
+     */
+    private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+
+    /**
+     * 线程池，首次分发时创建
+     */
+    private volatile ThreadPoolExecutor executor;
+
+    /**
+     * 并行执行各分库的查询
+     *
+     * @param tasks         各分库的查询
+     * @param timeoutMillis 查询时限（毫秒），小于等于0时使用默认时限
+     * @param <R>           分库结果类型
+     * @return 各分库的结果，与查询顺序一致
+     */
+    public <R> List<R> execute(List<ScatterTask<R>> tasks, long timeoutMillis) {
+        long timeout = timeoutMillis > 0 ? timeoutMillis : this.timeoutMillis;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        if (tasks.size() == 1) {
+            /** 单个分库直接在调用线程执行 */
+            return Collections.singletonList(call(tasks.get(0), deadline, timeout));
+        }
+        List<Future<R>> futures = new ArrayList<>(tasks.size());
+        try {
+            ThreadPoolExecutor pool = getExecutor();
+            for (ScatterTask<R> task : tasks) {
+                futures.add(pool.submit(() -> task.call(remainingMillis(deadline, timeout))));
+            }
+            List<R> results = new ArrayList<>(tasks.size());
+            for (Future<R> future : futures) {
+                results.add(future.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS));
+            }
+            return results;
+        } catch (RejectedExecutionException e) {
+            cancel(futures);
+            throw new BaseException("error.dal.007", e, new Object[]{"Scatter query rejected, "
+                    + queueCapacity + " queries already waiting"}, ExceptionType.EXCEPTION_DAO);
+        } catch (TimeoutException e) {
+            cancel(futures);
+            throw timeout(timeout, e);
+        } catch (ExecutionException e) {
+            cancel(futures);
+            throw rethrow(e.getCause());
+        } catch (InterruptedException e) {
+            cancel(futures);
+            Thread.currentThread().interrupt();
+            throw new BaseException("error.dal.007", e, null, ExceptionType.EXCEPTION_DAO);
+        }
+    }
+
+    /**
+     * 合并各分库的结果
+     *
+     * @param parts 各分库的结果，指定顺序时各自有序
+     * @param query 分发查询选项
+     * @param <T>   结果类型
+     * @return 合并后的结果
+     */
+    public static <T> List<T> merge(List<List<T>> parts, ScatterQuery<T> query) {
+        int offset = query.getOffset();
+        int limit = query.isLimited() ? query.getLimit() : Integer.MAX_VALUE;
+        List<T> result = new ArrayList<>();
+        if (query.getOrder() == null) {
+            int skipped = 0;
+            for (List<T> part : parts) {
+                for (T row : part) {
+                    if (result.size() >= limit) {
+                        return result;
+                    }
+                    if (skipped++ >= offset) {
+                        result.add(row);
+                    }
+                }
+            }
+            return result;
+        }
+        /** 多路归并：每个分库一个游标，顺序相同时按分库顺序，保证结果稳定 */
+        PriorityQueue<Cursor<T>> heap = new PriorityQueue<>(Math.max(parts.size(), 1), (a, b) -> {
+            int order = query.getOrder().compare(a.current(), b.current());
+            return order != 0 ? order : Integer.compare(a.part, b.part);
+        });
+        for (int i = 0; i < parts.size(); i++) {
+            if (!parts.get(i).isEmpty()) {
+                heap.add(new Cursor<>(i, parts.get(i)));
+            }
+        }
+        int skipped = 0;
+        while (!heap.isEmpty() && result.size() < limit) {
+            Cursor<T> cursor = heap.poll();
+            if (skipped++ >= offset) {
+                result.add(cursor.current());
+            }
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 合并各分库的聚合结果
+     *
+     * @param rows       各分库的聚合行，无数据的分库为null
+     * @param aggregates 列名与聚合函数，未指定的列取第一个非null值
+     * @return 合并后的聚合行
+     */
+    public static Map<String, Object> aggregate(List<Map<String, Object>> rows, Map<String, Aggregate> aggregates) {
+        Map<String, Object> result = null;
+        for (Map<String, Object> row : rows) {
+            if (row == null) {
+                continue;
+            }
+            if (result == null) {
+                result = new LinkedHashMap<>(row);
+                continue;
+            }
+            for (Map.Entry<String, Object> column : row.entrySet()) {
+                Aggregate aggregate = aggregateOf(aggregates, column.getKey());
+                Object merged = result.get(column.getKey());
+                if (aggregate != null) {
+                    result.put(column.getKey(), aggregate.merge(merged, column.getValue()));
+                } else if (merged == null) {
+                    result.put(column.getKey(), column.getValue());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 按列名查找聚合函数，列名不区分大小写
+     *
+     * @param aggregates 列名与聚合函数
+     * @param column     列名
+     * @return 聚合函数，未指定时为null
+     */
+    private static Aggregate aggregateOf(Map<String, Aggregate> aggregates, String column) {
+        Aggregate aggregate = aggregates.get(column);
+        if (aggregate == null) {
+            for (Map.Entry<String, Aggregate> entry : aggregates.entrySet()) {
+                if (entry.getKey().equalsIgnoreCase(column)) {
+                    return entry.getValue();
+                }
+            }
+        }
+        return aggregate;
+    }
+
+    /**
+     * 在调用线程执行查询
+     *
+     * @param task     查询
+     * @param deadline 截止时间（System.nanoTime）
+     * @param timeout  查询时限（毫秒）
+     * @param <R>      结果类型
+     * @return 查询结果
+     */
+    private static <R> R call(ScatterTask<R> task, long deadline, long timeout) {
+        try {
+            return task.call(remainingMillis(deadline, timeout));
+        } catch (Exception e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * 计算剩余时限，已超时（例如在队列中等待过久）时不再执行查询
+     *
+     * @param deadline 截止时间（System.nanoTime）
+     * @param timeout  查询时限（毫秒）
+     * @return 剩余时限（毫秒）
+     */
+    private static long remainingMillis(long deadline, long timeout) {
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining <= 0) {
+            throw timeout(timeout, null);
+        }
+        return remaining;
+    }
+
+    /**
+     * 超时异常
+     *
+     * @param timeout 查询时限（毫秒）
+     * @param cause   原因
+     * @return 数据访问异常
+     */
+    private static BaseException timeout(long timeout, Throwable cause) {
+        return new BaseException("error.dal.007", cause, new Object[]{"Scatter query timed out after " + timeout
+                + "ms"}, ExceptionType.EXCEPTION_DAO);
+    }
+
+    /**
+     * 原样抛出运行时异常，其他异常包装为数据访问异常
+     *
+     * @param cause 异常
+     * @return 包装后的异常
+     */
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new BaseException("error.dal.007", cause, null, ExceptionType.EXCEPTION_DAO);
+    }
+
+    /**
+     * 取消未完成的查询
+     *
+     * @param futures 查询
+     * @param <R>     结果类型
+     */
+    private static <R> void cancel(List<Future<R>> futures) {
+        for (Future<R> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * 获取线程池，首次调用时创建
+     *
+     * @return 线程池
+     */
+    private ThreadPoolExecutor getExecutor() {
+        ThreadPoolExecutor pool = executor;
+        if (pool == null) {
+            synchronized (this) {
+                pool = executor;
+                if (pool == null) {
+                    AtomicInteger sequence = new AtomicInteger();
+                    ThreadFactory threadFactory = runnable -> {
+                        Thread thread = new Thread(runnable, "dao-scatter-" + sequence.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    };
+                    /** 队列满时拒绝，在调用线程执行会脱离整体时限 */
+                    pool = new ThreadPoolExecutor(parallelism, parallelism, 60L, TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<>(queueCapacity), threadFactory,
+                            new ThreadPoolExecutor.AbortPolicy());
+                    pool.allowCoreThreadTimeOut(true);
+                    executor = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * 关闭线程池
+     */
+    @Override
+    public synchronized void destroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * 获取并行执行的最大线程数
+     *
+     * @return 最大线程数
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * 设置并行执行的最大线程数，须在首次分发前设置
+     *
+     * @param parallelism 最大线程数
+     */
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * 获取等待执行的查询上限
+     *
+     * @return 队列容量
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * 设置等待执行的查询上限，须在首次分发前设置
+     *
+     * @param queueCapacity 队列容量
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * 获取默认查询时限
+     *
+     * @return 查询时限（毫秒）
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * 设置默认查询时限
+     *
+     * @param timeoutMillis 查询时限（毫秒）
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 分库结果的游标
+     *
+     * @param <T> 结果类型
+     */
+    private static final class Cursor<T> {
+
+        /**
+         * 分库序号
+         */
+        private final int part;
+
+        /**
+         * 分库结果
+         */
+        private final List<T> rows;
+
+        /**
+         * 当前位置
+         */
+        private int position;
+
+        /**
+         * 构造方法
+         *
+         * @param part 分库序号
+         * @param rows 分库结果
+         */
+        private Cursor(int part, List<T> rows) {
+            this.part = part;
+            this.rows = rows;
+        }
+
+        /**
+         * 当前行
+         *
+         * @return 当前行
+         */
+        private T current() {
+            return rows.get(position);
+        }
+
+        /**
+         * 移到下一行
+         *
+         * @return 是否还有行
+         */
+        private boolean advance() {
+            return ++position < rows.size();
+        }
+    }
+}
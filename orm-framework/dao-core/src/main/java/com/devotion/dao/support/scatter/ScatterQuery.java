@@ -0,0 +1,126 @@
+package com.devotion.dao.support.scatter;
+
+import java.util.Comparator;
+
+/**
+ * 分发查询选项<br>
+ * 各分库按SQL中的ORDER BY返回有序结果时，指定相同顺序的比较器即可按多路归并合并；
+ * 指定行数时每个分库只查询offset + limit行，合并后再截取
+ *
+ * @param <T> 结果类型
+ */
+public class ScatterQuery<T> {
+
+    /**
+     * 结果顺序，与SQL的ORDER BY一致，为null时按分库顺序拼接
+     */
+    private Comparator<? super T> order;
+
+    /**
+     * 跳过的行数
+     */
+    private int offset;
+
+    /**
+     * 返回的最大行数，小于0表示不限制
+     */
+    private int limit = -1;
+
+    /**
+     * 查询时限（毫秒），小于等于0时使用执行器的默认时限
+     */
+    private long timeoutMillis;
+
+    /**
+     * 创建分发查询选项
+     *
+     * @param <T> 结果类型
+     * @return 分发查询选项
+     */
+    public static <T> ScatterQuery<T> create() {
+        return new ScatterQuery<>();
+    }
+
+    /**
+     * 指定结果顺序
+     *
+     * @param order 与SQL的ORDER BY一致的比较器
+     * @return 当前对象
+     */
+    public ScatterQuery<T> orderBy(Comparator<? super T> order) {
+        this.order = order;
+        return this;
+    }
+
+    /**
+     * 指定返回的行范围
+     *
+     * @param offset 跳过的行数
+     * @param limit  返回的最大行数
+     * @return 当前对象
+     */
+    public ScatterQuery<T> limit(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative");
+        }
+        this.offset = offset;
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * 指定查询时限
+     *
+     * @param timeoutMillis 查询时限（毫秒）
+     * @return 当前对象
+     */
+    public ScatterQuery<T> timeout(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    /**
+     * 获取结果顺序
+     *
+     * @return 比较器
+     */
+    public Comparator<? super T> getOrder() {
+        return order;
+    }
+
+    /**
+     * 获取跳过的行数
+     *
+     * @return 跳过的行数
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * 获取返回的最大行数
+     *
+     * @return 最大行数，小于0表示不限制
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * 是否限制行数
+     *
+     * @return 判断结果
+     */
+    public boolean isLimited() {
+        return limit >= 0;
+    }
+
+    /**
+     * 获取查询时限
+     *
+     * @return 查询时限（毫秒）
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
@@ -0,0 +1,20 @@
+package com.devotion.dao.support.scatter;
+
+/**
+ * 单个分库的查询<br>
+ * 执行时传入整体时限的剩余时间，查询应据此设置语句超时，超时后由数据库终止查询并释放连接
+ *
+ * @param <R> 分库结果类型
+ */
+@FunctionalInterface
+public interface ScatterTask<R> {
+
+    /**
+     * 执行查询
+     *
+     * @param timeoutMillis 剩余时限（毫秒），大于0
+     * @return 分库结果
+     * @throws Exception 查询异常
+     */
+    R call(long timeoutMillis) throws Exception;
+}
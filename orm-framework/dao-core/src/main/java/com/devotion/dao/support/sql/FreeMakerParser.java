@@ -3,8 +3,9 @@ package com.devotion.dao.support.sql;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.devotion.dao.constants.ExceptionType;
 import com.devotion.dao.exception.BaseException;
@@ -29,11 +30,6 @@ public class FreeMakerParser {
      */
     private static final String DEFAULT_TEMPLATE_KEY = "default_template_key";
 
-    /**
-     * 默认模板表达式
-     */
-    private static final String DEFAULT_TEMPLATE_EXPRESSION = "default_template_expression";
-
     /**
      * 配置器
      */
@@ -45,47 +41,19 @@ public class FreeMakerParser {
     }
 
     /**
-     * 配置SQL表达式缓存
-     */
-    private static Map<String, Template> templateCache = new HashMap<>();
-    /**
-     * 分库表达式缓存
+     * 按SQLID缓存的SQL模板
      */
-    private static Map<String, Template> expressionCache = new HashMap<>();
+    private static final ConcurrentMap<String, SqlTemplate> templateCache = new ConcurrentHashMap<>();
 
     /**
-     * 解析处理方法
+     * 解析处理方法，同一表达式只分类、编译一次，静态与条件模板不经过FreeMarker
      *
      * @param expression 表达式
      * @param root       根结点
      * @return 处理结果字符串
      */
     public static String process(String expression, Map<String, Object> root) {
-        StringWriter out = null;
-        Template template = null;
-        /** 表达式注入模板 */
-        try {
-            if (expressionCache.get(expression) != null) {
-                template = expressionCache.get(expression);
-            }
-            if (template == null) {
-                template = createTemplate(DEFAULT_TEMPLATE_EXPRESSION, new StringReader(expression));
-                expressionCache.put(expression, template);
-            }
-            out = new StringWriter();
-            template.process(root, out);
-            return out.toString();
-        } catch (Exception e) {
-            throw new BaseException(ExceptionType.EXCEPTION_DEF.getCode(), e, null, ExceptionType.EXCEPTION_DAO);
-        } finally {
-            try {
-                if (out != null) {
-                    out.close();
-                }
-            } catch (IOException e) {
-                // return null;
-            }
-        }
+        return SqlTemplate.of(expression).render(root);
     }
 
     /**
@@ -106,6 +74,37 @@ public class FreeMakerParser {
         return template;
     }
 
+    /**
+     * 预编译SQL模板，供执行计划复用
+     *
+     * @param sql SQL串
+     * @return 模板
+     */
+    public static Template compile(String sql) {
+        try {
+            return createTemplate(DEFAULT_TEMPLATE_KEY, new StringReader(sql));
+        } catch (IOException e) {
+            throw new BaseException("error.dal.005", e, null, ExceptionType.EXCEPTION_DAO);
+        }
+    }
+
+    /**
+     * 使用已编译的模板渲染SQL
+     *
+     * @param template 模板
+     * @param root     root对象
+     * @return 渲染后的SQL串
+     */
+    public static String process(Template template, Map<String, Object> root) {
+        StringWriter out = new StringWriter();
+        try {
+            template.process(root, out);
+            return out.toString();
+        } catch (Exception e) {
+            throw new BaseException("error.dal.005", e, null, ExceptionType.EXCEPTION_DAO);
+        }
+    }
+
     /**
      * 解析处理重载方法
      *
@@ -115,35 +114,10 @@ public class FreeMakerParser {
      * @return StringWriter字符串
      */
     public static String process(Map<String, Object> root, String sql, String sqlId) {
-        StringReader reader = null;
-        StringWriter out = null;
-        Template template = null;
-        /** 表达式注入模板 */
-        try {
-            if (templateCache.get(sqlId) != null) {
-                template = templateCache.get(sqlId);
-            }
-            if (template == null) {
-                reader = new StringReader(sql);
-                template = createTemplate(DEFAULT_TEMPLATE_KEY, reader);
-                templateCache.put(sqlId, template);
-            }
-            out = new StringWriter();
-            template.process(root, out);
-            return out.toString();
-        } catch (Exception e) {
-            throw new BaseException("error.dal.005", e, null, ExceptionType.EXCEPTION_DAO);
-        } finally {
-            if (reader != null) {
-                reader.close();
-            }
-            try {
-                if (out != null) {
-                    out.close();
-                }
-            } catch (IOException e) {
-                // return null;
-            }
+        SqlTemplate template = templateCache.get(sqlId);
+        if (template == null) {
+            template = templateCache.computeIfAbsent(sqlId, id -> SqlTemplate.of(sql));
         }
+        return template.render(root);
     }
 }
@@ -5,9 +5,13 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.IntPredicate;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -23,6 +27,21 @@ import org.springframework.beans.BeanUtils;
  */
 public class SqlParser {
 
+    /**
+     * 不缓存动态更新语句时的列掩码
+     */
+    public static final long UNCACHED_MASK = -1L;
+
+    /**
+     * 可用掩码表示的可更新列个数上限
+     */
+    private static final int MAX_MASK_COLUMNS = Long.SIZE - 1;
+
+    /**
+     * 每个实体缓存的动态更新语句上限
+     */
+    private static final int MAX_DYNAMIC_UPDATES = 1024;
+
     /**
      * 表名
      */
@@ -84,9 +103,14 @@ public class SqlParser {
     private String select;
 
     /**
-     * 动态更新
+     * 可更新列在列集合中的下标，按掩码位排列
+     */
+    private int[] dynamicColumns = new int[0];
+
+    /**
+     * 按列掩码缓存的动态更新语句
      */
-    private String dynamicUpdate;
+    private final ConcurrentMap<Long, String> dynamicUpdates = new ConcurrentHashMap<>();
 
     /**
      * 全选
@@ -127,6 +151,8 @@ public class SqlParser {
             setId(clazz);
             /** 生成列列表 */
             setColumnList(clazz);
+            /** 生成动态更新的可更新列 */
+            setDynamicColumns();
 
             /** 生成插入语句 */
             setInsertSql();
@@ -141,6 +167,15 @@ public class SqlParser {
         }
     }
 
+    /**
+     * 获取表名
+     *
+     * @return 表名
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
     /**
      * 获取ID
      *
@@ -184,8 +219,54 @@ public class SqlParser {
      * @return “动态更新”关键字
      */
     public String getDynamicUpdate(Map<String, ?> object) {
-        setDynamicUpdateSql(object);
-        return dynamicUpdate;
+        long mask = getDynamicUpdateMask(object);
+        if (mask == UNCACHED_MASK) {
+            return buildDynamicUpdate(i -> object.get(columnList.get(dynamicColumns[i])) != null);
+        }
+        return getDynamicUpdate(mask);
+    }
+
+    /**
+     * 按列掩码获取“动态更新”关键字，相同掩码返回同一语句
+     *
+     * @param mask 列掩码，由{@link #getDynamicUpdateMask(Map)}计算
+     * @return “动态更新”关键字
+     */
+    public String getDynamicUpdate(long mask) {
+        if (mask < 0) {
+            throw new IllegalArgumentException("Invalid dynamic update mask: " + mask);
+        }
+        String sql = dynamicUpdates.get(mask);
+        if (sql == null) {
+            sql = buildDynamicUpdate(i -> (mask & (1L << i)) != 0);
+            /** 超过上限后不再缓存，避免异常参数组合撑大缓存 */
+            if (dynamicUpdates.size() < MAX_DYNAMIC_UPDATES) {
+                String existing = dynamicUpdates.putIfAbsent(mask, sql);
+                if (existing != null) {
+                    sql = existing;
+                }
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * 计算动态更新的列掩码，第i位表示第i个可更新列的值不为null
+     *
+     * @param object Map对象
+     * @return 列掩码，可更新列过多无法用掩码表示时为{@link #UNCACHED_MASK}
+     */
+    public long getDynamicUpdateMask(Map<String, ?> object) {
+        if (dynamicColumns.length > MAX_MASK_COLUMNS) {
+            return UNCACHED_MASK;
+        }
+        long mask = 0;
+        for (int i = 0; i < dynamicColumns.length; i++) {
+            if (object.get(columnList.get(dynamicColumns[i])) != null) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
     }
 
     /**
@@ -227,25 +308,40 @@ public class SqlParser {
     /**
      * 生成动态更新SQL语句
      *
-     * @param object Map对象
+     * @param present 按可更新列下标判断是否更新该列
+     * @return 动态更新SQL语句
      */
-    private void setDynamicUpdateSql(Map<String, ?> object) {
-        // StringBuffer sb = new StringBuffer("UPDATE ");
+    private String buildDynamicUpdate(IntPredicate present) {
         StringBuilder sb = new StringBuilder("UPDATE ");
 
         sb.append(tableName).append(" SET ");
-        int size = columnNameList.size();
-        for (int i = 0; i < size; i++) {
-            if (object.get(columnList.get(i)) == null || !propertyMap.get(columnNameList.get(i)).updatable()) {
+        for (int i = 0; i < dynamicColumns.length; i++) {
+            if (!present.test(i)) {
                 continue;
             }
-            sb.append(columnNameList.get(i)).append(" = :").append(columnList.get(i));
+            int column = dynamicColumns[i];
+            sb.append(columnNameList.get(column)).append(" = :").append(columnList.get(column));
             sb.append(", ");
         }
         sb.deleteCharAt(sb.length() - 2);
         sb.append(" WHERE ");
         sb.append(idName).append(" = :").append(id);
-        dynamicUpdate = sb.toString();
+        return sb.toString();
+    }
+
+    /**
+     * 生成动态更新的可更新列
+     */
+    private void setDynamicColumns() {
+        int size = columnNameList.size();
+        int[] columns = new int[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (propertyMap.get(columnNameList.get(i)).updatable()) {
+                columns[count++] = i;
+            }
+        }
+        dynamicColumns = Arrays.copyOf(columns, count);
     }
 
     /**
@@ -0,0 +1,157 @@
+package com.devotion.dao.support.sql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * SQL涉及表名解析<br>
+ * 按FROM/JOIN/INTO/UPDATE/DELETE后的标识符识别表名，FreeMarker指令被忽略，${TABLE}按逻辑表名处理。
+ * 解析是保守的：宁可多识别出表名，无法识别时返回空数组由调用方按未知处理
+ */
+public final class SqlTableExtractor {
+
+    /**
+     * FreeMarker指令
+     */
+    private static final Pattern DIRECTIVE = Pattern.compile("</?[#@][^>]*>");
+
+    /**
+     * FreeMarker插值
+     */
+    private static final Pattern INTERPOLATION = Pattern.compile("\\$\\{\\s*([A-Za-z0-9_]+)[^}]*\\}");
+
+    /**
+     * 注释与字符串常量
+     */
+    private static final Pattern COMMENT_OR_LITERAL = Pattern.compile("--[^\\n]*|/\\*.*?\\*/|'(?:[^']|'')*'",
+            Pattern.DOTALL);
+
+    /**
+     * 词法单元
+     */
+    private static final Pattern TOKEN = Pattern.compile("[A-Za-z0-9_$.`\"\\[\\]:]+|[,()]");
+
+    /**
+     * 表名后续出现时结束表名列表的关键字
+     */
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList("SELECT", "FROM", "WHERE", "JOIN",
+            "INNER", "LEFT", "RIGHT", "FULL", "OUTER", "CROSS", "ON", "USING", "GROUP", "ORDER", "HAVING", "UNION",
+            "LIMIT", "SET", "VALUES", "INTO", "AS", "FETCH", "FOR", "WITH", "START", "CONNECT", "MINUS", "EXCEPT",
+            "INTERSECT", "NATURAL", "STRAIGHT_JOIN", "DUAL", "SKIP", "FIRST", "OFFSET", "WINDOW", "RETURNING"));
+
+    /**
+     * 私有构造方法
+     */
+    private SqlTableExtractor() {
+    }
+
+    /**
+     * 解析SQL涉及的表名
+     *
+     * @param sql SQL或SQL模板
+     * @return 大写表名（去重排序），无法识别时返回空数组
+     */
+    public static String[] extract(String sql) {
+        if (sql == null || sql.isEmpty()) {
+            return new String[0];
+        }
+        String text = DIRECTIVE.matcher(sql).replaceAll(" ");
+        text = INTERPOLATION.matcher(text).replaceAll("$1");
+        text = COMMENT_OR_LITERAL.matcher(text).replaceAll(" ");
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = TOKEN.matcher(text);
+        while (matcher.find()) {
+            tokens.add(matcher.group());
+        }
+        Set<String> tables = new TreeSet<>();
+        for (int i = 0; i < tokens.size(); i++) {
+            String keyword = tokens.get(i).toUpperCase();
+            switch (keyword) {
+                case "FROM":
+                    i = readTableList(tokens, i + 1, tables);
+                    break;
+                case "JOIN":
+                case "INTO":
+                case "UPDATE":
+                    addTable(tokens, i + 1, tables);
+                    break;
+                case "DELETE":
+                    /** 兼容省略FROM的DELETE语法 */
+                    if (i + 1 < tokens.size() && !"FROM".equalsIgnoreCase(tokens.get(i + 1))) {
+                        addTable(tokens, i + 1, tables);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return tables.toArray(new String[tables.size()]);
+    }
+
+    /**
+     * 读取FROM后逗号分隔的表名列表
+     *
+     * @param tokens 词法单元
+     * @param start  起始位置
+     * @param tables 表名集合
+     * @return 最后处理的位置
+     */
+    private static int readTableList(List<String> tokens, int start, Set<String> tables) {
+        int i = start;
+        while (i < tokens.size()) {
+            addTable(tokens, i, tables);
+            /** 跳过表名、AS与别名 */
+            i++;
+            if (i < tokens.size() && "AS".equalsIgnoreCase(tokens.get(i))) {
+                i++;
+            }
+            if (i < tokens.size() && isIdentifier(tokens.get(i))) {
+                i++;
+            }
+            if (i < tokens.size() && ",".equals(tokens.get(i))) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i - 1;
+    }
+
+    /**
+     * 指定位置为表名时加入集合
+     *
+     * @param tokens 词法单元
+     * @param index  位置
+     * @param tables 表名集合
+     */
+    private static void addTable(List<String> tokens, int index, Set<String> tables) {
+        if (index >= tokens.size() || !isIdentifier(tokens.get(index))) {
+            return;
+        }
+        String name = tokens.get(index).replaceAll("[`\"\\[\\]]", "");
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0) {
+            name = name.substring(dot + 1);
+        }
+        if (!name.isEmpty()) {
+            tables.add(name.toUpperCase());
+        }
+    }
+
+    /**
+     * 判断是否为标识符（非关键字、非参数、非符号）
+     *
+     * @param token 词法单元
+     * @return 是否为标识符
+     */
+    private static boolean isIdentifier(String token) {
+        char c = token.charAt(0);
+        return c != ',' && c != '(' && c != ')' && c != ':' && !KEYWORDS.contains(token.toUpperCase());
+    }
+}
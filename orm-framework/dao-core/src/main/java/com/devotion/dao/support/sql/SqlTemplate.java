@@ -0,0 +1,304 @@
+package com.devotion.dao.support.sql;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import freemarker.template.Template;
+
+/**
+ * 已分类的SQL模板<br>
+ * 加载时按模板内容分为三类：
+ * <ul>
+ * <li>静态：不含FreeMarker指令与插值，直接输出原文</li>
+ * <li>条件：只含if/elseif/else，条件只判断参数是否存在或为空（如{@code name?exists && name!=""}），
+ * 输出只取决于各参数的状态，按状态签名缓存渲染结果，相同签名不再经过FreeMarker</li>
+ * <li>动态：其他模板，每次由FreeMarker渲染</li>
+ * </ul>
+ */
+public final class SqlTemplate {
+
+    /**
+     * 模板缓存，按SQL原文共享
+     */
+    private static final ConcurrentMap<String, SqlTemplate> TEMPLATES = new ConcurrentHashMap<>();
+
+    /**
+     * 每个模板缓存的渲染结果上限
+     */
+    private static final int MAX_SHAPES = 256;
+
+    /**
+     * 每个参数状态占用的位数
+     */
+    private static final int STATE_BITS = 2;
+
+    /**
+     * 条件模板可引用的参数个数上限
+     */
+    private static final int MAX_NAMES = Long.SIZE / STATE_BITS;
+
+    /**
+     * FreeMarker指令标签
+     */
+    private static final Pattern DIRECTIVE = Pattern.compile("<(/?)#(\\w*)([^>]*)>");
+
+    /**
+     * 判断参数是否存在或为空的条件
+     */
+    private static final Pattern PRESENCE = Pattern.compile("\\(?\\s*([A-Za-z_]\\w*)\\s*\\)?\\s*"
+            + "(\\?\\?|\\?exists\\b|\\?has_content\\b|(?:!=|==|=)\\s*(?:\"\"|''))");
+
+    /**
+     * 条件中允许出现的其余内容：已替换的判断、逻辑运算与括号
+     */
+    private static final Pattern LOGIC = Pattern.compile("(?:\\s|#|&&|\\|\\||!(?=\\s*[#!(])|\\(|\\))*");
+
+    /**
+     * 模板类型
+     */
+    private enum Kind {
+        /**
+         * 静态
+         */
+        STATIC,
+        /**
+         * 条件
+         */
+        CONDITIONAL,
+        /**
+         * 动态
+         */
+        DYNAMIC
+    }
+
+    /**
+     * SQL原文
+     */
+    private final String source;
+
+    /**
+     * 模板类型
+     */
+    private final Kind kind;
+
+    /**
+     * 已编译的模板，静态模板为null
+     */
+    private final Template template;
+
+    /**
+     * 条件模板引用的参数名
+     */
+    private final String[] names;
+
+    /**
+     * 状态签名到渲染结果的缓存，非条件模板为null
+     */
+    private final ConcurrentMap<Long, String> shapes;
+
+    /**
+     * 构造方法
+     *
+     * @param source SQL原文
+     */
+    private SqlTemplate(String source) {
+        this.source = source;
+        if (!isTemplate(source)) {
+            this.kind = Kind.STATIC;
+            this.template = null;
+            this.names = null;
+            this.shapes = null;
+            return;
+        }
+        this.template = FreeMakerParser.compile(source);
+        this.names = conditionNames(source);
+        this.kind = names == null ? Kind.DYNAMIC : Kind.CONDITIONAL;
+        this.shapes = names == null ? null : new ConcurrentHashMap<>();
+    }
+
+    /**
+     * 获取SQL模板，同一SQL原文只分类、编译一次
+     *
+     * @param sql SQL原文
+     * @return SQL模板
+     */
+    public static SqlTemplate of(String sql) {
+        SqlTemplate template = TEMPLATES.get(sql);
+        if (template == null) {
+            template = TEMPLATES.computeIfAbsent(sql, SqlTemplate::new);
+        }
+        return template;
+    }
+
+    /**
+     * 渲染SQL
+     *
+     * @param root 参数
+     * @return 渲染后的SQL串
+     */
+    public String render(Map<String, Object> root) {
+        if (kind == Kind.STATIC) {
+            return source;
+        }
+        if (kind == Kind.DYNAMIC) {
+            return FreeMakerParser.process(template, root);
+        }
+        Long signature = signature(root);
+        String sql = shapes.get(signature);
+        if (sql == null) {
+            sql = FreeMakerParser.process(template, root);
+            if (shapes.size() < MAX_SHAPES) {
+                shapes.putIfAbsent(signature, sql);
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * 是否为静态模板
+     *
+     * @return 判断结果
+     */
+    public boolean isStatic() {
+        return kind == Kind.STATIC;
+    }
+
+    /**
+     * 是否按参数状态缓存渲染结果
+     *
+     * @return 判断结果
+     */
+    public boolean isConditional() {
+        return kind == Kind.CONDITIONAL;
+    }
+
+    /**
+     * 获取SQL原文
+     *
+     * @return SQL原文
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * 计算参数状态签名
+     *
+     * @param root 参数
+     * @return 状态签名
+     */
+    private long signature(Map<String, Object> root) {
+        long signature = 0;
+        for (int i = 0; i < names.length; i++) {
+            signature |= (long) state(root == null ? null : root.get(names[i])) << (i * STATE_BITS);
+        }
+        return signature;
+    }
+
+    /**
+     * 参数状态：0为null，1为空字符串，2为空集合、空Map或空数组，3为其他值
+     *
+     * @param value 参数值
+     * @return 参数状态
+     */
+    private static int state(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return ((String) value).isEmpty() ? 1 : 3;
+        }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).isEmpty() ? 2 : 3;
+        }
+        if (value instanceof Map) {
+            return ((Map<?, ?>) value).isEmpty() ? 2 : 3;
+        }
+        if (value.getClass().isArray()) {
+            return Array.getLength(value) == 0 ? 2 : 3;
+        }
+        return 3;
+    }
+
+    /**
+     * 判断SQL是否含有FreeMarker指令或插值
+     *
+     * @param sql SQL原文
+     * @return 判断结果
+     */
+    private static boolean isTemplate(String sql) {
+        return sql.contains("${") || sql.contains("#{") || sql.contains("<#") || sql.contains("</#")
+                || sql.contains("<@") || sql.contains("[#") || sql.contains("[@");
+    }
+
+    /**
+     * 提取条件模板引用的参数名
+     *
+     * @param sql SQL原文
+     * @return 参数名，不是条件模板时为null
+     */
+    private static String[] conditionNames(String sql) {
+        if (sql.contains("${") || sql.contains("#{") || sql.contains("<@") || sql.contains("[#")
+                || sql.contains("[@") || sql.contains("<#--")) {
+            return null;
+        }
+        List<String> names = new ArrayList<>();
+        Matcher matcher = DIRECTIVE.matcher(sql);
+        while (matcher.find()) {
+            boolean closing = !matcher.group(1).isEmpty();
+            String directive = matcher.group(2);
+            String condition = matcher.group(3).trim();
+            if (closing) {
+                if (!"if".equals(directive) || !condition.isEmpty()) {
+                    return null;
+                }
+            } else if ("else".equals(directive)) {
+                if (!condition.isEmpty()) {
+                    return null;
+                }
+            } else if ("if".equals(directive) || "elseif".equals(directive)) {
+                if (!collectNames(condition, names)) {
+                    return null;
+                }
+            } else {
+                return null;
+            }
+        }
+        return names.size() <= MAX_NAMES ? names.toArray(new String[names.size()]) : null;
+    }
+
+    /**
+     * 校验条件只由存在与空值判断组成，并收集参数名
+     *
+     * @param condition 条件
+     * @param names     参数名
+     * @return 是否为存在与空值判断
+     */
+    private static boolean collectNames(String condition, List<String> names) {
+        if (condition.isEmpty() || condition.indexOf('#') >= 0) {
+            return false;
+        }
+        Matcher matcher = PRESENCE.matcher(condition);
+        StringBuffer rest = new StringBuffer();
+        while (matcher.find()) {
+            String name = matcher.group(1);
+            if (!names.contains(name)) {
+                names.add(name);
+            }
+            /** 判断替换为占位符，保留未配对的括号以校验剩余的逻辑结构 */
+            String atom = matcher.group().trim();
+            boolean open = atom.startsWith("(");
+            boolean close = atom.indexOf(')') >= 0;
+            matcher.appendReplacement(rest, open && !close ? "(#" : !open && close ? "#)" : "#");
+        }
+        matcher.appendTail(rest);
+        return LOGIC.matcher(rest).matches();
+    }
+}
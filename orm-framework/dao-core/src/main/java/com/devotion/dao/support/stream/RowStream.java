@@ -0,0 +1,237 @@
+package com.devotion.dao.support.stream;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterDisposer;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.SqlParameter;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.util.Assert;
+
+/**
+ * 流式查询结果<br>
+ * 逐行读取结果集并映射，不在内存中保留已读取的行。游标占用数据库连接直到读完或关闭，
+ * 读完最后一行、映射出错或调用{@link #close()}时依次释放结果集、语句和连接，
+ * 事务中的连接由事务管理器负责关闭。MySQL逐行流式读取期间，同一连接不能执行其他语句
+ *
+ * @param <T> 结果类型
+ */
+public final class RowStream<T> implements Iterator<T>, AutoCloseable {
+
+    /**
+     * 默认每次从数据库读取的行数
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    /**
+     * JDBC模板，提供数据源、超时与异常转换
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 执行的SQL
+     */
+    private final String sql;
+
+    /**
+     * 结果映射
+     */
+    private final RowMapper<T> rowMapper;
+
+    /**
+     * 数据库连接
+     */
+    private Connection connection;
+
+    /**
+     * 查询语句
+     */
+    private PreparedStatement statement;
+
+    /**
+     * 语句的参数创建器
+     */
+    private PreparedStatementCreator creator;
+
+    /**
+     * 结果集
+     */
+    private ResultSet resultSet;
+
+    /**
+     * 当前行号
+     */
+    private int rowNum;
+
+    /**
+     * 结果集是否已定位到未读取的行
+     */
+    private boolean fetched;
+
+    /**
+     * 是否已关闭
+     */
+    private boolean closed;
+
+    /**
+     * 构造方法
+     *
+     * @param jdbcTemplate JDBC模板
+     * @param sql          执行的SQL
+     * @param rowMapper    结果映射
+     */
+    private RowStream(JdbcTemplate jdbcTemplate, String sql, RowMapper<T> rowMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sql = sql;
+        this.rowMapper = rowMapper;
+    }
+
+    /**
+     * 执行查询并打开游标
+     *
+     * @param template  JDBC模板
+     * @param sql       含命名参数的SQL
+     * @param paramMap  查询参数
+     * @param rowMapper 结果映射
+     * @param fetchSize 每次从数据库读取的行数，MySQL逐行流式读取时为Integer.MIN_VALUE
+     * @param <T>       结果类型
+     * @return 流式查询结果
+     */
+    public static <T> RowStream<T> open(NamedParameterJdbcTemplate template, String sql, Map<String, ?> paramMap,
+                                        RowMapper<T> rowMapper, int fetchSize) {
+        Assert.isInstanceOf(JdbcTemplate.class, template.getJdbcOperations());
+        RowStream<T> rows = new RowStream<>((JdbcTemplate) template.getJdbcOperations(), sql, rowMapper);
+        rows.execute(paramMap, fetchSize);
+        return rows;
+    }
+
+    /**
+     * 绑定参数并执行查询，失败时释放已获取的资源
+     *
+     * @param paramMap  查询参数
+     * @param fetchSize 每次从数据库读取的行数
+     */
+    private void execute(Map<String, ?> paramMap, int fetchSize) {
+        MapSqlParameterSource paramSource = new MapSqlParameterSource(paramMap);
+        ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+        Object[] params = NamedParameterUtils.buildValueArray(parsedSql, paramSource, null);
+        List<SqlParameter> declaredParameters = NamedParameterUtils.buildSqlParameterList(parsedSql, paramSource);
+        PreparedStatementCreatorFactory factory = new PreparedStatementCreatorFactory(
+                NamedParameterUtils.substituteNamedParameters(parsedSql, paramSource), declaredParameters);
+        /** 只进只读的结果集，驱动才能按fetchSize分批或逐行读取 */
+        factory.setResultSetType(ResultSet.TYPE_FORWARD_ONLY);
+        creator = factory.newPreparedStatementCreator(params);
+        DataSource dataSource = jdbcTemplate.getDataSource();
+        connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            statement = creator.createPreparedStatement(connection);
+            statement.setFetchSize(fetchSize);
+            DataSourceUtils.applyTimeout(statement, dataSource, jdbcTemplate.getQueryTimeout());
+            resultSet = statement.executeQuery();
+        } catch (SQLException e) {
+            close();
+            throw jdbcTemplate.getExceptionTranslator().translate("RowStream", sql, e);
+        } catch (RuntimeException | Error e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * 是否还有未读取的行，读完时释放资源
+     *
+     * @return 判断结果
+     */
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!fetched) {
+            try {
+                fetched = resultSet.next();
+            } catch (SQLException e) {
+                close();
+                throw jdbcTemplate.getExceptionTranslator().translate("RowStream", sql, e);
+            }
+            if (!fetched) {
+                close();
+            }
+        }
+        return fetched;
+    }
+
+    /**
+     * 读取并映射下一行
+     *
+     * @return 映射后的行
+     */
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        fetched = false;
+        try {
+            return rowMapper.mapRow(resultSet, rowNum++);
+        } catch (SQLException e) {
+            close();
+            throw jdbcTemplate.getExceptionTranslator().translate("RowStream", sql, e);
+        } catch (RuntimeException | Error e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * 转换为Stream，关闭Stream时释放资源
+     *
+     * @return 有序、串行的Stream
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false)
+                .onClose(this::close);
+    }
+
+    /**
+     * 释放结果集、语句和连接，可重复调用
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        fetched = false;
+        JdbcUtils.closeResultSet(resultSet);
+        resultSet = null;
+        if (creator instanceof ParameterDisposer) {
+            ((ParameterDisposer) creator).cleanupParameters();
+        }
+        JdbcUtils.closeStatement(statement);
+        statement = null;
+        DataSourceUtils.releaseConnection(connection, jdbcTemplate.getDataSource());
+        connection = null;
+    }
+}
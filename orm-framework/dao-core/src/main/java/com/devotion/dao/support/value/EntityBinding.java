@@ -0,0 +1,360 @@
+package com.devotion.dao.support.value;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import javax.persistence.Column;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.util.ClassUtils;
+
+import com.devotion.dao.constants.DaoConstants;
+import com.devotion.dao.resource.parse.SqlBean;
+import com.devotion.dao.transaction.anotation.SQLPartition;
+import com.devotion.dao.utils.Utils;
+
+/**
+ * 实体参数绑定描述<br>
+ * 每个实体类只解析一次Column注解，预先确定属性名、列名与日期格式；
+ * 读方法通过LambdaMetafactory生成直接调用，之后的参数提取只是按下标填充数组
+ */
+public final class EntityBinding {
+
+    /**
+     * 日志
+     */
+    private static Logger logger = LoggerFactory.getLogger(EntityBinding.class);
+
+    /**
+     * 绑定描述缓存
+     */
+    private static final ConcurrentMap<Class<?>, EntityBinding> BINDINGS = new ConcurrentHashMap<>();
+
+    /**
+     * 生成读方法调用所用的Lookup
+     */
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * 实体类
+     */
+    private final Class<?> entityClass;
+
+    /**
+     * 属性访问器
+     */
+    private final PropertyAccessor[] accessors;
+
+    /**
+     * 属性名，与访问器下标一致
+     */
+    private final String[] propertyNames;
+
+    /**
+     * 列名，与访问器下标一致，未指定Column.name时为属性名
+     */
+    private final String[] columnNames;
+
+    /**
+     * 分表路由
+     */
+    private final String routeTable;
+
+    /**
+     * 分库注解
+     */
+    private final SQLPartition partition;
+
+    /**
+     * 构造方法
+     *
+     * @param entityClass 实体类
+     */
+    private EntityBinding(Class<?> entityClass) {
+        this.entityClass = entityClass;
+        List<PropertyAccessor> list = new ArrayList<>();
+        String table = null;
+        for (Method method : entityClass.getMethods()) {
+            if (method.isAnnotationPresent(Column.class)) {
+                Column column = method.getAnnotation(Column.class);
+                String name = BeanUtils.findPropertyForMethod(method).getName();
+                list.add(new PropertyAccessor(name, Utils.stringIsNotEmpty(column.name()) ? column.name() : name,
+                        method, column.columnDefinition()));
+                if (Utils.stringIsNotEmpty(column.table())) {
+                    table = column.table();
+                }
+            }
+        }
+        this.accessors = list.toArray(new PropertyAccessor[list.size()]);
+        this.propertyNames = new String[accessors.length];
+        this.columnNames = new String[accessors.length];
+        for (int i = 0; i < accessors.length; i++) {
+            propertyNames[i] = accessors[i].name;
+            columnNames[i] = accessors[i].column;
+        }
+        this.routeTable = table;
+        this.partition = entityClass.getAnnotation(SQLPartition.class);
+    }
+
+    /**
+     * 获取实体类的绑定描述
+     *
+     * @param entityClass 实体类
+     * @return 绑定描述
+     */
+    public static EntityBinding of(Class<?> entityClass) {
+        EntityBinding binding = BINDINGS.get(entityClass);
+        if (binding == null) {
+            binding = BINDINGS.computeIfAbsent(entityClass, EntityBinding::new);
+        }
+        return binding;
+    }
+
+    /**
+     * 提取实体参数
+     *
+     * @param entity 实体对象
+     * @return 参数Map
+     */
+    public Map<String, Object> bind(Object entity) {
+        Object[] values = values(entity);
+        Map<String, Object> paramMap = new HashMap<>((int) (values.length / 0.75f) + 2);
+        for (int i = 0; i < values.length; i++) {
+            paramMap.put(propertyNames[i], values[i]);
+        }
+        if (routeTable != null) {
+            paramMap.put(DaoConstants.ROUTE_TABLE, routeTable);
+        }
+        return paramMap;
+    }
+
+    /**
+     * 提取实体参数值，顺序与{@link #getPropertyNames()}一致
+     *
+     * @param entity 实体对象
+     * @return 参数值
+     */
+    public Object[] values(Object entity) {
+        Object[] values = new Object[accessors.length];
+        for (int i = 0; i < accessors.length; i++) {
+            values[i] = accessors[i].get(entity);
+        }
+        return values;
+    }
+
+    /**
+     * 获取属性名
+     *
+     * @return 属性名，调用方不应修改
+     */
+    public String[] getPropertyNames() {
+        return propertyNames;
+    }
+
+    /**
+     * 获取列名
+     *
+     * @return 列名，调用方不应修改
+     */
+    public String[] getColumnNames() {
+        return columnNames;
+    }
+
+    /**
+     * 获取分表路由
+     *
+     * @return 分表路由，未配置为null
+     */
+    public String getRouteTable() {
+        return routeTable;
+    }
+
+    /**
+     * 生成实体对应的SQL映射
+     *
+     * @param isRead 是否可读，为null时取注解配置
+     * @return SQL映射
+     */
+    public SqlBean getSqlBean(Boolean isRead) {
+        if (partition != null) {
+            return new SqlBean(partition.id(), isRead == null ? partition.isRead() : isRead, null,
+                    partition.dsName(), null);
+        }
+        return new SqlBean(null, false, null, null, null);
+    }
+
+    /**
+     * 获取实体类
+     *
+     * @return 实体类
+     */
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * 生成读方法调用，无法生成时退回反射调用
+     *
+     * @param method 读方法
+     * @return 读方法调用
+     */
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> getter(Method method) {
+        Class<?> owner = method.getDeclaringClass();
+        if (isAccessible(owner) && Modifier.isPublic(method.getModifiers())) {
+            try {
+                MethodHandle handle = LOOKUP.unreflect(method);
+                CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply", MethodType.methodType(Function.class),
+                        MethodType.methodType(Object.class, Object.class), handle,
+                        MethodType.methodType(ClassUtils.resolvePrimitiveIfNecessary(method.getReturnType()), owner));
+                return (Function<Object, Object>) site.getTarget().invoke();
+            } catch (Throwable e) {
+                logger.debug("Falling back to reflective invocation of " + method, e);
+            }
+        }
+        return entity -> {
+            try {
+                if (!method.isAccessible()) {
+                    method.setAccessible(true);
+                }
+                return method.invoke(entity);
+            } catch (Exception e) {
+                logger.debug("reflect error.[" + method + "]", e);
+                return null;
+            }
+        };
+    }
+
+    /**
+     * 判断类是否可生成直接调用：公共类且对本框架的类加载器可见
+     *
+     * @param clazz 类
+     * @return 判断结果
+     */
+    private static boolean isAccessible(Class<?> clazz) {
+        return Modifier.isPublic(clazz.getModifiers())
+                && (clazz.getEnclosingClass() == null || Modifier.isStatic(clazz.getModifiers()))
+                && ClassUtils.isVisible(clazz, EntityBinding.class.getClassLoader());
+    }
+
+    /**
+     * 属性访问器
+     */
+    private static final class PropertyAccessor {
+
+        /**
+         * 属性名
+         */
+        private final String name;
+
+        /**
+         * 列名
+         */
+        private final String column;
+
+        /**
+         * 读方法
+         */
+        private final Method method;
+
+        /**
+         * 读方法调用
+         */
+        private final Function<Object, Object> getter;
+
+        /**
+         * 日期格式，未配置或不是合法的日期格式（如columnDefinition为datetime等DDL）时为null
+         */
+        private final String datePattern;
+
+        /**
+         * 日期格式化器，线程安全；格式不被java.time支持时为null
+         */
+        private final DateTimeFormatter formatter;
+
+        /**
+         * java.time不支持的格式退回SimpleDateFormat，每个线程一个实例
+         */
+        private final ThreadLocal<SimpleDateFormat> legacyFormat;
+
+        /**
+         * 构造方法
+         *
+         * @param name        属性名
+         * @param column      列名
+         * @param method      读方法
+         * @param datePattern 日期格式
+         */
+        private PropertyAccessor(String name, String column, Method method, String datePattern) {
+            this.name = name;
+            this.column = column;
+            this.method = method;
+            this.getter = getter(method);
+            String pattern = "".equals(datePattern) ? null : datePattern;
+            DateTimeFormatter dateTimeFormatter = null;
+            ThreadLocal<SimpleDateFormat> simpleDateFormat = null;
+            if (pattern != null) {
+                try {
+                    dateTimeFormatter = DateTimeFormatter.ofPattern(pattern).withZone(ZoneId.systemDefault());
+                } catch (IllegalArgumentException e) {
+                    logger.debug("Falling back to SimpleDateFormat for pattern " + pattern, e);
+                    try {
+                        /** 先校验格式，避免在线程首次取用时才抛出异常 */
+                        String legacyPattern = new SimpleDateFormat(pattern).toPattern();
+                        simpleDateFormat = ThreadLocal.withInitial(() -> new SimpleDateFormat(legacyPattern));
+                    } catch (IllegalArgumentException ex) {
+                        logger.debug("Ignoring invalid date pattern " + pattern + " of " + method, ex);
+                        pattern = null;
+                    }
+                }
+            }
+            this.datePattern = pattern;
+            this.formatter = dateTimeFormatter;
+            this.legacyFormat = simpleDateFormat;
+        }
+
+        /**
+         * 读取属性值
+         *
+         * @param entity 实体对象
+         * @return 属性值
+         */
+        private Object get(Object entity) {
+            Object value;
+            try {
+                value = getter.apply(entity);
+            } catch (RuntimeException e) {
+                logger.debug("reflect error.[" + method + "]", e);
+                return null;
+            }
+            if (datePattern == null || value == null) {
+                return value;
+            }
+            if (value instanceof Date) {
+                Date date = (Date) value;
+                return formatter != null ? formatter.format(Instant.ofEpochMilli(date.getTime()))
+                        : legacyFormat.get().format(date);
+            }
+            return value;
+        }
+    }
+}
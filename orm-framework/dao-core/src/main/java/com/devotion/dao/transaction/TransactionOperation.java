@@ -1,5 +1,8 @@
 package com.devotion.dao.transaction;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import javax.sql.DataSource;
 
 import com.devotion.dao.resource.XmlResource;
@@ -10,6 +13,11 @@ import com.devotion.dao.transaction.template.TransactionTemplate;
  */
 public abstract class TransactionOperation extends XmlResource {
 
+	/**
+	 * 各数据源的事务模板，事务模板无状态，按数据源复用
+	 */
+	private final ConcurrentMap<DataSource, TransactionTemplate> transactionTemplates = new ConcurrentHashMap<>();
+
 	/**
 	 * 
 	 * 功能描述: <br>
@@ -33,6 +41,13 @@ public abstract class TransactionOperation extends XmlResource {
 	public TransactionTemplate getTransactionTemplate(Object param) {
 		/** 分库路由数据源 */
 		DataSource dataSource = routeDataSource(param, null);
-		return new TransactionTemplate(dataSource);
+		if (dataSource == null) {
+			return new TransactionTemplate(null);
+		}
+		TransactionTemplate transactionTemplate = transactionTemplates.get(dataSource);
+		if (transactionTemplate == null) {
+			transactionTemplate = transactionTemplates.computeIfAbsent(dataSource, TransactionTemplate::new);
+		}
+		return transactionTemplate;
 	}
 }
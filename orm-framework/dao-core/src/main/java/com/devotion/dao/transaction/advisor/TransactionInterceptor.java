@@ -13,16 +13,22 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.util.ClassUtils;
 
 import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * 事务拦截器 事务异常机制 对入通过事务处理的service，抛出的异常均会被包成BaseException
  * 1、连接异常code是error.dal.001 对应的venUse errorCode 是18008001
  * 2、数据库访问异常code是error.dal.007 对应的venUse errorCode 是18008002
- * 3、业务异常需要通过getCause方法获取
+ * 3、业务异常需要通过getCause方法获取<br>
+ * 各方法的事务注解、路由参数注解在首次拦截时解析为事务描述并缓存，之后的调用不再反射读取注解
  */
 public class TransactionInterceptor implements MethodInterceptor {
 
@@ -36,6 +42,11 @@ public class TransactionInterceptor implements MethodInterceptor {
      */
     private DaoClient daoClient;
 
+    /**
+     * 各方法的事务描述
+     */
+    private final ConcurrentMap<Method, TransactionDescriptor> descriptors = new ConcurrentHashMap<>();
+
     /**
      * 事务回调方法
      *
@@ -44,11 +55,13 @@ public class TransactionInterceptor implements MethodInterceptor {
      * @throws Throwable 异常
      */
     public Object invoke(final MethodInvocation invocation) throws Throwable {
+        TransactionDescriptor descriptor = getDescriptor(invocation.getMethod());
         /** 加Transactional的Method */
-        if (invocation.getMethod().isAnnotationPresent(Transactional.class)) {
-            Transactional transactional = invocation.getMethod().getAnnotation(Transactional.class);
+        if (descriptor.transactional != null) {
+            Transactional transactional = descriptor.transactional;
             /** 根据拦截到的业务数据，路由数据源 */
-            TransactionTemplate transactionTemplate = daoClient.getTransactionTemplate(getParameter(invocation));
+            TransactionTemplate transactionTemplate = daoClient.getTransactionTemplate(
+                    getParameter(descriptor, invocation.getArguments()));
             /** 事务回调 */
             return transactionTemplate.execute(() -> {
                 try {
@@ -61,21 +74,7 @@ public class TransactionInterceptor implements MethodInterceptor {
                     }
                     throw new BaseException(ExceptionType.EXCEPTION_DEF.getCode(), e, null, e.getMessage());
                 }
-            }, transactional.propagation());
-//            return transactionTemplate.execute(new CallBackTemplate<Object>() {
-//                public Object invoke() {
-//                    try {
-//                        /** 事务回调执行 */
-//                        return invocation.proceed();
-//                    } catch (Throwable e) {
-//                        if (DataAccessException.class.isAssignableFrom(e.getClass())) {
-//                            throw new BaseException("error.dal.008", e, null, "数据访问异常");
-//                        } else {
-//                            throw new BaseException("error.dal.007", e, null, e.getMessage());
-//                        }
-//                    }
-//                }
-//            }, transactional.propagation());
+            }, transactional.propagation(), transactional.isolation());
         }
         /** 没加的方法，直接通过 */
         try {
@@ -93,33 +92,46 @@ public class TransactionInterceptor implements MethodInterceptor {
         }
     }
 
+    /**
+     * 获取方法的事务描述，首次调用时解析
+     *
+     * @param method 拦截的方法
+     * @return 事务描述
+     */
+    private TransactionDescriptor getDescriptor(Method method) {
+        TransactionDescriptor descriptor = descriptors.get(method);
+        if (descriptor == null) {
+            descriptor = descriptors.computeIfAbsent(method, TransactionDescriptor::of);
+        }
+        return descriptor;
+    }
+
     /**
      * 获取业务参数
      *
-     * @param invocation 方法调用
+     * @param descriptor 事务描述
+     * @param arguments  拦截业务对象参数
      * @return 业务参数
      */
-    private Object[] getParameter(MethodInvocation invocation) {
-        /** 事务注解 */
-        Transactional transactional = invocation.getMethod().getAnnotation(Transactional.class);
-        /** 路由参数注解 */
-        RouteParam routeParam = invocation.getMethod().getAnnotation(RouteParam.class);
+    private Object[] getParameter(TransactionDescriptor descriptor, Object[] arguments) {
         /** 解析业务参数，确定第几个业务入参，作为分库对象 */
-        Object[] indexParams = indexParam(transactional, invocation.getArguments());
+        Object[] indexParams = indexParam(descriptor.transactional, arguments);
 
-        if (routeParam == null) {
+        if (descriptor.routeParam == null || indexParams == null) {
             return indexParams;
         }
         /** 路由参数注解确定细粒度分库对象 */
-        Object obj = isInstance(indexParams, routeParam);
+        Object obj = isInstance(indexParams, descriptor);
 
         if (obj == null) {
             return indexParams;
         }
         try {
             /** 解析分库参数类型，生成Map类型的分库参数 */
-            obj = getValue(obj, routeParam.field());
-            LOGGER.debug("interceptor route param is : " + obj);
+            obj = getValue(obj, descriptor);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("interceptor route param is : " + obj);
+            }
         } catch (Exception e) {
             LOGGER.info(e.getMessage());
             return indexParams;
@@ -129,39 +141,42 @@ public class TransactionInterceptor implements MethodInterceptor {
 
     /**
      * 功能描述: <br>
-     * 根据分库注解，分析业务参数，实例化分库注解定义的分库参数规则
+     * 根据分库注解，分析业务参数，实例化分库注解定义的分库参数规则<br>
+     * 只检查声明类型可能匹配分库参数类型的位置
      *
      * @param indexParams 业务参数
-     * @param routeParam  分库注解
+     * @param descriptor  事务描述
      * @return 对象
      */
-    private Object isInstance(Object[] indexParams, RouteParam routeParam) {
-        Object obj = null;
-        for (Object param : indexParams) {
+    private Object isInstance(Object[] indexParams, TransactionDescriptor descriptor) {
+        RouteParam routeParam = descriptor.routeParam;
+        int[] candidates = descriptor.candidates;
+        int count = candidates == null ? indexParams.length : candidates.length;
+        for (int i = 0; i < count; i++) {
+            Object param = indexParams[candidates == null ? i : candidates[i]];
             /** 处理数组 */
             if (routeParam.isArray()) {
                 param = ((Object[]) param)[routeParam.index()];
             }
             /** 实例化 */
             if (routeParam.clazz().isInstance(param)) {
-                obj = param;
-                break;
+                return param;
             }
         }
-        return obj;
+        return null;
     }
 
     /**
      * 功能描述: <br>
      * 解析分库对象
      *
-     * @param obj   分库对象
-     * @param field 分库定义
+     * @param obj        分库对象
+     * @param descriptor 事务描述
      * @return 值
      * @throws BaseException 异常
      */
-
-    private Object getValue(Object obj, String field) throws /* Exception */ BaseException {
+    private Object getValue(Object obj, TransactionDescriptor descriptor) throws /* Exception */ BaseException {
+        String field = descriptor.routeParam.field();
         Map<String, Object> routeMap = new HashMap<>();
         if (obj instanceof Map<?, ?>) {
             /** Map类型 */
@@ -178,14 +193,11 @@ public class TransactionInterceptor implements MethodInterceptor {
             /** 数字类型 */
             routeMap.put(field, obj);
         } else {
-            /** 对象类型 */
-            PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(obj.getClass(), field);
-            // Object value = descriptor.getReadMethod().invoke(obj, new
-            // Object[] {});
-
+            /** 对象类型，读方法按类缓存 */
+            Method readMethod = descriptor.getReadMethod(obj.getClass());
             Object value;
             try {
-                value = descriptor.getReadMethod().invoke(obj, new Object[]{});
+                value = readMethod.invoke(obj);
             } catch (Exception e) {
                 throw new BaseException("param " + obj + " not invoke " + field);
             }
@@ -223,4 +235,133 @@ public class TransactionInterceptor implements MethodInterceptor {
     public void setDalClient(DaoClient daoClient) {
         this.daoClient = daoClient;
     }
+
+    /**
+     * 方法的事务描述<br>
+     * 缓存事务注解、路由参数注解，以及业务参数中可能作为分库对象的位置
+     */
+    private static final class TransactionDescriptor {
+
+        /**
+         * 未加事务注解的方法
+         */
+        private static final TransactionDescriptor NONE = new TransactionDescriptor(null, null, null);
+
+        /**
+         * 事务注解，未加注解时为null
+         */
+        private final Transactional transactional;
+
+        /**
+         * 路由参数注解，未加注解时为null
+         */
+        private final RouteParam routeParam;
+
+        /**
+         * 业务参数中需要检查的位置，为null时检查全部
+         */
+        private final int[] candidates;
+
+        /**
+         * 分库对象各类型的属性读方法
+         */
+        private final ConcurrentMap<Class<?>, Method> readMethods = new ConcurrentHashMap<>();
+
+        /**
+         * 构造方法
+         *
+         * @param transactional 事务注解
+         * @param routeParam    路由参数注解
+         * @param candidates    业务参数中需要检查的位置
+         */
+        private TransactionDescriptor(Transactional transactional, RouteParam routeParam, int[] candidates) {
+            this.transactional = transactional;
+            this.routeParam = routeParam;
+            this.candidates = candidates;
+        }
+
+        /**
+         * 解析方法的事务描述
+         *
+         * @param method 拦截的方法
+         * @return 事务描述
+         */
+        private static TransactionDescriptor of(Method method) {
+            Transactional transactional = method.getAnnotation(Transactional.class);
+            if (transactional == null) {
+                return NONE;
+            }
+            RouteParam routeParam = method.getAnnotation(RouteParam.class);
+            if (routeParam == null) {
+                return new TransactionDescriptor(transactional, null, null);
+            }
+            /** 按声明类型预先排除不可能是分库对象的参数 */
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            int paramIndex = transactional.paramIndex();
+            if (paramIndex >= 0) {
+                boolean candidate = paramIndex < parameterTypes.length && mayHold(parameterTypes[paramIndex], routeParam);
+                return new TransactionDescriptor(transactional, routeParam, candidate ? new int[]{0} : new int[0]);
+            }
+            int[] candidates = new int[parameterTypes.length];
+            int count = 0;
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (mayHold(parameterTypes[i], routeParam)) {
+                    candidates[count++] = i;
+                }
+            }
+            int[] resolved = new int[count];
+            System.arraycopy(candidates, 0, resolved, 0, count);
+            return new TransactionDescriptor(transactional, routeParam, resolved);
+        }
+
+        /**
+         * 声明类型的参数是否可能是分库对象
+         *
+         * @param type       参数声明类型
+         * @param routeParam 路由参数注解
+         * @return 判断结果
+         */
+        private static boolean mayHold(Class<?> type, RouteParam routeParam) {
+            if (routeParam.isArray()) {
+                /** 数组参数取元素判断，声明为Object等类型时运行时仍可能是数组 */
+                return type.isArray() ? !type.getComponentType().isPrimitive()
+                        && mayBeInstance(type.getComponentType(), routeParam.clazz())
+                        : type.isAssignableFrom(Object[].class);
+            }
+            return mayBeInstance(ClassUtils.resolvePrimitiveIfNecessary(type), routeParam.clazz());
+        }
+
+        /**
+         * 声明类型的值是否可能是指定类型的实例
+         *
+         * @param type  声明类型
+         * @param clazz 分库参数类型
+         * @return 判断结果
+         */
+        private static boolean mayBeInstance(Class<?> type, Class<?> clazz) {
+            return clazz.isAssignableFrom(type) || type.isAssignableFrom(clazz)
+                    || (type.isInterface() && !Modifier.isFinal(clazz.getModifiers()))
+                    || (clazz.isInterface() && !Modifier.isFinal(type.getModifiers()));
+        }
+
+        /**
+         * 获取分库对象类型的属性读方法
+         *
+         * @param clazz 分库对象类型
+         * @return 读方法
+         * @throws BaseException 属性不存在或不可读
+         */
+        private Method getReadMethod(Class<?> clazz) throws BaseException {
+            Method readMethod = readMethods.get(clazz);
+            if (readMethod == null) {
+                PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(clazz, routeParam.field());
+                if (descriptor == null || descriptor.getReadMethod() == null) {
+                    throw new BaseException("param " + clazz.getName() + " not invoke " + routeParam.field());
+                }
+                readMethod = descriptor.getReadMethod();
+                readMethods.putIfAbsent(clazz, readMethod);
+            }
+            return readMethod;
+        }
+    }
 }
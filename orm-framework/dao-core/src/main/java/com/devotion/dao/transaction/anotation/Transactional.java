@@ -5,6 +5,7 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+import com.devotion.dao.constants.TransactionIsolation;
 import com.devotion.dao.constants.TransactionPropagation;
 
 /**
@@ -19,4 +20,7 @@ public @interface Transactional {
 
 	/** 事务的传播行为 */
 	TransactionPropagation propagation() default TransactionPropagation.PROPAGATION_REQUIRED;
+
+	/** 事务的隔离级别 */
+	TransactionIsolation isolation() default TransactionIsolation.ISOLATION_DEFAULT;
 }
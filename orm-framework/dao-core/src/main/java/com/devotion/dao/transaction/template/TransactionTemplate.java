@@ -1,6 +1,7 @@
 package com.devotion.dao.transaction.template;
 
 import com.devotion.dao.constants.ExceptionType;
+import com.devotion.dao.constants.TransactionIsolation;
 import com.devotion.dao.constants.TransactionPropagation;
 import com.devotion.dao.exception.BaseException;
 import com.devotion.dao.utils.DataSourceContext;
@@ -14,13 +15,19 @@ import javax.sql.DataSource;
  * 事务模板 事务异常机制 对入通过事务处理的service，抛出的异常均会被包成BaseException <br>
  * 1、连接异常code是error.dal.001 对应的venUse errorCode 是18008001 <br>
  * 2、数据库访问异常code是error.dal.007 对应的venUse errorCode 是18008002 <br>
- * 3、业务异常需要通过getCause方法获取
+ * 3、业务异常需要通过getCause方法获取 <br>
+ * 事务管理器及各传播行为、隔离级别的spring事务模板在构造时创建，可被多线程复用
  */
 public class TransactionTemplate {
     /**
      * 数据源
      */
-    private DataSource dataSource;
+    private final DataSource dataSource;
+
+    /**
+     * spring的事务模板，按[传播行为][隔离级别]索引
+     */
+    private final org.springframework.transaction.support.TransactionTemplate[][] transactionTemplates;
 
     /**
      * 构造方法
@@ -29,6 +36,22 @@ public class TransactionTemplate {
      */
     public TransactionTemplate(DataSource dataSource) {
         this.dataSource = dataSource;
+        /** spring的数据源管理器，无状态，同一数据源共用 */
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        TransactionPropagation[] propagations = TransactionPropagation.values();
+        TransactionIsolation[] isolations = TransactionIsolation.values();
+        this.transactionTemplates = new org.springframework.transaction.support.TransactionTemplate[propagations.length][isolations.length];
+        for (TransactionPropagation propagation : propagations) {
+            for (TransactionIsolation isolation : isolations) {
+                org.springframework.transaction.support.TransactionTemplate transactionTemplate = new org.springframework.transaction.support.TransactionTemplate(
+                        transactionManager);
+                /** 事务的传播行为 */
+                transactionTemplate.setPropagationBehavior(propagation.getPropagationBehavior());
+                /** 事务的隔离级别 */
+                transactionTemplate.setIsolationLevel(isolation.getIsolationLevel());
+                transactionTemplates[propagation.ordinal()][isolation.ordinal()] = transactionTemplate;
+            }
+        }
     }
 
     /**
@@ -39,59 +62,40 @@ public class TransactionTemplate {
      * @return 执行结果
      */
     public <T> T execute(final CallBackTemplate<T> action) {
-        /** spring的数据源管理器 */
-        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
-        /** spring的事务模板 */
-        org.springframework.transaction.support.TransactionTemplate transactionTemplate = new org.springframework.transaction.support.TransactionTemplate(
-                transactionManager);
-
-        try {
-            /** 压事务性数据源 */
-            DataSourceContext.pushCurrentDataSource(dataSource);
-            /** 事务模板执行，匿名类 */
-            return transactionTemplate.execute((TransactionCallback) -> action.invoke());
-//			return transactionTemplate.execute(new TransactionCallback<T>() {
-//				public T doInTransaction(TransactionStatus status) {
-//					return action.invoke();
-//				}
-//			});
-        } catch (TransactionException e) {
-            if (CannotCreateTransactionException.class.isAssignableFrom(e.getClass())) {
-                throw new BaseException(ExceptionType.DB_CONN_ERROR.getCode(), e, null,
-                        ExceptionType.DB_CONN_ERROR.getDesc());
-            }
-            throw e;
-        } finally {
-            /** 弹事务性数据源 */
-            DataSourceContext.popCurrentDataSource();
-        }
+        return execute(action, TransactionPropagation.PROPAGATION_REQUIRED, TransactionIsolation.ISOLATION_DEFAULT);
     }
 
     /**
      * 事务模板执行
      *
      * @param action      回调方法
-     * @param propagation 食物传播级别
+     * @param propagation 事务传播级别
      * @param <T>         泛型对象
      * @return 执行结果
      */
     public <T> T execute(final CallBackTemplate<T> action, TransactionPropagation propagation) {
-        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
-        org.springframework.transaction.support.TransactionTemplate transactionTemplate = new org.springframework.transaction.support.TransactionTemplate(
-                transactionManager);
-        /** 事务的传播行为 */
-        transactionTemplate.setPropagationBehavior(propagation.getPropagationBehavior());
+        return execute(action, propagation, TransactionIsolation.ISOLATION_DEFAULT);
+    }
+
+    /**
+     * 事务模板执行
+     *
+     * @param action      回调方法
+     * @param propagation 事务传播级别
+     * @param isolation   事务隔离级别
+     * @param <T>         泛型对象
+     * @return 执行结果
+     */
+    public <T> T execute(final CallBackTemplate<T> action, TransactionPropagation propagation,
+                         TransactionIsolation isolation) {
+        org.springframework.transaction.support.TransactionTemplate transactionTemplate = transactionTemplates[propagation
+                .ordinal()][isolation.ordinal()];
 
         try {
             /** 压事务性数据源 */
             DataSourceContext.pushCurrentDataSource(dataSource);
             /** 事务模板执行，匿名类 */
             return transactionTemplate.execute((TransactionCallback) -> action.invoke());
-//            return transactionTemplate.execute(new TransactionCallback<T>() {
-//                public T doInTransaction(TransactionStatus status) {
-//                    return action.invoke();
-//                }
-//            });
         } catch (TransactionException e) {
             if (CannotCreateTransactionException.class.isAssignableFrom(e.getClass())) {
                 throw new BaseException(ExceptionType.DB_CONN_ERROR.getCode(), e, null,
@@ -103,4 +107,13 @@ public class TransactionTemplate {
             DataSourceContext.popCurrentDataSource();
         }
     }
+
+    /**
+     * 获取数据源
+     *
+     * @return 数据源
+     */
+    public DataSource getDataSource() {
+        return dataSource;
+    }
 }
@@ -1,6 +1,6 @@
 package com.devotion.dao.utils;
 
-import java.util.Stack;
+import java.util.Arrays;
 
 import javax.sql.DataSource;
 
@@ -9,7 +9,7 @@ import org.slf4j.LoggerFactory;
 
 /**
  * 数据源上下文<br>
- * 基于线程局部变量及栈实现
+ * 基于线程局部变量及栈实现，栈仅由所属线程访问，使用数组实现，不做同步
  */
 public class DataSourceContext {
 
@@ -21,7 +21,7 @@ public class DataSourceContext {
 	/**
 	 * 事务上下文
 	 */
-	private static ThreadLocal<Stack<DataSource>> transactionContext = new ThreadLocal<>();
+	private static ThreadLocal<DataSourceStack> transactionContext = ThreadLocal.withInitial(DataSourceStack::new);
 
 	/**
 	 * 获取数据源
@@ -29,14 +29,10 @@ public class DataSourceContext {
 	 * @return 数据源
 	 */
 	public static DataSource getDataSource() {
-		DataSource dataSource = null;
-		/** 数据源入栈 */
-		Stack<DataSource> stack = getStack();
-		if (!stack.empty()) {
-			dataSource = stack.peek();
+		DataSource dataSource = transactionContext.get().peek();
+		if (logger.isDebugEnabled()) {
+			logger.debug("get currentThread datasource : " + dataSource);
 		}
-
-		logger.debug("get currentThread datasource : " + dataSource);
 		return dataSource;
 	}
 
@@ -47,30 +43,80 @@ public class DataSourceContext {
 	 *            数据源
 	 */
 	public static void pushCurrentDataSource(DataSource dataSource) {
-		Stack<DataSource> stack = getStack();
-		stack.push(dataSource);
-		logger.debug("bind currentThread datasource : " + dataSource.toString());
+		transactionContext.get().push(dataSource);
+		if (logger.isDebugEnabled()) {
+			logger.debug("bind currentThread datasource : " + dataSource.toString());
+		}
 	}
 
 	/**
 	 * 当前数据源从栈中取出
 	 */
 	public static void popCurrentDataSource() {
-		Stack<DataSource> stack = getStack();
-		if (!stack.empty()) {
-			logger.debug("release currentThread datasource : " + stack.pop());
+		DataSourceStack stack = transactionContext.get();
+		if (!stack.isEmpty()) {
+			DataSource dataSource = stack.pop();
+			if (logger.isDebugEnabled()) {
+				logger.debug("release currentThread datasource : " + dataSource);
+			}
 		}
 	}
 
 	/**
-	 * 数据源容器
-	 * 
-	 * @return 数据源堆栈
+	 * 数据源栈，仅由所属线程访问
 	 */
-	private static Stack<DataSource> getStack() {
-		if (transactionContext.get() == null) {
-			transactionContext.set(new Stack<>());
+	private static final class DataSourceStack {
+
+		/**
+		 * 栈元素
+		 */
+		private DataSource[] elements = new DataSource[4];
+
+		/**
+		 * 元素个数
+		 */
+		private int size;
+
+		/**
+		 * 入栈
+		 * 
+		 * @param dataSource
+		 *            数据源
+		 */
+		private void push(DataSource dataSource) {
+			if (size == elements.length) {
+				elements = Arrays.copyOf(elements, size << 1);
+			}
+			elements[size++] = dataSource;
+		}
+
+		/**
+		 * 出栈，释放对数据源的引用
+		 * 
+		 * @return 栈顶数据源
+		 */
+		private DataSource pop() {
+			DataSource dataSource = elements[--size];
+			elements[size] = null;
+			return dataSource;
+		}
+
+		/**
+		 * 查看栈顶
+		 * 
+		 * @return 栈顶数据源，栈为空时为null
+		 */
+		private DataSource peek() {
+			return size == 0 ? null : elements[size - 1];
+		}
+
+		/**
+		 * 栈是否为空
+		 * 
+		 * @return 判断结果
+		 */
+		private boolean isEmpty() {
+			return size == 0;
 		}
-		return transactionContext.get();
 	}
 }
@@ -1,11 +1,61 @@
 package com.devotion.rws;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * 功能描述：读取数据源上下文 〈一句话功能简述〉<br>
- * 〈功能详细描述〉
+ * 〈功能详细描述〉 记录当前线程最近一次写库操作的时间，写后一段时间内的读操作仍路由到写库，
+ * 保证读到自己刚写入的数据（read-your-writes）。请求结束时可调用{@link #clear()}清除
  * 
  * @see [相关类/方法]（可选）
  * @since [产品/模块版本] （可选）
  */
-public class ReadDataSourceContext {
+public final class ReadDataSourceContext {
+
+	/**
+	 * 当前线程最近一次写库操作的时间（System.nanoTime），未写过为null
+	 */
+	private static final ThreadLocal<Long> LAST_WRITE = new ThreadLocal<>();
+
+	/**
+	 * 私有构造函数
+	 */
+	private ReadDataSourceContext() {
+	}
+
+	/**
+	 * 标记当前线程发生了写库操作
+	 */
+	public static void markWrite() {
+		LAST_WRITE.set(System.nanoTime());
+	}
+
+	/**
+	 * 判断当前线程是否在指定时间内写过库
+	 * 
+	 * @param windowMillis
+	 *            时间窗口（毫秒），小于等于0时恒为false
+	 * @return 判断结果
+	 */
+	public static boolean isWrittenWithin(long windowMillis) {
+		if (windowMillis <= 0) {
+			return false;
+		}
+		Long lastWrite = LAST_WRITE.get();
+		if (lastWrite == null) {
+			return false;
+		}
+		if (System.nanoTime() - lastWrite < TimeUnit.MILLISECONDS.toNanos(windowMillis)) {
+			return true;
+		}
+		LAST_WRITE.remove();
+		return false;
+	}
+
+	/**
+	 * 清除当前线程的写库标记
+	 */
+	public static void clear() {
+		LAST_WRITE.remove();
+	}
 }
@@ -15,6 +15,11 @@ public class URFConstant {
 	 */
 	public static final int HEART_BEAT_PERIOD = 10000;
 
+	/**
+	 * 每个连接缓存的预编译语句个数
+	 */
+	public static final int STATEMENT_CACHE_SIZE = 64;
+
 	/**
 	 * db2驱动中的connection实现类
 	 */
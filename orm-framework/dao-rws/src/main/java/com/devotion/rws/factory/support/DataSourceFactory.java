@@ -5,7 +5,9 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -15,15 +17,21 @@ import com.devotion.rws.ConnectionChecker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.devotion.rws.CollectionUtils;
 import com.devotion.rws.NamedThreadFactory;
+import com.devotion.rws.ReadDataSourceContext;
 import com.devotion.rws.URFConstant;
 import com.devotion.rws.exception.RWSException;
 import com.devotion.rws.factory.IDataSourceFactory;
+import com.devotion.rws.metrics.SqlMetrics;
 import com.devotion.rws.schema.config.DsConfig;
 import com.devotion.rws.schema.config.DsGroupConfig;
 import com.devotion.rws.selector.IDataSourceSelector;
-import com.devotion.rws.selector.support.DefaultDataSourceSelector;
+import com.devotion.rws.selector.ReplicaCircuitBreaker;
+import com.devotion.rws.selector.ReplicaProbe;
+import com.devotion.rws.selector.ReplicaStats;
+import com.devotion.rws.selector.support.DefaultReplicaProbe;
+import com.devotion.rws.selector.support.LeastLoadedDataSourceSelector;
+import com.devotion.rws.wapper.DataSourceWrapper;
 
 /**
  * 功能描述：读写分离 数据源工厂
@@ -48,19 +56,49 @@ public class DataSourceFactory implements IDataSourceFactory {
     private DsConfig wrDataSource;
 
     /**
-     * 读库数据源
+     * 心跳的最短间隔（毫秒）
      */
-    private final List<DsConfig> roDataSources = Collections.synchronizedList(new ArrayList<>());
+    private static final long MIN_BEAT_MILLIS = 100;
 
     /**
-     * 暂时不可用的数据源集合
+     * 全部读库数据源
      */
-    private final List<DsConfig> failedRoDataSources = Collections.synchronizedList(new ArrayList<>());
+    private final List<DsConfig> replicas = new ArrayList<>();
 
     /**
-     * 默认的数据源选择器（根据权重随机选择）
+     * 未熔断读库的不可变快照，熔断状态变化时重新发布，选择读库时无需加锁
      */
-    private IDataSourceSelector dataSourceSelector = new DefaultDataSourceSelector();
+    private volatile List<DsConfig> roDataSources = Collections.emptyList();
+
+    /**
+     * 各读库下次心跳的时间（毫秒），只由心跳线程访问
+     */
+    private final Map<String, Long> nextBeatTimes = new HashMap<>();
+
+    /**
+     * 按名称索引的读库数据源
+     */
+    private final Map<String, DsConfig> roDataSourceMap = new HashMap<>();
+
+    /**
+     * 默认的数据源选择器（排除延迟超限的读库后，按负载二选一）
+     */
+    private final LeastLoadedDataSourceSelector defaultSelector = new LeastLoadedDataSourceSelector();
+
+    /**
+     * 数据源选择器
+     */
+    private volatile IDataSourceSelector dataSourceSelector = defaultSelector;
+
+    /**
+     * 复制延迟探测
+     */
+    private volatile ReplicaProbe replicaProbe = new DefaultReplicaProbe();
+
+    /**
+     * 写库后读操作粘滞在写库的时间（毫秒），小于等于0表示不粘滞
+     */
+    private volatile long stickyMillis;
 
     /**
      * 定时任务执行器
@@ -71,13 +109,23 @@ public class DataSourceFactory implements IDataSourceFactory {
     /**
      * 心跳定时器，定时检查数据源是否正常
      */
-    private ScheduledFuture<?> beatFuture;
+    private volatile ScheduledFuture<?> beatFuture;
 
     /**
      * 心跳频率
      */
     private int period;
 
+    /**
+     * 心跳基础间隔（毫秒）
+     */
+    private long beatPeriod;
+
+    /**
+     * 是否已销毁
+     */
+    private volatile boolean destroyed;
+
     /**
      * 构造方法
      *
@@ -112,109 +160,176 @@ public class DataSourceFactory implements IDataSourceFactory {
         if (dataSourceGroup == null) {
             throw new IllegalAccessException("DataSourceFactory property dataSourceGroup is null !");
         }
-        this.wrDataSource = dataSourceGroup.getWrDsConfig();
+        DsConfig wrDsConfig = dataSourceGroup.getWrDsConfig();
+        /** 写库包装为记录SQL执行统计的数据源 */
+        this.wrDataSource = wrDsConfig == null ? null : wrap(wrDsConfig, null);
         Collection<DsConfig> roDsConfigs = dataSourceGroup.getRoDsConfigs().values();
-        roDsConfigs.forEach((DsConfig roDsConfig) -> roDataSources.add(roDsConfig));
-//        for (DsConfig dsc :dataSourceGroup.getRoDsConfigs().values()) {
-//            roDataSources.add(dsc);
-//        }
+        /** 读库包装为记录运行状态的数据源，不修改原有配置对象 */
+        roDsConfigs.forEach((DsConfig roDsConfig) -> {
+            DsConfig replica = wrap(roDsConfig, new ReplicaStats());
+            replicas.add(replica);
+            roDataSourceMap.put(replica.getName(), replica);
+            ReplicaStats stats = ReplicaStats.of(replica);
+            if (stats != null) {
+                stats.getCircuitBreaker().setListener(this::publishReplicas);
+            }
+        });
         if (wrDataSource == null) {
             throw new IllegalAccessException("DataSourceFactory property wrDataSource is null !");
         }
-        if (roDataSources.size() <= 0) {
+        if (replicas.isEmpty()) {
             throw new IllegalAccessException("DataSourceFactory property roDataSources is empty !");
         }
-        /** 启动心跳线程 */
-        int beatPeriod = period == 0 ? URFConstant.HEART_BEAT_PERIOD : period * 1000;
-        beatFuture = beatExecutor.scheduleWithFixedDelay(() -> {
+        publishReplicas();
+        SqlMetrics.getInstance().registerMBean();
+        /** 启动心跳线程，各读库的心跳间隔随熔断状态调整 */
+        beatPeriod = period == 0 ? URFConstant.HEART_BEAT_PERIOD : period * 1000L;
+        scheduleHeartBeat(beatPeriod);
+    }
+
+    /**
+     * 发布未熔断读库的快照
+     */
+    private synchronized void publishReplicas() {
+        List<DsConfig> available = new ArrayList<>(replicas.size());
+        for (DsConfig replica : replicas) {
+            ReplicaStats stats = ReplicaStats.of(replica);
+            if (stats == null || stats.getCircuitBreaker().getState() != ReplicaCircuitBreaker.State.OPEN) {
+                available.add(replica);
+            } else {
+                logger.warn("RoDataSource {} circuit breaker is open, removed from roDataSources!",
+                        replica.getName());
+            }
+        }
+        roDataSources = Collections.unmodifiableList(available);
+    }
+
+    /**
+     * 安排下一次心跳
+     *
+     * @param delayMillis 延迟（毫秒）
+     */
+    private void scheduleHeartBeat(long delayMillis) {
+        if (destroyed) {
+            return;
+        }
+        beatFuture = beatExecutor.schedule(() -> {
+            long next = beatPeriod;
             try {
-                doHeartBeat();
-            } catch (IllegalAccessException t) {
+                next = doHeartBeat();
+            } catch (RuntimeException t) {
                 /** 防御性容错 */
                 logger.error("Unexpected error occur at failed heartbeat, cause: " + t.getMessage(), t);
+            } finally {
+                scheduleHeartBeat(next);
             }
-        }, beatPeriod, beatPeriod, TimeUnit.MILLISECONDS);
-//        this.beatFuture = beatExecutor.scheduleWithFixedDelay(new Runnable() {
-//            public void run() {
-//                /** 检测并连接注册中心 */
-//                try {
-//                    doHeartBeat();
-//                } catch (IllegalAccessException t) {
-//                    /** 防御性容错 */
-//                    logger.error("Unexpected error occur at failed heartbeat, cause: " + t.getMessage(), t);
-//                }
-//            }
-//        }, beatPeriod, beatPeriod, TimeUnit.MILLISECONDS);
-
+        }, delayMillis, TimeUnit.MILLISECONDS);
     }
 
     /**
-     * 数据源心跳
+     * 数据源心跳，只检查到期的读库
      *
-     * @throws IllegalAccessException 数据库非法访问异常
+     * @return 距下一次心跳的时间（毫秒）
      */
-    private void doHeartBeat() throws IllegalAccessException {
+    private long doHeartBeat() {
         logger.debug("[{}] HeartBeat is working...!", this);
-        List<Integer> failDsIndexes = new ArrayList<>();
-        List<Integer> okDsIndexes = new ArrayList<>();
-        for (int i = 0; i < this.roDataSources.size(); i++) {
-            DsConfig roDataSource = roDataSources.get(i);
-            if (!checkDataSource(roDataSource)) {
-                failDsIndexes.add(i);
-                logger.debug("RoDataSource {} connected failed, remove to failedRoDataSources!",
-                        roDataSource.getName());
+        long next = beatPeriod;
+        for (DsConfig replica : replicas) {
+            Long due = nextBeatTimes.get(replica.getName());
+            if (due == null || due <= System.currentTimeMillis()) {
+                boolean ok = checkDataSource(replica);
+                ReplicaStats stats = ReplicaStats.of(replica);
+                long interval = stats == null ? beatPeriod : stats.getCircuitBreaker().nextProbeMillis(beatPeriod);
+                due = System.currentTimeMillis() + interval;
+                nextBeatTimes.put(replica.getName(), due);
+                logger.debug("RoDataSource {} heartbeat {}, {}, next in {}ms", replica.getName(),
+                        ok ? "succeed" : "failed", stats, interval);
             }
+            next = Math.min(next, due - System.currentTimeMillis());
         }
-        for (int i = 0; i < this.failedRoDataSources.size(); i++) {
-            DsConfig failRoDataSource = failedRoDataSources.get(i);
-            if (checkDataSource(failRoDataSource)) {
-                okDsIndexes.add(i);
-                logger.debug("failed RoDataSource {} reConnected succeed, remove to roDataSources!",
-                        failRoDataSource.getName());
-            } else {
-                logger.debug("RoDataSource {} retry connect failed!", failRoDataSource.getName());
-            }
+        return Math.max(next, MIN_BEAT_MILLIS);
+    }
+
+    /**
+     * 包装数据源配置，数据源替换为记录SQL执行统计（读库同时记录运行状态）的包装器
+     *
+     * @param dsConfig     数据源配置
+     * @param replicaStats 读库运行状态，写库为null
+     * @return 包装后的数据源配置
+     */
+    private static DsConfig wrap(DsConfig dsConfig, ReplicaStats replicaStats) {
+        if (dsConfig.getRefDataSource() instanceof DataSourceWrapper
+                && (replicaStats == null || ReplicaStats.of(dsConfig) != null)) {
+            return dsConfig;
         }
-        /** 这里需要从大到小删除,否则删除会越界 */
-        CollectionUtils.sortDesc(failDsIndexes).forEach((Integer index) ->
-                failedRoDataSources.add(roDataSources.remove(index.intValue())));
-//        for (int index : CollectionUtils.sortDesc(failDsIndexes)) {
-//            this.failedRoDataSources.add(this.roDataSources.remove(index));
-//        }
-        /** 这里需要从大到小删除,否则删除会越界 */
-        CollectionUtils.sortDesc(okDsIndexes).forEach((Integer index) ->
-                roDataSources.add(failedRoDataSources.remove(index.intValue())));
-//        for (int index : CollectionUtils.sortDesc(okDsIndexes)) {
-//            this.roDataSources.add(this.failedRoDataSources.remove(index));
-//        }
+        DsConfig wrapped = new DsConfig();
+        wrapped.setName(dsConfig.getName());
+        wrapped.setWeight(dsConfig.getWeight());
+        wrapped.setType(dsConfig.getType());
+        wrapped.setRefDataSource(new DataSourceWrapper(dsConfig, replicaStats));
+        return wrapped;
     }
 
     /**
-     * 检查数据源连接的有效性
+     * 检查数据源连接的有效性，连接并执行校验SQL，结果与耗时计入熔断器
      *
      * @param dsConfig 读写分离数据源配置
      * @return 检查结果
-     * @throws IllegalAccessException 数据库非法访问异常
      */
-    private boolean checkDataSource(DsConfig dsConfig) throws IllegalAccessException {
-
+    private boolean checkDataSource(DsConfig dsConfig) {
         boolean resultOk = true;
         Connection c = null;
+        ReplicaStats stats = ReplicaStats.of(dsConfig);
+        long start = System.nanoTime();
         try {
-            /** 获取连接 */
-            c = dsConfig.getRefDataSource().getConnection();
+            /** 获取连接，心跳连接不计入读库负载 */
+            c = stats == null ? dsConfig.getRefDataSource().getConnection()
+                    : ((DataSourceWrapper) dsConfig.getRefDataSource()).getTargetDataSource().getConnection();
         } catch (SQLException e) {
             logger.error("DsConfig" + dsConfig.getName() + "getConnection failed!", e);
             resultOk = false;
         }
-        /**
-         * if (ConnectionChecker.isValidConnection(c, dsConfig.getType()) !=
-         * null) { resultOk = false; }
-         */
+        if (resultOk) {
+            try {
+                SQLException error = ConnectionChecker.isValidConnection(c, dsConfig.getType());
+                if (error != null) {
+                    logger.error("DsConfig" + dsConfig.getName() + " validate connection failed!", error);
+                    resultOk = false;
+                }
+            } catch (IllegalAccessException e) {
+                /** 不支持的数据库类型只检查能否取得连接 */
+                logger.debug("DsConfig {} skip validation: {}", dsConfig.getName(), e.getMessage());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (resultOk && stats != null) {
+            probeLag(dsConfig, c, stats);
+        }
         ConnectionChecker.closeConnection(c);
+        if (stats != null) {
+            stats.getCircuitBreaker().onProbe(resultOk, elapsed);
+        }
         return resultOk;
     }
 
+    /**
+     * 探测读库复制延迟，探测失败时延迟记为未知
+     *
+     * @param dsConfig 读库配置
+     * @param c        心跳连接
+     * @param stats    读库运行状态
+     */
+    private void probeLag(DsConfig dsConfig, Connection c, ReplicaStats stats) {
+        try {
+            long lag = replicaProbe.probeLag(dsConfig, c);
+            stats.setLagMillis(lag);
+            logger.debug("RoDataSource {} replication lag {}ms", dsConfig.getName(), lag);
+        } catch (SQLException e) {
+            logger.warn("RoDataSource " + dsConfig.getName() + " probe replication lag failed!", e);
+            stats.setLagMillis(ReplicaStats.UNKNOWN_LAG);
+        }
+    }
+
     /**
      * 获取读数据源
      *
@@ -225,9 +340,14 @@ public class DataSourceFactory implements IDataSourceFactory {
     @Override
     public DsConfig getRoDataSource(String id) throws IllegalAccessException {
         if (id == null || "".equals(id)) {
-            return dataSourceSelector.select(roDataSources);
+            /** 当前线程刚写过库，读写库保证读到自己的写入 */
+            if (ReadDataSourceContext.isWrittenWithin(stickyMillis)) {
+                return wrDataSource;
+            }
+            List<DsConfig> snapshot = roDataSources;
+            return snapshot.isEmpty() ? null : dataSourceSelector.select(snapshot);
         }
-        DsConfig dsConfig = dataSourceGroup.getRoDsConfigs().get(id);
+        DsConfig dsConfig = roDataSourceMap.get(id);
         if (dsConfig == null) {
             throw new IllegalAccessException("DataSource:" + id + " is not exist!");
         }
@@ -244,11 +364,80 @@ public class DataSourceFactory implements IDataSourceFactory {
         return wrDataSource;
     }
 
+    /**
+     * 设置数据源选择器
+     *
+     * @param dataSourceSelector 数据源选择器
+     */
+    public void setDataSourceSelector(IDataSourceSelector dataSourceSelector) {
+        this.dataSourceSelector = dataSourceSelector == null ? defaultSelector : dataSourceSelector;
+    }
+
+    /**
+     * 设置复制延迟探测，由心跳线程调用
+     *
+     * @param replicaProbe 复制延迟探测
+     */
+    public void setReplicaProbe(ReplicaProbe replicaProbe) {
+        this.replicaProbe = replicaProbe == null ? new DefaultReplicaProbe() : replicaProbe;
+    }
+
+    /**
+     * 设置默认选择器的复制延迟上限，超限的读库不参与选择，全部超限时读写库
+     *
+     * @param maxLagMillis 复制延迟上限（毫秒），小于等于0表示不限制
+     */
+    public void setMaxLagMillis(long maxLagMillis) {
+        defaultSelector.setMaxLagMillis(maxLagMillis);
+    }
+
+    /**
+     * 设置写库后读操作粘滞在写库的时间
+     *
+     * @param stickyMillis 粘滞时间（毫秒），小于等于0表示不粘滞
+     */
+    public void setStickyMillis(long stickyMillis) {
+        this.stickyMillis = stickyMillis;
+    }
+
+    /**
+     * 设置读库熔断的慢查询耗时
+     *
+     * @param slowQueryMillis 慢查询耗时（毫秒），小于等于0时使用默认值
+     */
+    public void setSlowQueryMillis(long slowQueryMillis) {
+        if (slowQueryMillis <= 0) {
+            return;
+        }
+        for (DsConfig replica : replicas) {
+            ReplicaStats stats = ReplicaStats.of(replica);
+            if (stats != null) {
+                stats.getCircuitBreaker().setSlowCallMillis(slowQueryMillis);
+            }
+        }
+    }
+
+    /**
+     * 设置每个连接缓存的预编译语句个数
+     *
+     * @param statementCacheSize 预编译语句缓存个数，小于等于0表示不缓存
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        List<DsConfig> dsConfigs = new ArrayList<>(roDataSourceMap.values());
+        dsConfigs.add(wrDataSource);
+        for (DsConfig dsConfig : dsConfigs) {
+            if (dsConfig.getRefDataSource() instanceof DataSourceWrapper) {
+                ((DataSourceWrapper) dsConfig.getRefDataSource()).setStatementCacheSize(statementCacheSize);
+            }
+        }
+    }
+
     /**
      * 销毁
      */
     @Override
     public void destroy() {
+        destroyed = true;
         try {
             if (null != beatFuture) {
                 beatFuture.cancel(true);
@@ -0,0 +1,210 @@
+package com.devotion.rws.metrics;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 功能描述：单个数据源的执行统计<br>
+ * 包含取连接的等待耗时与各SQL形态的统计。原始SQL到统计对象的映射有缓存，
+ * 热路径上不重复规范化；SQL形态个数有上限，超出后归入{@link #OTHER_SQL}，防止拼接SQL撑爆内存
+ */
+public final class DataSourceMetrics {
+
+    /**
+     * 超出形态上限后的归类名称
+     */
+    public static final String OTHER_SQL = "<other>";
+
+    /**
+     * 原始SQL缓存的上限
+     */
+    private static final int MAX_RAW_SQL = 4096;
+
+    /**
+     * SQL形态的上限
+     */
+    private static final int MAX_SHAPES = 1024;
+
+    /**
+     * 数据源名称
+     */
+    private final String name;
+
+    /**
+     * 取连接的等待耗时
+     */
+    private final LatencyHistogram acquire = new LatencyHistogram();
+
+    /**
+     * 取连接失败次数
+     */
+    private final LongAdder acquireErrors = new LongAdder();
+
+    /**
+     * 预编译语句缓存命中次数
+     */
+    private final LongAdder statementHits = new LongAdder();
+
+    /**
+     * 预编译语句缓存未命中次数
+     */
+    private final LongAdder statementMisses = new LongAdder();
+
+    /**
+     * 原始SQL到统计对象的缓存
+     */
+    private final ConcurrentMap<String, SqlStats> rawSql = new ConcurrentHashMap<>();
+
+    /**
+     * 规范化SQL到统计对象的映射
+     */
+    private final ConcurrentMap<String, SqlStats> shapes = new ConcurrentHashMap<>();
+
+    /**
+     * 构造方法
+     *
+     * @param name 数据源名称
+     */
+    DataSourceMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 获取SQL的统计对象
+     *
+     * @param sql 原始SQL
+     * @return 统计对象
+     */
+    public SqlStats statement(String sql) {
+        SqlStats stats = rawSql.get(sql);
+        if (stats != null) {
+            return stats;
+        }
+        stats = shape(SqlShape.normalize(sql));
+        if (rawSql.size() >= MAX_RAW_SQL) {
+            /** 缓存满时整体丢弃，重新积累常用SQL */
+            rawSql.clear();
+        }
+        rawSql.putIfAbsent(sql, stats);
+        return stats;
+    }
+
+    /**
+     * 按规范化SQL获取统计对象
+     *
+     * @param shape 规范化SQL
+     * @return 统计对象
+     */
+    private SqlStats shape(String shape) {
+        SqlStats stats = shapes.get(shape);
+        if (stats != null) {
+            return stats;
+        }
+        if (shapes.size() >= MAX_SHAPES) {
+            shape = OTHER_SQL;
+        }
+        return shapes.computeIfAbsent(shape, key -> new SqlStats(name, key));
+    }
+
+    /**
+     * 记录一次取连接
+     *
+     * @param nanos 等待耗时（纳秒）
+     */
+    public void acquired(long nanos) {
+        acquire.record(nanos);
+    }
+
+    /**
+     * 记录一次取连接失败
+     *
+     * @param nanos 等待耗时（纳秒）
+     */
+    public void acquireFailed(long nanos) {
+        acquire.record(nanos);
+        acquireErrors.increment();
+    }
+
+    /**
+     * 记录一次预编译语句缓存命中
+     */
+    public void statementHit() {
+        statementHits.increment();
+    }
+
+    /**
+     * 记录一次预编译语句缓存未命中
+     */
+    public void statementMiss() {
+        statementMisses.increment();
+    }
+
+    /**
+     * 获取预编译语句缓存命中次数
+     *
+     * @return 命中次数
+     */
+    public long getStatementHits() {
+        return statementHits.sum();
+    }
+
+    /**
+     * 获取预编译语句缓存未命中次数
+     *
+     * @return 未命中次数
+     */
+    public long getStatementMisses() {
+        return statementMisses.sum();
+    }
+
+    /**
+     * 获取数据源名称
+     *
+     * @return 数据源名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 获取取连接的等待耗时直方图
+     *
+     * @return 等待耗时直方图
+     */
+    public LatencyHistogram getAcquire() {
+        return acquire;
+    }
+
+    /**
+     * 获取取连接失败次数
+     *
+     * @return 取连接失败次数
+     */
+    public long getAcquireErrors() {
+        return acquireErrors.sum();
+    }
+
+    /**
+     * 获取各SQL形态的统计
+     *
+     * @return SQL统计列表
+     */
+    public Collection<SqlStats> getStatements() {
+        return shapes.values();
+    }
+
+    /**
+     * 清空统计，已缓存的统计对象保留，正在执行的SQL仍可写入
+     */
+    void reset() {
+        acquire.reset();
+        acquireErrors.reset();
+        statementHits.reset();
+        statementMisses.reset();
+        for (SqlStats stats : shapes.values()) {
+            stats.reset();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.devotion.rws.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * 功能描述：数据源取连接统计快照，耗时单位为毫秒
+ */
+public final class DataSourceSnapshot {
+
+    /**
+     * 数据源名称
+     */
+    private final String dataSource;
+
+    /**
+     * 取连接次数
+     */
+    private final long count;
+
+    /**
+     * 取连接失败次数
+     */
+    private final long errors;
+
+    /**
+     * 平均等待耗时
+     */
+    private final double mean;
+
+    /**
+     * 99%等待耗时
+     */
+    private final double p99;
+
+    /**
+     * 最大等待耗时
+     */
+    private final double max;
+
+    /**
+     * 预编译语句缓存命中次数
+     */
+    private final long statementHits;
+
+    /**
+     * 预编译语句缓存未命中次数
+     */
+    private final long statementMisses;
+
+    /**
+     * 构造方法
+     *
+     * @param dataSource      数据源名称
+     * @param count           取连接次数
+     * @param errors          取连接失败次数
+     * @param mean            平均等待耗时
+     * @param p99             99%等待耗时
+     * @param max             最大等待耗时
+     * @param statementHits   预编译语句缓存命中次数
+     * @param statementMisses 预编译语句缓存未命中次数
+     */
+    @ConstructorProperties({"dataSource", "count", "errors", "mean", "p99", "max", "statementHits",
+            "statementMisses"})
+    public DataSourceSnapshot(String dataSource, long count, long errors, double mean, double p99, double max,
+                              long statementHits, long statementMisses) {
+        this.dataSource = dataSource;
+        this.count = count;
+        this.errors = errors;
+        this.mean = mean;
+        this.p99 = p99;
+        this.max = max;
+        this.statementHits = statementHits;
+        this.statementMisses = statementMisses;
+    }
+
+    /**
+     * 根据统计对象生成快照
+     *
+     * @param metrics 统计对象
+     * @return 快照
+     */
+    static DataSourceSnapshot of(DataSourceMetrics metrics) {
+        LatencyHistogram acquire = metrics.getAcquire();
+        return new DataSourceSnapshot(metrics.getName(), acquire.getCount(), metrics.getAcquireErrors(),
+                acquire.getMeanMillis(), acquire.getPercentileMillis(99), acquire.getMaxMillis(),
+                metrics.getStatementHits(), metrics.getStatementMisses());
+    }
+
+    /**
+     * 获取数据源名称
+     *
+     * @return 数据源名称
+     */
+    public String getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * 获取取连接次数
+     *
+     * @return 取连接次数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 获取取连接失败次数
+     *
+     * @return 取连接失败次数
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * 获取平均等待耗时
+     *
+     * @return 平均等待耗时
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * 获取99%等待耗时
+     *
+     * @return 99%等待耗时
+     */
+    public double getP99() {
+        return p99;
+    }
+
+    /**
+     * 获取最大等待耗时
+     *
+     * @return 最大等待耗时
+     */
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * 获取预编译语句缓存命中次数
+     *
+     * @return 命中次数
+     */
+    public long getStatementHits() {
+        return statementHits;
+    }
+
+    /**
+     * 获取预编译语句缓存未命中次数
+     *
+     * @return 未命中次数
+     */
+    public long getStatementMisses() {
+        return statementMisses;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + dataSource + "] acquire count=" + count + ", errors=" + errors + ", mean=" + mean + "ms, p99="
+                + p99 + "ms, max=" + max + "ms, statement cache hits=" + statementHits + ", misses="
+                + statementMisses;
+    }
+}
@@ -0,0 +1,164 @@
+package com.devotion.rws.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 功能描述：无锁耗时直方图<br>
+ * 以微秒为单位按对数-线性分桶（与HDR直方图相同的思路）：每个2的幂区间再等分为32个子桶，
+ * 相对误差不超过约3%，覆盖1微秒到约71分钟。记录只做一次原子自增，不加锁、不分配对象
+ */
+public final class LatencyHistogram {
+
+    /**
+     * 子桶位数
+     */
+    private static final int SUB_BITS = 5;
+
+    /**
+     * 每个2的幂区间的子桶数
+     */
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    /**
+     * 可记录的最大微秒数
+     */
+    private static final long MAX_MICROS = (1L << 32) - 1;
+
+    /**
+     * 桶个数
+     */
+    private static final int BUCKET_COUNT = bucketOf(MAX_MICROS) + 1;
+
+    /**
+     * 各桶的计数
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * 总次数
+     */
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * 总耗时（微秒）
+     */
+    private final LongAdder totalMicros = new LongAdder();
+
+    /**
+     * 最大耗时（微秒）
+     */
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(long nanos) {
+        long micros = Math.min(Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 0), MAX_MICROS);
+        buckets.incrementAndGet(bucketOf(micros));
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    /**
+     * 获取总次数
+     *
+     * @return 总次数
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * 获取平均耗时
+     *
+     * @return 平均耗时（毫秒）
+     */
+    public double getMeanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalMicros.sum() / 1000.0 / n;
+    }
+
+    /**
+     * 获取最大耗时
+     *
+     * @return 最大耗时（毫秒）
+     */
+    public double getMaxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    /**
+     * 计算百分位耗时，取所在桶的上界
+     *
+     * @param percentile 百分位，0到100
+     * @return 百分位耗时（毫秒）
+     */
+    public double getPercentileMillis(double percentile) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100) / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), maxMicros.get()) / 1000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * 清空记录
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        totalMicros.reset();
+        maxMicros.reset();
+    }
+
+    /**
+     * 计算耗时所在的桶
+     *
+     * @param micros 耗时（微秒）
+     * @return 桶下标
+     */
+    private static int bucketOf(long micros) {
+        if (micros < SUB_COUNT) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - SUB_BITS;
+        return (shift << SUB_BITS) + (int) (micros >>> shift);
+    }
+
+    /**
+     * 计算桶的上界
+     *
+     * @param bucket 桶下标
+     * @return 上界（微秒）
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_COUNT << 1) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BITS) - 1;
+        long mantissa = (bucket & (SUB_COUNT - 1)) + SUB_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,152 @@
+package com.devotion.rws.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 功能描述：SQL执行统计注册中心<br>
+ * 按数据源汇总取连接等待耗时与各SQL形态的耗时分布、行数、失败次数，
+ * 可通过{@link #getStatements()}等方法拉取，也可通过JMX（{@link #OBJECT_NAME}）查看
+ */
+public final class SqlMetrics implements SqlMetricsMXBean {
+
+    /**
+     * JMX名称
+     */
+    public static final String OBJECT_NAME = "com.devotion.rws:type=SqlMetrics";
+
+    /**
+     * 日志
+     */
+    private static final Logger logger = LoggerFactory.getLogger(SqlMetrics.class);
+
+    /**
+     * 单例
+     */
+    private static final SqlMetrics INSTANCE = new SqlMetrics();
+
+    /**
+     * 数据源名称到统计对象的映射
+     */
+    private final ConcurrentMap<String, DataSourceMetrics> dataSources = new ConcurrentHashMap<>();
+
+    /**
+     * 是否启用统计
+     */
+    private volatile boolean enabled = true;
+
+    /**
+     * 是否已注册JMX
+     */
+    private volatile boolean registered;
+
+    /**
+     * 私有构造方法
+     */
+    private SqlMetrics() {
+    }
+
+    /**
+     * 获取单例
+     *
+     * @return 统计注册中心
+     */
+    public static SqlMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 获取数据源的统计对象，停用统计时返回null
+     *
+     * @param name 数据源名称
+     * @return 统计对象
+     */
+    public DataSourceMetrics dataSource(String name) {
+        if (!enabled) {
+            return null;
+        }
+        String key = name == null ? "" : name;
+        DataSourceMetrics metrics = dataSources.get(key);
+        return metrics != null ? metrics : dataSources.computeIfAbsent(key, DataSourceMetrics::new);
+    }
+
+    /**
+     * 注册JMX，重复调用只注册一次，注册失败仅记录日志
+     */
+    public void registerMBean() {
+        if (registered) {
+            return;
+        }
+        synchronized (this) {
+            if (registered) {
+                return;
+            }
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName objectName = new ObjectName(OBJECT_NAME);
+                if (!server.isRegistered(objectName)) {
+                    server.registerMBean(this, objectName);
+                }
+            } catch (InstanceAlreadyExistsException e) {
+                /** 并发注册，已由其他实例完成 */
+            } catch (Exception e) {
+                logger.warn("register mbean " + OBJECT_NAME + " error", e);
+            }
+            registered = true;
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 启用或停用统计，只影响之后取得的连接
+     *
+     * @param enabled 是否启用
+     */
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public List<DataSourceSnapshot> getDataSources() {
+        List<DataSourceSnapshot> result = new ArrayList<>(dataSources.size());
+        for (DataSourceMetrics metrics : dataSources.values()) {
+            result.add(DataSourceSnapshot.of(metrics));
+        }
+        return result;
+    }
+
+    @Override
+    public List<SqlSnapshot> getStatements() {
+        List<SqlSnapshot> result = new ArrayList<>();
+        for (DataSourceMetrics metrics : dataSources.values()) {
+            for (SqlStats stats : metrics.getStatements()) {
+                if (stats.getLatency().getCount() > 0) {
+                    result.add(SqlSnapshot.of(stats));
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        for (DataSourceMetrics metrics : dataSources.values()) {
+            metrics.reset();
+        }
+    }
+}
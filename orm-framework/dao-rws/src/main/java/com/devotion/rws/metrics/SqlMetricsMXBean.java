@@ -0,0 +1,42 @@
+package com.devotion.rws.metrics;
+
+import java.util.List;
+
+/**
+ * SQL执行统计 JMX接口类
+ */
+public interface SqlMetricsMXBean {
+
+    /**
+     * 是否启用统计
+     *
+     * @return 判断结果
+     */
+    boolean isEnabled();
+
+    /**
+     * 启用或停用统计
+     *
+     * @param enabled 是否启用
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * 获取各数据源的取连接统计
+     *
+     * @return 数据源统计快照
+     */
+    List<DataSourceSnapshot> getDataSources();
+
+    /**
+     * 获取各SQL形态的执行统计
+     *
+     * @return SQL统计快照
+     */
+    List<SqlSnapshot> getStatements();
+
+    /**
+     * 清空统计
+     */
+    void reset();
+}
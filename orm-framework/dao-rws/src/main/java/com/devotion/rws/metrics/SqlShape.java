@@ -0,0 +1,110 @@
+package com.devotion.rws.metrics;
+
+/**
+ * 功能描述：SQL形态规范化<br>
+ * 合并空白，字符串与数字字面量替换为?，IN列表等连续的?合并为一个，
+ * 使只有参数值或参数个数不同的SQL归为同一类统计
+ */
+final class SqlShape {
+
+    /**
+     * 私有构造方法
+     */
+    private SqlShape() {
+    }
+
+    /**
+     * 规范化SQL
+     *
+     * @param sql 原始SQL
+     * @return 规范化后的SQL
+     */
+    static String normalize(String sql) {
+        int length = sql.length();
+        StringBuilder out = new StringBuilder(length);
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (out.length() > 0 && i < length) {
+                    out.append(' ');
+                }
+                continue;
+            }
+            if (c == '\'') {
+                /** 字符串字面量，''为转义的单引号 */
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                appendParameter(out);
+                continue;
+            }
+            if (Character.isDigit(c) && !isIdentifierTail(out)) {
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                appendParameter(out);
+                continue;
+            }
+            if (c == '?') {
+                appendParameter(out);
+                i++;
+                continue;
+            }
+            out.append(c);
+            i++;
+        }
+        return out.toString();
+    }
+
+    /**
+     * 追加参数占位符，与前一个占位符之间只有逗号时合并
+     *
+     * @param out 输出
+     */
+    private static void appendParameter(StringBuilder out) {
+        int end = out.length();
+        int j = end - 1;
+        while (j >= 0 && out.charAt(j) == ' ') {
+            j--;
+        }
+        if (j >= 0 && out.charAt(j) == ',') {
+            int k = j - 1;
+            while (k >= 0 && out.charAt(k) == ' ') {
+                k--;
+            }
+            if (k >= 0 && out.charAt(k) == '?') {
+                out.setLength(k + 1);
+                return;
+            }
+        }
+        out.append('?');
+    }
+
+    /**
+     * 判断数字是否为标识符的一部分（如t1、col_2）
+     *
+     * @param out 已输出的内容
+     * @return 判断结果
+     */
+    private static boolean isIdentifierTail(StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        char prev = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(prev) || prev == '_' || prev == '$' || prev == '.' || prev == '"'
+                || prev == '`';
+    }
+}
@@ -0,0 +1,215 @@
+package com.devotion.rws.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * 功能描述：SQL执行统计快照，耗时单位为毫秒
+ */
+public final class SqlSnapshot {
+
+    /**
+     * 数据源名称
+     */
+    private final String dataSource;
+
+    /**
+     * 规范化后的SQL
+     */
+    private final String sql;
+
+    /**
+     * 执行次数
+     */
+    private final long count;
+
+    /**
+     * 失败次数
+     */
+    private final long errors;
+
+    /**
+     * 行数
+     */
+    private final long rows;
+
+    /**
+     * 行数未知的批量语句数
+     */
+    private final long unknownRows;
+
+    /**
+     * 平均耗时
+     */
+    private final double mean;
+
+    /**
+     * 50%耗时
+     */
+    private final double p50;
+
+    /**
+     * 99%耗时
+     */
+    private final double p99;
+
+    /**
+     * 99.9%耗时
+     */
+    private final double p999;
+
+    /**
+     * 最大耗时
+     */
+    private final double max;
+
+    /**
+     * 构造方法
+     *
+     * @param dataSource 数据源名称
+     * @param sql        规范化后的SQL
+     * @param count      执行次数
+     * @param errors     失败次数
+     * @param rows       行数
+     * @param unknownRows 行数未知的批量语句数
+     * @param mean       平均耗时
+     * @param p50        50%耗时
+     * @param p99        99%耗时
+     * @param p999       99.9%耗时
+     * @param max        最大耗时
+     */
+    @ConstructorProperties({"dataSource", "sql", "count", "errors", "rows", "unknownRows", "mean", "p50", "p99",
+            "p999", "max"})
+    public SqlSnapshot(String dataSource, String sql, long count, long errors, long rows, long unknownRows,
+                       double mean, double p50, double p99, double p999, double max) {
+        this.dataSource = dataSource;
+        this.sql = sql;
+        this.count = count;
+        this.errors = errors;
+        this.rows = rows;
+        this.unknownRows = unknownRows;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    /**
+     * 根据统计对象生成快照
+     *
+     * @param stats 统计对象
+     * @return 快照
+     */
+    static SqlSnapshot of(SqlStats stats) {
+        LatencyHistogram latency = stats.getLatency();
+        return new SqlSnapshot(stats.getDataSource(), stats.getSql(), latency.getCount(), stats.getErrors(),
+                stats.getRows(), stats.getUnknownRows(), latency.getMeanMillis(), latency.getPercentileMillis(50),
+                latency.getPercentileMillis(99), latency.getPercentileMillis(99.9), latency.getMaxMillis());
+    }
+
+    /**
+     * 获取数据源名称
+     *
+     * @return 数据源名称
+     */
+    public String getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * 获取规范化后的SQL
+     *
+     * @return 规范化后的SQL
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * 获取执行次数
+     *
+     * @return 执行次数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * 获取失败次数
+     *
+     * @return 失败次数
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * 获取行数
+     *
+     * @return 行数
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * 获取行数未知的批量语句数
+     *
+     * @return 行数未知的批量语句数
+     */
+    public long getUnknownRows() {
+        return unknownRows;
+    }
+
+    /**
+     * 获取平均耗时
+     *
+     * @return 平均耗时
+     */
+    public double getMean() {
+        return mean;
+    }
+
+    /**
+     * 获取50%耗时
+     *
+     * @return 50%耗时
+     */
+    public double getP50() {
+        return p50;
+    }
+
+    /**
+     * 获取99%耗时
+     *
+     * @return 99%耗时
+     */
+    public double getP99() {
+        return p99;
+    }
+
+    /**
+     * 获取99.9%耗时
+     *
+     * @return 99.9%耗时
+     */
+    public double getP999() {
+        return p999;
+    }
+
+    /**
+     * 获取最大耗时
+     *
+     * @return 最大耗时
+     */
+    public double getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + dataSource + "] " + sql + " count=" + count + ", errors=" + errors + ", rows=" + rows
+                + ", unknownRows=" + unknownRows + ", mean=" + mean + "ms, p50=" + p50 + "ms, p99=" + p99
+                + "ms, p999=" + p999 + "ms, max=" + max + "ms";
+    }
+}
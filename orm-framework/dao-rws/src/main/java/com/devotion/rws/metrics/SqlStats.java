@@ -0,0 +1,151 @@
+package com.devotion.rws.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 功能描述：单个数据源上一类SQL（规范化后的SQL形态）的执行统计
+ */
+public final class SqlStats {
+
+    /**
+     * 数据源名称
+     */
+    private final String dataSource;
+
+    /**
+     * 规范化后的SQL
+     */
+    private final String sql;
+
+    /**
+     * 执行耗时
+     */
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * 返回或影响的行数
+     */
+    private final LongAdder rows = new LongAdder();
+
+    /**
+     * 批量执行中未返回影响行数（SUCCESS_NO_INFO）或执行失败（EXECUTE_FAILED）的语句数
+     */
+    private final LongAdder unknownRows = new LongAdder();
+
+    /**
+     * 执行失败次数
+     */
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * 构造方法
+     *
+     * @param dataSource 数据源名称
+     * @param sql        规范化后的SQL
+     */
+    SqlStats(String dataSource, String sql) {
+        this.dataSource = dataSource;
+        this.sql = sql;
+    }
+
+    /**
+     * 记录一次成功执行
+     *
+     * @param nanos 耗时（纳秒）
+     */
+    public void executed(long nanos) {
+        latency.record(nanos);
+    }
+
+    /**
+     * 记录一次失败执行，耗时同样计入直方图
+     *
+     * @param nanos 耗时（纳秒）
+     */
+    public void failed(long nanos) {
+        latency.record(nanos);
+        errors.increment();
+    }
+
+    /**
+     * 累计行数
+     *
+     * @param count 行数
+     */
+    public void addRows(long count) {
+        if (count > 0) {
+            rows.add(count);
+        }
+    }
+
+    /**
+     * 累计一条行数未知的批量语句
+     */
+    public void addUnknownRows() {
+        unknownRows.increment();
+    }
+
+    /**
+     * 获取数据源名称
+     *
+     * @return 数据源名称
+     */
+    public String getDataSource() {
+        return dataSource;
+    }
+
+    /**
+     * 获取规范化后的SQL
+     *
+     * @return 规范化后的SQL
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * 获取执行耗时直方图
+     *
+     * @return 执行耗时直方图
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * 获取行数
+     *
+     * @return 行数
+     */
+    public long getRows() {
+        return rows.sum();
+    }
+
+    /**
+     * 获取行数未知的批量语句数
+     *
+     * @return 行数未知的批量语句数
+     */
+    public long getUnknownRows() {
+        return unknownRows.sum();
+    }
+
+    /**
+     * 获取执行失败次数
+     *
+     * @return 执行失败次数
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * 清空统计
+     */
+    void reset() {
+        latency.reset();
+        rows.reset();
+        unknownRows.reset();
+        errors.reset();
+    }
+}
@@ -0,0 +1,443 @@
+package com.devotion.rws.selector;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 功能描述：读库熔断器<br>
+ * 由真实查询的结果与耗时驱动：统计窗口内调用数达到下限且失败率或慢查询率超过阈值时熔断（OPEN），
+ * 熔断期间读库不参与选择；熔断时间过后心跳探测成功则半开（HALF_OPEN），放行少量请求，
+ * 全部成功后恢复（CLOSED），任一失败或过慢则再次熔断，熔断时间加倍。
+ * 心跳探测间隔随状态调整：健康且有真实流量时逐步放宽，熔断时按熔断时间探测
+ */
+public final class ReplicaCircuitBreaker {
+
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        /**
+         * 正常
+         */
+        CLOSED,
+        /**
+         * 熔断
+         */
+        OPEN,
+        /**
+         * 半开，放行少量请求
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * 状态
+     */
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+
+    /**
+     * 统计窗口开始时间（毫秒）
+     */
+    private final AtomicLong windowStart = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * 窗口内调用数
+     */
+    private final LongAdder calls = new LongAdder();
+
+    /**
+     * 窗口内失败数
+     */
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * 窗口内慢查询数
+     */
+    private final LongAdder slowCalls = new LongAdder();
+
+    /**
+     * 半开状态剩余的放行次数
+     */
+    private final AtomicInteger halfOpenPermits = new AtomicInteger();
+
+    /**
+     * 半开状态的成功次数
+     */
+    private final AtomicInteger halfOpenSuccesses = new AtomicInteger();
+
+    /**
+     * 进入当前状态的时间（毫秒）
+     */
+    private volatile long stateSince = System.currentTimeMillis();
+
+    /**
+     * 当前熔断时间（毫秒）
+     */
+    private volatile long openMillis;
+
+    /**
+     * 健康时的心跳探测间隔（毫秒），0表示使用基础间隔
+     */
+    private volatile long healthyProbeMillis;
+
+    /**
+     * 状态变化监听
+     */
+    private volatile Runnable listener;
+
+    /**
+     * 统计窗口（毫秒）
+     */
+    private volatile long windowMillis = 10000;
+
+    /**
+     * 触发熔断的最少调用数
+     */
+    private volatile int minCalls = 10;
+
+    /**
+     * 失败率阈值（百分比）
+     */
+    private volatile int failureRateThreshold = 50;
+
+    /**
+     * 慢查询率阈值（百分比）
+     */
+    private volatile int slowCallRateThreshold = 50;
+
+    /**
+     * 慢查询耗时（毫秒）
+     */
+    private volatile long slowCallMillis = 1000;
+
+    /**
+     * 半开状态放行的请求数
+     */
+    private volatile int halfOpenCalls = 3;
+
+    /**
+     * 最短熔断时间（毫秒）
+     */
+    private volatile long minOpenMillis = 1000;
+
+    /**
+     * 最长熔断时间（毫秒）
+     */
+    private volatile long maxOpenMillis = 60000;
+
+    /**
+     * 判断是否为读库故障引起的异常（连接中断、超时等），业务异常不计入熔断
+     *
+     * @param e SQL异常
+     * @return 判断结果
+     */
+    public static boolean isReplicaFailure(SQLException e) {
+        if (e instanceof SQLTimeoutException || e instanceof SQLTransientConnectionException
+                || e instanceof SQLNonTransientConnectionException || e instanceof SQLRecoverableException) {
+            return true;
+        }
+        String sqlState = e.getSQLState();
+        /** 08：连接异常；HYT00/HYT01：超时；57014：语句被取消 */
+        return sqlState != null && (sqlState.startsWith("08") || sqlState.startsWith("HYT")
+                || "57014".equals(sqlState));
+    }
+
+    /**
+     * 判断是否放行请求
+     *
+     * @return 判断结果
+     */
+    public boolean allowsRequest() {
+        State current = state.get();
+        return current == State.CLOSED || (current == State.HALF_OPEN && halfOpenPermits.get() > 0);
+    }
+
+    /**
+     * 借出连接，半开状态占用一次放行次数
+     */
+    public void onAcquire() {
+        if (state.get() == State.HALF_OPEN) {
+            halfOpenPermits.decrementAndGet();
+        }
+    }
+
+    /**
+     * 记录一次查询成功
+     *
+     * @param elapsedNanos 耗时（纳秒）
+     */
+    public void onSuccess(long elapsedNanos) {
+        boolean slow = elapsedNanos > TimeUnit.MILLISECONDS.toNanos(slowCallMillis);
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            if (slow) {
+                trip(State.HALF_OPEN);
+            } else if (halfOpenSuccesses.incrementAndGet() >= halfOpenCalls) {
+                close();
+            }
+        } else if (current == State.CLOSED) {
+            rollWindow();
+            calls.increment();
+            if (slow) {
+                slowCalls.increment();
+                evaluate();
+            }
+        }
+    }
+
+    /**
+     * 记录一次查询失败
+     *
+     * @param elapsedNanos 耗时（纳秒）
+     */
+    public void onFailure(long elapsedNanos) {
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            trip(State.HALF_OPEN);
+        } else if (current == State.CLOSED) {
+            rollWindow();
+            calls.increment();
+            failures.increment();
+            evaluate();
+        }
+    }
+
+    /**
+     * 记录一次心跳探测结果
+     *
+     * @param success      是否成功
+     * @param elapsedNanos 耗时（纳秒）
+     */
+    public void onProbe(boolean success, long elapsedNanos) {
+        State current = state.get();
+        if (!success || elapsedNanos > TimeUnit.MILLISECONDS.toNanos(slowCallMillis)) {
+            if (current == State.OPEN) {
+                /** 熔断期间探测仍失败，延长熔断时间 */
+                openMillis = Math.min(openMillis * 2, maxOpenMillis);
+                stateSince = System.currentTimeMillis();
+            } else {
+                trip(current);
+            }
+            return;
+        }
+        long elapsed = System.currentTimeMillis() - stateSince;
+        if (current == State.OPEN && elapsed >= openMillis) {
+            if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                halfOpen();
+            }
+        } else if (current == State.HALF_OPEN && halfOpenPermits.get() <= 0 && elapsed >= openMillis) {
+            /** 放行的请求未回报结果（如只借出连接未执行查询），重新放行 */
+            halfOpen();
+        }
+    }
+
+    /**
+     * 计算下一次心跳探测的间隔
+     *
+     * @param periodMillis 基础间隔（毫秒）
+     * @return 探测间隔（毫秒）
+     */
+    public long nextProbeMillis(long periodMillis) {
+        State current = state.get();
+        if (current == State.OPEN) {
+            long remaining = openMillis - (System.currentTimeMillis() - stateSince);
+            return Math.max(Math.min(remaining, periodMillis), minOpenMillis);
+        }
+        if (current == State.HALF_OPEN) {
+            return Math.min(minOpenMillis, periodMillis);
+        }
+        long probe = healthyProbeMillis;
+        if (calls.sum() >= minCalls && failures.sum() == 0 && slowCalls.sum() == 0) {
+            /** 真实流量正常，放宽探测间隔，最多为基础间隔的4倍 */
+            probe = Math.min(probe <= 0 ? periodMillis * 2 : probe * 2, periodMillis * 4);
+        } else {
+            probe = periodMillis;
+        }
+        healthyProbeMillis = probe;
+        return probe;
+    }
+
+    /**
+     * 窗口到期时重新开始统计
+     */
+    private void rollWindow() {
+        long now = System.currentTimeMillis();
+        long start = windowStart.get();
+        if (now - start >= windowMillis && windowStart.compareAndSet(start, now)) {
+            /** 并发时可能丢失个别样本，不影响判断 */
+            calls.reset();
+            failures.reset();
+            slowCalls.reset();
+        }
+    }
+
+    /**
+     * 检查窗口内的失败率与慢查询率
+     */
+    private void evaluate() {
+        long total = calls.sum();
+        if (total < minCalls) {
+            return;
+        }
+        if (failures.sum() * 100 >= failureRateThreshold * total
+                || slowCalls.sum() * 100 >= slowCallRateThreshold * total) {
+            trip(State.CLOSED);
+        }
+    }
+
+    /**
+     * 熔断
+     *
+     * @param from 当前状态
+     */
+    private void trip(State from) {
+        if (!state.compareAndSet(from, State.OPEN)) {
+            return;
+        }
+        long current = openMillis;
+        openMillis = from == State.HALF_OPEN && current > 0 ? Math.min(current * 2, maxOpenMillis) : minOpenMillis;
+        stateSince = System.currentTimeMillis();
+        healthyProbeMillis = 0;
+        notifyListener();
+    }
+
+    /**
+     * 进入半开状态
+     */
+    private void halfOpen() {
+        halfOpenSuccesses.set(0);
+        halfOpenPermits.set(halfOpenCalls);
+        stateSince = System.currentTimeMillis();
+        notifyListener();
+    }
+
+    /**
+     * 恢复正常
+     */
+    private void close() {
+        if (!state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            return;
+        }
+        windowStart.set(System.currentTimeMillis());
+        calls.reset();
+        failures.reset();
+        slowCalls.reset();
+        openMillis = 0;
+        stateSince = System.currentTimeMillis();
+        notifyListener();
+    }
+
+    /**
+     * 通知状态变化
+     */
+    private void notifyListener() {
+        Runnable current = listener;
+        if (current != null) {
+            current.run();
+        }
+    }
+
+    /**
+     * 获取状态
+     *
+     * @return 状态
+     */
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * 设置状态变化监听
+     *
+     * @param listener 状态变化监听
+     */
+    public void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 设置统计窗口
+     *
+     * @param windowMillis 统计窗口（毫秒）
+     */
+    public void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * 设置触发熔断的最少调用数
+     *
+     * @param minCalls 最少调用数
+     */
+    public void setMinCalls(int minCalls) {
+        this.minCalls = minCalls;
+    }
+
+    /**
+     * 设置失败率阈值
+     *
+     * @param failureRateThreshold 失败率阈值（百分比）
+     */
+    public void setFailureRateThreshold(int failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    /**
+     * 设置慢查询率阈值
+     *
+     * @param slowCallRateThreshold 慢查询率阈值（百分比）
+     */
+    public void setSlowCallRateThreshold(int slowCallRateThreshold) {
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    /**
+     * 设置慢查询耗时
+     *
+     * @param slowCallMillis 慢查询耗时（毫秒）
+     */
+    public void setSlowCallMillis(long slowCallMillis) {
+        this.slowCallMillis = slowCallMillis;
+    }
+
+    /**
+     * 设置半开状态放行的请求数
+     *
+     * @param halfOpenCalls 放行的请求数
+     */
+    public void setHalfOpenCalls(int halfOpenCalls) {
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    /**
+     * 设置最短熔断时间
+     *
+     * @param minOpenMillis 最短熔断时间（毫秒）
+     */
+    public void setMinOpenMillis(long minOpenMillis) {
+        this.minOpenMillis = minOpenMillis;
+    }
+
+    /**
+     * 设置最长熔断时间
+     *
+     * @param maxOpenMillis 最长熔断时间（毫秒）
+     */
+    public void setMaxOpenMillis(long maxOpenMillis) {
+        this.maxOpenMillis = maxOpenMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplicaCircuitBreaker[" + state.get() + ", calls=" + calls.sum() + ", failures=" + failures.sum()
+                + ", slowCalls=" + slowCalls.sum() + "]";
+    }
+}
@@ -0,0 +1,23 @@
+package com.devotion.rws.selector;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import com.devotion.rws.schema.config.DsConfig;
+
+/**
+ * 读库复制延迟探测 接口类<br>
+ * 由数据源心跳线程在检查连接时调用
+ */
+public interface ReplicaProbe {
+
+    /**
+     * 探测读库的复制延迟
+     *
+     * @param dsConfig   读库配置
+     * @param connection 心跳取得的连接，由调用方关闭
+     * @return 复制延迟（毫秒），无法探测时返回{@link ReplicaStats#UNKNOWN_LAG}
+     * @throws SQLException SQL异常
+     */
+    long probeLag(DsConfig dsConfig, Connection connection) throws SQLException;
+}
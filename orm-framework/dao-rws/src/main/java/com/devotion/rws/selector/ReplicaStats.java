@@ -0,0 +1,183 @@
+package com.devotion.rws.selector;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.devotion.rws.schema.config.DsConfig;
+import com.devotion.rws.wapper.DataSourceWrapper;
+
+/**
+ * 功能描述：读库运行状态<br>
+ * 记录复制延迟（由心跳探测）、语句执行耗时的指数加权平均值与在用连接数，供选择器评估读库负载；
+ * 查询结果与耗时驱动熔断器，熔断的读库不参与选择
+ */
+public final class ReplicaStats {
+
+    /**
+     * 延迟未知
+     */
+    public static final long UNKNOWN_LAG = -1;
+
+    /**
+     * 指数加权平均的新样本权重
+     */
+    private static final double EWMA_WEIGHT = 0.2;
+
+    /**
+     * 复制延迟（毫秒），未知为-1
+     */
+    private volatile long lagMillis = UNKNOWN_LAG;
+
+    /**
+     * 语句执行耗时的指数加权平均值（毫秒）
+     */
+    private volatile double ewmaMillis;
+
+    /**
+     * 在用连接数
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * 熔断器
+     */
+    private final ReplicaCircuitBreaker circuitBreaker = new ReplicaCircuitBreaker();
+
+    /**
+     * 获取读库的运行状态
+     *
+     * @param dsConfig 读库配置
+     * @return 运行状态，未经包装的数据源为null
+     */
+    public static ReplicaStats of(DsConfig dsConfig) {
+        if (dsConfig.getRefDataSource() instanceof DataSourceWrapper) {
+            return ((DataSourceWrapper) dsConfig.getRefDataSource()).getReplicaStats();
+        }
+        return null;
+    }
+
+    /**
+     * 借出连接
+     */
+    public void acquire() {
+        inFlight.incrementAndGet();
+        circuitBreaker.onAcquire();
+    }
+
+    /**
+     * 记录一次语句执行，耗时计入平均响应时间；读库故障引起的异常计入熔断，业务异常按成功处理
+     *
+     * @param elapsedNanos 语句执行耗时（纳秒）
+     * @param error        SQL异常，成功为null
+     */
+    public void recordQuery(long elapsedNanos, SQLException error) {
+        double sample = (double) elapsedNanos / TimeUnit.MILLISECONDS.toNanos(1);
+        double current = ewmaMillis;
+        /** 并发更新时允许丢失个别样本，平均值仍然收敛 */
+        ewmaMillis = current == 0 ? sample : current + EWMA_WEIGHT * (sample - current);
+        if (error != null && ReplicaCircuitBreaker.isReplicaFailure(error)) {
+            circuitBreaker.onFailure(elapsedNanos);
+        } else {
+            circuitBreaker.onSuccess(elapsedNanos);
+        }
+    }
+
+    /**
+     * 记录一次取连接失败
+     *
+     * @param elapsedNanos 耗时（纳秒）
+     */
+    public void acquireFailed(long elapsedNanos) {
+        circuitBreaker.onFailure(elapsedNanos);
+    }
+
+    /**
+     * 归还连接<br>
+     * 连接占用时间包含流式读取、只读事务和调用方持有连接时的其他处理，不计入响应时间
+     */
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * 负载评分：平均响应时间乘以排队连接数，再按权重折算，越小越空闲
+     *
+     * @param weight 权重
+     * @return 负载评分
+     */
+    public double load(int weight) {
+        return (ewmaMillis + 1) * (inFlight.get() + 1) / (weight > 0 ? weight : 1);
+    }
+
+    /**
+     * 获取复制延迟
+     *
+     * @return 复制延迟（毫秒），未知为-1
+     */
+    public long getLagMillis() {
+        return lagMillis;
+    }
+
+    /**
+     * 设置复制延迟
+     *
+     * @param lagMillis 复制延迟（毫秒），未知为-1
+     */
+    public void setLagMillis(long lagMillis) {
+        this.lagMillis = lagMillis;
+    }
+
+    /**
+     * 获取响应时间的指数加权平均值
+     *
+     * @return 平均响应时间（毫秒）
+     */
+    public double getEwmaMillis() {
+        return ewmaMillis;
+    }
+
+    /**
+     * 获取在用连接数
+     *
+     * @return 在用连接数
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 获取熔断器
+     *
+     * @return 熔断器
+     */
+    public ReplicaCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * 判断读库是否可用（未熔断，半开时仍有放行次数）
+     *
+     * @return 判断结果
+     */
+    public boolean isAvailable() {
+        return circuitBreaker.allowsRequest();
+    }
+
+    /**
+     * 判断复制延迟是否在上限之内，延迟未知时视为可用
+     *
+     * @param maxLagMillis 延迟上限（毫秒），小于等于0表示不限制
+     * @return 判断结果
+     */
+    public boolean isLagWithin(long maxLagMillis) {
+        long lag = lagMillis;
+        return maxLagMillis <= 0 || lag == UNKNOWN_LAG || lag <= maxLagMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplicaStats[lag=" + lagMillis + "ms, ewma=" + ewmaMillis + "ms, inFlight=" + inFlight.get() + ", "
+                + circuitBreaker.getState() + "]";
+    }
+}
@@ -1,7 +1,7 @@
 package com.devotion.rws.selector.support;
 
 import java.util.List;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 import com.devotion.rws.schema.config.DsConfig;
 import com.devotion.rws.selector.IDataSourceSelector;
@@ -11,11 +11,6 @@ import com.devotion.rws.selector.IDataSourceSelector;
  */
 public class DefaultDataSourceSelector implements IDataSourceSelector {
 
-    /**
-     * 随机数
-     */
-    private final Random random = new Random();
-
     /**
      * 数据源选择算法实现
      *
@@ -24,6 +19,8 @@ public class DefaultDataSourceSelector implements IDataSourceSelector {
      */
     @Override
     public DsConfig select(List<DsConfig> dsConfigs) {
+        /** 线程本地随机数，避免多线程争用同一个种子 */
+        ThreadLocalRandom random = ThreadLocalRandom.current();
 
         /** 总个数 */
         int length = dsConfigs.size();
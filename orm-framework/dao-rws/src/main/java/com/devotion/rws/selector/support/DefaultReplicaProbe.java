@@ -0,0 +1,75 @@
+package com.devotion.rws.selector.support;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import com.devotion.rws.schema.config.DsConfig;
+import com.devotion.rws.selector.ReplicaProbe;
+import com.devotion.rws.selector.ReplicaStats;
+
+/**
+ * 默认的复制延迟探测<br>
+ * 配置了延迟查询SQL时执行该SQL，取首行首列作为延迟毫秒数（可查询主库定时写入的心跳表）；
+ * 否则MySQL读库按SHOW SLAVE STATUS的Seconds_Behind_Master计算，复制中断时视为无限延迟，
+ * 其他数据库返回延迟未知
+ */
+public class DefaultReplicaProbe implements ReplicaProbe {
+
+    /**
+     * 延迟查询SQL，返回延迟毫秒数
+     */
+    private String lagSql;
+
+    /**
+     * 探测读库的复制延迟
+     *
+     * @param dsConfig   读库配置
+     * @param connection 心跳取得的连接
+     * @return 复制延迟（毫秒）
+     * @throws SQLException SQL异常
+     */
+    @Override
+    public long probeLag(DsConfig dsConfig, Connection connection) throws SQLException {
+        if (lagSql != null && lagSql.length() > 0) {
+            try (Statement stmt = connection.createStatement(); ResultSet rs = stmt.executeQuery(lagSql)) {
+                if (rs.next()) {
+                    long lag = rs.getLong(1);
+                    return rs.wasNull() ? ReplicaStats.UNKNOWN_LAG : Math.max(lag, 0);
+                }
+                return ReplicaStats.UNKNOWN_LAG;
+            }
+        }
+        if ("mysql".equalsIgnoreCase(dsConfig.getType())) {
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SHOW SLAVE STATUS")) {
+                if (!rs.next()) {
+                    /** 非复制从库，数据与主库一致 */
+                    return 0;
+                }
+                long seconds = rs.getLong("Seconds_Behind_Master");
+                return rs.wasNull() ? Long.MAX_VALUE : seconds * 1000;
+            }
+        }
+        return ReplicaStats.UNKNOWN_LAG;
+    }
+
+    /**
+     * 获取延迟查询SQL
+     *
+     * @return 延迟查询SQL
+     */
+    public String getLagSql() {
+        return lagSql;
+    }
+
+    /**
+     * 设置延迟查询SQL，返回延迟毫秒数
+     *
+     * @param lagSql 延迟查询SQL
+     */
+    public void setLagSql(String lagSql) {
+        this.lagSql = lagSql;
+    }
+}
@@ -1,25 +1,86 @@
 package com.devotion.rws.selector.support;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.devotion.rws.schema.config.DsConfig;
 import com.devotion.rws.selector.IDataSourceSelector;
+import com.devotion.rws.selector.ReplicaStats;
 
 /**
- * 基于过滤器的选择器
+ * 基于过滤器的选择器<br>
+ * 排除熔断及复制延迟超过上限的读库，再交由被包装的选择器选择；全部读库不可用时返回null
  */
 public class FilterDataSourceSelector implements IDataSourceSelector {
 
+	/**
+	 * 被包装的选择器
+	 */
+	private final IDataSourceSelector delegate;
+
+	/**
+	 * 复制延迟上限（毫秒），小于等于0表示不限制
+	 */
+	private volatile long maxLagMillis;
+
+	/**
+	 * 构造方法，过滤后按权重随机选择
+	 * 
+	 * @param maxLagMillis
+	 *            复制延迟上限（毫秒）
+	 */
+	public FilterDataSourceSelector(long maxLagMillis) {
+		this(new DefaultDataSourceSelector(), maxLagMillis);
+	}
+
+	/**
+	 * 构造方法
+	 * 
+	 * @param delegate
+	 *            被包装的选择器
+	 * @param maxLagMillis
+	 *            复制延迟上限（毫秒）
+	 */
+	public FilterDataSourceSelector(IDataSourceSelector delegate, long maxLagMillis) {
+		this.delegate = delegate;
+		this.maxLagMillis = maxLagMillis;
+	}
+
 	/**
 	 * 数据源选择
 	 * 
-	 * @param DsConfigs
+	 * @param dsConfigs
 	 *            数据源配置列表
-	 * @return DsConfigs 数据源对象
+	 * @return DsConfigs 数据源对象，无可用读库时为null
 	 */
 	@Override
-	public DsConfig select(List<DsConfig> DsConfigs) {
-		return null;
+	public DsConfig select(List<DsConfig> dsConfigs) {
+		long maxLag = maxLagMillis;
+		List<DsConfig> candidates = null;
+		for (int i = 0; i < dsConfigs.size(); i++) {
+			ReplicaStats stats = ReplicaStats.of(dsConfigs.get(i));
+			boolean accepted = stats == null || (stats.isAvailable() && stats.isLagWithin(maxLag));
+			if (!accepted && candidates == null) {
+				/** 出现第一个被排除的读库时才复制列表 */
+				candidates = new ArrayList<>(dsConfigs.subList(0, i));
+			} else if (accepted && candidates != null) {
+				candidates.add(dsConfigs.get(i));
+			}
+		}
+		if (candidates == null) {
+			return delegate.select(dsConfigs);
+		}
+		return candidates.isEmpty() ? null : delegate.select(candidates);
+	}
+
+	/**
+	 * 设置复制延迟上限
+	 * 
+	 * @param maxLagMillis
+	 *            复制延迟上限（毫秒），小于等于0表示不限制
+	 */
+	public void setMaxLagMillis(long maxLagMillis) {
+		this.maxLagMillis = maxLagMillis;
 	}
 
 }
@@ -0,0 +1,104 @@
+package com.devotion.rws.selector.support;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.devotion.rws.schema.config.DsConfig;
+import com.devotion.rws.selector.IDataSourceSelector;
+import com.devotion.rws.selector.ReplicaStats;
+
+/**
+ * 基于负载的选择器（two random choices）<br>
+ * 排除熔断及复制延迟超过上限的读库后，随机取两个读库，选择负载评分较低者；
+ * 负载评分由平均响应时间、在用连接数与权重计算。全部读库不可用时返回null，由调用方转到写库
+ */
+public class LeastLoadedDataSourceSelector implements IDataSourceSelector {
+
+    /**
+     * 复制延迟上限（毫秒），小于等于0表示不限制
+     */
+    private volatile long maxLagMillis;
+
+    /**
+     * 构造方法，不限制复制延迟
+     */
+    public LeastLoadedDataSourceSelector() {
+        this(0);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param maxLagMillis 复制延迟上限（毫秒）
+     */
+    public LeastLoadedDataSourceSelector(long maxLagMillis) {
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    /**
+     * 数据源选择算法实现
+     *
+     * @param dsConfigs 数据源配置列表
+     * @return DsConfigs 数据源对象，无可用读库时为null
+     */
+    @Override
+    public DsConfig select(List<DsConfig> dsConfigs) {
+        int length = dsConfigs.size();
+        long maxLag = maxLagMillis;
+        /** 可用读库的下标 */
+        int[] candidates = new int[length];
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            ReplicaStats stats = ReplicaStats.of(dsConfigs.get(i));
+            if (stats == null || (stats.isAvailable() && stats.isLagWithin(maxLag))) {
+                candidates[count++] = i;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+        if (count == 1) {
+            return dsConfigs.get(candidates[0]);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int a = random.nextInt(count);
+        /** 第二个候选从其余读库中取，保证两者不同 */
+        int b = random.nextInt(count - 1);
+        if (b >= a) {
+            b++;
+        }
+        DsConfig first = dsConfigs.get(candidates[a]);
+        DsConfig second = dsConfigs.get(candidates[b]);
+        return load(second) < load(first) ? second : first;
+    }
+
+    /**
+     * 计算读库的负载评分
+     *
+     * @param dsConfig 读库配置
+     * @return 负载评分，无运行状态时按权重折算
+     */
+    private static double load(DsConfig dsConfig) {
+        ReplicaStats stats = ReplicaStats.of(dsConfig);
+        int weight = dsConfig.getWeight();
+        return stats == null ? 1.0 / (weight > 0 ? weight : 1) : stats.load(weight);
+    }
+
+    /**
+     * 获取复制延迟上限
+     *
+     * @return 复制延迟上限（毫秒）
+     */
+    public long getMaxLagMillis() {
+        return maxLagMillis;
+    }
+
+    /**
+     * 设置复制延迟上限
+     *
+     * @param maxLagMillis 复制延迟上限（毫秒），小于等于0表示不限制
+     */
+    public void setMaxLagMillis(long maxLagMillis) {
+        this.maxLagMillis = maxLagMillis;
+    }
+}
@@ -0,0 +1,272 @@
+package com.devotion.rws.wapper;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import com.devotion.rws.metrics.SqlStats;
+import com.devotion.rws.selector.ReplicaStats;
+
+/**
+ * 可缓存的SQL查询包装器<br>
+ * 关闭时不关闭驱动的语句，而是归还到连接的语句缓存。
+ * 超时、最大行数、抓取行数等设置在归还时恢复为预编译时的值，修改了其他设置的语句不再复用
+ */
+class CachedPreparedStatementWrapper extends PreparedStatementWrapper {
+
+    /**
+     * 所属的语句缓存
+     */
+    private final StatementCache cache;
+
+    /**
+     * 缓存键
+     */
+    private final StatementCache.Key key;
+
+    /**
+     * 是否已逻辑关闭（归还到缓存）
+     */
+    private boolean closed;
+
+    /**
+     * 是否修改了无法恢复的设置
+     */
+    private boolean dirty;
+
+    /**
+     * 最近返回的结果集，归还时关闭
+     */
+    private ResultSet currentResultSet;
+
+    /**
+     * 修改前的查询超时，未修改为-1
+     */
+    private int queryTimeout = -1;
+
+    /**
+     * 修改前的最大行数，未修改为-1
+     */
+    private int maxRows = -1;
+
+    /**
+     * 修改前的抓取行数，未修改为-1
+     */
+    private int fetchSize = -1;
+
+    /**
+     * 修改前的字段最大字节数，未修改为-1
+     */
+    private int maxFieldSize = -1;
+
+    /**
+     * 构造方法
+     *
+     * @param currentPreparedStatement 当前currentPreparedStatement
+     * @param sqlStats                 SQL统计
+     * @param replicaStats             读库运行状态
+     * @param cache                    所属的语句缓存
+     * @param key                      缓存键
+     */
+    CachedPreparedStatementWrapper(PreparedStatement currentPreparedStatement, SqlStats sqlStats,
+                                   ReplicaStats replicaStats, StatementCache cache, StatementCache.Key key) {
+        super(currentPreparedStatement, sqlStats, replicaStats);
+        this.cache = cache;
+        this.key = key;
+    }
+
+    /**
+     * 获取缓存键
+     *
+     * @return 缓存键
+     */
+    StatementCache.Key getKey() {
+        return key;
+    }
+
+    /**
+     * 从缓存借出
+     *
+     * @return 当前语句
+     */
+    CachedPreparedStatementWrapper reopen() {
+        closed = false;
+        return this;
+    }
+
+    /**
+     * 恢复语句状态以便复用
+     *
+     * @return 是否可以复用
+     */
+    boolean reset() {
+        if (dirty) {
+            return false;
+        }
+        PreparedStatement statement = getCurrentPreparedStatement();
+        try {
+            if (currentResultSet != null) {
+                currentResultSet.close();
+                currentResultSet = null;
+            }
+            statement.clearParameters();
+            statement.clearBatch();
+            statement.clearWarnings();
+            if (queryTimeout >= 0) {
+                statement.setQueryTimeout(queryTimeout);
+                queryTimeout = -1;
+            }
+            if (maxRows >= 0) {
+                statement.setMaxRows(maxRows);
+                maxRows = -1;
+            }
+            if (fetchSize >= 0) {
+                statement.setFetchSize(fetchSize);
+                fetchSize = -1;
+            }
+            if (maxFieldSize >= 0) {
+                statement.setMaxFieldSize(maxFieldSize);
+                maxFieldSize = -1;
+            }
+            return !statement.isClosed();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 关闭驱动的语句
+     *
+     * @throws SQLException SQL异常
+     */
+    void closePhysically() throws SQLException {
+        closed = true;
+        getCurrentPreparedStatement().close();
+    }
+
+    /**
+     * 归还到语句缓存，重复关闭无效
+     *
+     * @throws SQLException SQL异常
+     */
+    @Override
+    public void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        cache.release(this);
+    }
+
+    @Override
+    public boolean isClosed() throws SQLException {
+        return closed || super.isClosed();
+    }
+
+    /**
+     * 检查语句是否已归还
+     *
+     * @throws SQLException 语句已关闭
+     */
+    private void checkOpen() throws SQLException {
+        if (closed) {
+            throw new SQLException("PreparedStatement is closed: " + key.getSql());
+        }
+    }
+
+    @Override
+    public ResultSet executeQuery() throws SQLException {
+        checkOpen();
+        currentResultSet = super.executeQuery();
+        return currentResultSet;
+    }
+
+    @Override
+    public int executeUpdate() throws SQLException {
+        checkOpen();
+        return super.executeUpdate();
+    }
+
+    @Override
+    public boolean execute() throws SQLException {
+        checkOpen();
+        return super.execute();
+    }
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        checkOpen();
+        return super.executeBatch();
+    }
+
+    @Override
+    public ResultSet getResultSet() throws SQLException {
+        ResultSet resultSet = super.getResultSet();
+        if (resultSet != null) {
+            currentResultSet = resultSet;
+        }
+        return resultSet;
+    }
+
+    @Override
+    public void setQueryTimeout(int seconds) throws SQLException {
+        if (queryTimeout < 0) {
+            queryTimeout = getCurrentPreparedStatement().getQueryTimeout();
+        }
+        super.setQueryTimeout(seconds);
+    }
+
+    @Override
+    public void setMaxRows(int max) throws SQLException {
+        if (maxRows < 0) {
+            maxRows = getCurrentPreparedStatement().getMaxRows();
+        }
+        super.setMaxRows(max);
+    }
+
+    @Override
+    public void setFetchSize(int rows) throws SQLException {
+        if (fetchSize < 0) {
+            fetchSize = getCurrentPreparedStatement().getFetchSize();
+        }
+        super.setFetchSize(rows);
+    }
+
+    @Override
+    public void setMaxFieldSize(int max) throws SQLException {
+        if (maxFieldSize < 0) {
+            maxFieldSize = getCurrentPreparedStatement().getMaxFieldSize();
+        }
+        super.setMaxFieldSize(max);
+    }
+
+    @Override
+    public void setEscapeProcessing(boolean enable) throws SQLException {
+        dirty = true;
+        super.setEscapeProcessing(enable);
+    }
+
+    @Override
+    public void setCursorName(String name) throws SQLException {
+        dirty = true;
+        super.setCursorName(name);
+    }
+
+    @Override
+    public void setFetchDirection(int direction) throws SQLException {
+        dirty = true;
+        super.setFetchDirection(direction);
+    }
+
+    @Override
+    public void setPoolable(boolean poolable) throws SQLException {
+        dirty = true;
+        super.setPoolable(poolable);
+    }
+
+    @Override
+    public void closeOnCompletion() throws SQLException {
+        dirty = true;
+        super.closeOnCompletion();
+    }
+}
@@ -20,6 +20,10 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Executor;
 
+import com.devotion.rws.metrics.DataSourceMetrics;
+import com.devotion.rws.metrics.SqlStats;
+import com.devotion.rws.selector.ReplicaStats;
+
 /**
  * 数据库连接池包装器
  */
@@ -30,14 +34,172 @@ public class ConnectionWrapper implements Connection {
      */
     private Connection currentConnection;
 
+    /**
+     * 读库运行状态，非读库为null
+     */
+    private final ReplicaStats replicaStats;
+
+    /**
+     * 数据源执行统计，未启用统计时为null
+     */
+    private final DataSourceMetrics metrics;
+
+    /**
+     * 预编译语句缓存，未启用时为null
+     */
+    private final StatementCache statementCache;
+
+    /**
+     * 语句缓存是否只属于本连接，是则关闭连接时关闭缓存，否则只归还借出的语句
+     */
+    private final boolean ownsStatementCache;
+
+    /**
+     * 是否已关闭
+     */
+    private boolean closed;
+
+    /**
+     * 是否已归还
+     */
+    private boolean released;
+
     /**
      * 构造方法
      *
      * @param currentConnection 当前连接
      */
     public ConnectionWrapper(Connection currentConnection) {
+        this(currentConnection, null);
+    }
+
+    /**
+     * 构造方法，关闭时向读库运行状态归还连接
+     *
+     * @param currentConnection 当前连接
+     * @param replicaStats      读库运行状态
+     */
+    public ConnectionWrapper(Connection currentConnection, ReplicaStats replicaStats) {
+        this(currentConnection, replicaStats, null);
+    }
+
+    /**
+     * 构造方法，关闭时向读库运行状态归还连接，预编译的SQL计入数据源执行统计
+     *
+     * @param currentConnection 当前连接
+     * @param replicaStats      读库运行状态
+     * @param metrics           数据源执行统计
+     */
+    public ConnectionWrapper(Connection currentConnection, ReplicaStats replicaStats, DataSourceMetrics metrics) {
+        this(currentConnection, replicaStats, metrics, 0);
+    }
+
+    /**
+     * 构造方法，按SQL缓存预编译语句，连接关闭时关闭缓存的语句
+     *
+     * @param currentConnection  当前连接
+     * @param replicaStats       读库运行状态
+     * @param metrics            数据源执行统计
+     * @param statementCacheSize 预编译语句缓存个数，小于等于0表示不缓存
+     */
+    public ConnectionWrapper(Connection currentConnection, ReplicaStats replicaStats, DataSourceMetrics metrics,
+                             int statementCacheSize) {
+        this(currentConnection, replicaStats, metrics,
+                statementCacheSize > 0 ? new StatementCache(statementCacheSize, metrics, currentConnection) : null,
+                true);
+    }
+
+    /**
+     * 构造方法，使用物理连接的预编译语句缓存，连接关闭时归还借出的语句
+     *
+     * @param currentConnection 当前连接
+     * @param replicaStats      读库运行状态
+     * @param metrics           数据源执行统计
+     * @param statementCache    物理连接的预编译语句缓存，null表示不缓存
+     */
+    ConnectionWrapper(Connection currentConnection, ReplicaStats replicaStats, DataSourceMetrics metrics,
+                      StatementCache statementCache) {
+        this(currentConnection, replicaStats, metrics, statementCache, false);
+    }
+
+    /**
+     * 构造方法
+     *
+     * @param currentConnection  当前连接
+     * @param replicaStats       读库运行状态
+     * @param metrics            数据源执行统计
+     * @param statementCache     预编译语句缓存
+     * @param ownsStatementCache 语句缓存是否只属于本连接
+     */
+    private ConnectionWrapper(Connection currentConnection, ReplicaStats replicaStats, DataSourceMetrics metrics,
+                              StatementCache statementCache, boolean ownsStatementCache) {
         super();
         this.currentConnection = currentConnection;
+        this.replicaStats = replicaStats;
+        this.metrics = metrics;
+        this.statementCache = statementCache;
+        this.ownsStatementCache = ownsStatementCache;
+    }
+
+    /**
+     * 获取SQL统计
+     *
+     * @param sql SQL语句
+     * @return SQL统计，未启用统计时为null
+     */
+    private SqlStats statement(String sql) {
+        return metrics == null ? null : metrics.statement(sql);
+    }
+
+    /**
+     * 从缓存获取预编译语句，未命中时预编译并包装为可缓存的语句
+     *
+     * @param sql                  SQL语句
+     * @param resultSetType        结果集类型
+     * @param resultSetConcurrency 结果集并发模式
+     * @param resultSetHoldability 结果集可保持性，未指定为-1
+     * @return 预编译语句
+     * @throws SQLException SQL异常
+     */
+    private PreparedStatement prepareCached(String sql, int resultSetType, int resultSetConcurrency,
+                                            int resultSetHoldability) throws SQLException {
+        /** 缓存可能跨借出共用，已关闭的逻辑连接不能再借出语句 */
+        if (closed) {
+            throw new SQLException("Connection is closed.");
+        }
+        StatementCache.Key key = new StatementCache.Key(sql, resultSetType, resultSetConcurrency,
+                resultSetHoldability);
+        CachedPreparedStatementWrapper cached = statementCache.take(key);
+        if (cached != null) {
+            return cached.reopen();
+        }
+        /** 在物理连接上预编译，连接池关闭逻辑连接时不会关闭缓存的语句 */
+        Connection connection = statementCache.getConnection();
+        PreparedStatement statement = resultSetHoldability < 0
+                ? connection.prepareStatement(sql, resultSetType, resultSetConcurrency)
+                : connection.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+        CachedPreparedStatementWrapper wrapper = new CachedPreparedStatementWrapper(statement, statement(sql),
+                replicaStats, statementCache, key);
+        statementCache.lend(wrapper);
+        return wrapper;
+    }
+
+    /**
+     * 获取预编译语句缓存的命中次数，共用物理连接的缓存时为该物理连接的累计次数
+     *
+     * @return 命中次数，未启用缓存为0
+     */
+    public long getStatementCacheHits() {
+        return statementCache == null ? 0 : statementCache.getHits();
+    }
+
+    /**
+     * 获取预编译语句缓存的未命中次数，共用物理连接的缓存时为该物理连接的累计次数
+     *
+     * @return 未命中次数，未启用缓存为0
+     */
+    public long getStatementCacheMisses() {
+        return statementCache == null ? 0 : statementCache.getMisses();
     }
 
     /**
@@ -139,7 +301,11 @@ public class ConnectionWrapper implements Connection {
      *                      on a closed connection
      */
     public PreparedStatement prepareStatement(String sql) throws SQLException {
-        return new PreparedStatementWrapper(currentConnection.prepareStatement(sql));
+        if (statementCache != null) {
+            return prepareCached(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY, -1);
+        }
+        return new PreparedStatementWrapper(currentConnection.prepareStatement(sql), statement(sql),
+                replicaStats);
     }
 
     /**
@@ -290,7 +456,52 @@ public class ConnectionWrapper implements Connection {
      * @throws SQLException SQLException if a database access error occurs
      */
     public void close() throws SQLException {
-        currentConnection.close();
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (statementCache != null) {
+                if (ownsStatementCache) {
+                    statementCache.close();
+                } else {
+                    statementCache.releaseBorrowed();
+                }
+            }
+        } finally {
+            closeConnection();
+            /** 物理连接随逻辑连接关闭（如连接池每次解包得到的是借出的连接本身）时，缓存一并关闭并移除 */
+            if (statementCache != null && !ownsStatementCache && statementCache.isConnectionClosed()) {
+                closeStatementCache();
+            }
+        }
+    }
+
+    /**
+     * 关闭物理连接已关闭的共享语句缓存
+     */
+    private void closeStatementCache() {
+        try {
+            statementCache.close();
+        } catch (SQLException e) {
+            /** 物理连接已关闭，语句随之失效，忽略关闭异常 */
+        }
+    }
+
+    /**
+     * 关闭连接，读库归还连接
+     *
+     * @throws SQLException SQL异常
+     */
+    private void closeConnection() throws SQLException {
+        try {
+            currentConnection.close();
+        } finally {
+            if (replicaStats != null && !released) {
+                released = true;
+                replicaStats.release();
+            }
+        }
     }
 
     /**
@@ -521,8 +732,12 @@ public class ConnectionWrapper implements Connection {
      */
     public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
             throws SQLException {
+        if (statementCache != null) {
+            return prepareCached(sql, resultSetType, resultSetConcurrency, -1);
+        }
         return new PreparedStatementWrapper(
-                currentConnection.prepareStatement(sql, resultSetType, resultSetConcurrency));
+                currentConnection.prepareStatement(sql, resultSetType, resultSetConcurrency), statement(sql),
+                replicaStats);
     }
 
     /**
@@ -797,8 +1012,11 @@ public class ConnectionWrapper implements Connection {
      */
     public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency,
                                               int resultSetHoldability) throws SQLException {
-        return new PreparedStatementWrapper(
-                currentConnection.prepareStatement(sql, resultSetType, resultSetConcurrency));
+        if (statementCache != null) {
+            return prepareCached(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+        }
+        return new PreparedStatementWrapper(currentConnection.prepareStatement(sql, resultSetType,
+                resultSetConcurrency, resultSetHoldability), statement(sql), replicaStats);
     }
 
     /**
@@ -874,7 +1092,8 @@ public class ConnectionWrapper implements Connection {
      * @since 1.4
      */
     public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
-        return new PreparedStatementWrapper(currentConnection.prepareStatement(sql, autoGeneratedKeys));
+        return new PreparedStatementWrapper(currentConnection.prepareStatement(sql, autoGeneratedKeys),
+                statement(sql), replicaStats);
     }
 
     /**
@@ -918,7 +1137,8 @@ public class ConnectionWrapper implements Connection {
      * @since 1.4
      */
     public PreparedStatement prepareStatement(String sql, int[] columnIndexes) throws SQLException {
-        return new PreparedStatementWrapper(currentConnection.prepareStatement(sql, columnIndexes));
+        return new PreparedStatementWrapper(currentConnection.prepareStatement(sql, columnIndexes), statement(sql),
+                replicaStats);
     }
 
     /**
@@ -961,7 +1181,8 @@ public class ConnectionWrapper implements Connection {
      * @since 1.4
      */
     public PreparedStatement prepareStatement(String sql, String[] columnNames) throws SQLException {
-        return new PreparedStatementWrapper(currentConnection.prepareStatement(sql, columnNames));
+        return new PreparedStatementWrapper(currentConnection.prepareStatement(sql, columnNames), statement(sql),
+                replicaStats);
     }
 
     /**
@@ -4,16 +4,25 @@ import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 import javax.sql.DataSource;
 
+import org.springframework.core.InfrastructureProxy;
+
+import com.devotion.rws.URFConstant;
+import com.devotion.rws.metrics.DataSourceMetrics;
+import com.devotion.rws.metrics.SqlMetrics;
 import com.devotion.rws.schema.config.DsConfig;
+import com.devotion.rws.selector.ReplicaStats;
 
 /**
- * 数据源包装器
+ * 数据源包装器<br>
+ * 实现InfrastructureProxy，事务资源按被包装的数据源绑定，与直接使用原数据源的事务管理器保持一致
  */
-public class DataSourceWrapper implements DataSource {
+public class DataSourceWrapper implements DataSource, InfrastructureProxy {
 
     /**
      * 当前数据源
@@ -25,15 +34,41 @@ public class DataSourceWrapper implements DataSource {
      */
     private DsConfig dsConfig;
 
+    /**
+     * 读库运行状态，非读库为null
+     */
+    private final ReplicaStats replicaStats;
+
+    /**
+     * 每个物理连接缓存的预编译语句个数，小于等于0表示不缓存
+     */
+    private volatile int statementCacheSize = URFConstant.STATEMENT_CACHE_SIZE;
+
+    /**
+     * 按物理连接的预编译语句缓存，连接池多次借出同一物理连接时共用
+     */
+    private final ConcurrentMap<PhysicalConnection, StatementCache> statementCaches = new ConcurrentHashMap<>();
+
     /**
      * 构造方法
      *
      * @param dsConfig 数据源配置
      */
     public DataSourceWrapper(DsConfig dsConfig) {
+        this(dsConfig, null);
+    }
+
+    /**
+     * 构造方法，记录读库运行状态
+     *
+     * @param dsConfig     数据源配置
+     * @param replicaStats 读库运行状态
+     */
+    public DataSourceWrapper(DsConfig dsConfig, ReplicaStats replicaStats) {
         super();
         this.dsConfig = dsConfig;
         this.currentDataSource = dsConfig.getRefDataSource();
+        this.replicaStats = replicaStats;
     }
 
     /**
@@ -115,6 +150,52 @@ public class DataSourceWrapper implements DataSource {
         return dsConfig;
     }
 
+    /**
+     * 获取读库运行状态
+     *
+     * @return 读库运行状态，非读库为null
+     */
+    public ReplicaStats getReplicaStats() {
+        return replicaStats;
+    }
+
+    /**
+     * 获取被包装的数据源
+     *
+     * @return 被包装的数据源
+     */
+    public DataSource getTargetDataSource() {
+        return currentDataSource;
+    }
+
+    /**
+     * 获取被包装的数据源，供Spring事务资源解包
+     *
+     * @return 被包装的数据源
+     */
+    @Override
+    public Object getWrappedObject() {
+        return currentDataSource;
+    }
+
+    /**
+     * 获取每个连接缓存的预编译语句个数
+     *
+     * @return 预编译语句缓存个数
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * 设置每个连接缓存的预编译语句个数，只影响之后取得的连接
+     *
+     * @param statementCacheSize 预编译语句缓存个数，小于等于0表示不缓存
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
     /**
      * 设置数据源配置对象
      *
@@ -200,7 +281,7 @@ public class DataSourceWrapper implements DataSource {
      */
     @Override
     public Connection getConnection() throws SQLException {
-        return new ConnectionWrapper(currentDataSource.getConnection());
+        return getConnection(null, null, false);
     }
 
     /**
@@ -216,7 +297,92 @@ public class DataSourceWrapper implements DataSource {
      */
     @Override
     public Connection getConnection(String username, String password) throws SQLException {
-        return new ConnectionWrapper(currentDataSource.getConnection(username, password));
+        return getConnection(username, password, true);
+    }
+
+    /**
+     * 获取并包装连接，记录取连接的等待耗时，读库记录借出与归还
+     *
+     * @param username    用户名
+     * @param password    密码
+     * @param credentials 是否使用用户名密码
+     * @return 包装后的连接
+     * @throws SQLException SQL异常
+     */
+    private Connection getConnection(String username, String password, boolean credentials) throws SQLException {
+        DataSourceMetrics metrics = SqlMetrics.getInstance().dataSource(dsConfig.getName());
+        long start = System.nanoTime();
+        Connection connection;
+        try {
+            connection = credentials ? currentDataSource.getConnection(username, password)
+                    : currentDataSource.getConnection();
+        } catch (SQLException | RuntimeException e) {
+            long elapsed = System.nanoTime() - start;
+            if (metrics != null) {
+                metrics.acquireFailed(elapsed);
+            }
+            if (replicaStats != null) {
+                replicaStats.acquireFailed(elapsed);
+            }
+            throw e;
+        }
+        if (metrics != null) {
+            metrics.acquired(System.nanoTime() - start);
+        }
+        if (replicaStats != null) {
+            replicaStats.acquire();
+        }
+        int cacheSize = statementCacheSize;
+        return new ConnectionWrapper(connection, replicaStats, metrics,
+                cacheSize > 0 ? statementCache(connection, cacheSize, metrics) : null);
+    }
+
+    /**
+     * 获取连接所在物理连接的预编译语句缓存<br>
+     * 缓存在物理连接随逻辑连接关闭时由ConnectionWrapper关闭并移除；连接池自行关闭的物理连接，
+     * 在新的物理连接出现时清理
+     *
+     * @param connection 连接池借出的连接
+     * @param cacheSize  缓存容量
+     * @param metrics    数据源执行统计
+     * @return 预编译语句缓存
+     */
+    private StatementCache statementCache(Connection connection, int cacheSize, DataSourceMetrics metrics) {
+        Connection physical = physicalConnection(connection);
+        PhysicalConnection key = new PhysicalConnection(physical);
+        StatementCache cache = statementCaches.get(key);
+        if (cache != null) {
+            return cache;
+        }
+        for (StatementCache stale : statementCaches.values()) {
+            if (stale.isConnectionClosed()) {
+                try {
+                    stale.close();
+                } catch (SQLException e) {
+                    /** 物理连接已关闭，语句随之失效，忽略关闭异常 */
+                }
+            }
+        }
+        return statementCaches.computeIfAbsent(key, k -> {
+            StatementCache created = new StatementCache(cacheSize, metrics, physical);
+            created.setCloseHook(() -> statementCaches.remove(k, created));
+            return created;
+        });
+    }
+
+    /**
+     * 获取连接池借出连接对应的物理连接，连接池不支持解包时为借出的连接本身，此时缓存只在一次借出内有效
+     *
+     * @param connection 连接池借出的连接
+     * @return 物理连接
+     */
+    private static Connection physicalConnection(Connection connection) {
+        try {
+            Connection physical = connection.unwrap(Connection.class);
+            return physical == null ? connection : physical;
+        } catch (SQLException | RuntimeException | AbstractMethodError e) {
+            return connection;
+        }
     }
 
     /**
@@ -236,4 +402,34 @@ public class DataSourceWrapper implements DataSource {
      *           stub return null; }
      */
 
+
+    /**
+     * 物理连接作为缓存键，按引用比较，不依赖连接池代理的equals
+     */
+    private static final class PhysicalConnection {
+
+        /**
+         * 物理连接
+         */
+        private final Connection connection;
+
+        /**
+         * 构造方法
+         *
+         * @param connection 物理连接
+         */
+        PhysicalConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(connection);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof PhysicalConnection && ((PhysicalConnection) obj).connection == connection;
+        }
+    }
 }
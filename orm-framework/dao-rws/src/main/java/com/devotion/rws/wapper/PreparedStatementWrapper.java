@@ -25,6 +25,9 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.Calendar;
 
+import com.devotion.rws.metrics.SqlStats;
+import com.devotion.rws.selector.ReplicaStats;
+
 /**
  * SQL查询包装器
  */
@@ -35,14 +38,110 @@ public class PreparedStatementWrapper implements PreparedStatement {
      */
     private PreparedStatement currentPreparedStatement;
 
+    /**
+     * SQL统计，未启用统计时为null
+     */
+    private final SqlStats sqlStats;
+
+    /**
+     * 读库运行状态，非读库为null
+     */
+    private final ReplicaStats replicaStats;
+
     /**
      * 构造方法
      *
      * @param currentPreparedStatement 当前currentPreparedStatement
      */
     public PreparedStatementWrapper(PreparedStatement currentPreparedStatement) {
+        this(currentPreparedStatement, null);
+    }
+
+    /**
+     * 构造方法，执行耗时、行数与失败次数计入SQL统计
+     *
+     * @param currentPreparedStatement 当前currentPreparedStatement
+     * @param sqlStats                 SQL统计
+     */
+    public PreparedStatementWrapper(PreparedStatement currentPreparedStatement, SqlStats sqlStats) {
+        this(currentPreparedStatement, sqlStats, null);
+    }
+
+    /**
+     * 构造方法，执行结果同时计入SQL统计与读库熔断器
+     *
+     * @param currentPreparedStatement 当前currentPreparedStatement
+     * @param sqlStats                 SQL统计
+     * @param replicaStats             读库运行状态
+     */
+    public PreparedStatementWrapper(PreparedStatement currentPreparedStatement, SqlStats sqlStats,
+                                    ReplicaStats replicaStats) {
         super();
         this.currentPreparedStatement = currentPreparedStatement;
+        this.sqlStats = sqlStats;
+        this.replicaStats = replicaStats;
+    }
+
+    /**
+     * 获取被包装的语句
+     *
+     * @return 被包装的语句
+     */
+    PreparedStatement getCurrentPreparedStatement() {
+        return currentPreparedStatement;
+    }
+
+    /**
+     * 是否需要记录执行结果
+     *
+     * @return 判断结果
+     */
+    private boolean isRecorded() {
+        return sqlStats != null || replicaStats != null;
+    }
+
+    /**
+     * 记录执行结果
+     *
+     * @param start 开始时间（System.nanoTime）
+     * @param error 执行异常，成功为null
+     */
+    private void record(long start, Exception error) {
+        long elapsed = System.nanoTime() - start;
+        if (sqlStats != null) {
+            if (error == null) {
+                sqlStats.executed(elapsed);
+            } else {
+                sqlStats.failed(elapsed);
+            }
+        }
+        if (replicaStats != null) {
+            replicaStats.recordQuery(elapsed, error instanceof SQLException ? (SQLException) error : null);
+        }
+    }
+
+    /**
+     * 累计行数
+     *
+     * @param count 行数
+     */
+    private void addRows(long count) {
+        if (sqlStats != null) {
+            sqlStats.addRows(count);
+        }
+    }
+
+    /**
+     * 包装结果集以统计行数
+     *
+     * @param resultSet 结果集
+     * @return 包装后的结果集
+     */
+    private ResultSet wrap(ResultSet resultSet) {
+        if (sqlStats == null || resultSet == null || resultSet instanceof ResultSetWrapper) {
+            return resultSet;
+        }
+        return new ResultSetWrapper(resultSet, sqlStats);
     }
 
     /**
@@ -351,7 +450,7 @@ public class PreparedStatementWrapper implements PreparedStatement {
      * @see #execute
      */
     public ResultSet getResultSet() throws SQLException {
-        return currentPreparedStatement.getResultSet();
+        return wrap(currentPreparedStatement.getResultSet());
     }
 
     /**
@@ -591,7 +690,27 @@ public class PreparedStatementWrapper implements PreparedStatement {
      * @since 1.2
      */
     public int[] executeBatch() throws SQLException {
-        return currentPreparedStatement.executeBatch();
+        if (!isRecorded()) {
+            return currentPreparedStatement.executeBatch();
+        }
+        long start = System.nanoTime();
+        int[] counts;
+        try {
+            counts = currentPreparedStatement.executeBatch();
+        } catch (SQLException | RuntimeException e) {
+            record(start, e);
+            throw e;
+        }
+        record(start, null);
+        for (int count : counts) {
+            /** SUCCESS_NO_INFO(-2)、EXECUTE_FAILED(-3)不是行数，单独计数 */
+            if (count >= 0) {
+                addRows(count);
+            } else if (sqlStats != null) {
+                sqlStats.addUnknownRows();
+            }
+        }
+        return counts;
     }
 
     /**
@@ -1013,7 +1132,19 @@ public class PreparedStatementWrapper implements PreparedStatement {
      *                      statement does not return a <code>ResultSet</code> object
      */
     public ResultSet executeQuery() throws SQLException {
-        return currentPreparedStatement.executeQuery();
+        if (!isRecorded()) {
+            return currentPreparedStatement.executeQuery();
+        }
+        long start = System.nanoTime();
+        ResultSet resultSet;
+        try {
+            resultSet = currentPreparedStatement.executeQuery();
+        } catch (SQLException | RuntimeException e) {
+            record(start, e);
+            throw e;
+        }
+        record(start, null);
+        return wrap(resultSet);
     }
 
     /**
@@ -1029,7 +1160,20 @@ public class PreparedStatementWrapper implements PreparedStatement {
      *                      statement returns a <code>ResultSet</code> object
      */
     public int executeUpdate() throws SQLException {
-        return currentPreparedStatement.executeUpdate();
+        if (!isRecorded()) {
+            return currentPreparedStatement.executeUpdate();
+        }
+        long start = System.nanoTime();
+        int count;
+        try {
+            count = currentPreparedStatement.executeUpdate();
+        } catch (SQLException | RuntimeException e) {
+            record(start, e);
+            throw e;
+        }
+        record(start, null);
+        addRows(count);
+        return count;
     }
 
     /**
@@ -1454,7 +1598,19 @@ public class PreparedStatementWrapper implements PreparedStatement {
      * @see java.sql.Statement#getMoreResults
      */
     public boolean execute() throws SQLException {
-        return currentPreparedStatement.execute();
+        if (!isRecorded()) {
+            return currentPreparedStatement.execute();
+        }
+        long start = System.nanoTime();
+        boolean hasResultSet;
+        try {
+            hasResultSet = currentPreparedStatement.execute();
+        } catch (SQLException | RuntimeException e) {
+            record(start, e);
+            throw e;
+        }
+        record(start, null);
+        return hasResultSet;
     }
 
     /**
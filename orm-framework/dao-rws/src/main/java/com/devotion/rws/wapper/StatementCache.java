@@ -0,0 +1,324 @@
+package com.devotion.rws.wapper;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.devotion.rws.metrics.DataSourceMetrics;
+
+/**
+ * 功能描述：物理连接级的预编译语句缓存<br>
+ * 按SQL、结果集类型、并发模式与可保持性缓存空闲的预编译语句，最近最少使用的语句超出容量时关闭。
+ * 语句借出期间从缓存中移除，同一SQL嵌套使用时另行预编译；归还时清空参数与批处理后放回缓存。
+ * 缓存随物理连接存在，连接池的多次借出共用：逻辑连接关闭时归还未关闭的语句，
+ * 物理连接关闭后才关闭全部语句。物理连接同一时刻只借给一个线程，不做同步
+ */
+final class StatementCache {
+
+    /**
+     * 缓存容量
+     */
+    private final int capacity;
+
+    /**
+     * 预编译语句所在的物理连接
+     */
+    private final Connection connection;
+
+    /**
+     * 数据源执行统计，未启用统计时为null
+     */
+    private final DataSourceMetrics metrics;
+
+    /**
+     * 空闲语句，按访问顺序排列
+     */
+    private final LinkedHashMap<Key, CachedPreparedStatementWrapper> idle;
+
+    /**
+     * 借出未归还的语句
+     */
+    private final Set<CachedPreparedStatementWrapper> borrowed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * 命中次数
+     */
+    private long hits;
+
+    /**
+     * 未命中次数
+     */
+    private long misses;
+
+    /**
+     * 是否已关闭
+     */
+    private boolean closed;
+
+    /**
+     * 关闭时的回调，用于从数据源的缓存表中移除，可为null
+     */
+    private Runnable closeHook;
+
+    /**
+     * 构造方法
+     *
+     * @param capacity   缓存容量
+     * @param metrics    数据源执行统计
+     * @param connection 物理连接
+     */
+    StatementCache(int capacity, DataSourceMetrics metrics, Connection connection) {
+        this.capacity = capacity;
+        this.metrics = metrics;
+        this.connection = connection;
+        this.idle = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * 获取预编译语句所在的物理连接
+     *
+     * @return 物理连接
+     */
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * 物理连接是否已关闭，无法判断时视为已关闭
+     *
+     * @return 是否已关闭
+     */
+    boolean isConnectionClosed() {
+        try {
+            return connection.isClosed();
+        } catch (SQLException e) {
+            return true;
+        }
+    }
+
+    /**
+     * 借出缓存的语句
+     *
+     * @param key 缓存键
+     * @return 缓存的语句，未命中为null
+     */
+    CachedPreparedStatementWrapper take(Key key) {
+        CachedPreparedStatementWrapper statement = idle.remove(key);
+        if (statement != null) {
+            borrowed.add(statement);
+            hits++;
+            if (metrics != null) {
+                metrics.statementHit();
+            }
+        } else {
+            misses++;
+            if (metrics != null) {
+                metrics.statementMiss();
+            }
+        }
+        return statement;
+    }
+
+    /**
+     * 登记新预编译并借出的语句
+     *
+     * @param statement 语句
+     */
+    void lend(CachedPreparedStatementWrapper statement) {
+        borrowed.add(statement);
+    }
+
+    /**
+     * 归还语句，无法复用或已有同键空闲语句时关闭
+     *
+     * @param statement 语句
+     * @throws SQLException SQL异常
+     */
+    void release(CachedPreparedStatementWrapper statement) throws SQLException {
+        borrowed.remove(statement);
+        if (closed || !statement.reset() || idle.containsKey(statement.getKey())) {
+            statement.closePhysically();
+            return;
+        }
+        idle.put(statement.getKey(), statement);
+        if (idle.size() > capacity) {
+            /** 淘汰最近最少使用的语句 */
+            Iterator<CachedPreparedStatementWrapper> it = idle.values().iterator();
+            CachedPreparedStatementWrapper eldest = it.next();
+            it.remove();
+            eldest.closePhysically();
+        }
+    }
+
+    /**
+     * 设置关闭时的回调
+     *
+     * @param closeHook 回调
+     */
+    void setCloseHook(Runnable closeHook) {
+        this.closeHook = closeHook;
+    }
+
+    /**
+     * 逻辑连接关闭时归还全部借出未关闭的语句，空闲语句保留给下次借出
+     *
+     * @throws SQLException 归还语句时的第一个异常
+     */
+    void releaseBorrowed() throws SQLException {
+        if (borrowed.isEmpty()) {
+            return;
+        }
+        SQLException error = null;
+        for (CachedPreparedStatementWrapper statement : new ArrayList<>(borrowed)) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        borrowed.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * 关闭缓存及全部语句，之后归还的语句直接关闭
+     *
+     * @throws SQLException 关闭语句时的第一个异常
+     */
+    void close() throws SQLException {
+        if (!closed && closeHook != null) {
+            closeHook.run();
+        }
+        closed = true;
+        SQLException error = null;
+        List<CachedPreparedStatementWrapper> statements = new ArrayList<>(idle.values());
+        statements.addAll(borrowed);
+        idle.clear();
+        borrowed.clear();
+        for (CachedPreparedStatementWrapper statement : statements) {
+            try {
+                statement.closePhysically();
+            } catch (SQLException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * 获取命中次数
+     *
+     * @return 命中次数
+     */
+    long getHits() {
+        return hits;
+    }
+
+    /**
+     * 获取未命中次数
+     *
+     * @return 未命中次数
+     */
+    long getMisses() {
+        return misses;
+    }
+
+    /**
+     * 获取空闲语句个数
+     *
+     * @return 空闲语句个数
+     */
+    int size() {
+        return idle.size();
+    }
+
+    /**
+     * 功能描述：语句缓存键
+     */
+    static final class Key {
+
+        /**
+         * SQL语句
+         */
+        private final String sql;
+
+        /**
+         * 结果集类型
+         */
+        private final int resultSetType;
+
+        /**
+         * 结果集并发模式
+         */
+        private final int resultSetConcurrency;
+
+        /**
+         * 结果集可保持性，未指定为-1
+         */
+        private final int resultSetHoldability;
+
+        /**
+         * 哈希值
+         */
+        private final int hash;
+
+        /**
+         * 构造方法
+         *
+         * @param sql                  SQL语句
+         * @param resultSetType        结果集类型
+         * @param resultSetConcurrency 结果集并发模式
+         * @param resultSetHoldability 结果集可保持性，未指定为-1
+         */
+        Key(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) {
+            this.sql = sql;
+            this.resultSetType = resultSetType;
+            this.resultSetConcurrency = resultSetConcurrency;
+            this.resultSetHoldability = resultSetHoldability;
+            this.hash = ((sql.hashCode() * 31 + resultSetType) * 31 + resultSetConcurrency) * 31
+                    + resultSetHoldability;
+        }
+
+        /**
+         * 获取SQL语句
+         *
+         * @return SQL语句
+         */
+        String getSql() {
+            return sql;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return hash == other.hash && resultSetType == other.resultSetType
+                    && resultSetConcurrency == other.resultSetConcurrency
+                    && resultSetHoldability == other.resultSetHoldability && sql.equals(other.sql);
+        }
+    }
+}
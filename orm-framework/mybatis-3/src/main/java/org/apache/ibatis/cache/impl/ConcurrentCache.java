@@ -0,0 +1,461 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache.impl;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+
+/**
+ * 并发的二级缓存实现<br>
+ * 数据保存在ConcurrentHashMap中，读取不加锁；条目数和权重超过上限时按写入顺序选出淘汰候选，
+ * 再按访问频率（4位计数的Count-Min Sketch，定期减半）决定淘汰候选还是新写入的条目，
+ * 只访问一次的数据不会挤掉热点数据。条目可设置存活时间，开启blocking时同一个key的未命中只由一个线程加载，
+ * 其他线程等待加载结果，取代BlockingCache的按key加锁。本身是线程安全的，构建时不再包装SynchronizedCache、
+ * BlockingCache和淘汰策略装饰器
+ */
+public class ConcurrentCache implements Cache {
+
+	// 淘汰候选的队列中失效节点超过该数量（且超过条目数）时整理队列
+	private static final int MIN_PURGE_THRESHOLD = 64;
+
+	private final String id;
+	private final ConcurrentHashMap<Object, Node> cache = new ConcurrentHashMap<Object, Node>();
+	// 按写入顺序排列的节点，覆盖和删除的节点只做标记，出队时跳过
+	private final Queue<Node> writeOrder = new ConcurrentLinkedQueue<Node>();
+	private final ConcurrentHashMap<Object, Load> loads = new ConcurrentHashMap<Object, Load>();
+	private final ReentrantLock evictionLock = new ReentrantLock();
+	private final AtomicLong weight = new AtomicLong();
+	private final AtomicInteger deadNodes = new AtomicInteger();
+	private volatile FrequencySketch sketch;
+
+	private int size = 1024;
+	private long maxWeight;
+	private long timeToLive;
+	private boolean blocking;
+	private long timeout;
+
+	public ConcurrentCache(String id) {
+		this.id = id;
+		this.sketch = new FrequencySketch(size);
+	}
+
+	@Override
+	public String getId() {
+		return id;
+	}
+
+	@Override
+	public int getSize() {
+		return cache.size();
+	}
+
+	@Override
+	public void putObject(Object key, Object value) {
+		try {
+			Node node = new Node(key, value, weigh(key, value), timeToLive > 0 ? System.nanoTime() : 0L);
+			Node previous = cache.put(key, node);
+			if (previous != null) {
+				retire(previous);
+			}
+			weight.addAndGet(node.weight);
+			writeOrder.add(node);
+			sketch.increment(key);
+			evictIfNeeded(node);
+		} finally {
+			releaseLoad(key);
+		}
+	}
+
+	@Override
+	public Object getObject(Object key) {
+		sketch.increment(key);
+		while (true) {
+			Object value = lookup(key);
+			if (value != null || !blocking) {
+				return value;
+			}
+			Load load = loads.get(key);
+			if (load == null) {
+				Load created = new Load();
+				load = loads.putIfAbsent(key, created);
+				if (load == null) {
+					// 当前线程负责加载，查询后通过putObject或removeObject释放
+					return null;
+				}
+			}
+			if (load.owner == Thread.currentThread()) {
+				return null;
+			}
+			load.await(key);
+		}
+	}
+
+	@Override
+	public Object removeObject(Object key) {
+		// 该方法只在回滚时对未命中的key调用，移除后释放加载
+		try {
+			Node node = cache.remove(key);
+			if (node != null) {
+				retire(node);
+				return node.value;
+			}
+			return null;
+		} finally {
+			releaseLoad(key);
+		}
+	}
+
+	@Override
+	public void clear() {
+		evictionLock.lock();
+		try {
+			for (Node node : cache.values()) {
+				if (cache.remove(node.key, node)) {
+					retire(node);
+				}
+			}
+			purge();
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	@Override
+	public ReadWriteLock getReadWriteLock() {
+		return null;
+	}
+
+	/*
+	 * 计算条目的权重，默认集合按元素个数计算，其他值为1，子类可覆盖
+	 */
+	protected int weigh(Object key, Object value) {
+		if (value instanceof Collection) {
+			return Math.max(1, ((Collection<?>) value).size());
+		}
+		return 1;
+	}
+
+	private Object lookup(Object key) {
+		Node node = cache.get(key);
+		if (node == null) {
+			return null;
+		}
+		if (isExpired(node, System.nanoTime())) {
+			if (cache.remove(key, node)) {
+				retire(node);
+			}
+			return null;
+		}
+		return node.value;
+	}
+
+	private boolean isExpired(Node node, long now) {
+		return timeToLive > 0 && now - node.writeTime >= TimeUnit.MILLISECONDS.toNanos(timeToLive);
+	}
+
+	private boolean isOverflow() {
+		return (size > 0 && cache.size() > size) || (maxWeight > 0 && weight.get() > maxWeight);
+	}
+
+	/*
+	 * 淘汰过期和超出上限的条目
+	 *
+	 * @param candidate 本次写入的节点，与淘汰候选比较访问频率
+	 */
+	private void evictIfNeeded(Node candidate) {
+		boolean expiring = timeToLive > 0;
+		long now = expiring ? System.nanoTime() : 0L;
+		Node head = writeOrder.peek();
+		if (!(expiring && head != null && isExpired(head, now)) && !isOverflow() && !needsPurge()) {
+			return;
+		}
+		evictionLock.lock();
+		try {
+			Node victim;
+			// 写入顺序即过期顺序，先清理队首已过期的条目
+			while (expiring && (victim = writeOrder.peek()) != null && (!victim.alive || isExpired(victim, now))) {
+				writeOrder.poll();
+				evict(victim);
+				deadNodes.decrementAndGet();
+			}
+			while (isOverflow() && (victim = writeOrder.poll()) != null) {
+				if (!victim.alive) {
+					deadNodes.decrementAndGet();
+				} else if (candidate == null || candidate == victim || !candidate.alive
+						|| sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+					evict(victim);
+					deadNodes.decrementAndGet();
+				} else {
+					// 新条目的访问频率不高于候选时淘汰新条目，候选重新排到队尾
+					evict(candidate);
+					candidate = null;
+					writeOrder.add(victim);
+				}
+			}
+			if (needsPurge()) {
+				purge();
+			}
+		} finally {
+			evictionLock.unlock();
+		}
+	}
+
+	private boolean needsPurge() {
+		return deadNodes.get() > Math.max(MIN_PURGE_THRESHOLD, cache.size());
+	}
+
+	private void evict(Node node) {
+		if (node.alive && cache.remove(node.key, node)) {
+			retire(node);
+		}
+	}
+
+	/*
+	 * 节点移出缓存后调用，每个节点只由移除它的线程调用一次，节点留在队列中直到出队或整理
+	 */
+	private void retire(Node node) {
+		node.alive = false;
+		weight.addAndGet(-node.weight);
+		deadNodes.incrementAndGet();
+	}
+
+	/*
+	 * 移除队列中的失效节点，调用时持有淘汰锁
+	 */
+	private void purge() {
+		// 计数只用于判断何时整理，整理期间并发失效的节点允许重复计数
+		deadNodes.set(0);
+		for (Iterator<Node> it = writeOrder.iterator(); it.hasNext();) {
+			if (!it.next().alive) {
+				it.remove();
+			}
+		}
+	}
+
+	private void releaseLoad(Object key) {
+		Load load = loads.get(key);
+		if (load != null && load.owner == Thread.currentThread()) {
+			loads.remove(key, load);
+			load.latch.countDown();
+		}
+	}
+
+	public long getWeight() {
+		return weight.get();
+	}
+
+	public void setSize(int size) {
+		this.size = size;
+		this.sketch = new FrequencySketch(size);
+	}
+
+	public long getMaxWeight() {
+		return maxWeight;
+	}
+
+	public void setMaxWeight(long maxWeight) {
+		this.maxWeight = maxWeight;
+	}
+
+	public long getTimeToLive() {
+		return timeToLive;
+	}
+
+	public void setTimeToLive(long timeToLive) {
+		this.timeToLive = timeToLive;
+	}
+
+	public boolean isBlocking() {
+		return blocking;
+	}
+
+	public void setBlocking(boolean blocking) {
+		this.blocking = blocking;
+	}
+
+	public long getTimeout() {
+		return timeout;
+	}
+
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (getId() == null) {
+			throw new CacheException("Cache instances require an ID.");
+		}
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof Cache)) {
+			return false;
+		}
+
+		Cache otherCache = (Cache) o;
+		return getId().equals(otherCache.getId());
+	}
+
+	@Override
+	public int hashCode() {
+		if (getId() == null) {
+			throw new CacheException("Cache instances require an ID.");
+		}
+		return getId().hashCode();
+	}
+
+	private static final class Node {
+
+		final Object key;
+		final Object value;
+		final int weight;
+		final long writeTime;
+		volatile boolean alive = true;
+
+		Node(Object key, Object value, int weight, long writeTime) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+			this.writeTime = writeTime;
+		}
+
+	}
+
+	/*
+	 * 一次进行中的加载，由未命中的第一个线程持有
+	 */
+	private final class Load {
+
+		final Thread owner = Thread.currentThread();
+		final CountDownLatch latch = new CountDownLatch(1);
+
+		void await(Object key) {
+			try {
+				if (timeout <= 0) {
+					latch.await();
+				} else if (!latch.await(timeout, TimeUnit.MILLISECONDS)) {
+					throw new CacheException("Couldn't get a lock in " + timeout + " for the key " + key
+							+ " at the cache " + id);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CacheException("Got interrupted while trying to acquire lock for key " + key, e);
+			}
+		}
+
+	}
+
+	/*
+	 * 访问频率的估计，每个long保存16个4位计数器，每个key对应4个计数器，取最小值。
+	 * 累计次数达到样本数时所有计数减半，使旧的热点逐渐失效。并发下的计数通过CAS更新
+	 */
+	static final class FrequencySketch {
+
+		private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL,
+				0xcbf29ce484222325L };
+		private static final long RESET_MASK = 0x7777777777777777L;
+
+		private final AtomicLongArray table;
+		private final int tableMask;
+		private final int sampleSize;
+		private final AtomicInteger additions = new AtomicInteger();
+
+		FrequencySketch(int maximum) {
+			int capacity = Math.max(64, Math.min(maximum > 0 ? maximum : 1 << 16, 1 << 24));
+			int length = Integer.highestOneBit(capacity - 1) << 1;
+			this.table = new AtomicLongArray(length);
+			this.tableMask = length - 1;
+			this.sampleSize = 10 * length;
+		}
+
+		int frequency(Object key) {
+			int hash = spread(key.hashCode());
+			int start = (hash & 3) << 2;
+			int frequency = Integer.MAX_VALUE;
+			for (int i = 0; i < 4; i++) {
+				int offset = (start + i) << 2;
+				int count = (int) ((table.get(indexOf(hash, i)) >>> offset) & 0xfL);
+				frequency = Math.min(frequency, count);
+			}
+			return frequency;
+		}
+
+		void increment(Object key) {
+			int hash = spread(key.hashCode());
+			int start = (hash & 3) << 2;
+			boolean added = false;
+			for (int i = 0; i < 4; i++) {
+				added |= incrementAt(indexOf(hash, i), (start + i) << 2);
+			}
+			if (added && additions.incrementAndGet() == sampleSize) {
+				reset();
+			}
+		}
+
+		private boolean incrementAt(int index, int offset) {
+			long mask = 0xfL << offset;
+			while (true) {
+				long current = table.get(index);
+				if ((current & mask) == mask) {
+					return false;
+				}
+				if (table.compareAndSet(index, current, current + (1L << offset))) {
+					return true;
+				}
+			}
+		}
+
+		private void reset() {
+			additions.set(0);
+			for (int i = 0; i < table.length(); i++) {
+				while (true) {
+					long current = table.get(i);
+					if (table.compareAndSet(i, current, (current >>> 1) & RESET_MASK)) {
+						break;
+					}
+				}
+			}
+		}
+
+		private int indexOf(int hash, int i) {
+			long h = (hash + SEEDS[i]) * SEEDS[i];
+			h += h >>> 32;
+			return (int) h & tableMask;
+		}
+
+		private static int spread(int hash) {
+			hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+			hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+			return (hash >>> 16) ^ hash;
+		}
+
+	}
+
+}
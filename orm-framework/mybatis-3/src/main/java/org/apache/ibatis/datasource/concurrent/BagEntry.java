@@ -0,0 +1,121 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.concurrent;
+
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * 连接池中的一个物理连接及其状态<br>
+ * 状态只通过CAS变更，借出、归还、校验与移除互不加锁
+ */
+final class BagEntry {
+
+	static final int STATE_NOT_IN_USE = 0;
+	static final int STATE_IN_USE = 1;
+	static final int STATE_REMOVED = -1;
+	static final int STATE_RESERVED = -2;
+
+	private static final AtomicIntegerFieldUpdater<BagEntry> STATE_UPDATER = AtomicIntegerFieldUpdater
+			.newUpdater(BagEntry.class, "state");
+
+	private final Connection realConnection;
+	private final int generation;
+	private final long createdTimestamp;
+	private volatile int state = STATE_IN_USE;
+	private volatile long lastUsedTimestamp;
+	private volatile long checkoutTimestamp;
+	// 本次借出是否已报告过疑似泄漏
+	private volatile boolean leakReported;
+
+	/*
+	 * 新建的连接直接处于借出状态，由创建它的线程使用
+	 *
+	 * @param realConnection 物理连接
+	 * 
+	 * @param generation 创建时连接池的配置版本
+	 */
+	BagEntry(Connection realConnection, int generation) {
+		this.realConnection = realConnection;
+		this.generation = generation;
+		this.createdTimestamp = System.currentTimeMillis();
+		this.lastUsedTimestamp = createdTimestamp;
+	}
+
+	boolean compareAndSet(int expect, int update) {
+		return STATE_UPDATER.compareAndSet(this, expect, update);
+	}
+
+	void setState(int update) {
+		state = update;
+	}
+
+	int getState() {
+		return state;
+	}
+
+	Connection getRealConnection() {
+		return realConnection;
+	}
+
+	int getRealHashCode() {
+		return realConnection == null ? 0 : realConnection.hashCode();
+	}
+
+	int getGeneration() {
+		return generation;
+	}
+
+	long getCreatedTimestamp() {
+		return createdTimestamp;
+	}
+
+	long getLastUsedTimestamp() {
+		return lastUsedTimestamp;
+	}
+
+	void setLastUsedTimestamp(long lastUsedTimestamp) {
+		this.lastUsedTimestamp = lastUsedTimestamp;
+	}
+
+	long getTimeElapsedSinceLastUse() {
+		return System.currentTimeMillis() - lastUsedTimestamp;
+	}
+
+	void checkout(long timestamp) {
+		checkoutTimestamp = timestamp;
+		lastUsedTimestamp = timestamp;
+		leakReported = false;
+	}
+
+	long getCheckoutTime() {
+		return System.currentTimeMillis() - checkoutTimestamp;
+	}
+
+	boolean isLeakReported() {
+		return leakReported;
+	}
+
+	void setLeakReported(boolean leakReported) {
+		this.leakReported = leakReported;
+	}
+
+	@Override
+	public String toString() {
+		return "BagEntry[" + getRealHashCode() + ", state=" + state + "]";
+	}
+
+}
@@ -0,0 +1,117 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.concurrent;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 连接池统计<br>
+ * 计数器使用分段累加的LongAdder，借出与归还时不竞争同一个变量，读取不加锁
+ */
+public class ConcurrentPoolState {
+
+	protected final ConcurrentPooledDataSource dataSource;
+
+	protected final LongAdder requestCount = new LongAdder();
+	protected final LongAdder accumulatedRequestTime = new LongAdder();
+	protected final LongAdder checkinCount = new LongAdder();
+	protected final LongAdder accumulatedCheckoutTime = new LongAdder();
+	protected final LongAdder accumulatedWaitTime = new LongAdder();
+	protected final LongAdder hadToWaitCount = new LongAdder();
+	protected final LongAdder badConnectionCount = new LongAdder();
+	protected final LongAdder evictedConnectionCount = new LongAdder();
+
+	public ConcurrentPoolState(ConcurrentPooledDataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	public long getRequestCount() {
+		return requestCount.sum();
+	}
+
+	public long getAverageRequestTime() {
+		long requests = requestCount.sum();
+		return requests == 0 ? 0 : accumulatedRequestTime.sum() / requests;
+	}
+
+	public long getAverageWaitTime() {
+		long waits = hadToWaitCount.sum();
+		return waits == 0 ? 0 : accumulatedWaitTime.sum() / waits;
+	}
+
+	public long getHadToWaitCount() {
+		return hadToWaitCount.sum();
+	}
+
+	public long getBadConnectionCount() {
+		return badConnectionCount.sum();
+	}
+
+	public long getEvictedConnectionCount() {
+		return evictedConnectionCount.sum();
+	}
+
+	public long getAverageCheckoutTime() {
+		long checkins = checkinCount.sum();
+		return checkins == 0 ? 0 : accumulatedCheckoutTime.sum() / checkins;
+	}
+
+	public int getIdleConnectionCount() {
+		return dataSource.getBag().count(BagEntry.STATE_NOT_IN_USE);
+	}
+
+	public int getActiveConnectionCount() {
+		return dataSource.getBag().count(BagEntry.STATE_IN_USE);
+	}
+
+	public int getWaitingThreadCount() {
+		return dataSource.getBag().getWaitingThreadCount();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("\n===CONFINGURATION==============================================");
+		builder.append("\n jdbcDriver                     ").append(dataSource.getDriver());
+		builder.append("\n jdbcUrl                        ").append(dataSource.getUrl());
+		builder.append("\n jdbcUsername                   ").append(dataSource.getUsername());
+		builder.append("\n jdbcPassword                   ")
+				.append((dataSource.getPassword() == null ? "NULL" : "************"));
+		builder.append("\n poolMaxActiveConnections       ").append(dataSource.poolMaximumActiveConnections);
+		builder.append("\n poolMaxIdleConnections         ").append(dataSource.poolMaximumIdleConnections);
+		builder.append("\n poolMaxCheckoutTime            ").append(dataSource.poolMaximumCheckoutTime);
+		builder.append("\n poolMaxIdleTime                ").append(dataSource.poolMaximumIdleTime);
+		builder.append("\n poolTimeToWait                 ").append(dataSource.poolTimeToWait);
+		builder.append("\n poolValidationInterval         ").append(dataSource.poolValidationInterval);
+		builder.append("\n poolPingEnabled                ").append(dataSource.poolPingEnabled);
+		builder.append("\n poolPingQuery                  ").append(dataSource.poolPingQuery);
+		builder.append("\n poolPingConnectionsNotUsedFor  ").append(dataSource.poolPingConnectionsNotUsedFor);
+		builder.append("\n ---STATUS-----------------------------------------------------");
+		builder.append("\n activeConnections              ").append(getActiveConnectionCount());
+		builder.append("\n idleConnections                ").append(getIdleConnectionCount());
+		builder.append("\n waitingThreads                 ").append(getWaitingThreadCount());
+		builder.append("\n requestCount                   ").append(getRequestCount());
+		builder.append("\n averageRequestTime             ").append(getAverageRequestTime());
+		builder.append("\n averageCheckoutTime            ").append(getAverageCheckoutTime());
+		builder.append("\n hadToWait                      ").append(getHadToWaitCount());
+		builder.append("\n averageWaitTime                ").append(getAverageWaitTime());
+		builder.append("\n badConnectionCount             ").append(getBadConnectionCount());
+		builder.append("\n evictedConnectionCount         ").append(getEvictedConnectionCount());
+		builder.append("\n===============================================================");
+		return builder.toString();
+	}
+
+}
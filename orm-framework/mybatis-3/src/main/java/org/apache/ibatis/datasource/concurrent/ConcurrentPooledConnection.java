@@ -0,0 +1,86 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.concurrent;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * 一次借出的连接代理，关闭时归还物理连接，之后的调用均视为无效
+ */
+class ConcurrentPooledConnection implements InvocationHandler {
+
+	private static final String CLOSE = "close";
+	private static final String IS_CLOSED = "isClosed";
+	private static final Class<?>[] IFACES = new Class<?>[] { Connection.class };
+
+	private final BagEntry entry;
+	private final ConcurrentPooledDataSource dataSource;
+	private final Connection proxyConnection;
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	ConcurrentPooledConnection(BagEntry entry, ConcurrentPooledDataSource dataSource) {
+		this.entry = entry;
+		this.dataSource = dataSource;
+		this.proxyConnection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), IFACES, this);
+	}
+
+	Connection getProxyConnection() {
+		return proxyConnection;
+	}
+
+	Connection getRealConnection() {
+		return entry.getRealConnection();
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		String methodName = method.getName();
+		// 关闭时归还到连接池，并发或重复关闭只有一次归还，否则归还后已借给他人的连接会被再次置为空闲
+		if (CLOSE.equals(methodName) && method.getParameterTypes().length == 0) {
+			if (closed.compareAndSet(false, true)) {
+				dataSource.pushConnection(entry);
+			}
+			return null;
+		}
+		if (closed.get() && IS_CLOSED.equals(methodName) && method.getParameterTypes().length == 0) {
+			return Boolean.TRUE;
+		}
+		try {
+			if (!Object.class.equals(method.getDeclaringClass())) {
+				// issue #579 toString() should never fail
+				// throw an SQLException instead of a Runtime
+				checkConnection();
+			}
+			return method.invoke(entry.getRealConnection(), args);
+		} catch (Throwable t) {
+			throw ExceptionUtil.unwrapThrowable(t);
+		}
+	}
+
+	private void checkConnection() throws SQLException {
+		if (closed.get()) {
+			throw new SQLException("Error accessing ConcurrentPooledConnection. Connection is closed.");
+		}
+	}
+
+}
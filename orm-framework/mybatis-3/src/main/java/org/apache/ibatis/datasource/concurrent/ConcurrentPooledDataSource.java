@@ -0,0 +1,647 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.concurrent;
+
+import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * 无锁的连接池数据源<br>
+ * 与PooledDataSource配置兼容，借出和归还不经过全局锁：连接存放在无锁容器中，优先借给上次使用它的线程，
+ * 没有空闲连接时等待者按先来后到直接接收归还的连接；统计使用分段计数器；
+ * 空闲连接的校验与回收由后台线程按poolValidationInterval周期执行，不占用借出路径。<br>
+ * 与PooledDataSource的差异：poolTimeToWait为等待连接的总时限，超时抛出SQLException；
+ * 借出超过poolMaximumCheckoutTime的连接只记录疑似泄漏的警告，不会被强制收回；
+ * 使用非配置用户名/密码获取的连接不进入连接池。
+ */
+public class ConcurrentPooledDataSource implements DataSource {
+
+	private static final Log log = LogFactory.getLog(ConcurrentPooledDataSource.class);
+
+	// 所有连接池共用的后台线程，任务只弱引用连接池，连接池被回收后任务自行取消
+	private static final ScheduledThreadPoolExecutor HOUSEKEEPER = createHousekeeper();
+
+	private final ConcurrentPoolState state = new ConcurrentPoolState(this);
+
+	private final ConnectionBag bag = new ConnectionBag();
+
+	private final UnpooledDataSource dataSource;
+
+	private final AtomicInteger totalConnections = new AtomicInteger();
+
+	// 配置版本，forceCloseAll时递增，旧版本的连接在归还或校验时关闭
+	private final AtomicInteger generation = new AtomicInteger();
+
+	private volatile ScheduledFuture<?> housekeeping;
+
+	// OPTIONAL CONFIGURATION FIELDS
+	protected int poolMaximumActiveConnections = 10;
+	protected int poolMaximumIdleConnections = 5;
+	protected int poolMaximumCheckoutTime = 20000;
+	protected int poolMaximumIdleTime = 600000;
+	protected int poolTimeToWait = 20000;
+	protected int poolValidationInterval = 30000;
+	protected String poolPingQuery = "NO PING QUERY SET";
+	protected boolean poolPingEnabled = false;
+	protected int poolPingConnectionsNotUsedFor = 0;
+
+	public ConcurrentPooledDataSource() {
+		dataSource = new UnpooledDataSource();
+	}
+
+	public ConcurrentPooledDataSource(UnpooledDataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	public ConcurrentPooledDataSource(String driver, String url, String username, String password) {
+		dataSource = new UnpooledDataSource(driver, url, username, password);
+	}
+
+	public ConcurrentPooledDataSource(String driver, String url, Properties driverProperties) {
+		dataSource = new UnpooledDataSource(driver, url, driverProperties);
+	}
+
+	public ConcurrentPooledDataSource(ClassLoader driverClassLoader, String driver, String url, String username,
+			String password) {
+		dataSource = new UnpooledDataSource(driverClassLoader, driver, url, username, password);
+	}
+
+	public ConcurrentPooledDataSource(ClassLoader driverClassLoader, String driver, String url,
+			Properties driverProperties) {
+		dataSource = new UnpooledDataSource(driverClassLoader, driver, url, driverProperties);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return popConnection().getProxyConnection();
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		if (same(username, dataSource.getUsername()) && same(password, dataSource.getPassword())) {
+			return getConnection();
+		}
+		return dataSource.getConnection(username, password);
+	}
+
+	@Override
+	public void setLoginTimeout(int loginTimeout) throws SQLException {
+		DriverManager.setLoginTimeout(loginTimeout);
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return DriverManager.getLoginTimeout();
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter logWriter) throws SQLException {
+		DriverManager.setLogWriter(logWriter);
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return DriverManager.getLogWriter();
+	}
+
+	public void setDriver(String driver) {
+		dataSource.setDriver(driver);
+		forceCloseAll();
+	}
+
+	public void setUrl(String url) {
+		dataSource.setUrl(url);
+		forceCloseAll();
+	}
+
+	public void setUsername(String username) {
+		dataSource.setUsername(username);
+		forceCloseAll();
+	}
+
+	public void setPassword(String password) {
+		dataSource.setPassword(password);
+		forceCloseAll();
+	}
+
+	public void setDefaultAutoCommit(boolean defaultAutoCommit) {
+		dataSource.setAutoCommit(defaultAutoCommit);
+		forceCloseAll();
+	}
+
+	public void setDefaultTransactionIsolationLevel(Integer defaultTransactionIsolationLevel) {
+		dataSource.setDefaultTransactionIsolationLevel(defaultTransactionIsolationLevel);
+		forceCloseAll();
+	}
+
+	public void setDriverProperties(Properties driverProps) {
+		dataSource.setDriverProperties(driverProps);
+		forceCloseAll();
+	}
+
+	/*
+	 * The maximum number of connections, active and idle
+	 */
+	public void setPoolMaximumActiveConnections(int poolMaximumActiveConnections) {
+		this.poolMaximumActiveConnections = poolMaximumActiveConnections;
+		forceCloseAll();
+	}
+
+	/*
+	 * The maximum number of idle connections kept by the background eviction
+	 */
+	public void setPoolMaximumIdleConnections(int poolMaximumIdleConnections) {
+		this.poolMaximumIdleConnections = poolMaximumIdleConnections;
+		forceCloseAll();
+	}
+
+	/*
+	 * Connections checked out longer than this are reported as possible leaks
+	 */
+	public void setPoolMaximumCheckoutTime(int poolMaximumCheckoutTime) {
+		this.poolMaximumCheckoutTime = poolMaximumCheckoutTime;
+	}
+
+	/*
+	 * Idle connections not used for this many milliseconds are evicted, 0
+	 * disables
+	 */
+	public void setPoolMaximumIdleTime(int poolMaximumIdleTime) {
+		this.poolMaximumIdleTime = poolMaximumIdleTime;
+	}
+
+	/*
+	 * The total time to wait for a connection before failing
+	 */
+	public void setPoolTimeToWait(int poolTimeToWait) {
+		this.poolTimeToWait = poolTimeToWait;
+	}
+
+	/*
+	 * The period of the background validation and eviction, 0 disables
+	 */
+	public synchronized void setPoolValidationInterval(int poolValidationInterval) {
+		this.poolValidationInterval = poolValidationInterval;
+		stopHousekeeping();
+	}
+
+	public void setPoolPingQuery(String poolPingQuery) {
+		this.poolPingQuery = poolPingQuery;
+		forceCloseAll();
+	}
+
+	public void setPoolPingEnabled(boolean poolPingEnabled) {
+		this.poolPingEnabled = poolPingEnabled;
+		forceCloseAll();
+	}
+
+	public void setPoolPingConnectionsNotUsedFor(int milliseconds) {
+		this.poolPingConnectionsNotUsedFor = milliseconds;
+		forceCloseAll();
+	}
+
+	public String getDriver() {
+		return dataSource.getDriver();
+	}
+
+	public String getUrl() {
+		return dataSource.getUrl();
+	}
+
+	public String getUsername() {
+		return dataSource.getUsername();
+	}
+
+	public String getPassword() {
+		return dataSource.getPassword();
+	}
+
+	public boolean isAutoCommit() {
+		return dataSource.isAutoCommit();
+	}
+
+	public Integer getDefaultTransactionIsolationLevel() {
+		return dataSource.getDefaultTransactionIsolationLevel();
+	}
+
+	public Properties getDriverProperties() {
+		return dataSource.getDriverProperties();
+	}
+
+	public int getPoolMaximumActiveConnections() {
+		return poolMaximumActiveConnections;
+	}
+
+	public int getPoolMaximumIdleConnections() {
+		return poolMaximumIdleConnections;
+	}
+
+	public int getPoolMaximumCheckoutTime() {
+		return poolMaximumCheckoutTime;
+	}
+
+	public int getPoolMaximumIdleTime() {
+		return poolMaximumIdleTime;
+	}
+
+	public int getPoolTimeToWait() {
+		return poolTimeToWait;
+	}
+
+	public int getPoolValidationInterval() {
+		return poolValidationInterval;
+	}
+
+	public String getPoolPingQuery() {
+		return poolPingQuery;
+	}
+
+	public boolean isPoolPingEnabled() {
+		return poolPingEnabled;
+	}
+
+	public int getPoolPingConnectionsNotUsedFor() {
+		return poolPingConnectionsNotUsedFor;
+	}
+
+	/*
+	 * Closes all idle connections; active connections are closed when they
+	 * are returned
+	 */
+	public void forceCloseAll() {
+		generation.incrementAndGet();
+		for (BagEntry entry : bag.values()) {
+			if (bag.reserve(entry)) {
+				closeEntry(entry);
+			}
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("ConcurrentPooledDataSource forcefully closed/removed all idle connections.");
+		}
+	}
+
+	/*
+	 * Closes all idle connections and stops the background validation
+	 */
+	public void close() {
+		stopHousekeeping();
+		forceCloseAll();
+	}
+
+	public ConcurrentPoolState getPoolState() {
+		return state;
+	}
+
+	ConnectionBag getBag() {
+		return bag;
+	}
+
+	protected void pushConnection(BagEntry entry) throws SQLException {
+		state.checkinCount.increment();
+		state.accumulatedCheckoutTime.add(entry.getCheckoutTime());
+		if (entry.getGeneration() != generation.get()) {
+			closeEntry(entry);
+			return;
+		}
+		try {
+			Connection realConn = entry.getRealConnection();
+			if (!realConn.getAutoCommit()) {
+				realConn.rollback();
+			}
+		} catch (SQLException e) {
+			if (log.isDebugEnabled()) {
+				log.debug("A bad connection (" + entry.getRealHashCode()
+						+ ") attempted to return to the pool, discarding connection.");
+			}
+			state.badConnectionCount.increment();
+			closeEntry(entry);
+			return;
+		}
+		entry.setLastUsedTimestamp(System.currentTimeMillis());
+		bag.requite(entry);
+		if (log.isDebugEnabled()) {
+			log.debug("Returned connection " + entry.getRealHashCode() + " to pool.");
+		}
+	}
+
+	private ConcurrentPooledConnection popConnection() throws SQLException {
+		startHousekeeping();
+		long t = System.nanoTime();
+		int localBadConnectionCount = 0;
+		boolean countedWait = false;
+		long deadline = t + TimeUnit.MILLISECONDS.toNanos(poolTimeToWait);
+		while (true) {
+			BagEntry entry = bag.borrow();
+			if (entry == null) {
+				entry = createEntry();
+			}
+			if (entry == null) {
+				// Must wait
+				if (!countedWait) {
+					state.hadToWaitCount.increment();
+					countedWait = true;
+				}
+				long wt = System.nanoTime();
+				try {
+					entry = bag.borrow(deadline - wt, this::createEntry);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new SQLException("ConcurrentPooledDataSource: Interrupted while waiting for a connection.",
+							e);
+				} finally {
+					state.accumulatedWaitTime.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wt));
+				}
+				if (entry == null) {
+					throw new SQLException("ConcurrentPooledDataSource: Timed out after " + poolTimeToWait
+							+ " milliseconds waiting for a connection.");
+				}
+			}
+			if (isUsable(entry)) {
+				entry.checkout(System.currentTimeMillis());
+				state.requestCount.increment();
+				state.accumulatedRequestTime.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t));
+				if (log.isDebugEnabled()) {
+					log.debug("Checked out connection " + entry.getRealHashCode() + " from pool.");
+				}
+				return new ConcurrentPooledConnection(entry, this);
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("A bad connection (" + entry.getRealHashCode()
+						+ ") was returned from the pool, getting another connection.");
+			}
+			state.badConnectionCount.increment();
+			closeEntry(entry);
+			if (++localBadConnectionCount > poolMaximumIdleConnections + 3) {
+				throw new SQLException("ConcurrentPooledDataSource: Could not get a good connection to the database.");
+			}
+		}
+	}
+
+	/*
+	 * Creates a connection if the pool is below its maximum size
+	 *
+	 * @return the new connection in use, or null when the pool is full
+	 */
+	private BagEntry createEntry() throws SQLException {
+		while (true) {
+			int total = totalConnections.get();
+			if (total >= poolMaximumActiveConnections) {
+				return null;
+			}
+			if (totalConnections.compareAndSet(total, total + 1)) {
+				break;
+			}
+		}
+		try {
+			BagEntry entry = new BagEntry(dataSource.getConnection(), generation.get());
+			bag.add(entry);
+			if (log.isDebugEnabled()) {
+				log.debug("Created connection " + entry.getRealHashCode() + ".");
+			}
+			return entry;
+		} catch (SQLException e) {
+			totalConnections.decrementAndGet();
+			throw e;
+		} catch (RuntimeException e) {
+			totalConnections.decrementAndGet();
+			throw e;
+		}
+	}
+
+	/*
+	 * Removes the connection from the pool and closes it, the entry must be in
+	 * use or reserved by the caller
+	 */
+	private void closeEntry(BagEntry entry) {
+		if (!bag.remove(entry)) {
+			return;
+		}
+		totalConnections.decrementAndGet();
+		try {
+			Connection realConn = entry.getRealConnection();
+			if (!realConn.getAutoCommit()) {
+				realConn.rollback();
+			}
+			realConn.close();
+		} catch (Exception e) {
+			// ignore
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Closed connection " + entry.getRealHashCode() + ".");
+		}
+	}
+
+	/*
+	 * Checkout check: the connection must be open, and is pinged only when it
+	 * has not been used for poolPingConnectionsNotUsedFor
+	 */
+	private boolean isUsable(BagEntry entry) {
+		if (entry.getGeneration() != generation.get()) {
+			return false;
+		}
+		try {
+			if (entry.getRealConnection().isClosed()) {
+				return false;
+			}
+		} catch (SQLException e) {
+			return false;
+		}
+		return !poolPingEnabled || poolPingConnectionsNotUsedFor < 0
+				|| entry.getTimeElapsedSinceLastUse() <= poolPingConnectionsNotUsedFor || pingConnection(entry);
+	}
+
+	/*
+	 * Method to check to see if a connection is still usable
+	 *
+	 * @param entry - the connection to check
+	 * 
+	 * @return True if the connection is still usable
+	 */
+	protected boolean pingConnection(BagEntry entry) {
+		try {
+			if (log.isDebugEnabled()) {
+				log.debug("Testing connection " + entry.getRealHashCode() + " ...");
+			}
+			Connection realConn = entry.getRealConnection();
+			Statement statement = realConn.createStatement();
+			try {
+				ResultSet rs = statement.executeQuery(poolPingQuery);
+				rs.close();
+			} finally {
+				statement.close();
+			}
+			if (!realConn.getAutoCommit()) {
+				realConn.rollback();
+			}
+			return true;
+		} catch (Exception e) {
+			log.warn("Execution of ping query '" + poolPingQuery + "' failed: " + e.getMessage());
+			return false;
+		}
+	}
+
+	/*
+	 * Background validation and eviction: idle connections of an old
+	 * generation, beyond poolMaximumIdleConnections, idle longer than
+	 * poolMaximumIdleTime or failing validation are closed; connections
+	 * checked out longer than poolMaximumCheckoutTime are reported once
+	 */
+	void housekeep() {
+		long now = System.currentTimeMillis();
+		int idleKept = 0;
+		for (BagEntry entry : bag.values()) {
+			int entryState = entry.getState();
+			if (entryState == BagEntry.STATE_IN_USE) {
+				if (poolMaximumCheckoutTime > 0 && !entry.isLeakReported()
+						&& entry.getCheckoutTime() > poolMaximumCheckoutTime) {
+					entry.setLeakReported(true);
+					log.warn("Connection " + entry.getRealHashCode() + " has been checked out for "
+							+ entry.getCheckoutTime() + " milliseconds, possible connection leak.");
+				}
+			} else if (entryState == BagEntry.STATE_NOT_IN_USE && bag.reserve(entry)) {
+				boolean evict = entry.getGeneration() != generation.get() || idleKept >= poolMaximumIdleConnections
+						|| (poolMaximumIdleTime > 0 && now - entry.getLastUsedTimestamp() > poolMaximumIdleTime);
+				if (!evict && !isUsable(entry)) {
+					state.badConnectionCount.increment();
+					evict = true;
+				}
+				if (evict) {
+					state.evictedConnectionCount.increment();
+					closeEntry(entry);
+				} else {
+					idleKept++;
+					bag.unreserve(entry);
+				}
+			}
+		}
+	}
+
+	private void startHousekeeping() {
+		if (housekeeping == null && poolValidationInterval > 0) {
+			synchronized (this) {
+				if (housekeeping == null && poolValidationInterval > 0) {
+					Housekeeper task = new Housekeeper(this);
+					housekeeping = HOUSEKEEPER.scheduleWithFixedDelay(task, poolValidationInterval,
+							poolValidationInterval, TimeUnit.MILLISECONDS);
+					task.future = housekeeping;
+				}
+			}
+		}
+	}
+
+	private synchronized void stopHousekeeping() {
+		if (housekeeping != null) {
+			housekeeping.cancel(false);
+			housekeeping = null;
+		}
+	}
+
+	private static ScheduledThreadPoolExecutor createHousekeeper() {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "mybatis-pool-housekeeper");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.setRemoveOnCancelPolicy(true);
+		return executor;
+	}
+
+	private static boolean same(String left, String right) {
+		return left == null ? right == null : left.equals(right);
+	}
+
+	/*
+	 * Unwraps a pooled connection to get to the 'real' connection
+	 *
+	 * @param conn - the pooled connection to unwrap
+	 * 
+	 * @return The 'real' connection
+	 */
+	public static Connection unwrapConnection(Connection conn) {
+		if (Proxy.isProxyClass(conn.getClass())) {
+			InvocationHandler handler = Proxy.getInvocationHandler(conn);
+			if (handler instanceof ConcurrentPooledConnection) {
+				return ((ConcurrentPooledConnection) handler).getRealConnection();
+			}
+		}
+		return conn;
+	}
+
+	protected void finalize() throws Throwable {
+		close();
+		super.finalize();
+	}
+
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		throw new SQLException(getClass().getName() + " is not a wrapper.");
+	}
+
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return false;
+	}
+
+	public Logger getParentLogger() {
+		return Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
+	}
+
+	private static class Housekeeper implements Runnable {
+
+		private final WeakReference<ConcurrentPooledDataSource> dataSource;
+		private volatile ScheduledFuture<?> future;
+
+		Housekeeper(ConcurrentPooledDataSource dataSource) {
+			this.dataSource = new WeakReference<ConcurrentPooledDataSource>(dataSource);
+		}
+
+		@Override
+		public void run() {
+			ConcurrentPooledDataSource ds = dataSource.get();
+			if (ds == null) {
+				ScheduledFuture<?> scheduled = future;
+				if (scheduled != null) {
+					scheduled.cancel(false);
+				}
+				return;
+			}
+			try {
+				ds.housekeep();
+			} catch (RuntimeException e) {
+				log.warn("ConcurrentPooledDataSource housekeeping failed: " + e.getMessage());
+			}
+		}
+
+	}
+
+}
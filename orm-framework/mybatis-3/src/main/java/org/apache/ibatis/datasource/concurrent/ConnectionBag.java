@@ -0,0 +1,183 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.concurrent;
+
+import java.lang.ref.WeakReference;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 无锁的连接容器<br>
+ * 借出时先尝试本线程上次归还的连接，再扫描共享列表，都失败时在公平的SynchronousQueue上等待，
+ * 归还的连接按等待顺序直接交给等待者。连接的增删只发生在创建和关闭时，共享列表使用CopyOnWriteArrayList
+ */
+final class ConnectionBag {
+
+	// 等待者每次最长等待的时间，超时后重新扫描并尝试创建连接（连接被关闭时不会有归还通知）
+	private static final long MAX_WAIT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+	private final CopyOnWriteArrayList<BagEntry> sharedList = new CopyOnWriteArrayList<BagEntry>();
+	// 线程最近归还的连接，优先借给同一线程；弱引用，连接关闭移除后不会被线程一直持有
+	private final ThreadLocal<WeakReference<BagEntry>> lastUsed = new ThreadLocal<WeakReference<BagEntry>>();
+	private final SynchronousQueue<BagEntry> handoffQueue = new SynchronousQueue<BagEntry>(true);
+	private final AtomicInteger waiters = new AtomicInteger();
+
+	interface EntryFactory {
+
+		/*
+		 * 创建处于借出状态的连接并加入容器
+		 *
+		 * @return 新连接，已达上限时为null
+		 */
+		BagEntry create() throws SQLException;
+
+	}
+
+	/*
+	 * 不等待地借出空闲连接
+	 *
+	 * @return 借出的连接，没有空闲连接时为null
+	 */
+	BagEntry borrow() {
+		WeakReference<BagEntry> reference = lastUsed.get();
+		if (reference != null) {
+			lastUsed.remove();
+			BagEntry entry = reference.get();
+			if (entry != null && entry.getState() != BagEntry.STATE_REMOVED
+					&& entry.compareAndSet(BagEntry.STATE_NOT_IN_USE, BagEntry.STATE_IN_USE)) {
+				return entry;
+			}
+		}
+		return scan();
+	}
+
+	/*
+	 * 借出空闲连接，没有时尝试创建，已达上限时等待归还
+	 *
+	 * @param timeoutNanos 最长等待时间
+	 * 
+	 * @param factory 连接创建
+	 * 
+	 * @return 借出的连接，超时为null
+	 */
+	BagEntry borrow(long timeoutNanos, EntryFactory factory) throws SQLException, InterruptedException {
+		long deadline = System.nanoTime() + timeoutNanos;
+		// 先登记等待再扫描，扫描之后归还的连接一定会交到等待队列
+		waiters.incrementAndGet();
+		try {
+			while (true) {
+				BagEntry entry = scan();
+				if (entry == null) {
+					entry = factory.create();
+				}
+				if (entry != null) {
+					return entry;
+				}
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					return null;
+				}
+				entry = handoffQueue.poll(Math.min(remaining, MAX_WAIT_SLICE_NANOS), TimeUnit.NANOSECONDS);
+				if (entry != null && entry.compareAndSet(BagEntry.STATE_NOT_IN_USE, BagEntry.STATE_IN_USE)) {
+					return entry;
+				}
+			}
+		} finally {
+			waiters.decrementAndGet();
+		}
+	}
+
+	/*
+	 * 归还连接，有等待者时直接交给最早的等待者，否则记为本线程最近使用的连接
+	 */
+	void requite(BagEntry entry) {
+		entry.setState(BagEntry.STATE_NOT_IN_USE);
+		for (int i = 0; waiters.get() > 0; i++) {
+			if (entry.getState() != BagEntry.STATE_NOT_IN_USE || handoffQueue.offer(entry)) {
+				return;
+			} else if ((i & 0xff) == 0xff) {
+				LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+			} else {
+				Thread.yield();
+			}
+		}
+		lastUsed.set(new WeakReference<BagEntry>(entry));
+	}
+
+	void add(BagEntry entry) {
+		sharedList.add(entry);
+	}
+
+	/*
+	 * 移除借出中或已保留的连接
+	 *
+	 * @return 是否由本次调用移除
+	 */
+	boolean remove(BagEntry entry) {
+		if (!entry.compareAndSet(BagEntry.STATE_IN_USE, BagEntry.STATE_REMOVED)
+				&& !entry.compareAndSet(BagEntry.STATE_RESERVED, BagEntry.STATE_REMOVED)) {
+			return false;
+		}
+		sharedList.remove(entry);
+		return true;
+	}
+
+	/*
+	 * 保留空闲连接，保留期间不会被借出，用于后台校验与回收
+	 */
+	boolean reserve(BagEntry entry) {
+		return entry.compareAndSet(BagEntry.STATE_NOT_IN_USE, BagEntry.STATE_RESERVED);
+	}
+
+	void unreserve(BagEntry entry) {
+		if (entry.compareAndSet(BagEntry.STATE_RESERVED, BagEntry.STATE_NOT_IN_USE) && waiters.get() > 0) {
+			handoffQueue.offer(entry);
+		}
+	}
+
+	List<BagEntry> values() {
+		return sharedList;
+	}
+
+	int count(int state) {
+		int count = 0;
+		for (BagEntry entry : sharedList) {
+			if (entry.getState() == state) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	int getWaitingThreadCount() {
+		return waiters.get();
+	}
+
+	private BagEntry scan() {
+		for (BagEntry entry : sharedList) {
+			if (entry.compareAndSet(BagEntry.STATE_NOT_IN_USE, BagEntry.STATE_IN_USE)) {
+				return entry;
+			}
+		}
+		return null;
+	}
+
+}
@@ -64,7 +64,7 @@ public class BoundSql {
 	}
 
 	public boolean hasAdditionalParameter(String name) {
-		PropertyTokenizer prop = new PropertyTokenizer(name);
+		PropertyTokenizer prop = PropertyTokenizer.of(name);
 		String indexedName = prop.getIndexedName();
 		return additionalParameters.containsKey(indexedName);
 	}
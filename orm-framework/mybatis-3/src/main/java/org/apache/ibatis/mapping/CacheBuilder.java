@@ -29,6 +29,7 @@ import org.apache.ibatis.cache.decorators.LruCache;
 import org.apache.ibatis.cache.decorators.ScheduledCache;
 import org.apache.ibatis.cache.decorators.SerializedCache;
 import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
 import org.apache.ibatis.cache.impl.PerpetualCache;
 import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.reflection.SystemMetaObject;
@@ -99,6 +100,8 @@ public class CacheBuilder {
 				setCacheProperties(cache);
 			}
 			cache = setStandardDecorators(cache);
+		} else if (cache instanceof ConcurrentCache) {
+			cache = setConcurrentDecorators((ConcurrentCache) cache);
 		} else if (!LoggingCache.class.isAssignableFrom(cache.getClass())) {
 			cache = new LoggingCache(cache);
 		}
@@ -138,6 +141,25 @@ public class CacheBuilder {
 		}
 	}
 
+	// 并发缓存自带淘汰和按key加载，只保留线程安全的装饰器，不再包装SynchronizedCache和BlockingCache
+	private Cache setConcurrentDecorators(ConcurrentCache concurrentCache) {
+		if (size != null) {
+			concurrentCache.setSize(size);
+		}
+		if (blocking) {
+			concurrentCache.setBlocking(true);
+		}
+		Cache cache = concurrentCache;
+		if (clearInterval != null) {
+			cache = new ScheduledCache(cache);
+			((ScheduledCache) cache).setClearInterval(clearInterval);
+		}
+		if (readWrite) {
+			cache = new SerializedCache(cache);
+		}
+		return new LoggingCache(cache);
+	}
+
 	private void setCacheProperties(Cache cache) {
 		if (properties != null) {
 			MetaObject metaCache = SystemMetaObject.forObject(cache);
@@ -18,11 +18,25 @@ package org.apache.ibatis.reflection;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
+import org.apache.ibatis.reflection.invoker.InvokerFactory;
+import org.apache.ibatis.reflection.invoker.AccessorInvokerFactory;
+
 public class DefaultReflectorFactory implements ReflectorFactory {
 	private boolean classCacheEnabled = true;
 	private final ConcurrentMap<Class<?>, Reflector> reflectorMap = new ConcurrentHashMap<Class<?>, Reflector>();
 
+	private final InvokerFactory invokerFactory;
+
 	public DefaultReflectorFactory() {
+		this(new AccessorInvokerFactory());
+	}
+
+	public DefaultReflectorFactory(InvokerFactory invokerFactory) {
+		this.invokerFactory = invokerFactory;
+	}
+
+	public InvokerFactory getInvokerFactory() {
+		return invokerFactory;
 	}
 
 	@Override
@@ -41,12 +55,12 @@ public class DefaultReflectorFactory implements ReflectorFactory {
 			// synchronized (type) removed see issue #461
 			Reflector cached = reflectorMap.get(type);
 			if (cached == null) {
-				cached = new Reflector(type);
+				cached = new Reflector(type, invokerFactory);
 				reflectorMap.put(type, cached);
 			}
 			return cached;
 		} else {
-			return new Reflector(type);
+			return new Reflector(type, invokerFactory);
 		}
 	}
 
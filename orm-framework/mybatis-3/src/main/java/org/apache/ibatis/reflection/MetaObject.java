@@ -113,7 +113,7 @@ public class MetaObject {
 	}
 
 	public Object getValue(String name) {
-		PropertyTokenizer prop = new PropertyTokenizer(name);
+		PropertyTokenizer prop = PropertyTokenizer.of(name);
 		if (prop.hasNext()) {
 			MetaObject metaValue = metaObjectForProperty(prop.getIndexedName());
 			if (metaValue == SystemMetaObject.NULL_META_OBJECT) {
@@ -127,7 +127,7 @@ public class MetaObject {
 	}
 
 	public void setValue(String name, Object value) {
-		PropertyTokenizer prop = new PropertyTokenizer(name);
+		PropertyTokenizer prop = PropertyTokenizer.of(name);
 		if (prop.hasNext()) {
 			MetaObject metaValue = metaObjectForProperty(prop.getIndexedName());
 			if (metaValue == SystemMetaObject.NULL_META_OBJECT) {
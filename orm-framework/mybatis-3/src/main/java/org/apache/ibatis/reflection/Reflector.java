@@ -28,10 +28,9 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
-import org.apache.ibatis.reflection.invoker.GetFieldInvoker;
 import org.apache.ibatis.reflection.invoker.Invoker;
-import org.apache.ibatis.reflection.invoker.MethodInvoker;
-import org.apache.ibatis.reflection.invoker.SetFieldInvoker;
+import org.apache.ibatis.reflection.invoker.InvokerFactory;
+import org.apache.ibatis.reflection.invoker.ReflectionInvokerFactory;
 import org.apache.ibatis.reflection.property.PropertyNamer;
 
 /*
@@ -53,14 +52,24 @@ public class Reflector {
 	private Map<String, Class<?>> setTypes = new HashMap<String, Class<?>>();
 	private Map<String, Class<?>> getTypes = new HashMap<String, Class<?>>();
 	private Constructor<?> defaultConstructor;
+	private InvokerFactory invokerFactory;
+	// get/set方法在创建Invoker前先收集起来，一个类的方法一次交给InvokerFactory
+	private Map<String, Method> getMethodsToBind = new HashMap<String, Method>();
+	private Map<String, Method> setMethodsToBind = new HashMap<String, Method>();
 
 	private Map<String, String> caseInsensitivePropertyMap = new HashMap<String, String>();
 
 	public Reflector(Class<?> clazz) {
+		this(clazz, new ReflectionInvokerFactory());
+	}
+
+	public Reflector(Class<?> clazz, InvokerFactory invokerFactory) {
 		type = clazz;
+		this.invokerFactory = invokerFactory;
 		addDefaultConstructor(clazz);
 		addGetMethods(clazz);
 		addSetMethods(clazz);
+		addMethodInvokers();
 		addFields(clazz);
 		readablePropertyNames = getMethods.keySet().toArray(new String[getMethods.keySet().size()]);
 		writeablePropertyNames = setMethods.keySet().toArray(new String[setMethods.keySet().size()]);
@@ -150,7 +159,7 @@ public class Reflector {
 
 	private void addGetMethod(String name, Method method) {
 		if (isValidPropertyName(name)) {
-			getMethods.put(name, new MethodInvoker(method));
+			getMethodsToBind.put(name, method);
 			getTypes.put(name, method.getReturnType());
 		}
 	}
@@ -217,11 +226,27 @@ public class Reflector {
 
 	private void addSetMethod(String name, Method method) {
 		if (isValidPropertyName(name)) {
-			setMethods.put(name, new MethodInvoker(method));
+			setMethodsToBind.put(name, method);
 			setTypes.put(name, method.getParameterTypes()[0]);
 		}
 	}
 
+	private void addMethodInvokers() {
+		List<String> names = new ArrayList<String>(getMethodsToBind.keySet());
+		names.addAll(setMethodsToBind.keySet());
+		List<Method> methods = new ArrayList<Method>(getMethodsToBind.values());
+		methods.addAll(setMethodsToBind.values());
+		Invoker[] invokers = invokerFactory.newMethodInvokers(type, methods.toArray(new Method[methods.size()]));
+		int getterCount = getMethodsToBind.size();
+		for (int i = 0; i < invokers.length; i++) {
+			if (i < getterCount) {
+				getMethods.put(names.get(i), invokers[i]);
+			} else {
+				setMethods.put(names.get(i), invokers[i]);
+			}
+		}
+	}
+
 	private void addFields(Class<?> clazz) {
 		Field[] fields = clazz.getDeclaredFields();
 		for (Field field : fields) {
@@ -257,14 +282,14 @@ public class Reflector {
 
 	private void addSetField(Field field) {
 		if (isValidPropertyName(field.getName())) {
-			setMethods.put(field.getName(), new SetFieldInvoker(field));
+			setMethods.put(field.getName(), invokerFactory.newSetFieldInvoker(field));
 			setTypes.put(field.getName(), field.getType());
 		}
 	}
 
 	private void addGetField(Field field) {
 		if (isValidPropertyName(field.getName())) {
-			getMethods.put(field.getName(), new GetFieldInvoker(field));
+			getMethods.put(field.getName(), invokerFactory.newGetFieldInvoker(field));
 			getTypes.put(field.getName(), field.getType());
 		}
 	}
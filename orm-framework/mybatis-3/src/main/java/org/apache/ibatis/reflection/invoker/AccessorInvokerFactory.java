@@ -0,0 +1,135 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 生成属性访问类的Invoker工厂<br>
+ * 每个类的公共get/set方法生成一个BeanAccessor子类，按方法序号switch后直接调用，
+ * 每个调用点只有一个目标方法；其余方法和字段仍使用反射。参数、异常和返回值与反射调用一致
+ */
+public class AccessorInvokerFactory extends ReflectionInvokerFactory {
+
+	// 同一个类的Reflector重复创建时（如关闭了Reflector缓存）复用生成的类
+	private final ConcurrentMap<Class<?>, AccessorClass> accessorClasses =
+			new ConcurrentHashMap<Class<?>, AccessorClass>();
+
+	@Override
+	public Invoker[] newMethodInvokers(Class<?> type, Method[] methods) {
+		List<Method> supported = new ArrayList<Method>();
+		for (Method method : methods) {
+			if (isSupported(method)) {
+				supported.add(method);
+			}
+		}
+		Constructor<? extends BeanAccessor> constructor = supported.isEmpty() ? null : accessorClass(type, supported);
+		Invoker[] invokers = new Invoker[methods.length];
+		for (int i = 0; i < methods.length; i++) {
+			int index = supported.indexOf(methods[i]);
+			if (constructor != null && index >= 0) {
+				try {
+					invokers[i] = constructor.newInstance(methods[i], index);
+					continue;
+				} catch (Exception e) {
+					// 实例化失败时使用反射
+				}
+			}
+			invokers[i] = new MethodInvoker(methods[i]);
+		}
+		return invokers;
+	}
+
+	/*
+	 * 生成失败时返回null，这个类的方法都使用反射
+	 */
+	private Constructor<? extends BeanAccessor> accessorClass(Class<?> type, List<Method> methods) {
+		AccessorClass accessorClass = accessorClasses.get(type);
+		if (accessorClass == null || !accessorClass.methods.equals(methods)) {
+			Constructor<? extends BeanAccessor> constructor;
+			try {
+				constructor = BeanAccessorWriter.newAccessorClass(type, methods);
+			} catch (Throwable t) {
+				constructor = null;
+			}
+			accessorClass = new AccessorClass(methods, constructor);
+			accessorClasses.put(type, accessorClass);
+		}
+		return accessorClass.constructor;
+	}
+
+	private static boolean isSupported(Method method) {
+		int modifiers = method.getModifiers();
+		if (!Modifier.isPublic(modifiers) || Modifier.isStatic(modifiers)) {
+			return false;
+		}
+		if (method.getParameterTypes().length == 0) {
+			// 没有返回值的get方法直接反射调用
+			return method.getReturnType() != void.class && isAccessible(method.getDeclaringClass())
+					&& isAccessible(method.getReturnType());
+		}
+		return isAccessible(method.getDeclaringClass()) && isAccessible(method.getParameterTypes()[0])
+				&& isAccessible(method.getReturnType());
+	}
+
+	/*
+	 * 生成的访问类由MyBatis类加载器的子加载器加载，不在用到的类的包中，
+	 * 所以这些类（数组的元素类型及外部类）都必须是public的，且能从这个加载器找到同一个类
+	 */
+	private static boolean isAccessible(Class<?> type) {
+		while (type.isArray()) {
+			type = type.getComponentType();
+		}
+		if (type.isPrimitive()) {
+			return true;
+		}
+		for (Class<?> current = type; current != null; current = current.getEnclosingClass()) {
+			if (!Modifier.isPublic(current.getModifiers())) {
+				return false;
+			}
+		}
+		ClassLoader loader = AccessorInvokerFactory.class.getClassLoader();
+		if (type.getClassLoader() == loader || type.getClassLoader() == null) {
+			return true;
+		}
+		try {
+			return Class.forName(type.getName(), false, loader) == type;
+		} catch (ClassNotFoundException e) {
+			return false;
+		} catch (LinkageError e) {
+			return false;
+		}
+	}
+
+	private static final class AccessorClass {
+
+		private final List<Method> methods;
+		private final Constructor<? extends BeanAccessor> constructor;
+
+		AccessorClass(List<Method> methods, Constructor<? extends BeanAccessor> constructor) {
+			this.methods = methods;
+			this.constructor = constructor;
+		}
+
+	}
+
+}
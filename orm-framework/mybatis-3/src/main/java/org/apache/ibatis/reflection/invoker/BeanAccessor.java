@@ -0,0 +1,51 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * 生成的属性访问类的父类<br>
+ * 每个类生成一个子类，各个get/set方法的Invoker都是它的实例，invoke按index switch后直接调用对应的方法；
+ * 目标对象或参数不能直接调用时按反射调用。生成的类由其他类加载器定义，所以这个类必须是public的
+ */
+public abstract class BeanAccessor extends MethodInvoker {
+
+	protected final int index;
+
+	protected BeanAccessor(Method method, int index) {
+		super(method);
+		this.index = index;
+	}
+
+	/**
+	 * 按反射调用，目标对象不匹配、参数需要拓宽转换等情况下抛出的异常和返回值与反射一致
+	 */
+	protected final Object invokeReflectively(Object target, Object[] args)
+			throws IllegalAccessException, InvocationTargetException {
+		return super.invoke(target, args);
+	}
+
+	protected static boolean hasNoArguments(Object[] args) {
+		return args == null || args.length == 0;
+	}
+
+	protected static boolean hasOneArgument(Object[] args) {
+		return args != null && args.length == 1;
+	}
+
+}
@@ -0,0 +1,508 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 生成BeanAccessor子类的字节码<br>
+ * 核心包没有字节码库，这里只输出需要的几条指令；使用49版本的class文件，分支不需要StackMapTable
+ */
+final class BeanAccessorWriter {
+
+	private static final String SUPER_CLASS = internalName(BeanAccessor.class);
+	private static final String INVOKE_DESCRIPTOR = "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;";
+	private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+	private final Map<String, Integer> constants = new HashMap<String, Integer>();
+	private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+	private final DataOutputStream poolOut = new DataOutputStream(pool);
+	private int poolCount = 1;
+
+	private BeanAccessorWriter() {
+	}
+
+	/**
+	 * 为type的methods生成BeanAccessor子类，返回其(Method, int)构造方法，index即方法在methods中的下标
+	 */
+	@SuppressWarnings("unchecked")
+	static Constructor<? extends BeanAccessor> newAccessorClass(Class<?> type, List<Method> methods)
+			throws Exception {
+		String name = SUPER_CLASS + "$$" + type.getSimpleName() + "$$" + SEQUENCE.incrementAndGet();
+		byte[] bytes = new BeanAccessorWriter().write(name, methods);
+		AccessorClassLoader loader = new AccessorClassLoader(BeanAccessor.class.getClassLoader());
+		Class<? extends BeanAccessor> accessorClass = (Class<? extends BeanAccessor>) loader
+				.define(name.replace('/', '.'), bytes);
+		return accessorClass.getConstructor(Method.class, int.class);
+	}
+
+	private byte[] write(String name, List<Method> methods) throws IOException {
+		int thisClass = classRef(name);
+		int superClass = classRef(SUPER_CLASS);
+		byte[] init = constructor().toAttribute(3, 3);
+		byte[] invoke = invoke(methods).toAttribute(4, 4);
+		int initName = utf8("<init>");
+		int initDesc = utf8("(Ljava/lang/reflect/Method;I)V");
+		int invokeName = utf8("invoke");
+		int invokeDesc = utf8(INVOKE_DESCRIPTOR);
+		int codeName = utf8("Code");
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0xCAFEBABE);
+		out.writeShort(0);
+		out.writeShort(49);
+		out.writeShort(poolCount);
+		pool.writeTo(out);
+		// public final super
+		out.writeShort(0x0031);
+		out.writeShort(thisClass);
+		out.writeShort(superClass);
+		out.writeShort(0);
+		out.writeShort(0);
+		out.writeShort(2);
+		writeMethod(out, initName, initDesc, codeName, init);
+		writeMethod(out, invokeName, invokeDesc, codeName, invoke);
+		out.writeShort(0);
+		return bytes.toByteArray();
+	}
+
+	private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeName, byte[] code)
+			throws IOException {
+		// public
+		out.writeShort(0x0001);
+		out.writeShort(name);
+		out.writeShort(descriptor);
+		out.writeShort(1);
+		out.writeShort(codeName);
+		out.writeInt(code.length);
+		out.write(code);
+	}
+
+	private Code constructor() throws IOException {
+		Code code = new Code();
+		// aload_0, aload_1, iload_2, invokespecial BeanAccessor.<init>, return
+		code.u1(0x2a);
+		code.u1(0x2b);
+		code.u1(0x1c);
+		code.u1(0xb7);
+		code.u2(methodRef(SUPER_CLASS, "<init>", "(Ljava/lang/reflect/Method;I)V", false));
+		code.u1(0xb1);
+		return code;
+	}
+
+	/*
+	 * 按index tableswitch，每个分支检查目标对象和参数后直接调用，不能直接调用时跳到该分支末尾按反射调用；
+	 * 直接调用抛出的异常由异常表统一包装为InvocationTargetException
+	 */
+	private Code invoke(List<Method> methods) throws IOException {
+		int count = methods.size();
+		Code code = new Code();
+		// aload_0, getfield index
+		code.u1(0x2a);
+		code.u1(0xb4);
+		code.u2(fieldRef(SUPER_CLASS, "index", "I"));
+		int switchPosition = code.position();
+		code.u1(0xaa);
+		while (code.position() % 4 != 0) {
+			code.u1(0);
+		}
+		int defaultPosition = code.position();
+		code.u4(0);
+		code.u4(0);
+		code.u4(count - 1);
+		int tablePosition = code.position();
+		for (int i = 0; i < count; i++) {
+			code.u4(0);
+		}
+		List<int[]> ranges = new ArrayList<int[]>();
+		for (int i = 0; i < count; i++) {
+			code.setU4(tablePosition + 4 * i, code.position() - switchPosition);
+			Method method = methods.get(i);
+			if (method.getParameterTypes().length == 0) {
+				getterCase(code, method, ranges);
+			} else {
+				setterCase(code, method, ranges);
+			}
+		}
+		code.setU4(defaultPosition, code.position() - switchPosition);
+		invokeReflectively(code);
+
+		int handler = code.position();
+		String exception = internalName(InvocationTargetException.class);
+		// astore_3, new InvocationTargetException, dup, aload_3, invokespecial <init>, athrow
+		code.u1(0x4e);
+		code.u1(0xbb);
+		code.u2(classRef(exception));
+		code.u1(0x59);
+		code.u1(0x2d);
+		code.u1(0xb7);
+		code.u2(methodRef(exception, "<init>", "(Ljava/lang/Throwable;)V", false));
+		code.u1(0xbf);
+		for (int[] range : ranges) {
+			code.exceptionHandler(range[0], range[1], handler);
+		}
+		return code;
+	}
+
+	private void getterCase(Code code, Method method, List<int[]> ranges) throws IOException {
+		List<Integer> fails = new ArrayList<Integer>();
+		// aload_1, instanceof, ifeq
+		code.u1(0x2b);
+		code.u1(0xc1);
+		code.u2(classRef(method.getDeclaringClass()));
+		fails.add(code.branch(0x99));
+		// aload_2, invokestatic hasNoArguments, ifeq
+		code.u1(0x2c);
+		code.u1(0xb8);
+		code.u2(methodRef(SUPER_CLASS, "hasNoArguments", "([Ljava/lang/Object;)Z", false));
+		fails.add(code.branch(0x99));
+		int start = code.position();
+		code.u1(0x2b);
+		code.u1(0xc0);
+		code.u2(classRef(method.getDeclaringClass()));
+		invokeMethod(code, method, 1);
+		box(code, method.getReturnType());
+		code.u1(0xb0);
+		ranges.add(new int[] { start, code.position() });
+		for (int fail : fails) {
+			code.patch(fail, code.position());
+		}
+		invokeReflectively(code);
+	}
+
+	private void setterCase(Code code, Method method, List<int[]> ranges) throws IOException {
+		Class<?> parameterType = method.getParameterTypes()[0];
+		List<Integer> fails = new ArrayList<Integer>();
+		code.u1(0x2b);
+		code.u1(0xc1);
+		code.u2(classRef(method.getDeclaringClass()));
+		fails.add(code.branch(0x99));
+		code.u1(0x2c);
+		code.u1(0xb8);
+		code.u2(methodRef(SUPER_CLASS, "hasOneArgument", "([Ljava/lang/Object;)Z", false));
+		fails.add(code.branch(0x99));
+		// aload_2, iconst_0, aaload, astore_3
+		code.u1(0x2c);
+		code.u1(0x03);
+		code.u1(0x32);
+		code.u1(0x4e);
+		// 基本类型只接受对应的包装类，拓宽转换和null交给反射；引用类型接受null
+		if (parameterType.isPrimitive()) {
+			code.u1(0x2d);
+			code.u1(0xc1);
+			code.u2(classRef(wrap(parameterType)));
+			fails.add(code.branch(0x99));
+		} else if (parameterType != Object.class) {
+			code.u1(0x2d);
+			int isNull = code.branch(0xc6);
+			code.u1(0x2d);
+			code.u1(0xc1);
+			code.u2(classRef(parameterType));
+			fails.add(code.branch(0x99));
+			code.patch(isNull, code.position());
+		}
+		int start = code.position();
+		// aload_1, checkcast, aload_3
+		code.u1(0x2b);
+		code.u1(0xc0);
+		code.u2(classRef(method.getDeclaringClass()));
+		code.u1(0x2d);
+		unbox(code, parameterType);
+		invokeMethod(code, method, parameterType == long.class || parameterType == double.class ? 3 : 2);
+		if (method.getReturnType() == void.class) {
+			code.u1(0x01);
+		} else {
+			box(code, method.getReturnType());
+		}
+		code.u1(0xb0);
+		ranges.add(new int[] { start, code.position() });
+		for (int fail : fails) {
+			code.patch(fail, code.position());
+		}
+		invokeReflectively(code);
+	}
+
+	private void invokeReflectively(Code code) throws IOException {
+		// aload_0, aload_1, aload_2, invokevirtual invokeReflectively, areturn
+		code.u1(0x2a);
+		code.u1(0x2b);
+		code.u1(0x2c);
+		code.u1(0xb6);
+		code.u2(methodRef(SUPER_CLASS, "invokeReflectively", INVOKE_DESCRIPTOR, false));
+		code.u1(0xb0);
+	}
+
+	private void invokeMethod(Code code, Method method, int argumentSlots) throws IOException {
+		Class<?> owner = method.getDeclaringClass();
+		int ref = methodRef(internalName(owner), method.getName(), descriptor(method), owner.isInterface());
+		if (owner.isInterface()) {
+			code.u1(0xb9);
+			code.u2(ref);
+			code.u1(argumentSlots);
+			code.u1(0);
+		} else {
+			code.u1(0xb6);
+			code.u2(ref);
+		}
+	}
+
+	private void box(Code code, Class<?> type) throws IOException {
+		if (type.isPrimitive()) {
+			String wrapper = internalName(wrap(type));
+			code.u1(0xb8);
+			code.u2(methodRef(wrapper, "valueOf", "(" + descriptor(type) + ")L" + wrapper + ";", false));
+		}
+	}
+
+	private void unbox(Code code, Class<?> type) throws IOException {
+		if (type.isPrimitive()) {
+			String wrapper = internalName(wrap(type));
+			code.u1(0xc0);
+			code.u2(classRef(wrapper));
+			code.u1(0xb6);
+			code.u2(methodRef(wrapper, type.getName() + "Value", "()" + descriptor(type), false));
+		} else if (type != Object.class) {
+			code.u1(0xc0);
+			code.u2(classRef(type));
+		}
+	}
+
+	private int utf8(String value) throws IOException {
+		Integer index = constants.get("U" + value);
+		if (index == null) {
+			poolOut.writeByte(1);
+			poolOut.writeUTF(value);
+			index = add("U" + value);
+		}
+		return index;
+	}
+
+	private int classRef(Class<?> type) throws IOException {
+		// 数组类型的CONSTANT_Class使用描述符
+		return classRef(type.isArray() ? descriptor(type) : internalName(type));
+	}
+
+	private int classRef(String name) throws IOException {
+		Integer index = constants.get("C" + name);
+		if (index == null) {
+			int nameIndex = utf8(name);
+			poolOut.writeByte(7);
+			poolOut.writeShort(nameIndex);
+			index = add("C" + name);
+		}
+		return index;
+	}
+
+	private int fieldRef(String owner, String name, String descriptor) throws IOException {
+		return memberRef(9, owner, name, descriptor);
+	}
+
+	private int methodRef(String owner, String name, String descriptor, boolean isInterface) throws IOException {
+		return memberRef(isInterface ? 11 : 10, owner, name, descriptor);
+	}
+
+	private int memberRef(int tag, String owner, String name, String descriptor) throws IOException {
+		String key = tag + owner + "." + name + descriptor;
+		Integer index = constants.get(key);
+		if (index == null) {
+			int ownerIndex = classRef(owner);
+			int nameIndex = utf8(name);
+			int descriptorIndex = utf8(descriptor);
+			poolOut.writeByte(12);
+			poolOut.writeShort(nameIndex);
+			poolOut.writeShort(descriptorIndex);
+			int nameAndType = poolCount++;
+			poolOut.writeByte(tag);
+			poolOut.writeShort(ownerIndex);
+			poolOut.writeShort(nameAndType);
+			index = add(key);
+		}
+		return index;
+	}
+
+	private int add(String key) {
+		int index = poolCount++;
+		constants.put(key, index);
+		return index;
+	}
+
+	private static String descriptor(Method method) {
+		StringBuilder builder = new StringBuilder("(");
+		for (Class<?> parameterType : method.getParameterTypes()) {
+			builder.append(descriptor(parameterType));
+		}
+		return builder.append(')').append(descriptor(method.getReturnType())).toString();
+	}
+
+	private static String descriptor(Class<?> type) {
+		if (type.isArray()) {
+			return "[" + descriptor(type.getComponentType());
+		}
+		if (type == void.class) {
+			return "V";
+		} else if (type == boolean.class) {
+			return "Z";
+		} else if (type == byte.class) {
+			return "B";
+		} else if (type == char.class) {
+			return "C";
+		} else if (type == short.class) {
+			return "S";
+		} else if (type == int.class) {
+			return "I";
+		} else if (type == long.class) {
+			return "J";
+		} else if (type == float.class) {
+			return "F";
+		} else if (type == double.class) {
+			return "D";
+		}
+		return "L" + internalName(type) + ";";
+	}
+
+	private static String internalName(Class<?> type) {
+		return type.getName().replace('.', '/');
+	}
+
+	private static Class<?> wrap(Class<?> type) {
+		if (type == boolean.class) {
+			return Boolean.class;
+		} else if (type == byte.class) {
+			return Byte.class;
+		} else if (type == char.class) {
+			return Character.class;
+		} else if (type == short.class) {
+			return Short.class;
+		} else if (type == int.class) {
+			return Integer.class;
+		} else if (type == long.class) {
+			return Long.class;
+		} else if (type == float.class) {
+			return Float.class;
+		} else if (type == double.class) {
+			return Double.class;
+		}
+		return type;
+	}
+
+	/*
+	 * 方法体的指令和异常表，跳转偏移先占位，确定目标后回填
+	 */
+	private static final class Code {
+
+		private byte[] bytes = new byte[256];
+		private int length;
+		private final List<int[]> handlers = new ArrayList<int[]>();
+
+		int position() {
+			return length;
+		}
+
+		void u1(int value) {
+			if (length == bytes.length) {
+				bytes = Arrays.copyOf(bytes, length * 2);
+			}
+			bytes[length++] = (byte) value;
+		}
+
+		void u2(int value) {
+			u1(value >>> 8);
+			u1(value);
+		}
+
+		void u4(int value) {
+			u2(value >>> 16);
+			u2(value);
+		}
+
+		void setU4(int position, int value) {
+			bytes[position] = (byte) (value >>> 24);
+			bytes[position + 1] = (byte) (value >>> 16);
+			bytes[position + 2] = (byte) (value >>> 8);
+			bytes[position + 3] = (byte) value;
+		}
+
+		/**
+		 * 输出一条16位偏移的跳转指令，返回指令位置供patch回填
+		 */
+		int branch(int opcode) {
+			int position = length;
+			u1(opcode);
+			u2(0);
+			return position;
+		}
+
+		void patch(int branch, int target) {
+			int offset = target - branch;
+			bytes[branch + 1] = (byte) (offset >>> 8);
+			bytes[branch + 2] = (byte) offset;
+		}
+
+		void exceptionHandler(int start, int end, int handler) {
+			handlers.add(new int[] { start, end, handler });
+		}
+
+		/*
+		 * Code属性的内容，没有其他属性；超出class文件的限制时由defineClass失败，回退到反射
+		 */
+		byte[] toAttribute(int maxStack, int maxLocals) throws IOException {
+			ByteArrayOutputStream attribute = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(attribute);
+			out.writeShort(maxStack);
+			out.writeShort(maxLocals);
+			out.writeInt(length);
+			out.write(bytes, 0, length);
+			out.writeShort(handlers.size());
+			for (int[] handler : handlers) {
+				out.writeShort(handler[0]);
+				out.writeShort(handler[1]);
+				out.writeShort(handler[2]);
+				out.writeShort(0);
+			}
+			out.writeShort(0);
+			return attribute.toByteArray();
+		}
+
+	}
+
+	/*
+	 * 每个生成的类使用单独的类加载器，不再使用时可以和类一起回收
+	 */
+	private static final class AccessorClassLoader extends ClassLoader {
+
+		AccessorClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+
+	}
+
+}
@@ -0,0 +1,36 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Invoker的创建工厂<br>
+ * Reflector通过它为一个类的getter/setter方法和各个字段创建Invoker，可替换为生成访问代码的实现以避免反射调用
+ */
+public interface InvokerFactory {
+
+	/**
+	 * 创建type的get/set方法的Invoker，返回的数组与methods一一对应
+	 */
+	Invoker[] newMethodInvokers(Class<?> type, Method[] methods);
+
+	Invoker newGetFieldInvoker(Field field);
+
+	Invoker newSetFieldInvoker(Field field);
+
+}
@@ -0,0 +1,45 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * 使用反射调用的Invoker工厂
+ */
+public class ReflectionInvokerFactory implements InvokerFactory {
+
+	@Override
+	public Invoker[] newMethodInvokers(Class<?> type, Method[] methods) {
+		Invoker[] invokers = new Invoker[methods.length];
+		for (int i = 0; i < methods.length; i++) {
+			invokers[i] = new MethodInvoker(methods[i]);
+		}
+		return invokers;
+	}
+
+	@Override
+	public Invoker newGetFieldInvoker(Field field) {
+		return new GetFieldInvoker(field);
+	}
+
+	@Override
+	public Invoker newSetFieldInvoker(Field field) {
+		return new SetFieldInvoker(field);
+	}
+
+}
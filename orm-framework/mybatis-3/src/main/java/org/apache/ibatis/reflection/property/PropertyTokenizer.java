@@ -16,31 +16,57 @@
 package org.apache.ibatis.reflection.property;
 
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author Clinton Begin
  */
 public class PropertyTokenizer implements Iterable<PropertyTokenizer>, Iterator<PropertyTokenizer> {
-	private String name;
-	private String indexedName;
-	private String index;
-	private String children;
+	// 属性路径的解析结果，超过上限后不再缓存，避免Map的任意key撑大缓存
+	private static final int MAX_CACHED_PATHS = 4096;
+	private static final ConcurrentMap<String, PropertyTokenizer> CACHE = new ConcurrentHashMap<String, PropertyTokenizer>();
+
+	private final String name;
+	private final String indexedName;
+	private final String index;
+	private final String children;
+	private PropertyTokenizer next;
 
 	public PropertyTokenizer(String fullname) {
 		int delim = fullname.indexOf('.');
 		if (delim > -1) {
-			name = fullname.substring(0, delim);
+			indexedName = fullname.substring(0, delim);
 			children = fullname.substring(delim + 1);
 		} else {
-			name = fullname;
+			indexedName = fullname;
 			children = null;
 		}
-		indexedName = name;
-		delim = name.indexOf('[');
+		delim = indexedName.indexOf('[');
 		if (delim > -1) {
-			index = name.substring(delim + 1, name.length() - 1);
-			name = name.substring(0, delim);
+			index = indexedName.substring(delim + 1, indexedName.length() - 1);
+			name = indexedName.substring(0, delim);
+		} else {
+			index = null;
+			name = indexedName;
+		}
+	}
+
+	/*
+	 * 获取属性路径的解析结果，解析结果不可变，可在线程间共享
+	 */
+	public static PropertyTokenizer of(String fullname) {
+		PropertyTokenizer prop = CACHE.get(fullname);
+		if (prop == null) {
+			prop = new PropertyTokenizer(fullname);
+			if (CACHE.size() < MAX_CACHED_PATHS) {
+				PropertyTokenizer cached = CACHE.putIfAbsent(fullname, prop);
+				if (cached != null) {
+					prop = cached;
+				}
+			}
 		}
+		return prop;
 	}
 
 	public String getName() {
@@ -66,7 +92,13 @@ public class PropertyTokenizer implements Iterable<PropertyTokenizer>, Iterator<
 
 	@Override
 	public PropertyTokenizer next() {
-		return new PropertyTokenizer(children);
+		// 并发时可能重复解析，结果相同
+		PropertyTokenizer child = next;
+		if (child == null) {
+			child = of(children);
+			next = child;
+		}
+		return child;
 	}
 
 	@Override
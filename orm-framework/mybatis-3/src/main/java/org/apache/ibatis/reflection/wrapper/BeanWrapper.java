@@ -77,7 +77,7 @@ public class BeanWrapper extends BaseWrapper {
 
 	@Override
 	public Class<?> getSetterType(String name) {
-		PropertyTokenizer prop = new PropertyTokenizer(name);
+		PropertyTokenizer prop = PropertyTokenizer.of(name);
 		if (prop.hasNext()) {
 			MetaObject metaValue = metaObject.metaObjectForProperty(prop.getIndexedName());
 			if (metaValue == SystemMetaObject.NULL_META_OBJECT) {
@@ -92,7 +92,7 @@ public class BeanWrapper extends BaseWrapper {
 
 	@Override
 	public Class<?> getGetterType(String name) {
-		PropertyTokenizer prop = new PropertyTokenizer(name);
+		PropertyTokenizer prop = PropertyTokenizer.of(name);
 		if (prop.hasNext()) {
 			MetaObject metaValue = metaObject.metaObjectForProperty(prop.getIndexedName());
 			if (metaValue == SystemMetaObject.NULL_META_OBJECT) {
@@ -107,7 +107,7 @@ public class BeanWrapper extends BaseWrapper {
 
 	@Override
 	public boolean hasSetter(String name) {
-		PropertyTokenizer prop = new PropertyTokenizer(name);
+		PropertyTokenizer prop = PropertyTokenizer.of(name);
 		if (prop.hasNext()) {
 			if (metaClass.hasSetter(prop.getIndexedName())) {
 				MetaObject metaValue = metaObject.metaObjectForProperty(prop.getIndexedName());
@@ -126,7 +126,7 @@ public class BeanWrapper extends BaseWrapper {
 
 	@Override
 	public boolean hasGetter(String name) {
-		PropertyTokenizer prop = new PropertyTokenizer(name);
+		PropertyTokenizer prop = PropertyTokenizer.of(name);
 		if (prop.hasNext()) {
 			if (metaClass.hasGetter(prop.getIndexedName())) {
 				MetaObject metaValue = metaObject.metaObjectForProperty(prop.getIndexedName());
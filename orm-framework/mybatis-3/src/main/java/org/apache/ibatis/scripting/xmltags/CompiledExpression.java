@@ -0,0 +1,609 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.ReflectorFactory;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.invoker.MethodInvoker;
+
+/**
+ * 预编译的动态SQL表达式<br>
+ * 解析SQL映射时将简单的表达式（null判断、比较、and/or/not组合、属性路径、size()和isEmpty()）编译为直接访问属性的节点，
+ * 属性通过Reflector缓存的getter读取，不再每次创建OGNL上下文并解释执行。结果与OGNL一致：
+ * 无法编译的表达式，以及运行时遇到编译节点不处理的类型（如数字与字符串比较、null的属性）时，整个表达式交给OGNL求值
+ */
+public final class CompiledExpression {
+
+	private static final ReflectorFactory DEFAULT_REFLECTOR_FACTORY = new DefaultReflectorFactory();
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+	private static final DynamicContext.ContextAccessor CONTEXT_ACCESSOR = new DynamicContext.ContextAccessor();
+
+	// OGNL的其他关键字，出现时不编译
+	private static final Set<String> RESERVED = new HashSet<String>(Arrays.asList("in", "instanceof", "new", "shl",
+			"shr", "ushr", "band", "bor", "xor"));
+	// 作为运算符的关键字，不能用作属性名
+	private static final Set<String> OPERATORS = new HashSet<String>(Arrays.asList("and", "or", "not", "eq", "neq",
+			"lt", "gt", "lte", "gte"));
+	// OGNL对Map的这些属性名有特殊处理
+	private static final Set<String> MAP_PROPERTIES = new HashSet<String>(Arrays.asList("size", "isEmpty", "keys",
+			"keySet", "values"));
+
+	private final String expression;
+	private final Node node;
+
+	private CompiledExpression(String expression, Node node) {
+		this.expression = expression;
+		this.node = node;
+	}
+
+	public static CompiledExpression compile(String expression) {
+		return compile(expression, DEFAULT_REFLECTOR_FACTORY);
+	}
+
+	public static CompiledExpression compile(String expression, ReflectorFactory reflectorFactory) {
+		Node node = null;
+		if (expression != null) {
+			node = new Parser(expression, reflectorFactory).parse();
+		}
+		return new CompiledExpression(expression, node);
+	}
+
+	public String getExpression() {
+		return expression;
+	}
+
+	public boolean isCompiled() {
+		return node != null;
+	}
+
+	public Object getValue(Object root) {
+		if (node != null) {
+			try {
+				return node.getValue(root);
+			} catch (Fallback e) {
+				// 交给OGNL，结果或异常与未编译时一致
+			}
+		}
+		return OgnlCache.getValue(expression, root);
+	}
+
+	/*
+	 * 与OgnlOps.booleanValue一致的真值判断，用于and、or和not，字符串只有"true"（忽略大小写）为真
+	 */
+	private static boolean booleanValue(Object value) {
+		if (value == null) {
+			return false;
+		}
+		if (value instanceof Boolean) {
+			return (Boolean) value;
+		}
+		if (value instanceof String) {
+			return Boolean.parseBoolean((String) value);
+		}
+		if (value instanceof Character) {
+			return (Character) value != 0;
+		}
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue() != 0;
+		}
+		return true;
+	}
+
+	private static boolean isEqual(Object left, Object right) {
+		if (left == right) {
+			return true;
+		}
+		if (left == null || right == null) {
+			return false;
+		}
+		if (isNumber(left) && isNumber(right)) {
+			return compareNumbers((Number) left, (Number) right) == 0;
+		}
+		if ((left instanceof String && right instanceof String) || (left instanceof Boolean && right instanceof Boolean)
+				|| (left instanceof Enum && left.getClass() == right.getClass())) {
+			return left.equals(right);
+		}
+		throw Fallback.INSTANCE;
+	}
+
+	private static int compare(Object left, Object right) {
+		if (isNumber(left) && isNumber(right)) {
+			return compareNumbers((Number) left, (Number) right);
+		}
+		if (left instanceof String && right instanceof String) {
+			return ((String) left).compareTo((String) right);
+		}
+		throw Fallback.INSTANCE;
+	}
+
+	private static boolean isNumber(Object value) {
+		return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+				|| isReal(value) || value instanceof BigInteger || value instanceof BigDecimal;
+	}
+
+	private static boolean isReal(Object value) {
+		return value instanceof Double || value instanceof Float;
+	}
+
+	/*
+	 * 按OgnlOps.compareWithConversion的类型提升规则比较数字
+	 */
+	private static int compareNumbers(Number left, Number right) {
+		if (left instanceof BigDecimal || right instanceof BigDecimal
+				|| (isReal(left) && right instanceof BigInteger) || (isReal(right) && left instanceof BigInteger)) {
+			return toBigDecimal(left).compareTo(toBigDecimal(right));
+		}
+		if (isReal(left) || isReal(right)) {
+			double dv1 = left.doubleValue();
+			double dv2 = right.doubleValue();
+			return (dv1 == dv2) ? 0 : ((dv1 < dv2) ? -1 : 1);
+		}
+		if (left instanceof BigInteger || right instanceof BigInteger) {
+			return toBigInteger(left).compareTo(toBigInteger(right));
+		}
+		long lv1 = left.longValue();
+		long lv2 = right.longValue();
+		return (lv1 == lv2) ? 0 : ((lv1 < lv2) ? -1 : 1);
+	}
+
+	private static BigDecimal toBigDecimal(Number value) {
+		if (value instanceof BigDecimal) {
+			return (BigDecimal) value;
+		}
+		if (value instanceof BigInteger) {
+			return new BigDecimal((BigInteger) value);
+		}
+		return new BigDecimal(value.toString());
+	}
+
+	private static BigInteger toBigInteger(Number value) {
+		if (value instanceof BigInteger) {
+			return (BigInteger) value;
+		}
+		return BigInteger.valueOf(value.longValue());
+	}
+
+	/*
+	 * 编译节点不处理当前值时抛出，由getValue改用OGNL求值
+	 */
+	private static final class Fallback extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		static final Fallback INSTANCE = new Fallback();
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			return this;
+		}
+	}
+
+	private interface Node {
+		Object getValue(Object root);
+	}
+
+	private static final class Literal implements Node {
+		private final Object value;
+
+		Literal(Object value) {
+			this.value = value;
+		}
+
+		@Override
+		public Object getValue(Object root) {
+			return value;
+		}
+	}
+
+	private static final class Property implements Node {
+		private final Node target;
+		private final String name;
+		private final ReflectorFactory reflectorFactory;
+
+		Property(Node target, String name, ReflectorFactory reflectorFactory) {
+			this.target = target;
+			this.name = name;
+			this.reflectorFactory = reflectorFactory;
+		}
+
+		@Override
+		public Object getValue(Object root) {
+			Object object = target == null ? root : target.getValue(root);
+			if (object instanceof DynamicContext.ContextMap) {
+				try {
+					return CONTEXT_ACCESSOR.getProperty(null, object, name);
+				} catch (Exception e) {
+					throw Fallback.INSTANCE;
+				}
+			}
+			if (object instanceof Map) {
+				if (MAP_PROPERTIES.contains(name)) {
+					throw Fallback.INSTANCE;
+				}
+				return ((Map<?, ?>) object).get(name);
+			}
+			if (object == null || object instanceof Collection || object.getClass().isArray()) {
+				throw Fallback.INSTANCE;
+			}
+			Reflector reflector = reflectorFactory.findForClass(object.getClass());
+			if (!reflector.hasGetter(name)) {
+				throw Fallback.INSTANCE;
+			}
+			Invoker invoker = reflector.getGetInvoker(name);
+			// 没有getter的字段OGNL不能访问
+			if (!(invoker instanceof MethodInvoker)) {
+				throw Fallback.INSTANCE;
+			}
+			try {
+				return invoker.invoke(object, NO_ARGUMENTS);
+			} catch (Exception e) {
+				throw Fallback.INSTANCE;
+			}
+		}
+	}
+
+	private static final class SizeCall implements Node {
+		private final Node target;
+		private final boolean isEmpty;
+
+		SizeCall(Node target, boolean isEmpty) {
+			this.target = target;
+			this.isEmpty = isEmpty;
+		}
+
+		@Override
+		public Object getValue(Object root) {
+			Object object = target.getValue(root);
+			int size;
+			if (object instanceof Collection) {
+				size = ((Collection<?>) object).size();
+			} else if (object instanceof Map) {
+				size = ((Map<?, ?>) object).size();
+			} else if (isEmpty && object instanceof String) {
+				size = ((String) object).length();
+			} else {
+				throw Fallback.INSTANCE;
+			}
+			return isEmpty ? Boolean.valueOf(size == 0) : Integer.valueOf(size);
+		}
+	}
+
+	private static final class Not implements Node {
+		private final Node operand;
+
+		Not(Node operand) {
+			this.operand = operand;
+		}
+
+		@Override
+		public Object getValue(Object root) {
+			return booleanValue(operand.getValue(root)) ? Boolean.FALSE : Boolean.TRUE;
+		}
+	}
+
+	/*
+	 * and、or与OGNL一样返回最后求值的操作数，而不是Boolean
+	 */
+	private static final class Logical implements Node {
+		private final Node[] operands;
+		private final boolean and;
+
+		Logical(List<Node> operands, boolean and) {
+			this.operands = operands.toArray(new Node[operands.size()]);
+			this.and = and;
+		}
+
+		@Override
+		public Object getValue(Object root) {
+			Object result = null;
+			int last = operands.length - 1;
+			for (int i = 0; i <= last; i++) {
+				result = operands[i].getValue(root);
+				if (i != last && booleanValue(result) != and) {
+					break;
+				}
+			}
+			return result;
+		}
+	}
+
+	private static final class Comparison implements Node {
+		private final Node left;
+		private final Node right;
+		private final String operator;
+
+		Comparison(Node left, String operator, Node right) {
+			this.left = left;
+			this.operator = operator;
+			this.right = right;
+		}
+
+		@Override
+		public Object getValue(Object root) {
+			Object leftValue = left.getValue(root);
+			Object rightValue = right.getValue(root);
+			boolean result;
+			if ("==".equals(operator)) {
+				result = isEqual(leftValue, rightValue);
+			} else if ("!=".equals(operator)) {
+				result = !isEqual(leftValue, rightValue);
+			} else if (leftValue == null || rightValue == null) {
+				throw Fallback.INSTANCE;
+			} else if ("<".equals(operator)) {
+				result = compare(leftValue, rightValue) < 0;
+			} else if ("<=".equals(operator)) {
+				result = compare(leftValue, rightValue) <= 0;
+			} else if (">".equals(operator)) {
+				result = compare(leftValue, rightValue) > 0;
+			} else {
+				result = compare(leftValue, rightValue) >= 0;
+			}
+			return Boolean.valueOf(result);
+		}
+	}
+
+	/*
+	 * 只识别可编译的语法，其余一律返回null交给OGNL
+	 */
+	private static final class Parser {
+		private static final Object END = new Object();
+
+		private final String expression;
+		private final ReflectorFactory reflectorFactory;
+		private final List<Object> tokens = new ArrayList<Object>();
+		private int position;
+
+		Parser(String expression, ReflectorFactory reflectorFactory) {
+			this.expression = expression;
+			this.reflectorFactory = reflectorFactory;
+		}
+
+		Node parse() {
+			if (!tokenize()) {
+				return null;
+			}
+			try {
+				Node node = parseOr();
+				return peek() == END ? node : null;
+			} catch (Fallback e) {
+				return null;
+			}
+		}
+
+		private Node parseOr() {
+			List<Node> operands = new ArrayList<Node>();
+			operands.add(parseAnd());
+			while (accept("or") || accept("||")) {
+				operands.add(parseAnd());
+			}
+			return operands.size() == 1 ? operands.get(0) : new Logical(operands, false);
+		}
+
+		private Node parseAnd() {
+			List<Node> operands = new ArrayList<Node>();
+			operands.add(parseEquality());
+			while (accept("and") || accept("&&")) {
+				operands.add(parseEquality());
+			}
+			return operands.size() == 1 ? operands.get(0) : new Logical(operands, true);
+		}
+
+		private Node parseEquality() {
+			Node node = parseRelational();
+			while (true) {
+				if (accept("==") || accept("eq")) {
+					node = new Comparison(node, "==", parseRelational());
+				} else if (accept("!=") || accept("neq")) {
+					node = new Comparison(node, "!=", parseRelational());
+				} else {
+					return node;
+				}
+			}
+		}
+
+		private Node parseRelational() {
+			Node node = parseUnary();
+			while (true) {
+				if (accept("<") || accept("lt")) {
+					node = new Comparison(node, "<", parseUnary());
+				} else if (accept("<=") || accept("lte")) {
+					node = new Comparison(node, "<=", parseUnary());
+				} else if (accept(">") || accept("gt")) {
+					node = new Comparison(node, ">", parseUnary());
+				} else if (accept(">=") || accept("gte")) {
+					node = new Comparison(node, ">=", parseUnary());
+				} else {
+					return node;
+				}
+			}
+		}
+
+		private Node parseUnary() {
+			if (accept("!") || accept("not")) {
+				return new Not(parseUnary());
+			}
+			return parsePrimary();
+		}
+
+		private Node parsePrimary() {
+			Object token = next();
+			if ("(".equals(token)) {
+				Node node = parseOr();
+				expect(")");
+				return node;
+			}
+			if (token instanceof Literal) {
+				return (Literal) token;
+			}
+			Node node = new Property(null, propertyName(token), reflectorFactory);
+			while (accept(".")) {
+				String name = propertyName(next());
+				if (accept("(")) {
+					expect(")");
+					if ("size".equals(name)) {
+						node = new SizeCall(node, false);
+					} else if ("isEmpty".equals(name)) {
+						node = new SizeCall(node, true);
+					} else {
+						throw Fallback.INSTANCE;
+					}
+				} else {
+					node = new Property(node, name, reflectorFactory);
+				}
+			}
+			return node;
+		}
+
+		private String propertyName(Object token) {
+			if (!(token instanceof Identifier) || OPERATORS.contains(((Identifier) token).name)) {
+				throw Fallback.INSTANCE;
+			}
+			return ((Identifier) token).name;
+		}
+
+		private Object peek() {
+			return position < tokens.size() ? tokens.get(position) : END;
+		}
+
+		private Object next() {
+			Object token = peek();
+			position++;
+			return token;
+		}
+
+		private boolean accept(String operator) {
+			Object token = peek();
+			if (operator.equals(token) || (token instanceof Identifier && operator.equals(((Identifier) token).name))) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(String operator) {
+			if (!accept(operator)) {
+				throw Fallback.INSTANCE;
+			}
+		}
+
+		/*
+		 * 拆分为运算符（String）、标识符、字面量，遇到不支持的字符返回false
+		 */
+		private boolean tokenize() {
+			int length = expression.length();
+			int i = 0;
+			while (i < length) {
+				char c = expression.charAt(i);
+				if (Character.isWhitespace(c)) {
+					i++;
+				} else if (Character.isJavaIdentifierStart(c)) {
+					int start = i;
+					while (i < length && Character.isJavaIdentifierPart(expression.charAt(i))) {
+						i++;
+					}
+					String word = expression.substring(start, i);
+					if (RESERVED.contains(word)) {
+						return false;
+					} else if ("null".equals(word)) {
+						tokens.add(new Literal(null));
+					} else if ("true".equals(word)) {
+						tokens.add(new Literal(Boolean.TRUE));
+					} else if ("false".equals(word)) {
+						tokens.add(new Literal(Boolean.FALSE));
+					} else {
+						tokens.add(new Identifier(word));
+					}
+				} else if (c >= '0' && c <= '9') {
+					int start = i;
+					while (i < length && expression.charAt(i) >= '0' && expression.charAt(i) <= '9') {
+						i++;
+					}
+					boolean decimal = i + 1 < length && expression.charAt(i) == '.'
+							&& Character.isDigit(expression.charAt(i + 1));
+					if (decimal) {
+						i++;
+						while (i < length && expression.charAt(i) >= '0' && expression.charAt(i) <= '9') {
+							i++;
+						}
+					}
+					// 带后缀、科学计数法、八进制等写法交给OGNL
+					if ((i < length && Character.isJavaIdentifierPart(expression.charAt(i)))
+							|| (!decimal && c == '0' && i - start > 1)) {
+						return false;
+					}
+					String number = expression.substring(start, i);
+					try {
+						tokens.add(new Literal(decimal ? Double.valueOf(number) : Integer.valueOf(number)));
+					} catch (NumberFormatException e) {
+						return false;
+					}
+				} else if (c == '\'' || c == '"') {
+					int end = expression.indexOf(c, i + 1);
+					if (end < 0) {
+						return false;
+					}
+					String text = expression.substring(i + 1, end);
+					// 单引号中的单个字符在OGNL中是Character，转义字符也交给OGNL
+					if (text.indexOf('\\') >= 0 || (c == '\'' && text.length() == 1)) {
+						return false;
+					}
+					tokens.add(new Literal(text));
+					i = end + 1;
+				} else {
+					String operator = operatorAt(i);
+					if (operator == null) {
+						return false;
+					}
+					tokens.add(operator);
+					i += operator.length();
+				}
+			}
+			return true;
+		}
+
+		private String operatorAt(int i) {
+			for (String operator : new String[] { "==", "!=", "<=", ">=", "&&", "||" }) {
+				if (expression.startsWith(operator, i)) {
+					return operator;
+				}
+			}
+			char c = expression.charAt(i);
+			if (c == '<' || c == '>' || c == '!' || c == '(' || c == ')' || c == '.') {
+				return String.valueOf(c);
+			}
+			return null;
+		}
+	}
+
+	private static final class Identifier {
+		private final String name;
+
+		Identifier(String name) {
+			this.name = name;
+		}
+	}
+
+}
@@ -62,6 +62,9 @@ public class DynamicContext {
 	}
 
 	public void appendSql(String sql) {
+		if (!isRenderingSql()) {
+			return;
+		}
 		sqlBuilder.append(sql);
 		sqlBuilder.append(" ");
 	}
@@ -74,10 +77,45 @@ public class DynamicContext {
 		return uniqueNumber++;
 	}
 
+	// 形状记在绑定参数的Map上，包装的上下文都通过getBindings()委托到同一个Map
+	void startShape(SqlShape shape) {
+		((ContextMap) getBindings()).shape = shape;
+	}
+
+	void recordShape(int outcome) {
+		SqlShape shape = getShape();
+		if (shape != null) {
+			shape.add(outcome);
+		}
+	}
+
+	int reserveShape() {
+		SqlShape shape = getShape();
+		return shape != null ? shape.reserve() : -1;
+	}
+
+	void updateShape(int index, int outcome) {
+		SqlShape shape = getShape();
+		if (shape != null) {
+			shape.set(index, outcome);
+		}
+	}
+
+	boolean isRenderingSql() {
+		SqlShape shape = getShape();
+		return shape == null || shape.isRenderSql();
+	}
+
+	private SqlShape getShape() {
+		Map<String, Object> map = getBindings();
+		return map instanceof ContextMap ? ((ContextMap) map).shape : null;
+	}
+
 	static class ContextMap extends HashMap<String, Object> {
 		private static final long serialVersionUID = 2977601501966151582L;
 
 		private MetaObject parameterMetaObject;
+		private transient SqlShape shape;
 
 		public ContextMap(MetaObject parameterMetaObject) {
 			this.parameterMetaObject = parameterMetaObject;
@@ -15,11 +15,16 @@
  */
 package org.apache.ibatis.scripting.xmltags;
 
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.ibatis.builder.SqlSourceBuilder;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.Configuration;
 
 /**
@@ -27,26 +32,117 @@ import org.apache.ibatis.session.Configuration;
  */
 public class DynamicSqlSource implements SqlSource {
 
+	// 每个语句最多缓存的形状数，超过后新形状按原方式生成
+	private static final int MAX_CACHED_SHAPES = 256;
+
 	private Configuration configuration;
 	private SqlNode rootSqlNode;
+	private final boolean shapeCacheEnabled;
+	private final ConcurrentMap<SqlShape, RenderedSql> renderedShapes = new ConcurrentHashMap<SqlShape, RenderedSql>();
+	// 最近一次是否命中，形状多变（如长度不定的foreach）时不先单独求形状，避免每次遍历两遍
+	private volatile boolean shapesRepeating;
 
 	public DynamicSqlSource(Configuration configuration, SqlNode rootSqlNode) {
+		this(configuration, rootSqlNode, false);
+	}
+
+	/*
+	 * @param shapeCacheEnabled 树中只有内置的SqlNode且没有${}时才能按形状缓存生成的SQL
+	 */
+	public DynamicSqlSource(Configuration configuration, SqlNode rootSqlNode, boolean shapeCacheEnabled) {
 		this.configuration = configuration;
 		this.rootSqlNode = rootSqlNode;
+		this.shapeCacheEnabled = shapeCacheEnabled;
 	}
 
 	@Override
 	public BoundSql getBoundSql(Object parameterObject) {
+		Class<?> parameterType = parameterObject == null ? Object.class : parameterObject.getClass();
+		if (!shapeCacheEnabled) {
+			DynamicContext context = new DynamicContext(configuration, parameterObject);
+			rootSqlNode.apply(context);
+			SqlSourceBuilder sqlSourceParser = new SqlSourceBuilder(configuration);
+			SqlSource sqlSource = sqlSourceParser.parse(context.getSql(), parameterType, context.getBindings());
+			return bind(sqlSource.getBoundSql(parameterObject), context);
+		}
+		if (shapesRepeating) {
+			// 最近命中过，先只求值条件和绑定参数，命中时不必生成SQL文本
+			DynamicContext context = new DynamicContext(configuration, parameterObject);
+			SqlShape shape = new SqlShape(parameterType, false);
+			context.startShape(shape);
+			rootSqlNode.apply(context);
+			BoundSql cached = getCachedBoundSql(shape, context, parameterObject);
+			if (cached != null) {
+				return cached;
+			}
+			shapesRepeating = false;
+		}
+		// 生成SQL的同时记录形状，未命中时只遍历一次
 		DynamicContext context = new DynamicContext(configuration, parameterObject);
+		SqlShape shape = new SqlShape(parameterType, true);
+		context.startShape(shape);
 		rootSqlNode.apply(context);
+		BoundSql cached = getCachedBoundSql(shape, context, parameterObject);
+		if (cached != null) {
+			shapesRepeating = true;
+			return cached;
+		}
 		SqlSourceBuilder sqlSourceParser = new SqlSourceBuilder(configuration);
-		Class<?> parameterType = parameterObject == null ? Object.class : parameterObject.getClass();
 		SqlSource sqlSource = sqlSourceParser.parse(context.getSql(), parameterType, context.getBindings());
 		BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
+		if (renderedShapes.size() < MAX_CACHED_SHAPES) {
+			renderedShapes.put(shape, new RenderedSql(boundSql.getSql(), boundSql.getParameterMappings(),
+					configuration.newMetaObject(context.getBindings())));
+		}
+		return bind(boundSql, context);
+	}
+
+	private BoundSql getCachedBoundSql(SqlShape shape, DynamicContext context, Object parameterObject) {
+		RenderedSql rendered = renderedShapes.get(shape);
+		if (rendered != null && rendered.matches(configuration.newMetaObject(context.getBindings()))) {
+			return bind(new BoundSql(configuration, rendered.sql, rendered.parameterMappings, parameterObject), context);
+		}
+		return null;
+	}
+
+	private BoundSql bind(BoundSql boundSql, DynamicContext context) {
 		for (Map.Entry<String, Object> entry : context.getBindings().entrySet()) {
 			boundSql.setAdditionalParameter(entry.getKey(), entry.getValue());
 		}
 		return boundSql;
 	}
 
+	/*
+	 * 某个形状生成并解析后的SQL。参数类型取自绑定参数时（如foreach的元素）与参数值的运行时类型有关，
+	 * 命中时需要确认这些类型不变
+	 */
+	private static final class RenderedSql {
+		private final String sql;
+		private final List<ParameterMapping> parameterMappings;
+		private final Class<?>[] bindingTypes;
+
+		RenderedSql(String sql, List<ParameterMapping> parameterMappings, MetaObject bindings) {
+			this.sql = sql;
+			this.parameterMappings = parameterMappings;
+			this.bindingTypes = new Class<?>[parameterMappings.size()];
+			for (int i = 0; i < bindingTypes.length; i++) {
+				bindingTypes[i] = bindingType(bindings, parameterMappings.get(i).getProperty());
+			}
+		}
+
+		boolean matches(MetaObject bindings) {
+			for (int i = 0; i < bindingTypes.length; i++) {
+				if (bindingType(bindings, parameterMappings.get(i).getProperty()) != bindingTypes[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		// 与SqlSourceBuilder一致，绑定参数中有该属性时以其类型为准
+		private static Class<?> bindingType(MetaObject bindings, String property) {
+			return property != null && bindings.hasGetter(property) ? bindings.getGetterType(property) : null;
+		}
+	}
+
 }
@@ -29,7 +29,22 @@ import org.apache.ibatis.builder.BuilderException;
 public class ExpressionEvaluator {
 
 	public boolean evaluateBoolean(String expression, Object parameterObject) {
-		Object value = OgnlCache.getValue(expression, parameterObject);
+		return toBoolean(OgnlCache.getValue(expression, parameterObject));
+	}
+
+	public boolean evaluateBoolean(CompiledExpression expression, Object parameterObject) {
+		return toBoolean(expression.getValue(parameterObject));
+	}
+
+	public Iterable<?> evaluateIterable(String expression, Object parameterObject) {
+		return toIterable(expression, OgnlCache.getValue(expression, parameterObject));
+	}
+
+	public Iterable<?> evaluateIterable(CompiledExpression expression, Object parameterObject) {
+		return toIterable(expression.getExpression(), expression.getValue(parameterObject));
+	}
+
+	private boolean toBoolean(Object value) {
 		if (value instanceof Boolean) {
 			return (Boolean) value;
 		}
@@ -40,8 +55,7 @@ public class ExpressionEvaluator {
 	}
 
 	@SuppressWarnings("rawtypes")
-	public Iterable<?> evaluateIterable(String expression, Object parameterObject) {
-		Object value = OgnlCache.getValue(expression, parameterObject);
+	private Iterable<?> toIterable(String expression, Object value) {
 		if (value == null) {
 			throw new BuilderException("The expression '" + expression + "' evaluated to a null value.");
 		}
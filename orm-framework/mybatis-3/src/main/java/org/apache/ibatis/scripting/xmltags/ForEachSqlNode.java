@@ -28,7 +28,7 @@ public class ForEachSqlNode implements SqlNode {
 	public static final String ITEM_PREFIX = "__frch_";
 
 	private ExpressionEvaluator evaluator;
-	private String collectionExpression;
+	private CompiledExpression collectionExpression;
 	private SqlNode contents;
 	private String open;
 	private String close;
@@ -40,7 +40,7 @@ public class ForEachSqlNode implements SqlNode {
 	public ForEachSqlNode(Configuration configuration, SqlNode contents, String collectionExpression, String index,
 			String item, String open, String close, String separator) {
 		this.evaluator = new ExpressionEvaluator();
-		this.collectionExpression = collectionExpression;
+		this.collectionExpression = CompiledExpression.compile(collectionExpression, configuration.getReflectorFactory());
 		this.contents = contents;
 		this.open = open;
 		this.close = close;
@@ -55,8 +55,11 @@ public class ForEachSqlNode implements SqlNode {
 		Map<String, Object> bindings = context.getBindings();
 		final Iterable<?> iterable = evaluator.evaluateIterable(collectionExpression, bindings);
 		if (!iterable.iterator().hasNext()) {
+			context.recordShape(0);
 			return true;
 		}
+		// 循环次数记在内容之前
+		int shapeIndex = context.reserveShape();
 		boolean first = true;
 		applyOpen(context);
 		int i = 0;
@@ -87,6 +90,7 @@ public class ForEachSqlNode implements SqlNode {
 			context = oldContext;
 			i++;
 		}
+		context.updateShape(shapeIndex, i);
 		applyClose(context);
 		return true;
 	}
@@ -153,6 +157,10 @@ public class ForEachSqlNode implements SqlNode {
 
 		@Override
 		public void appendSql(String sql) {
+			if (!isRenderingSql()) {
+				delegate.appendSql(sql);
+				return;
+			}
 			GenericTokenParser parser = new GenericTokenParser("#{", "}", new TokenHandler() {
 				@Override
 				public String handleToken(String content) {
@@ -15,15 +15,25 @@
  */
 package org.apache.ibatis.scripting.xmltags;
 
+import org.apache.ibatis.session.Configuration;
+
 /**
  * @author Clinton Begin
  */
 public class IfSqlNode implements SqlNode {
 	private ExpressionEvaluator evaluator;
-	private String test;
+	private CompiledExpression test;
 	private SqlNode contents;
 
 	public IfSqlNode(SqlNode contents, String test) {
+		this(contents, CompiledExpression.compile(test));
+	}
+
+	public IfSqlNode(Configuration configuration, SqlNode contents, String test) {
+		this(contents, CompiledExpression.compile(test, configuration.getReflectorFactory()));
+	}
+
+	private IfSqlNode(SqlNode contents, CompiledExpression test) {
 		this.test = test;
 		this.contents = contents;
 		this.evaluator = new ExpressionEvaluator();
@@ -32,9 +42,11 @@ public class IfSqlNode implements SqlNode {
 	@Override
 	public boolean apply(DynamicContext context) {
 		if (evaluator.evaluateBoolean(test, context.getBindings())) {
+			context.recordShape(1);
 			contents.apply(context);
 			return true;
 		}
+		context.recordShape(0);
 		return false;
 	}
 
@@ -0,0 +1,92 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.scripting.xmltags;
+
+import java.util.Arrays;
+
+/**
+ * 动态SQL的形状<br>
+ * 按执行顺序记录SqlNode树中各条件的结果和foreach的次数（次数记在循环内容之前），
+ * 同一棵树、同一参数类型下形状相同时生成的SQL文本也相同
+ */
+final class SqlShape {
+
+	private final Class<?> parameterType;
+	// 为false时只记录形状，不生成SQL文本
+	private final boolean renderSql;
+	private int[] outcomes = new int[16];
+	private int size;
+
+	SqlShape(Class<?> parameterType, boolean renderSql) {
+		this.parameterType = parameterType;
+		this.renderSql = renderSql;
+	}
+
+	boolean isRenderSql() {
+		return renderSql;
+	}
+
+	void add(int outcome) {
+		if (size == outcomes.length) {
+			outcomes = Arrays.copyOf(outcomes, size * 2);
+		}
+		outcomes[size++] = outcome;
+	}
+
+	/*
+	 * 预留一个位置，结果确定后通过set写入
+	 *
+	 * @return 预留位置的下标
+	 */
+	int reserve() {
+		add(0);
+		return size - 1;
+	}
+
+	void set(int index, int outcome) {
+		outcomes[index] = outcome;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof SqlShape)) {
+			return false;
+		}
+		SqlShape other = (SqlShape) o;
+		if (parameterType != other.parameterType || size != other.size) {
+			return false;
+		}
+		for (int i = 0; i < size; i++) {
+			if (outcomes[i] != other.outcomes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		int hash = parameterType.hashCode();
+		for (int i = 0; i < size; i++) {
+			hash = 31 * hash + outcomes[i];
+		}
+		return hash;
+	}
+
+}
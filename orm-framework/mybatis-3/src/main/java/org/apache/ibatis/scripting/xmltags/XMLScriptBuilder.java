@@ -36,6 +36,8 @@ public class XMLScriptBuilder extends BaseBuilder {
 
 	private XNode context;
 	private boolean isDynamic;
+	// 含${}的语句生成的SQL与参数值有关，不能按形状缓存
+	private boolean hasDynamicText;
 	private Class<?> parameterType;
 
 	public XMLScriptBuilder(Configuration configuration, XNode context) {
@@ -53,7 +55,7 @@ public class XMLScriptBuilder extends BaseBuilder {
 		MixedSqlNode rootSqlNode = new MixedSqlNode(contents);
 		SqlSource sqlSource = null;
 		if (isDynamic) {
-			sqlSource = new DynamicSqlSource(configuration, rootSqlNode);
+			sqlSource = new DynamicSqlSource(configuration, rootSqlNode, !hasDynamicText);
 		} else {
 			sqlSource = new RawSqlSource(configuration, rootSqlNode, parameterType);
 		}
@@ -72,6 +74,7 @@ public class XMLScriptBuilder extends BaseBuilder {
 				if (textSqlNode.isDynamic()) {
 					contents.add(textSqlNode);
 					isDynamic = true;
+					hasDynamicText = true;
 				} else {
 					contents.add(new StaticTextSqlNode(data));
 				}
@@ -199,7 +202,7 @@ public class XMLScriptBuilder extends BaseBuilder {
 			List<SqlNode> contents = parseDynamicTags(nodeToHandle);
 			MixedSqlNode mixedSqlNode = new MixedSqlNode(contents);
 			String test = nodeToHandle.getStringAttribute("test");
-			IfSqlNode ifSqlNode = new IfSqlNode(mixedSqlNode, test);
+			IfSqlNode ifSqlNode = new IfSqlNode(configuration, mixedSqlNode, test);
 			targetContents.add(ifSqlNode);
 		}
 	}
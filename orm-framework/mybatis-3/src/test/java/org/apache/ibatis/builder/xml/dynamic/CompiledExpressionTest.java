@@ -0,0 +1,169 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.builder.xml.dynamic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Section;
+import org.apache.ibatis.scripting.xmltags.CompiledExpression;
+import org.apache.ibatis.scripting.xmltags.DynamicContext;
+import org.apache.ibatis.scripting.xmltags.ExpressionEvaluator;
+import org.apache.ibatis.scripting.xmltags.OgnlCache;
+import org.apache.ibatis.session.Configuration;
+import org.junit.Test;
+
+public class CompiledExpressionTest {
+
+	private ExpressionEvaluator evaluator = new ExpressionEvaluator();
+
+	private Author author = new Author(1, "cbegin", null, "cbegin@apache.org", "N/A", Section.NEWS);
+
+	@Test
+	public void shouldCompileSimpleExpressions() {
+		assertCompiled("username != null and username != ''");
+		assertCompiled("ids != null && ids.size() > 0");
+		assertCompiled("!(id == 1 or id gte 10)");
+		assertCompiled("author.username neq \"cbegin\"");
+		assertCompiled("not list.isEmpty() || _parameter == null");
+	}
+
+	@Test
+	public void shouldLeaveOtherExpressionsToOgnl() {
+		assertNotCompiled("username.length() > 0");
+		assertNotCompiled("'%' + username + '%'");
+		assertNotCompiled("type == 'A'");
+		assertNotCompiled("ids[0] == 1");
+		assertNotCompiled("@java.lang.Math@max(1, 2)");
+		assertNotCompiled("id in {1, 2}");
+		assertNotCompiled("id == 1L");
+		assertNotCompiled("id == ");
+		assertNotCompiled("username == 'it\\'s'");
+	}
+
+	@Test
+	public void shouldReadBeanPropertiesThroughGetters() {
+		assertTrue(evaluate("username == 'cbegin'", author));
+		assertFalse(evaluate("username == 'norm'", author));
+		assertTrue(evaluate("password == null", author));
+		assertTrue(evaluate("id > 0 and id lt 2", author));
+		assertTrue(evaluate("favouriteSection == favouriteSection", author));
+	}
+
+	@Test
+	public void shouldCompareNumbersOfDifferentTypes() {
+		Map<String, Object> parameter = new HashMap<String, Object>();
+		parameter.put("count", 10L);
+		parameter.put("price", new BigDecimal("10.00"));
+		parameter.put("rate", 0.5d);
+		assertTrue(evaluate("count == 10", parameter));
+		assertTrue(evaluate("price == count", parameter));
+		assertTrue(evaluate("rate < 1 and rate >= 0.5", parameter));
+		assertFalse(evaluate("count != 10.0", parameter));
+	}
+
+	@Test
+	public void shouldResolveNamesLikeTheDynamicContext() {
+		Map<String, Object> parameter = new HashMap<String, Object>();
+		parameter.put("ids", Arrays.asList(1, 2, 3));
+		parameter.put("name", "");
+		parameter.put("empty", Collections.emptyList());
+		Map<String, Object> bindings = new DynamicContext(new Configuration(), parameter).getBindings();
+		assertTrue(evaluate("ids != null and ids.size() > 2", bindings));
+		assertFalse(evaluate("name neq ''", bindings));
+		assertTrue(evaluate("empty.isEmpty() and _parameter != null", bindings));
+		assertTrue(evaluate("missing == null", bindings));
+
+		Map<String, Object> beanBindings = new DynamicContext(new Configuration(), author).getBindings();
+		assertTrue(evaluate("username != null and _parameter.email == 'cbegin@apache.org'", beanBindings));
+	}
+
+	@Test
+	public void shouldReturnLastEvaluatedOperandLikeOgnl() {
+		assertSameAsOgnl("cbegin", "username and id", author);
+		assertSameAsOgnl(1, "username or id", author);
+		assertSameAsOgnl("cbegin", "password or username", author);
+		assertSameAsOgnl(null, "password and username", author);
+		assertSameAsOgnl(Boolean.TRUE, "!password", author);
+		assertSameAsOgnl(Boolean.TRUE, "!username", author);
+	}
+
+	@Test
+	public void shouldTreatStringsLikeOgnlInLogicalOperators() {
+		Map<String, Object> parameter = new HashMap<String, Object>();
+		parameter.put("name", "norm");
+		parameter.put("flag", "TRUE");
+		parameter.put("age", 0);
+		assertSameAsOgnl("norm", "name and age > 0", parameter);
+		assertSameAsOgnl(Boolean.FALSE, "flag and age > 0", parameter);
+		assertSameAsOgnl(Boolean.FALSE, "not flag", parameter);
+		assertSameAsOgnl(Boolean.TRUE, "not name", parameter);
+	}
+
+	@Test
+	public void shouldCompareLargeLongsExactly() {
+		Map<String, Object> parameter = new HashMap<String, Object>();
+		parameter.put("a", 9007199254740993L);
+		parameter.put("b", 9007199254740992L);
+		assertSameAsOgnl(Boolean.FALSE, "a == b", parameter);
+		assertSameAsOgnl(Boolean.TRUE, "a != b", parameter);
+		assertSameAsOgnl(Boolean.TRUE, "a > b", parameter);
+	}
+
+	@Test
+	public void shouldIterateOverCompiledCollectionExpression() {
+		Map<String, Object> parameter = new HashMap<String, Object>();
+		parameter.put("array", new int[] { 1, 2, 3 });
+		Iterable<?> iterable = evaluator.evaluateIterable(CompiledExpression.compile("array"), parameter);
+		int i = 0;
+		for (Object o : iterable) {
+			assertEquals(++i, o);
+		}
+		assertEquals(3, i);
+	}
+
+	private boolean evaluate(String expression, Object parameterObject) {
+		CompiledExpression compiled = CompiledExpression.compile(expression);
+		assertTrue(compiled.isCompiled());
+		assertEquals(expression, OgnlCache.getValue(expression, parameterObject), compiled.getValue(parameterObject));
+		return evaluator.evaluateBoolean(compiled, parameterObject);
+	}
+
+	// 编译结果必须与OGNL求值结果一致
+	private void assertSameAsOgnl(Object expected, String expression, Object parameterObject) {
+		CompiledExpression compiled = CompiledExpression.compile(expression);
+		assertTrue(expression, compiled.isCompiled());
+		assertEquals(expression, expected, compiled.getValue(parameterObject));
+		assertEquals(expression, OgnlCache.getValue(expression, parameterObject), compiled.getValue(parameterObject));
+	}
+
+	private void assertCompiled(String expression) {
+		assertTrue(expression, CompiledExpression.compile(expression).isCompiled());
+	}
+
+	private void assertNotCompiled(String expression) {
+		assertFalse(expression, CompiledExpression.compile(expression).isCompiled());
+	}
+
+}
@@ -16,6 +16,8 @@
 package org.apache.ibatis.builder.xml.dynamic;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import java.io.IOException;
 import java.io.Reader;
@@ -29,7 +31,9 @@ import java.util.Map;
 import org.apache.ibatis.BaseDataTest;
 import org.apache.ibatis.io.Resources;
 import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.SqlSource;
 import org.apache.ibatis.scripting.xmltags.ChooseSqlNode;
+import org.apache.ibatis.scripting.xmltags.DynamicContext;
 import org.apache.ibatis.scripting.xmltags.DynamicSqlSource;
 import org.apache.ibatis.scripting.xmltags.ForEachSqlNode;
 import org.apache.ibatis.scripting.xmltags.IfSqlNode;
@@ -38,6 +42,7 @@ import org.apache.ibatis.scripting.xmltags.SetSqlNode;
 import org.apache.ibatis.scripting.xmltags.SqlNode;
 import org.apache.ibatis.scripting.xmltags.TextSqlNode;
 import org.apache.ibatis.scripting.xmltags.WhereSqlNode;
+import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.apache.ibatis.session.SqlSessionFactoryBuilder;
@@ -358,6 +363,110 @@ public class DynamicSqlSourceTest extends BaseDataTest {
 		Assert.assertEquals("id=", sql);
 	}
 
+	@Test
+	public void shouldReuseRenderedSqlForTheSameShape() {
+		Configuration configuration = new Configuration();
+		DynamicSqlSource source = new DynamicSqlSource(configuration, mixedContents(new TextSqlNode("SELECT * FROM BLOG"),
+				new WhereSqlNode(configuration, mixedContents(
+						new IfSqlNode(configuration, mixedContents(new TextSqlNode("AND ID = #{id}")), "id != null"),
+						new IfSqlNode(configuration, mixedContents(new TextSqlNode("AND NAME = #{name}")),
+								"name != null")))), true);
+		Map<String, Object> first = new HashMap<String, Object>();
+		first.put("id", 1);
+		Map<String, Object> second = new HashMap<String, Object>();
+		second.put("id", 2);
+		BoundSql firstSql = source.getBoundSql(first);
+		BoundSql secondSql = source.getBoundSql(second);
+		assertEquals("SELECT * FROM BLOG WHERE  ID = ?", secondSql.getSql());
+		assertSame(firstSql.getParameterMappings(), secondSql.getParameterMappings());
+
+		Map<String, Object> third = new HashMap<String, Object>();
+		third.put("name", "cbegin");
+		BoundSql thirdSql = source.getBoundSql(third);
+		assertEquals("SELECT * FROM BLOG WHERE  NAME = ?", thirdSql.getSql());
+		assertEquals("name", thirdSql.getParameterMappings().get(0).getProperty());
+	}
+
+	@Test
+	public void shouldRenderEachForEachSizeAsItsOwnShape() {
+		Configuration configuration = new Configuration();
+		DynamicSqlSource source = new DynamicSqlSource(configuration, mixedContents(
+				new TextSqlNode("SELECT * FROM BLOG WHERE ID IN"),
+				new ForEachSqlNode(configuration, mixedContents(new TextSqlNode("#{item}")), "list", null, "item",
+						"(", ")", ","),
+				new IfSqlNode(configuration, mixedContents(new TextSqlNode("AND 1 = 1")), "list.size() > 2")), true);
+		BoundSql two = source.getBoundSql(listParameter(1, 2));
+		assertEquals("SELECT * FROM BLOG WHERE ID IN (  ? , ? )", two.getSql());
+		BoundSql three = source.getBoundSql(listParameter(3, 4, 5));
+		assertEquals("SELECT * FROM BLOG WHERE ID IN (  ? , ? , ? ) AND 1 = 1", three.getSql());
+		assertEquals(5, three.getAdditionalParameter("__frch_item_2"));
+		BoundSql twoAgain = source.getBoundSql(listParameter(6, 7));
+		assertSame(two.getParameterMappings(), twoAgain.getParameterMappings());
+		assertEquals(6, twoAgain.getAdditionalParameter("__frch_item_0"));
+		assertEquals(7, twoAgain.getAdditionalParameter("__frch_item_1"));
+	}
+
+	@Test
+	public void shouldNotReuseRenderedSqlWhenBoundValueTypesChange() {
+		Configuration configuration = new Configuration();
+		DynamicSqlSource source = new DynamicSqlSource(configuration, mixedContents(
+				new TextSqlNode("SELECT * FROM BLOG WHERE ID IN"),
+				new ForEachSqlNode(configuration, mixedContents(new TextSqlNode("#{item}")), "list", null, "item",
+						"(", ")", ",")), true);
+		BoundSql numbers = source.getBoundSql(listParameter(1));
+		BoundSql strings = source.getBoundSql(listParameter("1"));
+		assertNotSame(numbers.getParameterMappings(), strings.getParameterMappings());
+		assertEquals(Integer.class, numbers.getParameterMappings().get(0).getJavaType());
+		assertEquals(String.class, strings.getParameterMappings().get(0).getJavaType());
+	}
+
+	@Test
+	public void shouldWalkTheTreeOnceForNewShapes() {
+		Configuration configuration = new Configuration();
+		final SqlNode forEach = new ForEachSqlNode(configuration, mixedContents(new TextSqlNode("#{item}")), "list", null,
+				"item", "(", ")", ",");
+		final int[] walks = new int[1];
+		DynamicSqlSource source = new DynamicSqlSource(configuration, new SqlNode() {
+			@Override
+			public boolean apply(DynamicContext context) {
+				walks[0]++;
+				context.appendSql("SELECT * FROM BLOG WHERE ID IN");
+				return forEach.apply(context);
+			}
+		}, true);
+		List<Object> values = new ArrayList<Object>();
+		for (int i = 0; i < 10; i++) {
+			values.add(i);
+			source.getBoundSql(listParameter(values.toArray()));
+		}
+		assertEquals(10, walks[0]);
+		source.getBoundSql(listParameter(1, 2));
+		source.getBoundSql(listParameter(3, 4));
+		assertEquals(12, walks[0]);
+		assertEquals("SELECT * FROM BLOG WHERE ID IN (  ? , ? )", source.getBoundSql(listParameter(5, 6)).getSql());
+	}
+
+	@Test
+	public void shouldNotCacheShapesOfScriptsWithTextSubstitution() {
+		Configuration configuration = new Configuration();
+		SqlSource source = new XMLLanguageDriver().createSqlSource(configuration,
+				"<script>SELECT * FROM ${table} <if test='id != null'>WHERE ID = #{id}</if></script>", Map.class);
+		Map<String, Object> blog = new HashMap<String, Object>();
+		blog.put("table", "BLOG");
+		blog.put("id", 1);
+		Map<String, Object> author = new HashMap<String, Object>();
+		author.put("table", "AUTHOR");
+		author.put("id", 1);
+		assertEquals("SELECT * FROM BLOG  WHERE ID = ?", source.getBoundSql(blog).getSql());
+		assertEquals("SELECT * FROM AUTHOR  WHERE ID = ?", source.getBoundSql(author).getSql());
+	}
+
+	private Map<String, Object> listParameter(Object... values) {
+		Map<String, Object> parameter = new HashMap<String, Object>();
+		parameter.put("list", Arrays.asList(values));
+		return parameter;
+	}
+
 	public static class Bean {
 		public String id;
 
@@ -0,0 +1,249 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.cache.decorators.LoggingCache;
+import org.apache.ibatis.cache.decorators.LruCache;
+import org.apache.ibatis.cache.impl.ConcurrentCache;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.junit.Test;
+
+public class ConcurrentCacheTest {
+
+  @Test
+  public void shouldKeepFrequentlyReadItemWhileScanningOneTimeItems() {
+    ConcurrentCache cache = new ConcurrentCache("default");
+    cache.setSize(5);
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    for (int i = 0; i < 5; i++) {
+      assertEquals(0, cache.getObject(0));
+    }
+    for (int i = 100; i < 200; i++) {
+      cache.putObject(i, i);
+    }
+    assertEquals(0, cache.getObject(0));
+    assertEquals(5, cache.getSize());
+  }
+
+  @Test
+  public void shouldAdmitItemReadMoreOftenThanTheOldest() {
+    ConcurrentCache cache = new ConcurrentCache("default");
+    cache.setSize(2);
+    cache.putObject(0, 0);
+    cache.putObject(1, 1);
+    for (int i = 0; i < 3; i++) {
+      assertNull(cache.getObject(2));
+    }
+    cache.putObject(2, 2);
+    assertNull(cache.getObject(0));
+    assertEquals(2, cache.getObject(2));
+    assertEquals(2, cache.getSize());
+  }
+
+  @Test
+  public void shouldBoundTotalWeight() {
+    ConcurrentCache cache = new ConcurrentCache("default");
+    cache.setMaxWeight(10);
+    cache.putObject("a", Arrays.asList(1, 2, 3, 4));
+    cache.putObject("b", Arrays.asList(1, 2, 3, 4));
+    assertEquals(8, cache.getWeight());
+    cache.putObject("c", Arrays.asList(1, 2, 3, 4));
+    assertEquals(2, cache.getSize());
+    assertTrue(cache.getWeight() <= 10);
+    cache.putObject("d", new ArrayList<Object>(Arrays.asList(new Object[20])));
+    assertNull(cache.getObject("d"));
+    assertTrue(cache.getWeight() <= 10);
+  }
+
+  @Test
+  public void shouldExpireItemsAfterTimeToLive() throws Exception {
+    ConcurrentCache cache = new ConcurrentCache("default");
+    cache.setTimeToLive(50);
+    cache.putObject(0, 0);
+    assertEquals(0, cache.getObject(0));
+    Thread.sleep(100);
+    assertNull(cache.getObject(0));
+    assertEquals(0, cache.getSize());
+    assertEquals(0, cache.getWeight());
+  }
+
+  @Test
+  public void shouldRemoveItemOnDemand() {
+    Cache cache = new ConcurrentCache("default");
+    cache.putObject(0, 0);
+    assertNotNull(cache.getObject(0));
+    cache.removeObject(0);
+    assertNull(cache.getObject(0));
+  }
+
+  @Test
+  public void shouldFlushAllItemsOnDemand() {
+    ConcurrentCache cache = new ConcurrentCache("default");
+    for (int i = 0; i < 5; i++) {
+      cache.putObject(i, i);
+    }
+    cache.clear();
+    assertNull(cache.getObject(0));
+    assertNull(cache.getObject(4));
+    assertEquals(0, cache.getSize());
+    assertEquals(0, cache.getWeight());
+  }
+
+  @Test
+  public void shouldLetOtherThreadsWaitForTheLoadingThread() throws Exception {
+    final ConcurrentCache cache = new ConcurrentCache("default");
+    cache.setBlocking(true);
+    assertNull(cache.getObject("key"));
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      final CountDownLatch started = new CountDownLatch(3);
+      List<Future<Object>> waiting = new ArrayList<Future<Object>>();
+      for (int i = 0; i < 3; i++) {
+        waiting.add(executor.submit(new Callable<Object>() {
+          @Override
+          public Object call() {
+            started.countDown();
+            return cache.getObject("key");
+          }
+        }));
+      }
+      started.await();
+      Thread.sleep(50);
+      for (Future<Object> future : waiting) {
+        assertFalse(future.isDone());
+      }
+      cache.putObject("key", "value");
+      for (Future<Object> future : waiting) {
+        assertEquals("value", future.get(1, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldHandOverTheLoadWhenTheLoadingThreadGivesUp() throws Exception {
+    final ConcurrentCache cache = new ConcurrentCache("default");
+    cache.setBlocking(true);
+    assertNull(cache.getObject("key"));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Object> waiting = executor.submit(new Callable<Object>() {
+        @Override
+        public Object call() {
+          Object value = cache.getObject("key");
+          cache.putObject("key", "loaded");
+          return value;
+        }
+      });
+      Thread.sleep(50);
+      assertFalse(waiting.isDone());
+      cache.removeObject("key");
+      assertNull(waiting.get(1, TimeUnit.SECONDS));
+      assertEquals("loaded", cache.getObject("key"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldFailWhenTheLoadTakesLongerThanTimeout() throws Exception {
+    final ConcurrentCache cache = new ConcurrentCache("default");
+    cache.setBlocking(true);
+    cache.setTimeout(50);
+    assertNull(cache.getObject("key"));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Object> waiting = executor.submit(new Callable<Object>() {
+        @Override
+        public Object call() {
+          return cache.getObject("key");
+        }
+      });
+      try {
+        waiting.get(1, TimeUnit.SECONDS);
+        fail("Should have timed out waiting for the load");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof CacheException);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldStayWithinBoundsUnderConcurrentAccess() throws Exception {
+    final ConcurrentCache cache = new ConcurrentCache("default");
+    cache.setSize(100);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Object>> futures = new ArrayList<Future<Object>>();
+      for (int t = 0; t < 8; t++) {
+        final int seed = t;
+        futures.add(executor.submit(new Callable<Object>() {
+          @Override
+          public Object call() {
+            for (int i = 0; i < 20000; i++) {
+              int key = (i * 31 + seed) % 1000;
+              if (cache.getObject(key) == null) {
+                cache.putObject(key, key);
+              }
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Object> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertTrue(cache.getSize() <= 100);
+    assertEquals(cache.getSize(), cache.getWeight());
+  }
+
+  @Test
+  public void shouldNotWrapWithSynchronizedOrBlockingCache() {
+    Cache cache = new CacheBuilder("default")
+        .implementation(ConcurrentCache.class)
+        .addDecorator(LruCache.class)
+        .size(10)
+        .blocking(true)
+        .build();
+    assertTrue(cache instanceof LoggingCache);
+    Object delegate = SystemMetaObject.forObject(cache).getValue("delegate");
+    assertTrue(delegate instanceof ConcurrentCache);
+    assertTrue(((ConcurrentCache) delegate).isBlocking());
+  }
+
+}
@@ -0,0 +1,222 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.session.Configuration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrentPooledDataSourceTest extends BaseDataTest {
+
+	private ConcurrentPooledDataSource ds;
+
+	@Before
+	public void setUp() throws Exception {
+		ds = new ConcurrentPooledDataSource(createUnpooledDataSource(JPETSTORE_PROPERTIES));
+		ds.setPoolValidationInterval(0);
+	}
+
+	@After
+	public void tearDown() {
+		ds.close();
+	}
+
+	@Test
+	public void shouldReuseReturnedConnectionsAndEvictIdleOnes() throws Exception {
+		ds.setPoolMaximumActiveConnections(3);
+		ds.setPoolMaximumIdleConnections(2);
+		List<Connection> connections = new ArrayList<Connection>();
+		for (int i = 0; i < 3; i++) {
+			connections.add(ds.getConnection());
+		}
+		assertEquals(3, ds.getPoolState().getActiveConnectionCount());
+		for (Connection c : connections) {
+			c.close();
+		}
+		assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+		assertEquals(3, ds.getPoolState().getIdleConnectionCount());
+		ds.housekeep();
+		assertEquals(2, ds.getPoolState().getIdleConnectionCount());
+		assertEquals(1, ds.getPoolState().getEvictedConnectionCount());
+		assertEquals(3, ds.getPoolState().getRequestCount());
+		assertEquals(0, ds.getPoolState().getBadConnectionCount());
+		assertEquals(0, ds.getPoolState().getHadToWaitCount());
+		assertNotNull(ds.getPoolState().toString());
+	}
+
+	@Test
+	public void shouldHandBackTheLastConnectionUsedByTheSameThread() throws Exception {
+		Connection first = ds.getConnection();
+		Connection second = ds.getConnection();
+		Connection realSecond = ConcurrentPooledDataSource.unwrapConnection(second);
+		first.close();
+		second.close();
+		Connection again = ds.getConnection();
+		assertSame(realSecond, ConcurrentPooledDataSource.unwrapConnection(again));
+		again.close();
+	}
+
+	@Test
+	public void shouldHandOffReturnedConnectionToWaitingThread() throws Exception {
+		ds.setPoolMaximumActiveConnections(1);
+		final Connection held = ds.getConnection();
+		Connection realHeld = ConcurrentPooledDataSource.unwrapConnection(held);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Connection> waiter = executor.submit(() -> {
+				Connection c = ds.getConnection();
+				Connection real = ConcurrentPooledDataSource.unwrapConnection(c);
+				c.close();
+				return real;
+			});
+			while (ds.getPoolState().getWaitingThreadCount() == 0) {
+				Thread.sleep(5);
+			}
+			held.close();
+			assertSame(realHeld, waiter.get(5, TimeUnit.SECONDS));
+			assertEquals(1, ds.getPoolState().getHadToWaitCount());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void shouldTimeOutWhenThePoolIsExhausted() throws Exception {
+		ds.setPoolMaximumActiveConnections(1);
+		ds.setPoolTimeToWait(50);
+		Connection held = ds.getConnection();
+		try {
+			ds.getConnection();
+			fail("Expected a timeout");
+		} catch (SQLException e) {
+			assertTrue(e.getMessage().contains("Timed out"));
+		} finally {
+			held.close();
+		}
+	}
+
+	@Test
+	public void shouldNeverExceedMaximumActiveConnectionsUnderContention() throws Exception {
+		ds.setPoolMaximumActiveConnections(4);
+		final Set<Connection> realConnections = Collections
+				.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<Connection, Boolean>()));
+		final AtomicInteger inUse = new AtomicInteger();
+		final AtomicInteger maxInUse = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<Object>> futures = new ArrayList<Future<Object>>();
+			for (int t = 0; t < 16; t++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					for (int i = 0; i < 200; i++) {
+						Connection c = ds.getConnection();
+						try {
+							int current = inUse.incrementAndGet();
+							maxInUse.accumulateAndGet(current, Math::max);
+							realConnections.add(ConcurrentPooledDataSource.unwrapConnection(c));
+							inUse.decrementAndGet();
+						} finally {
+							c.close();
+						}
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<Object> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertTrue(maxInUse.get() <= 4);
+		assertTrue(realConnections.size() <= 4);
+		assertEquals(16 * 200, ds.getPoolState().getRequestCount());
+		assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+	}
+
+	@Test
+	public void shouldRejectUseOfAClosedConnection() throws Exception {
+		Connection c = ds.getConnection();
+		c.close();
+		c.close();
+		assertTrue(c.isClosed());
+		c.toString();
+		try {
+			c.createStatement();
+			fail("Expected the closed connection to be rejected");
+		} catch (SQLException e) {
+			// expected
+		}
+		assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+	}
+
+	@Test
+	public void shouldCloseActiveConnectionsWhenReturnedAfterForceCloseAll() throws Exception {
+		Connection idle = ds.getConnection();
+		Connection active = ds.getConnection();
+		idle.close();
+		ds.forceCloseAll();
+		assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+		Connection realActive = ConcurrentPooledDataSource.unwrapConnection(active);
+		active.close();
+		assertTrue(realActive.isClosed());
+		assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+	}
+
+	@Test
+	public void shouldBeConfigurableThroughTheConcurrentPooledAlias() throws Exception {
+		Class<?> factoryType = new Configuration().getTypeAliasRegistry().resolveAlias("CONCURRENT_POOLED");
+		assertEquals(ConcurrentPooledDataSourceFactory.class, factoryType);
+		ConcurrentPooledDataSourceFactory factory = (ConcurrentPooledDataSourceFactory) factoryType.newInstance();
+		Properties props = new Properties();
+		props.setProperty("driver", "org.hsqldb.jdbcDriver");
+		props.setProperty("url", "jdbc:hsqldb:.");
+		props.setProperty("username", "sa");
+		props.setProperty("poolMaximumActiveConnections", "7");
+		props.setProperty("poolValidationInterval", "0");
+		factory.setProperties(props);
+		ConcurrentPooledDataSource configured = (ConcurrentPooledDataSource) factory.getDataSource();
+		assertEquals(7, configured.getPoolMaximumActiveConnections());
+		Connection c = configured.getConnection();
+		c.close();
+		configured.close();
+	}
+}
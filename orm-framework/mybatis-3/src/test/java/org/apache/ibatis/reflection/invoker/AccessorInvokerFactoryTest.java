@@ -0,0 +1,277 @@
+/**
+ *    Copyright 2009-2015 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.apache.ibatis.reflection.DefaultReflectorFactory;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.reflection.property.PropertyTokenizer;
+import org.junit.Test;
+
+public class AccessorInvokerFactoryTest {
+
+  private static final Object[] NO_ARGUMENTS = new Object[0];
+
+  @Test
+  public void shouldGenerateOneAccessorClassPerBean() throws Exception {
+    Reflector reflector = new Reflector(Bean.class, new AccessorInvokerFactory());
+    Invoker getter = reflector.getGetInvoker("name");
+    Invoker setter = reflector.getSetInvoker("name");
+    assertTrue(getter instanceof BeanAccessor);
+    assertSame(getter.getClass(), setter.getClass());
+    assertSame(getter.getClass(), reflector.getGetInvoker("count").getClass());
+    assertSame(String.class, getter.getType());
+    Bean bean = new Bean();
+    setter.invoke(bean, new Object[] { "name" });
+    assertEquals("name", getter.invoke(bean, NO_ARGUMENTS));
+  }
+
+  @Test
+  public void shouldReuseAccessorClassForSameBean() {
+    AccessorInvokerFactory factory = new AccessorInvokerFactory();
+    Reflector first = new Reflector(Bean.class, factory);
+    Reflector second = new Reflector(Bean.class, factory);
+    assertSame(first.getGetInvoker("name").getClass(), second.getGetInvoker("name").getClass());
+  }
+
+  @Test
+  public void shouldConvertPrimitivesAndArrays() throws Exception {
+    Reflector reflector = new Reflector(Bean.class, new AccessorInvokerFactory());
+    Bean bean = new Bean();
+    reflector.getSetInvoker("active").invoke(bean, new Object[] { true });
+    reflector.getSetInvoker("grade").invoke(bean, new Object[] { 'A' });
+    reflector.getSetInvoker("ratio").invoke(bean, new Object[] { 0.5d });
+    reflector.getSetInvoker("total").invoke(bean, new Object[] { 7L });
+    reflector.getSetInvoker("scores").invoke(bean, new Object[] { new int[] { 1, 2 } });
+    assertEquals(true, reflector.getGetInvoker("active").invoke(bean, NO_ARGUMENTS));
+    assertEquals('A', reflector.getGetInvoker("grade").invoke(bean, NO_ARGUMENTS));
+    assertEquals(0.5d, reflector.getGetInvoker("ratio").invoke(bean, NO_ARGUMENTS));
+    assertEquals(7L, reflector.getGetInvoker("total").invoke(bean, NO_ARGUMENTS));
+    assertEquals(2, ((int[]) reflector.getGetInvoker("scores").invoke(bean, NO_ARGUMENTS))[1]);
+    assertTrue(reflector.getGetInvoker("scores") instanceof BeanAccessor);
+  }
+
+  @Test
+  public void shouldInvokeInterfaceMethods() throws Exception {
+    Reflector reflector = new Reflector(Named.class, new AccessorInvokerFactory());
+    Bean bean = new Bean();
+    bean.setName("named");
+    Invoker getter = reflector.getGetInvoker("name");
+    assertTrue(getter instanceof BeanAccessor);
+    assertEquals("named", getter.invoke(bean, NO_ARGUMENTS));
+  }
+
+  @Test
+  public void shouldBehaveLikeReflection() throws Exception {
+    Reflector reflector = new Reflector(Bean.class, new AccessorInvokerFactory());
+    Bean bean = new Bean();
+    Invoker count = reflector.getSetInvoker("count");
+    count.invoke(bean, new Object[] { 3 });
+    assertEquals(3, reflector.getGetInvoker("count").invoke(bean, NO_ARGUMENTS));
+    // 拓宽转换交给反射
+    reflector.getSetInvoker("total").invoke(bean, new Object[] { 5 });
+    assertEquals(5L, reflector.getGetInvoker("total").invoke(bean, NO_ARGUMENTS));
+    assertSame(bean, reflector.getSetInvoker("chained").invoke(bean, new Object[] { "x" }));
+    assertNull(reflector.getSetInvoker("name").invoke(bean, new Object[] { "x" }));
+    assertNull(reflector.getSetInvoker("name").invoke(bean, new Object[] { null }));
+    try {
+      reflector.getGetInvoker("name").invoke("not a bean", NO_ARGUMENTS);
+      fail();
+    } catch (IllegalArgumentException e) {
+    }
+    try {
+      reflector.getSetInvoker("name").invoke(bean, new Object[] { 1 });
+      fail();
+    } catch (IllegalArgumentException e) {
+    }
+    try {
+      count.invoke(bean, new Object[] { null });
+      fail();
+    } catch (IllegalArgumentException e) {
+    }
+    try {
+      reflector.getGetInvoker("failing").invoke(bean, NO_ARGUMENTS);
+      fail();
+    } catch (InvocationTargetException e) {
+      assertTrue(e.getTargetException() instanceof IllegalStateException);
+    }
+  }
+
+  @Test
+  public void shouldUseReflectionForNonPublicMethods() throws Exception {
+    Reflector reflector = new Reflector(Bean.class, new AccessorInvokerFactory());
+    assertFalse(reflector.getGetInvoker("secret") instanceof BeanAccessor);
+    assertTrue(reflector.getGetInvoker("secret") instanceof MethodInvoker);
+    assertEquals("secret", reflector.getGetInvoker("secret").invoke(new Bean(), NO_ARGUMENTS));
+  }
+
+  @Test
+  public void shouldUseReflectionForNonPublicParameterTypes() throws Exception {
+    Reflector reflector = new Reflector(Bean.class, new AccessorInvokerFactory());
+    Invoker setter = reflector.getSetInvoker("kind");
+    Invoker getter = reflector.getGetInvoker("kind");
+    assertFalse(setter instanceof BeanAccessor);
+    assertFalse(getter instanceof BeanAccessor);
+    assertFalse(reflector.getSetInvoker("kinds") instanceof BeanAccessor);
+    assertTrue(reflector.getGetInvoker("name") instanceof BeanAccessor);
+    Bean bean = new Bean();
+    setter.invoke(bean, new Object[] { Kind.SMALL });
+    assertSame(Kind.SMALL, getter.invoke(bean, NO_ARGUMENTS));
+  }
+
+  @Test
+  public void shouldReadNestedPropertiesThroughMetaObject() {
+    Bean bean = new Bean();
+    bean.setChild(new Bean());
+    MetaObject metaObject = MetaObject.forObject(bean, SystemMetaObject.DEFAULT_OBJECT_FACTORY,
+        SystemMetaObject.DEFAULT_OBJECT_WRAPPER_FACTORY, new DefaultReflectorFactory(new AccessorInvokerFactory()));
+    metaObject.setValue("child.name", "nested");
+    assertEquals("nested", metaObject.getValue("child.name"));
+    assertEquals("nested", bean.getChild().getName());
+  }
+
+  @Test
+  public void shouldCacheTokenizedPaths() {
+    PropertyTokenizer prop = PropertyTokenizer.of("order.items[0].name");
+    assertSame(prop, PropertyTokenizer.of("order.items[0].name"));
+    assertEquals("order", prop.getName());
+    PropertyTokenizer child = prop.next();
+    assertSame(child, prop.next());
+    assertEquals("items", child.getName());
+    assertEquals("0", child.getIndex());
+    assertEquals("items[0]", child.getIndexedName());
+    assertEquals("name", child.getChildren());
+  }
+
+  public interface Named {
+    String getName();
+  }
+
+  public static class Bean implements Named {
+    private String name;
+    private int count;
+    private long total;
+    private boolean active;
+    private char grade;
+    private double ratio;
+    private int[] scores;
+    private Bean child;
+    private Kind kind;
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public int getCount() {
+      return count;
+    }
+
+    public void setCount(int count) {
+      this.count = count;
+    }
+
+    public long getTotal() {
+      return total;
+    }
+
+    public void setTotal(long total) {
+      this.total = total;
+    }
+
+    public boolean isActive() {
+      return active;
+    }
+
+    public void setActive(boolean active) {
+      this.active = active;
+    }
+
+    public char getGrade() {
+      return grade;
+    }
+
+    public void setGrade(char grade) {
+      this.grade = grade;
+    }
+
+    public double getRatio() {
+      return ratio;
+    }
+
+    public void setRatio(double ratio) {
+      this.ratio = ratio;
+    }
+
+    public int[] getScores() {
+      return scores;
+    }
+
+    public void setScores(int[] scores) {
+      this.scores = scores;
+    }
+
+    public Bean getChild() {
+      return child;
+    }
+
+    public void setChild(Bean child) {
+      this.child = child;
+    }
+
+    public Bean setChained(String value) {
+      return this;
+    }
+
+    public String getFailing() {
+      throw new IllegalStateException();
+    }
+
+    String getSecret() {
+      return "secret";
+    }
+
+    public Kind getKind() {
+      return kind;
+    }
+
+    public void setKind(Kind kind) {
+      this.kind = kind;
+    }
+
+    public void setKinds(Kind[] kinds) {
+      this.kind = kinds.length == 0 ? null : kinds[0];
+    }
+  }
+
+  enum Kind {
+    SMALL, LARGE
+  }
+}